@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.data;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import org.ranksys.fast.preference.FastPointWisePreferenceData;
+import org.ranksys.fast.preference.IteratorsAbstractFastPreferenceData;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Preference data which reads the preferences directly from the compressed sparse row
+ * structures of a frozen graph, instead of copying them: the preferences of a user are its
+ * outgoing edges, and the preferences for an item are its incoming edges. Preferences take
+ * the weights of the edges (the default weight, in unweighted graphs).
+ *
+ * @param <U> Type of the users.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FastGraphPreferenceData<U> extends IteratorsAbstractFastPreferenceData<U, U> implements FastPointWisePreferenceData<U, U>
+{
+    /**
+     * Offsets of the preferences of each user.
+     */
+    private final int[] uidxOffsets;
+    /**
+     * Items in the preferences of the users.
+     */
+    private final int[] uidxIds;
+    /**
+     * Values of the preferences of the users (null if every preference takes the default weight).
+     */
+    private final double[] uidxValues;
+    /**
+     * Offsets of the preferences for each item.
+     */
+    private final int[] iidxOffsets;
+    /**
+     * Users in the preferences for the items.
+     */
+    private final int[] iidxIds;
+    /**
+     * Values of the preferences for the items (null if every preference takes the default weight).
+     */
+    private final double[] iidxValues;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the (frozen) graph.
+     * @param index the index of the users of the graph.
+     */
+    private FastGraphPreferenceData(FastGraph<U> graph, GraphIndex<U> index)
+    {
+        super(index, index);
+        this.uidxOffsets = graph.getCompactOffsets(EdgeOrientation.OUT);
+        this.uidxIds = graph.getCompactIds(EdgeOrientation.OUT);
+        this.uidxValues = graph.getCompactWeights(EdgeOrientation.OUT);
+        this.iidxOffsets = graph.getCompactOffsets(EdgeOrientation.IN);
+        this.iidxIds = graph.getCompactIds(EdgeOrientation.IN);
+        this.iidxValues = graph.getCompactWeights(EdgeOrientation.IN);
+    }
+
+    /**
+     * Obtains the preference data for a graph. If the graph is not frozen, the preferences
+     * are read from a frozen copy of it.
+     *
+     * @param <U>   Type of the users.
+     * @param graph the graph.
+     *
+     * @return the preference data.
+     */
+    public static <U> FastGraphPreferenceData<U> load(FastGraph<U> graph)
+    {
+        FastGraph<U> frozen = graph.freeze();
+        return new FastGraphPreferenceData<>(frozen, new FastGraphIndex<>(frozen));
+    }
+
+    @Override
+    public int numUsers(int iidx)
+    {
+        return this.iidxOffsets[iidx + 1] - this.iidxOffsets[iidx];
+    }
+
+    @Override
+    public int numItems(int uidx)
+    {
+        return this.uidxOffsets[uidx + 1] - this.uidxOffsets[uidx];
+    }
+
+    @Override
+    public int numPreferences()
+    {
+        return this.uidxIds.length;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences()
+    {
+        return IntStream.range(0, this.numUsers()).filter(uidx -> this.numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences()
+    {
+        return IntStream.range(0, this.numItems()).filter(iidx -> this.numUsers(iidx) > 0);
+    }
+
+    @Override
+    public int numUsersWithPreferences()
+    {
+        return (int) this.getUidxWithPreferences().count();
+    }
+
+    @Override
+    public int numItemsWithPreferences()
+    {
+        return (int) this.getIidxWithPreferences().count();
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx)
+    {
+        return IntIterators.wrap(this.uidxIds, this.uidxOffsets[uidx], this.numItems(uidx));
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx)
+    {
+        return new ValueIterator(this.uidxValues, this.uidxOffsets[uidx], this.uidxOffsets[uidx + 1]);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx)
+    {
+        return IntIterators.wrap(this.iidxIds, this.iidxOffsets[iidx], this.numUsers(iidx));
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx)
+    {
+        return new ValueIterator(this.iidxValues, this.iidxOffsets[iidx], this.iidxOffsets[iidx + 1]);
+    }
+
+    @Override
+    public Optional<IdxPref> getPreference(int uidx, int iidx)
+    {
+        // The items in the preferences of each user are sorted.
+        int pos = Arrays.binarySearch(this.uidxIds, this.uidxOffsets[uidx], this.uidxOffsets[uidx + 1], iidx);
+        if (pos < 0)
+        {
+            return Optional.empty();
+        }
+        return Optional.of(new IdxPref(iidx, this.uidxValues == null ? EdgeWeight.getDefaultValue() : this.uidxValues[pos]));
+    }
+
+    @Override
+    public Optional<? extends IdPref<U>> getPreference(U u, U i)
+    {
+        int uidx = this.user2uidx(u);
+        int iidx = this.item2iidx(i);
+        if (uidx < 0 || iidx < 0)
+        {
+            return Optional.empty();
+        }
+        return this.getPreference(uidx, iidx).map(this.uPrefFun);
+    }
+
+    /**
+     * Iterator over the values of a range of preferences.
+     */
+    private static class ValueIterator implements DoubleIterator
+    {
+        /**
+         * The values (null if every value is the default weight).
+         */
+        private final double[] values;
+        /**
+         * The end of the range.
+         */
+        private final int end;
+        /**
+         * The current position.
+         */
+        private int pos;
+
+        /**
+         * Constructor.
+         *
+         * @param values the values (null if every value is the default weight).
+         * @param start  the start of the range.
+         * @param end    the end of the range.
+         */
+        ValueIterator(double[] values, int start, int end)
+        {
+            this.values = values;
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.pos < this.end;
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            double value = this.values == null ? EdgeWeight.getDefaultValue() : this.values[this.pos];
+            ++this.pos;
+            return value;
+        }
+    }
+}
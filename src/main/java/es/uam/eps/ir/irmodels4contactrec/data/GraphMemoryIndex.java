@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.data;
+
+import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.realtime.memory.MemoryInvertedIndex;
+import org.terrier.realtime.memory.MemoryLexicon;
+import org.terrier.structures.EntryStatistics;
+import org.terrier.structures.LexiconEntry;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Terrier in-memory index, adapted to the indexing of graphs. The lexicon of the original
+ * {@link MemoryIndex} stores the insertion order of the terms in a list, which is traversed
+ * every time a term is added, so building it is quadratic in the number of different terms.
+ * Since every node in the network is a term, this becomes the main cost of indexing
+ * large graphs. This index replaces that lexicon by one backed by a hash table.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class GraphMemoryIndex extends MemoryIndex
+{
+    /**
+     * Constructor. Builds an empty index.
+     */
+    GraphMemoryIndex()
+    {
+        super();
+        this.lexicon = new GraphLexicon();
+        this.inverted = new MemoryInvertedIndex(this.lexicon, this.document);
+    }
+
+    /**
+     * Lexicon storing the entries in a hash table (for finding them by term) and
+     * a list (for finding them by term identifier). Terms are only added, never removed.
+     */
+    private static class GraphLexicon extends MemoryLexicon
+    {
+        /**
+         * The lexicon entries, indexed by term.
+         */
+        private final Map<String, LexiconEntry> entries = new HashMap<>();
+        /**
+         * The lexicon entries, indexed by term identifier.
+         */
+        private final List<Map.Entry<String, LexiconEntry>> ids = new ArrayList<>();
+
+        @Override
+        public int term(String term, EntryStatistics es)
+        {
+            synchronized (this.modificationLock)
+            {
+                LexiconEntry entry = this.entries.get(term);
+                if (entry != null)
+                {
+                    entry.add(es);
+                    return entry.getTermId();
+                }
+
+                int termId = this.ids.size();
+                entry = (LexiconEntry) es;
+                entry.setTermId(termId);
+                this.entries.put(term, entry);
+                this.ids.add(new AbstractMap.SimpleImmutableEntry<>(term, entry));
+                return termId;
+            }
+        }
+
+        @Override
+        public int term(String term, EntryStatistics es, int termId)
+        {
+            throw new UnsupportedOperationException("Term identifiers are assigned by the lexicon");
+        }
+
+        @Override
+        public LexiconEntry getLexiconEntry(String term)
+        {
+            return this.entries.get(term);
+        }
+
+        @Override
+        public Map.Entry<String, LexiconEntry> getLexiconEntry(int termId)
+        {
+            return termId >= 0 && termId < this.ids.size() ? this.ids.get(termId) : null;
+        }
+
+        @Override
+        public Map.Entry<String, LexiconEntry> getIthLexiconEntry(int index)
+        {
+            return this.getLexiconEntry(index);
+        }
+
+        @Override
+        public int numberOfEntries()
+        {
+            return this.ids.size();
+        }
+
+        /**
+         * Iterates over the lexicon entries, sorted by term. Terrier relies on this order
+         * when the index is written to disk (since terms are found by binary search there).
+         *
+         * @return an iterator over the sorted lexicon entries.
+         */
+        @Override
+        public Iterator<Map.Entry<String, LexiconEntry>> iterator()
+        {
+            List<Map.Entry<String, LexiconEntry>> sorted = new ArrayList<>(this.ids);
+            sorted.sort(Map.Entry.comparingByKey());
+            return sorted.iterator();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, LexiconEntry>> getLexiconEntryRange(String from, String to)
+        {
+            throw new UnsupportedOperationException("Term ranges are not supported");
+        }
+
+        @Override
+        public int trimLexicon(int threshold)
+        {
+            throw new UnsupportedOperationException("Terms cannot be removed from the lexicon");
+        }
+    }
+}
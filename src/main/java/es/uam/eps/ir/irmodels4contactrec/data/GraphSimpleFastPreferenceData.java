@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.data;
 
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.ranksys.core.preference.IdPref;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
@@ -77,48 +78,38 @@ public class GraphSimpleFastPreferenceData<U> extends SimpleFastPreferenceData<U
      */
     public static <U> GraphSimpleFastPreferenceData<U> load(FastGraph<U> graph)
     {
-        AtomicInteger numPreferences = new AtomicInteger();
-
-        List<List<IdxPref>> uidxList = new ArrayList<>();
-        List<List<IdxPref>> iidxList = new ArrayList<>();
-
         GraphIndex<U> index = new FastGraphIndex<>(graph);
+        int numUsers = index.numUsers();
 
-        for (int uidx = 0; uidx < graph.getVertexCount(); uidx++)
+        // Since the indexes of the graph and the preference data coincide, the lists can be sized
+        // in advance, and filled in order by directly visiting the adjacency lists of the graph.
+        List<List<IdxPref>> uidxList = new ArrayList<>(numUsers);
+        List<List<IdxPref>> iidxList = new ArrayList<>(numUsers);
+        for (int uidx = 0; uidx < numUsers; uidx++)
         {
-            uidxList.add(null);
-            iidxList.add(null);
+            int outSize = graph.getNeighborhoodSize(uidx, EdgeOrientation.OUT);
+            int inSize = graph.getNeighborhoodSize(uidx, EdgeOrientation.IN);
+            uidxList.add(outSize > 0 ? new ArrayList<>(outSize) : null);
+            iidxList.add(inSize > 0 ? new ArrayList<>(inSize) : null);
         }
 
-        graph.getAllNodes().forEach(u ->
+        int numPreferences = 0;
+        for (int uidx = 0; uidx < numUsers; uidx++)
         {
-            int uidx = index.user2uidx(u);
-            graph.getAdjacentNodesWeights(u).forEach(v ->
+            int u = uidx;
+            List<IdxPref> uList = uidxList.get(uidx);
+            if (uList != null)
             {
-                int vidx = index.user2uidx(v.getIdx());
-                double value = v.getValue();
-
-                List<IdxPref> uList = uidxList.get(uidx);
-                if (uList == null)
+                graph.forEachNeighbor(uidx, EdgeOrientation.OUT, (vidx, value) ->
                 {
-                    uList = new ArrayList<>();
-                    uidxList.set(uidx, uList);
-                }
-                uList.add(new IdxPref(vidx, value));
-
-                List<IdxPref> vList = iidxList.get(vidx);
-                if (vList == null)
-                {
-                    vList = new ArrayList<>();
-                    iidxList.set(vidx, vList);
-                }
-                vList.add(new IdxPref(uidx, value));
-
-                numPreferences.incrementAndGet();
-            });
-        });
+                    uList.add(new IdxPref(vidx, value));
+                    iidxList.get(vidx).add(new IdxPref(u, value));
+                });
+                numPreferences += uList.size();
+            }
+        }
 
-        return new GraphSimpleFastPreferenceData<>(numPreferences.get(), uidxList, iidxList, index);
+        return new GraphSimpleFastPreferenceData<>(numPreferences, uidxList, iidxList, index);
     }
 
     /**
@@ -11,20 +11,26 @@ package es.uam.eps.ir.irmodels4contactrec.data;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.utils.Pair;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import org.terrier.indexing.Document;
-import org.terrier.indexing.FileDocument;
-import org.terrier.indexing.tokenisation.Tokeniser;
-import org.terrier.querying.Manager;
-import org.terrier.querying.ManagerFactory;
-import org.terrier.querying.ScoredDocList;
-import org.terrier.querying.SearchRequest;
+import org.ranksys.formats.parsing.Parsers;
+import org.terrier.matching.Matching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.daat.Full;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.querying.parser.Query;
+import org.terrier.querying.parser.QueryParser;
+import org.terrier.querying.parser.QueryParserException;
 import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.structures.CollectionStatistics;
+import org.terrier.structures.Index;
+import org.terrier.structures.indexing.DocumentPostingList;
 import org.terrier.utility.ApplicationSetup;
 
-import java.io.StringReader;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -42,7 +48,7 @@ public class TerrierIndex
     /**
      * The Terrier index.
      */
-    private final MemoryIndex index;
+    private final Index index;
     /**
      * A structure for storing the different queries.
      */
@@ -59,31 +65,37 @@ public class TerrierIndex
      * The graph.
      */
     private final FastGraph<?> graph;
+    /**
+     * Matching strategy for each thread. Terrier matching strategies keep
+     * state between queries, so they cannot be shared between threads.
+     */
+    private final ThreadLocal<Matching> matchings;
     /**
      * Identifier for the id of the nodes in the index.
      */
     public final static String NODEID = "nodeId";
+    /**
+     * Tag identifying the query terms which are used for scoring the documents.
+     */
+    private final static String FIRSTMATCHSCORE = "firstmatchscore";
 
-    public TerrierIndex(FastGraph<?> graph, EdgeOrientation qSel, EdgeOrientation dSel, MemoryIndex memIndex, Map<Integer, String> queries)
+    /**
+     * Constructor, from an already built index.
+     *
+     * @param graph    the graph.
+     * @param qSel     orientation for the "query" users.
+     * @param dSel     orientation for the "document" users.
+     * @param index    the index.
+     * @param queries  the queries for each user.
+     */
+    public TerrierIndex(FastGraph<?> graph, EdgeOrientation qSel, EdgeOrientation dSel, Index index, Map<Integer, String> queries)
     {
         this.graph = graph;
         this.qSel = graph.isDirected() ? qSel : EdgeOrientation.UND;
         this.dSel = graph.isDirected() ? dSel : EdgeOrientation.UND;
-        this.index = memIndex;
+        this.index = index;
         this.queries = queries;
-
-        ApplicationSetup.setProperty("querying.processes", "terrierql:TerrierQLParser,"
-                + "parsecontrols:TerrierQLToControls,"
-                + "parseql:TerrierQLToMatchingQueryTerms,"
-                + "matchopql:MatchingOpQLParser,"
-                + "applypipeline:ApplyTermPipeline,"
-                + "localmatching:LocalManager$ApplyLocalMatching,"
-                + "filters:LocalManager$PostFilterProcess");
-
-        // Enable the decorate enhancement
-        // These parameters just allow us to obtain the metadata from files.
-        ApplicationSetup.setProperty("querying.postfilters.controls", "decorate:org.terrier.querying.SimpleDecorate");
-        ApplicationSetup.setProperty("querying.postfilters.order", "org.terrier.querying.SimpleDecorate");
+        this.matchings = ThreadLocal.withInitial(() -> new Full(this.index));
     }
 
     /**
@@ -104,225 +116,161 @@ public class TerrierIndex
         ApplicationSetup.setProperty("termpipelines", "NoOp");
         ApplicationSetup.setProperty("indexer.meta.forward.keys", NODEID);
         ApplicationSetup.setProperty("indexer.meta.forward.keylens", "30");
-        this.index = new MemoryIndex();
+        MemoryIndex memIndex = new GraphMemoryIndex();
+        this.index = memIndex;
         this.queries = new Int2ObjectOpenHashMap<>();
 
         // Generate the index and the queries.
-        if (graph.isWeighted())
-        {
-            this.generateWeightedIndex();
-        }
-        else
-        {
-            this.generateUnweightedIndex();
-        }
-
-        ApplicationSetup.setProperty("querying.processes", "terrierql:TerrierQLParser,"
-                + "parsecontrols:TerrierQLToControls,"
-                + "parseql:TerrierQLToMatchingQueryTerms,"
-                + "matchopql:MatchingOpQLParser,"
-                + "applypipeline:ApplyTermPipeline,"
-                + "localmatching:LocalManager$ApplyLocalMatching,"
-                + "filters:LocalManager$PostFilterProcess");
-
-        // Enable the decorate enhancement
-        // These parameters just allow us to obtain the metadata from files.
-        ApplicationSetup.setProperty("querying.postfilters.controls", "decorate:org.terrier.querying.SimpleDecorate");
-        ApplicationSetup.setProperty("querying.postfilters.order", "org.terrier.querying.SimpleDecorate");
+        this.generateIndex(memIndex);
+        this.matchings = ThreadLocal.withInitial(() -> new Full(this.index));
     }
 
     /**
-     * Generates the index and queries for a weighted graph.
+     * Generates the index and queries. Instead of writing the neighbourhoods as text and running
+     * them through the Terrier tokeniser, the posting list of every document is built directly
+     * from the graph, and added to the index. Every node is indexed, even if its neighbourhood is empty.
+     *
+     * For unweighted graphs, each neighbour is a term which appears once in the document. For
+     * weighted graphs, the frequency of the term is the weight of the edge, rounded up (positive
+     * weights appear, at least, once; neighbours with non-positive weights are not indexed).
+     * Queries contain each neighbour once, boosted by the edge weight in weighted graphs.
+     *
+     * @param memIndex the (empty) in-memory index to fill.
      */
-    private void generateUnweightedIndex()
+    private void generateIndex(MemoryIndex memIndex)
     {
-        if (!this.graph.isDirected() || qSel == dSel) // If the orientation for the "query" and "document" neighborhoods is the same.
+        boolean weighted = graph.isWeighted();
+        graph.getAllNodesIds().forEach(uidx ->
         {
-            graph.getAllNodesIds().forEach(uidx ->
+            try
             {
-                try
+                // First, we generate the posting list of the document.
+                DocumentPostingList postings = new GraphPostingList();
+                if (weighted)
                 {
-                    // First, we generate the strings for the document and the query.
-                    String doc = graph.getNeighborhood(uidx, dSel).map(vidx -> vidx + " ").reduce("", (x, y) -> x + y);
-
-                    // Then, we generate the document.
-                    Document document = new FileDocument(new StringReader(doc), new HashMap<>(), Tokeniser.getTokeniser());
-                    document.getAllProperties().put(NODEID, uidx + "");
-                    this.index.indexDocument(document);
-                    // And add the corresponding query.
-                    this.queries.put(uidx, doc);
+                    graph.forEachNeighbor(uidx, dSel, (vidx, weight) ->
+                    {
+                        int tf = (int) Math.ceil(weight);
+                        if (tf > 0)
+                        {
+                            postings.insert(tf, Integer.toString(vidx));
+                        }
+                    });
                 }
-                catch (Exception ex)
+                else
                 {
-                    System.err.println("ERROR: Something failed while writing user " + uidx);
+                    graph.forEachNeighbor(uidx, dSel, vidx -> postings.insert(Integer.toString(vidx)));
                 }
-            });
-        }
-        else // generate the query and the document strings separately
-        {
-            graph.getAllNodesIds().forEach(uidx ->
-            {
-                try
-                {
-                    // Generate the document string
-                    String doc = graph.getNeighborhood(uidx, dSel).map(vidx -> vidx + " ").reduce("", (x, y) -> x + y);
 
-                    // Generate the query string
-                    String query = graph.getNeighborhood(uidx, qSel).map(vidx -> vidx + " ").reduce("", (x, y) -> x + y);
+                Map<String, String> properties = new HashMap<>();
+                properties.put(NODEID, Integer.toString(uidx));
+                memIndex.indexDocument(properties, postings);
 
-                    // Store both of them.
-                    Document document = new FileDocument(new StringReader(doc), new HashMap<>(), Tokeniser.getTokeniser());
-                    document.getAllProperties().put(NODEID, uidx + "");
-                    this.index.indexDocument(document);
-                    this.queries.put(uidx, query);
-                }
-                catch (Exception ex)
+                // Then, we generate the query.
+                StringBuilder query = new StringBuilder();
+                graph.forEachNeighbor(uidx, qSel, (vidx, weight) ->
                 {
-                    System.err.println("ERROR: Something failed while writing user " + uidx);
-                }
-            });
-        }
+                    if (query.length() > 0)
+                    {
+                        query.append(" ");
+                    }
+                    query.append(vidx);
+                    if (weighted)
+                    {
+                        query.append("^").append(weight);
+                    }
+                });
+                this.queries.put(uidx, query.toString());
+            }
+            catch (Exception ex)
+            {
+                System.err.println("ERROR: Something failed while writing user " + uidx);
+            }
+        });
     }
 
     /**
-     * Generates the index and queries for an unweighted graph.
+     * Posting list of a document. Terrier only adds one to the length of the document when
+     * a term is inserted with a given frequency; this list adds the whole frequency.
      */
-    private void generateWeightedIndex()
+    private static class GraphPostingList extends DocumentPostingList
     {
-        if (!this.graph.isDirected() || qSel == dSel) // If the orientation for the "query" and "document" neighborhoods is the same.
+        @Override
+        public void insert(int tf, String term)
         {
-            graph.getAllNodesIds().forEach(uidx ->
-            {
-                try
-                {
-                    // First, we generate the strings for the document and the query.
-                    Pair<String> pair = graph.getNeighborhoodWeights(uidx, dSel).map(v ->
-                    {
-                        int vidx = v.v1();
-                        double weight = v.v2();
-
-                        String q = v.v1() + "^" + v.v2() + " ";
-                        StringBuilder strBuilder = new StringBuilder();
-                        boolean times = weight > 0.0;
-                        for (int j = 0; j < weight || times; ++j)
-                        {
-                            strBuilder.append(vidx);
-                            strBuilder.append(" ");
-                            times = false;
-                        }
-
-                        String d = strBuilder.toString();
-
-                        return new Pair<>(q, d);
-                    }).reduce(new Pair<>("", ""), (x, y) -> new Pair<>(x.v1() + y.v1(), x.v2() + y.v2()));
+            this.occurrences.adjustOrPutValue(term, tf, tf);
+            this.documentLength += tf;
+        }
+    }
 
-                    String doc = pair.v1();
-                    String query = pair.v2();
+    /**
+     * Executes a query over the collection. It follows the same steps as the Terrier query manager
+     * (parsing the query, weighting the terms and matching them against the index) but, instead of using
+     * the instance of the weighting model which Terrier shares between all the queries over the same index,
+     * it creates a new one for each query. This way, the configuration of the model (the c value) does not
+     * affect any other query, and different queries can be run in parallel.
+     *
+     * @param uidx     identifier of the "query" user.
+     * @param model    identifier of the weighting model.
+     * @param c        c value of the weighting model (ex. the b param. in BM25).
+     * @param consumer action to apply over each (document user, score) pair in the results.
+     */
+    public void query(int uidx, String model, Optional<Double> c, IntDoubleConsumer consumer)
+    {
+        String query = this.queries.get(uidx);
+        if (query == null || query.equals("")) return;
 
-                    // Then, we generate the document.
-                    Document document = new FileDocument(new StringReader(doc), new HashMap<>(), Tokeniser.getTokeniser());
-                    document.getAllProperties().put(NODEID, uidx + "");
-                    this.index.indexDocument(document);
-                    // And add the corresponding query.
-                    this.queries.put(uidx, query);
-                }
-                catch (Exception ex)
-                {
-                    System.err.println("ERROR: Something failed while writing user " + uidx);
-                }
-            });
-        }
-        else // generate the query and the document strings separately
+        try
         {
-            graph.getAllNodesIds().forEach(uidx ->
+            String queryId = Integer.toString(uidx);
+
+            // First, we obtain the query terms.
+            Query parsed = QueryParser.parseQuery(query);
+            MatchingQueryTerms terms = new MatchingQueryTerms(queryId);
+            parsed.obtainQueryTerms(Query.QueryTermsParameter.of(terms, false));
+            terms.forEach(term -> term.getValue().getTags().add(FIRSTMATCHSCORE));
+
+            // Then, we configure the weighting model:
+            WeightingModel wmodel = getWeightingModel(model);
+            c.ifPresent(wmodel::setParameter);
+            terms.setDefaultTermWeightingModel(wmodel);
+            terms.setQuery(parsed);
+            terms.normaliseTermWeights();
+
+            // Run the query, and retrieve the identifiers of the documents.
+            ResultSet results = this.matchings.get().match(queryId, terms);
+            int size = results.getResultSize();
+            int[] docids = Arrays.copyOf(results.getDocids(), size);
+            double[] scores = results.getScores();
+            String[] nodes = this.index.getMetaIndex().getItems(NODEID, docids);
+            for (int i = 0; i < size; ++i)
             {
-                try
-                {
-                    String doc = graph.getNeighborhoodWeights(uidx, dSel).map(v ->
-                    {
-                        int vidx = v.v1;
-                        String d = "";
-                        double weight = v.v2;
-                        // We assume that the weight is an integer. If it is not, but
-                        // the value is, at least, positive, we sum the weight once.
-                        boolean times = weight > 0.0;
-                        StringBuilder strBuilder = new StringBuilder();
-                        for (int j = 0; j < weight || times; ++j)
-                        {
-                            strBuilder.append(" ");
-                            strBuilder.append(vidx);
-                            times = false;
-                        }
-
-                        return strBuilder.toString();
-                    }).reduce("", (x, y) -> x + y);
-
-                    String query = graph.getNeighborhoodWeights(uidx, qSel).map(v ->
-                    {
-                        int vidx = v.v1;
-                        String q = " " + vidx;
-                        if (graph.isWeighted())
-                        {
-                            q += "^" + v.v2;
-                        }
-                        return q;
-                    }).reduce("", (x, y) -> x + y);
-
-                    Document document = new FileDocument(new StringReader(doc), new HashMap<>(), Tokeniser.getTokeniser());
-                    document.getAllProperties().put(NODEID, uidx + "");
-                    this.index.indexDocument(document);
-                    this.queries.put(uidx, query);
-
-                }
-                catch (Exception ex)
+                if (scores[i] != Double.NEGATIVE_INFINITY)
                 {
-                    System.err.println("ERROR: Something failed while writing user " + uidx);
+                    consumer.accept(Parsers.ip.parse(nodes[i]), scores[i]);
                 }
-            });
+            }
+        }
+        catch (IOException | QueryParserException ex)
+        {
+            System.err.println("ERROR: Something failed while running the query of user " + uidx);
         }
     }
 
     /**
-     * Executes a query over the collection.
+     * Obtains a new instance of a weighting model. Terrier only keeps a single instance of each
+     * model, which is copied here, so it is never modified.
      *
-     * @param uidx  identifier of the "query" user.
      * @param model identifier of the weighting model.
-     * @param c     c value of the weighting model (ex. the b param. in BM25).
      *
-     * @return a list of results if everything is OK, null otherwise.
+     * @return the new instance of the weighting model.
      */
-    public ScoredDocList query(int uidx, String model, Optional<Double> c)
+    private static WeightingModel getWeightingModel(String model)
     {
-        Manager manager = ManagerFactory.from(index.getIndexRef());
-
-        String query = this.queries.get(uidx);
-        if (query == null || query.equals("")) return null;
-
-        // First, we configure the search request.
-        SearchRequest srq = manager.newSearchRequestFromQuery(query);
-        // Specify the model we want to use and its c-value:
-        srq.setControl(SearchRequest.CONTROL_WMODEL, model);
-        if (c.isPresent())
+        synchronized (WeightingModelFactory.class)
         {
-            srq.setControl("c_set", "true");
-            srq.setControl("c", c.get().toString());
+            return WeightingModelFactory.newInstance(model).clone();
         }
-
-        // Enable querying processes
-        srq.setControl("terrierql", "on");
-        srq.setControl("parsecontrols", "on");
-        srq.setControl("parseql", "on");
-        srq.setControl("applypipeline", "on");
-        srq.setControl("localmatching", "on");
-        srq.setControl("filters", "on");
-
-        // Enable post filters -> we are just enabling the gathering of metadata.
-        srq.setControl("decorate", "on");
-
-        // Run the query
-        manager.runSearchRequest(srq);
-
-        return srq.getResults();
     }
 
     /**
@@ -355,7 +303,7 @@ public class TerrierIndex
         return dSel;
     }
 
-    MemoryIndex getMemoryIndex()
+    Index getIndex()
     {
         return this.index;
     }
@@ -12,14 +12,37 @@ package es.uam.eps.ir.irmodels4contactrec.data;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.ranksys.formats.parsing.Parsers;
 import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Structure for storing the different possible indexes and queries
- * for a Terrier index.
+ * for a Terrier index. The index and queries for each orientation are
+ * built the first time they are requested.
+ *
+ * Optionally, they can be stored in a directory, so they can be reused by later
+ * executions (or by other processes running at the same time) over the same training
+ * graph. Each graph is identified by a fingerprint of its nodes and edges, and the
+ * index and queries for each orientation are stored in the
+ * {@code directory/fingerprint_version/orientation} folder, where the version identifies
+ * the way in which they are built. Stored indexes are opened
+ * from disk, in read-only mode.
  *
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
@@ -28,31 +51,62 @@ import java.util.Map;
  */
 public class TerrierStructure
 {
+    /**
+     * Version of the stored structures. It has to change every time the way of building
+     * the indexes and queries changes, so previously stored copies are not reused.
+     */
+    private final static int VERSION = 1;
+    /**
+     * Prefix of the Terrier index files.
+     */
+    private final static String PREFIX = "data";
+    /**
+     * Name of the file containing the queries.
+     */
+    private final static String QUERIES = "queries.txt";
+    /**
+     * The graph.
+     */
+    private final FastGraph<?> graph;
+    /**
+     * Directory where the indexes and queries for the graph are stored (null if they are not stored).
+     */
+    private final Path directory;
     /**
      * The possible set of indexes
      */
-    private final Map<EdgeOrientation, MemoryIndex> indexes;
+    private final Map<EdgeOrientation, Index> indexes;
     /**
      * The possible sets of queries
      */
     private final Map<EdgeOrientation, Map<Integer, String>> queries;
 
     /**
-     * Constructor.
+     * Constructor. Indexes and queries are kept in memory.
      *
      * @param graph the graph.
      */
     public TerrierStructure(FastGraph<?> graph)
     {
-        this.indexes = new HashMap<>();
-        this.queries = new HashMap<>();
+        this.graph = graph;
+        this.directory = null;
+        this.indexes = new EnumMap<>(EdgeOrientation.class);
+        this.queries = new EnumMap<>(EdgeOrientation.class);
+    }
 
-        for (EdgeOrientation eo : EdgeOrientation.values())
-        {
-            TerrierIndex index = new TerrierIndex(graph, eo, eo);
-            this.indexes.put(eo, index.getMemoryIndex());
-            this.queries.put(eo, index.getQueries());
-        }
+    /**
+     * Constructor. Indexes and queries are read from a directory if they were previously stored
+     * there for the same graph. Otherwise, they are built, and stored in it.
+     *
+     * @param graph     the graph.
+     * @param directory the directory where the indexes and queries are stored.
+     */
+    public TerrierStructure(FastGraph<?> graph, String directory)
+    {
+        this.graph = graph;
+        this.directory = Paths.get(directory, graph.fingerprint() + "_" + VERSION).toAbsolutePath();
+        this.indexes = new EnumMap<>(EdgeOrientation.class);
+        this.queries = new EnumMap<>(EdgeOrientation.class);
     }
 
     /**
@@ -63,10 +117,149 @@ public class TerrierStructure
      *
      * @return a pair containing both values.
      */
-    public Tuple2oo<MemoryIndex, Map<Integer, String>> get(EdgeOrientation uSel, EdgeOrientation vSel)
+    public Tuple2oo<Index, Map<Integer, String>> get(EdgeOrientation uSel, EdgeOrientation vSel)
     {
-        return new Tuple2oo<>(indexes.get(vSel), queries.get(uSel));
+        EdgeOrientation qSel = graph.isDirected() ? uSel : EdgeOrientation.UND;
+        EdgeOrientation dSel = graph.isDirected() ? vSel : EdgeOrientation.UND;
+        synchronized (this)
+        {
+            this.load(qSel);
+            this.load(dSel);
+            return new Tuple2oo<>(indexes.get(dSel), queries.get(qSel));
+        }
     }
 
+    /**
+     * Obtains the index and queries for an orientation, if they have not been previously obtained.
+     *
+     * @param orientation the orientation.
+     */
+    private void load(EdgeOrientation orientation)
+    {
+        if (this.indexes.containsKey(orientation))
+        {
+            return;
+        }
+
+        if (this.directory != null)
+        {
+            Path path = this.directory.resolve(orientation.toString());
+            if (Files.exists(path) && this.read(orientation, path))
+            {
+                return;
+            }
+        }
+
+        TerrierIndex index = new TerrierIndex(graph, orientation, orientation);
+        this.indexes.put(orientation, index.getIndex());
+        this.queries.put(orientation, index.getQueries());
 
+        if (this.directory != null)
+        {
+            this.write(orientation, (MemoryIndex) index.getIndex(), index.getQueries());
+        }
+    }
+
+    /**
+     * Reads the stored index and queries for an orientation.
+     *
+     * @param orientation the orientation.
+     * @param path        the folder containing the index and queries.
+     *
+     * @return true if everything is OK, false otherwise.
+     */
+    private boolean read(EdgeOrientation orientation, Path path)
+    {
+        IndexOnDisk index = Index.createIndex(path.toString(), PREFIX);
+        if (index == null)
+        {
+            System.err.println("ERROR: Could not open the index in " + path + ": " + Index.getLastIndexLoadError());
+            return false;
+        }
+
+        Map<Integer, String> map = new Int2ObjectOpenHashMap<>();
+        try (BufferedReader br = Files.newBufferedReader(path.resolve(QUERIES), StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                int tab = line.indexOf('\t');
+                map.put(Parsers.ip.parse(line.substring(0, tab)), line.substring(tab + 1));
+            }
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ERROR: Could not read the queries in " + path);
+            return false;
+        }
+
+        this.indexes.put(orientation, index);
+        this.queries.put(orientation, map);
+        return true;
+    }
+
+    /**
+     * Stores the index and queries for an orientation. They are first written to a temporary
+     * folder, which is then renamed, so other processes never see an incomplete copy. If another
+     * process stored them first, the temporary copy is just discarded.
+     *
+     * @param orientation the orientation.
+     * @param index       the index.
+     * @param map         the queries.
+     */
+    private void write(EdgeOrientation orientation, MemoryIndex index, Map<Integer, String> map)
+    {
+        Path path = this.directory.resolve(orientation.toString());
+        Path temp = null;
+        try
+        {
+            Files.createDirectories(this.directory);
+            temp = Files.createTempDirectory(this.directory, orientation + ".");
+            index.write(temp.toString(), PREFIX);
+            try (BufferedWriter bw = Files.newBufferedWriter(temp.resolve(QUERIES), StandardCharsets.UTF_8))
+            {
+                for (Map.Entry<Integer, String> entry : map.entrySet())
+                {
+                    if (!entry.getValue().isEmpty())
+                    {
+                        bw.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+                    }
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            if (!Files.exists(path))
+            {
+                System.err.println("ERROR: Could not store the index in " + path);
+            }
+        }
+        finally
+        {
+            if (temp != null)
+            {
+                delete(temp);
+            }
+        }
+    }
+
+    /**
+     * Deletes a folder and all its contents.
+     *
+     * @param path the folder.
+     */
+    private static void delete(Path path)
+    {
+        try (Stream<Path> files = Files.walk(path))
+        {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ERROR: Could not delete the temporary folder " + path);
+        }
+    }
 }
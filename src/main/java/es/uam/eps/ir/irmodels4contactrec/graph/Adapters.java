@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.graph;
 
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphBuilder;
 import es.uam.eps.ir.irmodels4contactrec.graph.generator.EmptyGraphGenerator;
 import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorBadConfiguredException;
 import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorNotConfiguredException;
@@ -106,33 +107,24 @@ public class Adapters
      */
     public static <U> Graph<U> onlyTrainUsers(Graph<U> graph, Graph<U> trainingGraph)
     {
-        try
-        {
-            GraphGenerator<U> ggen = new EmptyGraphGenerator<>();
-            ggen.configure(graph.isDirected(), graph.isWeighted());
-            Graph<U> auxGraph = ggen.generate();
+        FastGraphBuilder<U> builder = new FastGraphBuilder<>(graph.isDirected(), graph.isWeighted());
 
-            trainingGraph.getAllNodes().forEach(auxGraph::addNode);
+        trainingGraph.getAllNodes().forEach(builder::addNode);
 
-            graph.getAllNodes().forEach(u ->
+        graph.getAllNodes().forEach(u ->
+        {
+            if (builder.containsVertex(u))
             {
-                if (auxGraph.containsVertex(u))
+                graph.getAdjacentNodesWeights(u).forEach(v ->
                 {
-                    graph.getAdjacentNodesWeights(u).forEach(v ->
+                    if (builder.containsVertex(v.getIdx()))
                     {
-                        if (auxGraph.containsVertex(v.getIdx()))
-                        {
-                            auxGraph.addEdge(u, v.getIdx(), v.getValue());
-                        }
-                    });
-                }
-            });
+                        builder.addEdge(u, v.getIdx(), v.getValue());
+                    }
+                });
+            }
+        });
 
-            return auxGraph;
-        }
-        catch (GeneratorNotConfiguredException | GeneratorBadConfiguredException ex)
-        {
-            return null;
-        }
+        return builder.build();
     }
 }
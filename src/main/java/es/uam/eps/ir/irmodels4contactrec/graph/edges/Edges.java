@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.graph.edges;
 
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.stream.IntStream;
@@ -203,6 +204,58 @@ public interface Edges
      */
     Stream<IdxPref> getMutualWeights(int node);
 
+    /**
+     * Applies an action over the incident edges of a node, receiving the identifier of the
+     * neighbour and the weight of the edge. Equivalent to iterating over the stream of
+     * incident weights, but implementations may avoid creating intermediate objects.
+     *
+     * @param node     The node.
+     * @param consumer The action to apply over each (neighbour, weight) pair.
+     */
+    default void forEachIncident(int node, IntDoubleConsumer consumer)
+    {
+        this.getIncidentWeights(node).forEach(weight -> consumer.accept(weight.v1, weight.v2));
+    }
+
+    /**
+     * Applies an action over the adjacent edges of a node, receiving the identifier of the
+     * neighbour and the weight of the edge. Equivalent to iterating over the stream of
+     * adjacent weights, but implementations may avoid creating intermediate objects.
+     *
+     * @param node     The node.
+     * @param consumer The action to apply over each (neighbour, weight) pair.
+     */
+    default void forEachAdjacent(int node, IntDoubleConsumer consumer)
+    {
+        this.getAdjacentWeights(node).forEach(weight -> consumer.accept(weight.v1, weight.v2));
+    }
+
+    /**
+     * Applies an action over the neighbours of a node, receiving the identifier of the
+     * neighbour and the weight of the connection. Equivalent to iterating over the stream of
+     * neighbour weights, but implementations may avoid creating intermediate objects.
+     *
+     * @param node     The node.
+     * @param consumer The action to apply over each (neighbour, weight) pair.
+     */
+    default void forEachNeighbour(int node, IntDoubleConsumer consumer)
+    {
+        this.getNeighbourWeights(node).forEach(weight -> consumer.accept(weight.v1, weight.v2));
+    }
+
+    /**
+     * Applies an action over the reciprocated connections of a node, receiving the identifier of
+     * the neighbour and the average weight of the connection. Equivalent to iterating over the stream
+     * of mutual weights, but implementations may avoid creating intermediate objects.
+     *
+     * @param node     The node.
+     * @param consumer The action to apply over each (neighbour, weight) pair.
+     */
+    default void forEachMutual(int node, IntDoubleConsumer consumer)
+    {
+        this.getMutualWeights(node).forEach(weight -> consumer.accept(weight.v1, weight.v2));
+    }
+
     /**
      * Gets the number of adjacent nodes.
      *
@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.graph.edges;
 
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.stream.Stream;
@@ -101,6 +102,24 @@ public interface UndirectedEdges extends Edges
         return this.getNeighbourWeights(node);
     }
 
+    @Override
+    default void forEachIncident(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachNeighbour(node, consumer);
+    }
+
+    @Override
+    default void forEachAdjacent(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachNeighbour(node, consumer);
+    }
+
+    @Override
+    default void forEachMutual(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachNeighbour(node, consumer);
+    }
+
     @Override
     default long getAdjacentCount(int node)
     {
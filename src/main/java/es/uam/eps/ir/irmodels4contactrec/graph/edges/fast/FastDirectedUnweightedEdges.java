@@ -13,11 +13,15 @@ import es.uam.eps.ir.irmodels4contactrec.graph.edges.DirectedEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.UnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIntegerAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastUnweightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastWeightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.irmodels4contactrec.utils.OrderedListCombiner;
-import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.*;
@@ -34,12 +38,69 @@ import java.util.stream.Stream;
  */
 public class FastDirectedUnweightedEdges extends FastEdges implements DirectedEdges, UnweightedEdges
 {
+    /**
+     * Number of mutual neighbours of each node. Only precomputed when the edges are frozen, null otherwise.
+     * The number of neighbours (incident or adjacent) is derived from it and the offsets of the relations.
+     */
+    private final int[] mutualCounts;
+
     /**
      * Constructor.
      */
     public FastDirectedUnweightedEdges()
     {
         super(new FastUnweightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        this.mutualCounts = null;
+    }
+
+    /**
+     * Constructor. Builds the edges from previously computed relations.
+     *
+     * @param weights  The weights of the edges.
+     * @param types    The types of the edges.
+     * @param numEdges The number of edges.
+     */
+    public FastDirectedUnweightedEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges)
+    {
+        super(weights, types, numEdges);
+
+        // The edges cannot be modified: precompute the sizes of the MUTUAL neighbourhoods.
+        if (this.isFrozen())
+        {
+            int numNodes = weights.numFirst();
+            this.mutualCounts = IntStream.range(0, numNodes).parallel().map(node -> this.countMerged(node, true)).toArray();
+        }
+        else
+        {
+            this.mutualCounts = null;
+        }
+    }
+
+    /**
+     * Constructor. Builds the edges from previously computed (frozen) relations, and the precomputed
+     * sizes of the MUTUAL neighbourhoods, which are shared.
+     *
+     * @param weights      The weights of the edges.
+     * @param types        The types of the edges.
+     * @param numEdges     The number of edges.
+     * @param mutualCounts The number of mutual neighbours of each node.
+     */
+    FastDirectedUnweightedEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges, int[] mutualCounts)
+    {
+        super(weights, types, numEdges);
+        this.mutualCounts = mutualCounts;
+    }
+
+    @Override
+    public FastDirectedUnweightedEdges freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+
+        CompactUnweightedAutoRelation<Double> compactWeights = new CompactUnweightedAutoRelation<>(this.weights);
+        return new FastDirectedUnweightedEdges(compactWeights, new CompactIntegerAutoRelation(compactWeights, this.types), this.numEdges);
     }
 
     @Override
@@ -66,61 +127,94 @@ public class FastDirectedUnweightedEdges extends FastEdges implements DirectedEd
         return this.types.getIdsSecond(node).map(type -> new EdgeType(type.getIdx(), type.getValue()));
     }
 
+    @Override
+    public Stream<Integer> getNeighbourNodes(int node)
+    {
+        return this.getMerged(node, false).map(pref -> pref.v1);
+    }
+
+    @Override
+    public Stream<Integer> getMutualNodes(int node)
+    {
+        return this.getMerged(node, true).map(pref -> pref.v1);
+    }
+
     @Override
     public Stream<IdxPref> getNeighbourWeights(int node)
     {
-        List<IdxPref> neighbors = new ArrayList<>();
-        Comparator<Tuple2oo<Integer, Iterator<Integer>>> comparator = (Tuple2oo<Integer, Iterator<Integer>> x, Tuple2oo<Integer, Iterator<Integer>> y) ->
-                (int) (x.v1() - y.v1());
+        return this.getMerged(node, false);
+    }
 
-        PriorityQueue<Tuple2oo<Integer, Iterator<Integer>>> queue = new PriorityQueue<>(2, comparator);
+    @Override
+    public Stream<IdxPref> getMutualWeights(int node)
+    {
+        return this.getMerged(node, true);
+    }
 
-        Iterator<Integer> iteratorIncident = this.getIncidentNodes(node).iterator();
-        Iterator<Integer> iteratorAdjacent = this.getAdjacentNodes(node).iterator();
+    @Override
+    public void forEachNeighbour(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachMerged(node, false, consumer);
+    }
 
-        if (iteratorIncident.hasNext())
+    @Override
+    public void forEachMutual(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachMerged(node, true, consumer);
+    }
+
+    @Override
+    public long getNeighbourCount(int node)
+    {
+        if (this.mutualCounts == null)
         {
-            queue.add(new Tuple2oo<>(iteratorIncident.next(), iteratorIncident));
+            return this.countMerged(node, false);
         }
-        if (iteratorAdjacent.hasNext())
+        // Incident and adjacent neighbours, without counting the mutual ones twice.
+        return this.getIncidentCount(node) + this.getAdjacentCount(node) - this.mutualCounts[node];
+    }
+
+    @Override
+    public long getMutualCount(int node)
+    {
+        return this.mutualCounts != null ? this.mutualCounts[node] : this.countMerged(node, true);
+    }
+
+    @Override
+    public boolean hasMutualEdges(int node)
+    {
+        if (node < 0 || node >= this.weights.numFirst())
         {
-            queue.add(new Tuple2oo<>(iteratorAdjacent.next(), iteratorAdjacent));
+            return false;
         }
+        return this.getMutualCount(node) > 0;
+    }
 
-        double currentValue = 0.0;
-        int currentNeigh = -1;
-        while (!queue.isEmpty())
+
+    @Override
+    public void forEachIncident(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactAutoRelation)
         {
-            Tuple2oo<Integer, Iterator<Integer>> tuple = queue.poll();
-
-            if (currentNeigh != tuple.v1())
-            {
-                if (currentNeigh > 0)
-                {
-                    neighbors.add(new IdxPref(currentNeigh, currentValue));
-                    currentValue = 0.0;
-                    currentNeigh = tuple.v1();
-                }
-                else
-                {
-                    currentNeigh = tuple.v1();
-                }
-            }
-
-            currentValue += EdgeWeight.getDefaultValue();
-
-            if (tuple.v2().hasNext())
-            {
-                queue.add(new Tuple2oo<>(tuple.v2().next(), tuple.v2()));
-            }
+            ((CompactAutoRelation<Double>) this.weights).forEachFirst(node, idx -> consumer.accept(idx, EdgeWeight.getDefaultValue()));
         }
-
-        if (currentNeigh != -1)
+        else
         {
-            neighbors.add(new IdxPref(currentNeigh, currentValue));
+            this.weights.getIdsFirst(node).forEach(weight -> consumer.accept(weight.getIdx(), EdgeWeight.getDefaultValue()));
         }
+    }
 
-        return neighbors.stream();
+    @Override
+    public void forEachAdjacent(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactAutoRelation)
+        {
+            ((CompactAutoRelation<Double>) this.weights).forEachSecond(node, idx -> consumer.accept(idx, EdgeWeight.getDefaultValue()));
+        }
+        else
+        {
+            this.weights.getIdsSecond(node).forEach(weight -> consumer.accept(weight.getIdx(), EdgeWeight.getDefaultValue()));
+        }
     }
 
     @Override
@@ -182,22 +276,7 @@ public class FastDirectedUnweightedEdges extends FastEdges implements DirectedEd
     @Override
     public IntStream getNodesWithMutualEdges()
     {
-        List<Integer> users = new ArrayList<>();
-
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        while (iteratorIncident.hasNext())
-        {
-            int idx = iteratorIncident.next();
-            Stream<Integer> incident = this.getIncidentNodes(idx);
-            Stream<Integer> adjacent = this.getAdjacentNodes(idx);
-
-            boolean value = OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
-            if (value)
-            {
-                users.add(idx);
-            }
-        }
-
-        return users.stream().mapToInt(x -> x);
+        return this.getNodesWithIncidentEdges().filter(this::hasMutualEdges);
     }
+
 }
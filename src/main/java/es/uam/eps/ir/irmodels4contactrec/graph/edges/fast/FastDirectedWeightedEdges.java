@@ -13,10 +13,15 @@ import es.uam.eps.ir.irmodels4contactrec.graph.edges.DirectedEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.WeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactWeightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIntegerAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastWeightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.irmodels4contactrec.utils.OrderedListCombiner;
-import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.*;
@@ -33,12 +38,71 @@ import java.util.stream.Stream;
  */
 public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdges, WeightedEdges
 {
+    /**
+     * Number of mutual neighbours of each node. Only precomputed when the edges are frozen, null otherwise.
+     * The number of neighbours (incident or adjacent) is derived from it and the offsets of the relations.
+     */
+    private final int[] mutualCounts;
+
     /**
      * Constructor.
      */
     public FastDirectedWeightedEdges()
     {
         super(new FastWeightedAutoRelation<>(), new FastWeightedAutoRelation<>());
+        this.mutualCounts = null;
+    }
+
+    /**
+     * Constructor. Builds the edges from previously computed relations.
+     *
+     * @param weights  The weights of the edges.
+     * @param types    The types of the edges.
+     * @param numEdges The number of edges.
+     */
+    public FastDirectedWeightedEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges)
+    {
+        super(weights, types, numEdges);
+
+        // The edges cannot be modified: precompute the sizes of the MUTUAL neighbourhoods.
+        if (this.isFrozen())
+        {
+            int numNodes = weights.numFirst();
+            this.mutualCounts = IntStream.range(0, numNodes).parallel().map(node -> this.countMerged(node, true)).toArray();
+        }
+        else
+        {
+            this.mutualCounts = null;
+        }
+    }
+
+    @Override
+    public FastDirectedWeightedEdges freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+
+        CompactWeightedAutoRelation compactWeights = new CompactWeightedAutoRelation(this.weights);
+        return new FastDirectedWeightedEdges(compactWeights, new CompactIntegerAutoRelation(compactWeights, this.types), this.numEdges);
+    }
+
+    /**
+     * Obtains an unweighted view of the edges, where every edge takes the default weight. The view
+     * shares the compact structures (identifiers and types) and the precomputed neighbourhood sizes
+     * of the frozen edges, so nothing is copied.
+     * If these edges are not frozen, the view is built over a frozen copy of them.
+     *
+     * @return the unweighted view of the edges.
+     */
+    public FastDirectedUnweightedEdges unweighted()
+    {
+        FastDirectedWeightedEdges frozen = this.freeze();
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) frozen.weights;
+        CompactUnweightedAutoRelation<Double> structure = new CompactUnweightedAutoRelation<>(relation.getFirstOffsets(), relation.getFirstIds(),
+                                                                                            relation.getSecondOffsets(), relation.getSecondIds());
+        return new FastDirectedUnweightedEdges(structure, frozen.types, frozen.numEdges, frozen.mutualCounts);
     }
 
     @Override
@@ -77,6 +141,32 @@ public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdge
         return this.weights.getIdsSecond(node).map(weight -> new EdgeWeight(weight.getIdx(), weight.getValue()));
     }
 
+    @Override
+    public void forEachIncident(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactWeightedAutoRelation)
+        {
+            ((CompactWeightedAutoRelation) this.weights).forEachFirst(node, consumer);
+        }
+        else
+        {
+            this.weights.getIdsFirst(node).forEach(weight -> consumer.accept(weight.getIdx(), weight.getValue()));
+        }
+    }
+
+    @Override
+    public void forEachAdjacent(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactWeightedAutoRelation)
+        {
+            ((CompactWeightedAutoRelation) this.weights).forEachSecond(node, consumer);
+        }
+        else
+        {
+            this.weights.getIdsSecond(node).forEach(weight -> consumer.accept(weight.getIdx(), weight.getValue()));
+        }
+    }
+
     @Override
     public boolean addEdge(int orig, int dest, double weight, int type)
     {
@@ -95,61 +185,67 @@ public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdge
         return this.weights.updatePair(orig, dest, weight, false);
     }
 
+    @Override
+    public Stream<Integer> getNeighbourNodes(int node)
+    {
+        return this.getMerged(node, false).map(pref -> pref.v1);
+    }
+
+    @Override
+    public Stream<Integer> getMutualNodes(int node)
+    {
+        return this.getMerged(node, true).map(pref -> pref.v1);
+    }
+
     @Override
     public Stream<IdxPref> getNeighbourWeights(int node)
     {
-        List<IdxPref> neighbors = new ArrayList<>();
-        Comparator<Tuple2oo<IdxPref, Iterator<IdxPref>>> comparator = (Tuple2oo<IdxPref, Iterator<IdxPref>> x, Tuple2oo<IdxPref, Iterator<IdxPref>> y) ->
-                (int) (x.v1().v1() - y.v1().v1());
+        return this.getMerged(node, false);
+    }
 
-        PriorityQueue<Tuple2oo<IdxPref, Iterator<IdxPref>>> queue = new PriorityQueue<>(2, comparator);
+    @Override
+    public Stream<IdxPref> getMutualWeights(int node)
+    {
+        return this.getMerged(node, true);
+    }
 
-        Iterator<IdxPref> iteratorIncident = this.getIncidentWeights(node).iterator();
-        Iterator<IdxPref> iteratorAdjacent = this.getAdjacentWeights(node).iterator();
+    @Override
+    public void forEachNeighbour(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachMerged(node, false, consumer);
+    }
 
-        if (iteratorIncident.hasNext())
-        {
-            queue.add(new Tuple2oo<>(iteratorIncident.next(), iteratorIncident));
-        }
-        if (iteratorAdjacent.hasNext())
-        {
-            queue.add(new Tuple2oo<>(iteratorAdjacent.next(), iteratorAdjacent));
-        }
+    @Override
+    public void forEachMutual(int node, IntDoubleConsumer consumer)
+    {
+        this.forEachMerged(node, true, consumer);
+    }
 
-        double currentValue = 0.0;
-        int currentNeigh = -1;
-        while (!queue.isEmpty())
+    @Override
+    public long getNeighbourCount(int node)
+    {
+        if (this.mutualCounts == null)
         {
-            Tuple2oo<IdxPref, Iterator<IdxPref>> tuple = queue.poll();
-
-            if (tuple.v1().v1() != currentNeigh)
-            {
-                if (currentNeigh > 0)
-                {
-                    neighbors.add(new EdgeWeight(currentNeigh, currentValue));
-                    currentValue = 0.0;
-                    currentNeigh = tuple.v1().v1();
-                }
-                else
-                {
-                    currentNeigh = tuple.v1().v1();
-                }
-            }
-
-            currentValue += tuple.v1().v2();
-
-            if (tuple.v2().hasNext())
-            {
-                queue.add(new Tuple2oo<>(tuple.v2().next(), tuple.v2()));
-            }
+            return this.countMerged(node, false);
         }
+        // Incident and adjacent neighbours, without counting the mutual ones twice.
+        return this.getIncidentCount(node) + this.getAdjacentCount(node) - this.mutualCounts[node];
+    }
+
+    @Override
+    public long getMutualCount(int node)
+    {
+        return this.mutualCounts != null ? this.mutualCounts[node] : this.countMerged(node, true);
+    }
 
-        if (currentNeigh != -1)
+    @Override
+    public boolean hasMutualEdges(int node)
+    {
+        if (node < 0 || node >= this.weights.numFirst())
         {
-            neighbors.add(new EdgeWeight(currentNeigh, currentValue));
+            return false;
         }
-
-        return neighbors.stream();
+        return this.getMutualCount(node) > 0;
     }
 
     @Override
@@ -197,22 +293,7 @@ public class FastDirectedWeightedEdges extends FastEdges implements DirectedEdge
     @Override
     public IntStream getNodesWithMutualEdges()
     {
-        List<Integer> users = new ArrayList<>();
-
-        Iterator<Integer> iteratorIncident = this.getNodesWithIncidentEdges().iterator();
-        while (iteratorIncident.hasNext())
-        {
-            int idx = iteratorIncident.next();
-            Stream<Integer> incident = this.getIncidentNodes(idx);
-            Stream<Integer> adjacent = this.getAdjacentNodes(idx);
-
-            boolean value = OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
-            if (value)
-            {
-                users.add(idx);
-            }
-        }
-
-        return users.stream().mapToInt(x -> x);
+        return this.getNodesWithIncidentEdges().filter(this::hasMutualEdges);
     }
+
 }
@@ -9,15 +9,28 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.graph.edges.fast;
 
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.Edges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.UndirectedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.WeightedEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactWeightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.irmodels4contactrec.utils.OrderedListCombiner;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract fast implementation of class Edges.
@@ -54,6 +67,126 @@ public abstract class FastEdges implements Edges
         this.types = types;
     }
 
+    /**
+     * Constructor.
+     *
+     * @param weights  The weights of the edges.
+     * @param types    The types of the edges.
+     * @param numEdges The number of edges contained in the relations.
+     */
+    public FastEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges)
+    {
+        this(weights, types);
+        this.numEdges = numEdges;
+    }
+
+    /**
+     * Obtains an immutable copy of the edges, where both the weights and the types are
+     * stored in compressed sparse row format. If the edges are already frozen, they are
+     * returned as they are.
+     *
+     * @return the immutable copy of the edges.
+     */
+    public abstract FastEdges freeze();
+
+    /**
+     * Checks whether the edges are stored in an immutable compact structure.
+     *
+     * @return true if the edges cannot be modified, false otherwise.
+     */
+    public boolean isFrozen()
+    {
+        return this.weights instanceof CompactAutoRelation;
+    }
+
+    /**
+     * Obtains the offsets array of the compact representation of a neighbourhood. The neighbours of
+     * node i are stored in the positions [offsets[i], offsets[i+1]) of the identifiers array.
+     * It is only available when the edges are frozen, and the neighbourhood is directly stored (i.e.
+     * incident and adjacent edges in directed graphs, any neighbourhood in undirected graphs).
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the offsets array if available, null otherwise. The array must not be modified.
+     */
+    public int[] getCompactOffsets(EdgeOrientation orientation)
+    {
+        if (!this.isFrozen())
+        {
+            return null;
+        }
+
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) this.weights;
+        if (this instanceof UndirectedEdges || orientation == EdgeOrientation.IN)
+        {
+            return relation.getFirstOffsets();
+        }
+        else if (orientation == EdgeOrientation.OUT)
+        {
+            return relation.getSecondOffsets();
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the identifiers array of the compact representation of a neighbourhood, sorted for
+     * each node. It is only available under the same conditions as the offsets array.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the identifiers array if available, null otherwise. The array must not be modified.
+     *
+     * @see #getCompactOffsets(EdgeOrientation)
+     */
+    public int[] getCompactIds(EdgeOrientation orientation)
+    {
+        if (!this.isFrozen())
+        {
+            return null;
+        }
+
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) this.weights;
+        if (this instanceof UndirectedEdges || orientation == EdgeOrientation.IN)
+        {
+            return relation.getFirstIds();
+        }
+        else if (orientation == EdgeOrientation.OUT)
+        {
+            return relation.getSecondIds();
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the weights array of the compact representation of a neighbourhood, aligned with
+     * the identifiers array. It is only available under the same conditions as the offsets array,
+     * and if the edges are weighted: for unweighted edges, every weight takes the default value.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the weights array if available, null otherwise. The array must not be modified.
+     *
+     * @see #getCompactOffsets(EdgeOrientation)
+     */
+    public double[] getCompactWeights(EdgeOrientation orientation)
+    {
+        if (!(this.weights instanceof CompactWeightedAutoRelation))
+        {
+            return null;
+        }
+
+        CompactWeightedAutoRelation relation = (CompactWeightedAutoRelation) this.weights;
+        if (this instanceof UndirectedEdges || orientation == EdgeOrientation.IN)
+        {
+            return relation.getFirstValues();
+        }
+        else if (orientation == EdgeOrientation.OUT)
+        {
+            return relation.getSecondValues();
+        }
+        return null;
+    }
+
     @Override
     public boolean containsEdge(int orig, int dest)
     {
@@ -168,4 +301,297 @@ public abstract class FastEdges implements Edges
 
         return OrderedListCombiner.intersectionHaslements(incident, adjacent, Comparator.naturalOrder());
     }
+
+    /**
+     * Applies an action over the merge of the incident and adjacent lists of a node. Both lists are sorted,
+     * so they are traversed at the same time with a single pointer on each of them.
+     * When the neighbour appears in both lists, the action receives the sum of both weights
+     * (for the union) or their average (for the intersection). Unweighted edges take the default weight.
+     *
+     * @param node     The node.
+     * @param mutual   True to visit only the neighbours in both lists (intersection), false to visit all of them (union).
+     * @param consumer The action to apply over each (neighbour, weight) pair.
+     */
+    protected void forEachMerged(int node, boolean mutual, IntDoubleConsumer consumer)
+    {
+        if (!this.isFrozen())
+        {
+            Iterator<IdxPref> iterator = new MergeIterator(node, mutual);
+            while (iterator.hasNext())
+            {
+                IdxPref pref = iterator.next();
+                consumer.accept(pref.v1, pref.v2);
+            }
+            return;
+        }
+
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) this.weights;
+        int[] firstIds = relation.getFirstIds();
+        int[] secondIds = relation.getSecondIds();
+        double[] firstValues = null;
+        double[] secondValues = null;
+        if (relation instanceof CompactWeightedAutoRelation && this instanceof WeightedEdges)
+        {
+            firstValues = ((CompactWeightedAutoRelation) relation).getFirstValues();
+            secondValues = ((CompactWeightedAutoRelation) relation).getSecondValues();
+        }
+        double defaultValue = EdgeWeight.getDefaultValue();
+
+        int i = relation.getFirstOffsets()[node];
+        int iEnd = relation.getFirstOffsets()[node + 1];
+        int j = relation.getSecondOffsets()[node];
+        int jEnd = relation.getSecondOffsets()[node + 1];
+        while (i < iEnd && j < jEnd)
+        {
+            int first = firstIds[i];
+            int second = secondIds[j];
+            if (first < second)
+            {
+                if (!mutual)
+                {
+                    consumer.accept(first, firstValues != null ? firstValues[i] : defaultValue);
+                }
+                ++i;
+            }
+            else if (first > second)
+            {
+                if (!mutual)
+                {
+                    consumer.accept(second, secondValues != null ? secondValues[j] : defaultValue);
+                }
+                ++j;
+            }
+            else
+            {
+                double sum = (firstValues != null ? firstValues[i] : defaultValue) + (secondValues != null ? secondValues[j] : defaultValue);
+                consumer.accept(first, mutual ? sum / 2.0 : sum);
+                ++i;
+                ++j;
+            }
+        }
+
+        if (!mutual)
+        {
+            for (; i < iEnd; ++i)
+            {
+                consumer.accept(firstIds[i], firstValues != null ? firstValues[i] : defaultValue);
+            }
+            for (; j < jEnd; ++j)
+            {
+                consumer.accept(secondIds[j], secondValues != null ? secondValues[j] : defaultValue);
+            }
+        }
+    }
+
+    /**
+     * Obtains the merge of the incident and adjacent lists of a node, as a lazily computed stream.
+     *
+     * @param node   The node.
+     * @param mutual True to obtain only the neighbours in both lists (intersection), false to obtain all of them (union).
+     *
+     * @return a stream containing the neighbours and the merged weights, sorted by neighbour.
+     *
+     * @see #forEachMerged(int, boolean, IntDoubleConsumer)
+     */
+    protected Stream<IdxPref> getMerged(int node, boolean mutual)
+    {
+        Iterator<IdxPref> iterator = new MergeIterator(node, mutual);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Counts the number of elements in the merge of the incident and adjacent lists of a node,
+     * without building it.
+     *
+     * @param node   The node.
+     * @param mutual True to count only the neighbours in both lists (intersection), false to count all of them (union).
+     *
+     * @return the number of elements in the merge.
+     */
+    protected int countMerged(int node, boolean mutual)
+    {
+        if (!this.isFrozen())
+        {
+            int count = 0;
+            Iterator<IdxPref> iterator = new MergeIterator(node, mutual);
+            while (iterator.hasNext())
+            {
+                iterator.next();
+                ++count;
+            }
+            return count;
+        }
+
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) this.weights;
+        int[] firstIds = relation.getFirstIds();
+        int[] secondIds = relation.getSecondIds();
+        int i = relation.getFirstOffsets()[node];
+        int iEnd = relation.getFirstOffsets()[node + 1];
+        int j = relation.getSecondOffsets()[node];
+        int jEnd = relation.getSecondOffsets()[node + 1];
+
+        int common = 0;
+        while (i < iEnd && j < jEnd)
+        {
+            if (firstIds[i] < secondIds[j])
+            {
+                ++i;
+            }
+            else if (firstIds[i] > secondIds[j])
+            {
+                ++j;
+            }
+            else
+            {
+                ++common;
+                ++i;
+                ++j;
+            }
+        }
+
+        if (mutual)
+        {
+            return common;
+        }
+        return relation.numFirst(node) + relation.numSecond(node) - common;
+    }
+
+    /**
+     * Iterator that lazily merges the (sorted) incident and adjacent lists of a node.
+     */
+    private class MergeIterator implements Iterator<IdxPref>
+    {
+        /**
+         * Iterator over the incident list.
+         */
+        private final Iterator<IdxValue<Double>> incident;
+        /**
+         * Iterator over the adjacent list.
+         */
+        private final Iterator<IdxValue<Double>> adjacent;
+        /**
+         * True to obtain only the elements in both lists, false to obtain the elements in any of them.
+         */
+        private final boolean mutual;
+        /**
+         * True if the weights of the edges have to be read, false if the default value is used.
+         */
+        private final boolean weighted;
+        /**
+         * Current element of the incident list (null if it has been exhausted).
+         */
+        private IdxValue<Double> currentIncident;
+        /**
+         * Current element of the adjacent list (null if it has been exhausted).
+         */
+        private IdxValue<Double> currentAdjacent;
+        /**
+         * Next element to return (null if there are no more elements).
+         */
+        private IdxPref next;
+
+        /**
+         * Constructor.
+         *
+         * @param node   The node.
+         * @param mutual True to obtain only the elements in both lists, false to obtain the elements in any of them.
+         */
+        MergeIterator(int node, boolean mutual)
+        {
+            this.incident = weights.getIdsFirst(node).iterator();
+            this.adjacent = weights.getIdsSecond(node).iterator();
+            this.mutual = mutual;
+            this.weighted = FastEdges.this instanceof WeightedEdges;
+            this.currentIncident = this.incident.hasNext() ? this.incident.next() : null;
+            this.currentAdjacent = this.adjacent.hasNext() ? this.adjacent.next() : null;
+            this.next = this.advance();
+        }
+
+        /**
+         * Obtains the weight of an element.
+         *
+         * @param value the element.
+         *
+         * @return the weight.
+         */
+        private double weight(IdxValue<Double> value)
+        {
+            return this.weighted ? value.getValue() : EdgeWeight.getDefaultValue();
+        }
+
+        /**
+         * Finds the next element of the merge.
+         *
+         * @return the next element, null if there is none.
+         */
+        private IdxPref advance()
+        {
+            while (this.currentIncident != null && this.currentAdjacent != null)
+            {
+                int first = this.currentIncident.getIdx();
+                int second = this.currentAdjacent.getIdx();
+                if (first < second)
+                {
+                    IdxValue<Double> value = this.currentIncident;
+                    this.currentIncident = this.incident.hasNext() ? this.incident.next() : null;
+                    if (!this.mutual)
+                    {
+                        return new EdgeWeight(first, this.weight(value));
+                    }
+                }
+                else if (first > second)
+                {
+                    IdxValue<Double> value = this.currentAdjacent;
+                    this.currentAdjacent = this.adjacent.hasNext() ? this.adjacent.next() : null;
+                    if (!this.mutual)
+                    {
+                        return new EdgeWeight(second, this.weight(value));
+                    }
+                }
+                else
+                {
+                    double sum = this.weight(this.currentIncident) + this.weight(this.currentAdjacent);
+                    this.currentIncident = this.incident.hasNext() ? this.incident.next() : null;
+                    this.currentAdjacent = this.adjacent.hasNext() ? this.adjacent.next() : null;
+                    return new EdgeWeight(first, this.mutual ? sum / 2.0 : sum);
+                }
+            }
+
+            if (this.mutual)
+            {
+                return null;
+            }
+            else if (this.currentIncident != null)
+            {
+                IdxValue<Double> value = this.currentIncident;
+                this.currentIncident = this.incident.hasNext() ? this.incident.next() : null;
+                return new EdgeWeight(value.getIdx(), this.weight(value));
+            }
+            else if (this.currentAdjacent != null)
+            {
+                IdxValue<Double> value = this.currentAdjacent;
+                this.currentAdjacent = this.adjacent.hasNext() ? this.adjacent.next() : null;
+                return new EdgeWeight(value.getIdx(), this.weight(value));
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.next != null;
+        }
+
+        @Override
+        public IdxPref next()
+        {
+            if (this.next == null)
+            {
+                throw new NoSuchElementException();
+            }
+            IdxPref current = this.next;
+            this.next = this.advance();
+            return current;
+        }
+    }
 }
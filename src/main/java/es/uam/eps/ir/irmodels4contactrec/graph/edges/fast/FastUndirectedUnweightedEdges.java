@@ -13,9 +13,14 @@ import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.UndirectedEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.UnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIntegerAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastUnweightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastWeightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.stream.IntStream;
@@ -39,6 +44,30 @@ public class FastUndirectedUnweightedEdges extends FastEdges implements Undirect
         super(new FastUnweightedAutoRelation<>(), new FastWeightedAutoRelation<>());
     }
 
+    /**
+     * Constructor. Builds the edges from previously computed relations.
+     *
+     * @param weights  The weights of the edges.
+     * @param types    The types of the edges.
+     * @param numEdges The number of edges.
+     */
+    public FastUndirectedUnweightedEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges)
+    {
+        super(weights, types, numEdges);
+    }
+
+    @Override
+    public FastUndirectedUnweightedEdges freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+
+        CompactUnweightedAutoRelation<Double> compactWeights = new CompactUnweightedAutoRelation<>(this.weights);
+        return new FastUndirectedUnweightedEdges(compactWeights, new CompactIntegerAutoRelation(compactWeights, this.types), this.numEdges);
+    }
+
     @Override
     public Stream<Integer> getNeighbourNodes(int node)
     {
@@ -69,6 +98,19 @@ public class FastUndirectedUnweightedEdges extends FastEdges implements Undirect
         return this.weights.getIdsFirst(node).map(weight -> new EdgeWeight(weight.getIdx(), EdgeWeight.getDefaultValue()));
     }
 
+    @Override
+    public void forEachNeighbour(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactAutoRelation)
+        {
+            ((CompactAutoRelation<Double>) this.weights).forEachFirst(node, idx -> consumer.accept(idx, EdgeWeight.getDefaultValue()));
+        }
+        else
+        {
+            this.weights.getIdsFirst(node).forEach(weight -> consumer.accept(weight.getIdx(), EdgeWeight.getDefaultValue()));
+        }
+    }
+
     @Override
     public boolean addEdge(int orig, int dest, double weight, int type)
     {
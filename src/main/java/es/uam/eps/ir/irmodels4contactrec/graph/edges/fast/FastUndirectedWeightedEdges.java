@@ -13,8 +13,14 @@ import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.UndirectedEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.WeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactWeightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIntegerAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastWeightedAutoRelation;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.util.stream.IntStream;
@@ -39,6 +45,46 @@ public class FastUndirectedWeightedEdges extends FastEdges implements Undirected
         super(new FastWeightedAutoRelation<>(), new FastWeightedAutoRelation<>());
     }
 
+    /**
+     * Constructor. Builds the edges from previously computed relations.
+     *
+     * @param weights  The weights of the edges.
+     * @param types    The types of the edges.
+     * @param numEdges The number of edges.
+     */
+    public FastUndirectedWeightedEdges(AutoRelation<Double> weights, AutoRelation<Integer> types, long numEdges)
+    {
+        super(weights, types, numEdges);
+    }
+
+    @Override
+    public FastUndirectedWeightedEdges freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+
+        CompactWeightedAutoRelation compactWeights = new CompactWeightedAutoRelation(this.weights);
+        return new FastUndirectedWeightedEdges(compactWeights, new CompactIntegerAutoRelation(compactWeights, this.types), this.numEdges);
+    }
+
+    /**
+     * Obtains an unweighted view of the edges, where every edge takes the default weight. The view
+     * shares the compact structures (identifiers and types) of the frozen edges, so nothing is copied.
+     * If these edges are not frozen, the view is built over a frozen copy of them.
+     *
+     * @return the unweighted view of the edges.
+     */
+    public FastUndirectedUnweightedEdges unweighted()
+    {
+        FastUndirectedWeightedEdges frozen = this.freeze();
+        CompactAutoRelation<Double> relation = (CompactAutoRelation<Double>) frozen.weights;
+        CompactUnweightedAutoRelation<Double> structure = new CompactUnweightedAutoRelation<>(relation.getFirstOffsets(), relation.getFirstIds(),
+                                                                                            relation.getSecondOffsets(), relation.getSecondIds());
+        return new FastUndirectedUnweightedEdges(structure, frozen.types, frozen.numEdges);
+    }
+
     @Override
     public Stream<Integer> getNeighbourNodes(int node)
     {
@@ -69,6 +115,19 @@ public class FastUndirectedWeightedEdges extends FastEdges implements Undirected
         return this.weights.getIdsFirst(node).map(weight -> new EdgeWeight(weight.getIdx(), weight.getValue()));
     }
 
+    @Override
+    public void forEachNeighbour(int node, IntDoubleConsumer consumer)
+    {
+        if (this.weights instanceof CompactWeightedAutoRelation)
+        {
+            ((CompactWeightedAutoRelation) this.weights).forEachFirst(node, consumer);
+        }
+        else
+        {
+            this.weights.getIdsFirst(node).forEach(weight -> consumer.accept(weight.getIdx(), weight.getValue()));
+        }
+    }
+
     @Override
     public boolean addEdge(int orig, int dest, double weight, int type)
     {
@@ -14,6 +14,7 @@ import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import es.uam.eps.ir.irmodels4contactrec.graph.DirectedUnweightedGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
@@ -38,6 +39,33 @@ public class FastDirectedUnweightedGraph<V> extends FastGraph<V> implements Dire
         super(new FastIndex<>(), new FastDirectedUnweightedEdges());
     }
 
+    /**
+     * Constructor. Builds the graph from an existing index and edges.
+     *
+     * @param vertices An index for the vertices of the graph.
+     * @param edges    Edges.
+     */
+    public FastDirectedUnweightedGraph(Index<V> vertices, FastDirectedUnweightedEdges edges)
+    {
+        super(vertices, edges);
+    }
+
+    @Override
+    public FastGraph<V> freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+        return new FastDirectedUnweightedGraph<>(this.freezeVertices(), ((FastDirectedUnweightedEdges) this.edges).freeze());
+    }
+
+    @Override
+    public FastGraph<V> unweighted()
+    {
+        return this;
+    }
+
     @Override
     public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
     {
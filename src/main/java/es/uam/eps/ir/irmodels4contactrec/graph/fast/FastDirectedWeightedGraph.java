@@ -14,6 +14,7 @@ import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import es.uam.eps.ir.irmodels4contactrec.graph.DirectedWeightedGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
@@ -38,6 +39,34 @@ public class FastDirectedWeightedGraph<V> extends FastGraph<V> implements Direct
         super(new FastIndex<>(), new FastDirectedWeightedEdges());
     }
 
+    /**
+     * Constructor. Builds the graph from an existing index and edges.
+     *
+     * @param vertices An index for the vertices of the graph.
+     * @param edges    Edges.
+     */
+    public FastDirectedWeightedGraph(Index<V> vertices, FastDirectedWeightedEdges edges)
+    {
+        super(vertices, edges);
+    }
+
+    @Override
+    public FastGraph<V> freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+        return new FastDirectedWeightedGraph<>(this.freezeVertices(), ((FastDirectedWeightedEdges) this.edges).freeze());
+    }
+
+    @Override
+    public FastGraph<V> unweighted()
+    {
+        FastGraph<V> frozen = this.freeze();
+        return new FastDirectedUnweightedGraph<>(frozen.vertices, ((FastDirectedWeightedEdges) frozen.edges).unweighted());
+    }
+
     @Override
     public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
     {
@@ -13,11 +13,24 @@ import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
 import es.uam.eps.ir.irmodels4contactrec.graph.Weight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.Edges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastEdges;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactLongIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastLongIndex;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 
 import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -41,6 +54,10 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
      * Edges in the network.
      */
     protected final Edges edges;
+    /**
+     * Statistics of the nodes of the graph (null until they are requested, or after the graph is modified).
+     */
+    private transient volatile FastGraphStatistics statistics;
 
     /**
      * Constructor.
@@ -65,6 +82,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
 
         if (idx != -1)
         {
+            this.statistics = null;
             return edges.addUser(idx);
         }
         return false;
@@ -81,6 +99,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
 
         if (this.containsVertex(nodeA) && this.containsVertex(nodeB))
         {
+            this.statistics = null;
             return this.edges.addEdge(this.vertices.object2idx(nodeA), this.vertices.object2idx(nodeB), weight, type);
         }
         return false;
@@ -203,6 +222,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
     @Override
     public boolean updateEdgeWeight(V nodeA, V nodeB, double weight)
     {
+        this.statistics = null;
         return this.edges.updateEdgeWeight(this.vertices.object2idx(nodeA), this.vertices.object2idx(nodeB), weight);
     }
 
@@ -350,6 +370,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
     {
         int origIdx = this.vertices.object2idx(orig);
         int destIdx = this.vertices.object2idx(dest);
+        this.statistics = null;
         return this.edges.removeEdge(origIdx, destIdx);
     }
 
@@ -357,6 +378,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
     public boolean removeNode(V u)
     {
         int uidx = this.vertices.object2idx(u);
+        this.statistics = null;
         if (this.edges.removeNode(uidx))
         {
             return this.vertices.removeObject(u) >= 0;
@@ -376,6 +398,117 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
         return this.vertices.idx2object(idx);
     }
 
+    /**
+     * Obtains a read-only copy of the graph, where the vertex index and the edges are stored in
+     * compact, immutable structures (edges are stored in compressed sparse row format). Any attempt
+     * to modify the returned graph fails. If the graph is already frozen, it is returned as it is.
+     *
+     * @return the read-only copy of the graph.
+     */
+    public abstract FastGraph<V> freeze();
+
+    /**
+     * Obtains an unweighted view of the graph, where every edge takes the default weight. For weighted
+     * graphs, the view shares the vertex index and the compact edge structures of the frozen graph, so
+     * a single graph can be used as both its weighted and unweighted versions without copying the edges.
+     * If the graph is not frozen, the view is built over a frozen copy of it. Unweighted graphs are
+     * returned as they are.
+     *
+     * @return the unweighted view of the graph.
+     */
+    public abstract FastGraph<V> unweighted();
+
+    /**
+     * Obtains a compact, immutable copy of the vertex index, for freezing the graph.
+     *
+     * @return the compact copy of the index.
+     */
+    @SuppressWarnings("unchecked")
+    protected Index<V> freezeVertices()
+    {
+        if (this.vertices instanceof FastLongIndex)
+        {
+            return (Index<V>) new CompactLongIndex((FastLongIndex) this.vertices);
+        }
+        return new CompactIndex<>(this.vertices);
+    }
+
+    /**
+     * Computes a fingerprint of the graph, which identifies its nodes (and their identifiers in
+     * the graph) and edges. Two graphs with the same fingerprint produce the same results.
+     *
+     * @return the fingerprint, as a hexadecimal string.
+     */
+    public String fingerprint()
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES);
+        buffer.putInt(this.isDirected() ? 1 : 0).putInt(this.isWeighted() ? 1 : 0).putInt((int) this.getVertexCount());
+        digest.update(buffer.array());
+
+        EdgeOrientation orientation = this.isDirected() ? EdgeOrientation.OUT : EdgeOrientation.UND;
+        ByteBuffer edge = ByteBuffer.allocate(Integer.BYTES + Double.BYTES);
+        this.getAllNodesIds().forEach(uidx ->
+        {
+            byte[] id = this.idx2object(uidx).toString().getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(id.length).array());
+            digest.update(id);
+            this.forEachNeighbor(uidx, orientation, (vidx, weight) ->
+            {
+                edge.clear();
+                edge.putInt(vidx).putDouble(weight);
+                digest.update(edge.array());
+            });
+            // Mark the end of the neighbourhood.
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+        });
+
+        return String.format("%040x", new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * Checks whether the graph has been frozen (and, therefore, it cannot be modified).
+     *
+     * @return true if the graph is frozen, false otherwise.
+     */
+    public boolean isFrozen()
+    {
+        return this.edges instanceof FastEdges && ((FastEdges) this.edges).isFrozen();
+    }
+
+    /**
+     * Obtains the statistics of the nodes of the graph. They are shared by every algorithm using the graph,
+     * and computed only once, unless the graph is modified.
+     *
+     * @return the statistics of the graph.
+     */
+    public FastGraphStatistics getStatistics()
+    {
+        FastGraphStatistics stats = this.statistics;
+        if (stats == null)
+        {
+            synchronized (this)
+            {
+                stats = this.statistics;
+                if (stats == null)
+                {
+                    stats = new FastGraphStatistics(this);
+                    this.statistics = stats;
+                }
+            }
+        }
+        return stats;
+    }
+
     /**
      * Obtains the index for the vertices.
      *
@@ -436,6 +569,163 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
         }
     }
 
+    /**
+     * Applies an action over the neighbours of a node, receiving the identifier of each neighbour and
+     * the weight of the corresponding edge. Equivalent to iterating over the stream returned by
+     * {@link #getNeighborhoodWeights(int, EdgeOrientation)}, but avoids boxing identifiers and creating
+     * an object for each edge whenever the underlying structure allows it.
+     *
+     * @param uidx        identifier of the node.
+     * @param orientation the selection of the neighbourhood.
+     * @param consumer    the action to apply over each (neighbour, weight) pair.
+     */
+    public void forEachNeighbor(int uidx, EdgeOrientation orientation, IntDoubleConsumer consumer)
+    {
+        switch (orientation)
+        {
+            case OUT:
+                this.edges.forEachAdjacent(uidx, consumer);
+                break;
+            case IN:
+                this.edges.forEachIncident(uidx, consumer);
+                break;
+            case MUTUAL:
+                this.edges.forEachMutual(uidx, consumer);
+                break;
+            default:
+                this.edges.forEachNeighbour(uidx, consumer);
+        }
+    }
+
+    /**
+     * Applies an action over the identifiers of the neighbours of a node. Equivalent to iterating over
+     * the stream returned by {@link #getNeighborhood(int, EdgeOrientation)}, without boxing the identifiers.
+     *
+     * @param uidx        identifier of the node.
+     * @param orientation the selection of the neighbourhood.
+     * @param action      the action to apply over each neighbour.
+     */
+    public void forEachNeighbor(int uidx, EdgeOrientation orientation, IntConsumer action)
+    {
+        this.forEachNeighbor(uidx, orientation, (vidx, weight) -> action.accept(vidx));
+    }
+
+    /**
+     * Obtains the identifiers of the neighbours of a node, as a primitive stream.
+     *
+     * @param uidx        identifier of the node.
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return a stream containing the identifiers of the neighbours.
+     */
+    public IntStream getNeighborhoodIds(int uidx, EdgeOrientation orientation)
+    {
+        int[] offsets = this.getCompactOffsets(orientation);
+        if (offsets != null)
+        {
+            return Arrays.stream(this.getCompactIds(orientation), offsets[uidx], offsets[uidx + 1]);
+        }
+        return this.getNeighborhood(uidx, orientation).mapToInt(vidx -> vidx);
+    }
+
+    /**
+     * Obtains the number of neighbours of a node.
+     *
+     * @param uidx        identifier of the node.
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the number of neighbours of the node.
+     */
+    public int getNeighborhoodSize(int uidx, EdgeOrientation orientation)
+    {
+        switch (orientation)
+        {
+            case OUT:
+                return (int) this.edges.getAdjacentCount(uidx);
+            case IN:
+                return (int) this.edges.getIncidentCount(uidx);
+            case MUTUAL:
+                return (int) this.edges.getMutualCount(uidx);
+            default:
+                return (int) this.edges.getNeighbourCount(uidx);
+        }
+    }
+
+    /**
+     * Obtains the sum of the weights of the edges in the neighbourhood of a node.
+     *
+     * @param uidx        identifier of the node.
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the sum of the weights.
+     */
+    public double getNeighborhoodWeightSum(int uidx, EdgeOrientation orientation)
+    {
+        int[] offsets = this.getCompactOffsets(orientation);
+        if (offsets == null)
+        {
+            return this.getNeighborhoodWeights(uidx, orientation).mapToDouble(IdxPref::v2).sum();
+        }
+
+        double[] weights = this.getCompactWeights(orientation);
+        if (weights == null)
+        {
+            return (offsets[uidx + 1] - offsets[uidx]) * EdgeWeight.getDefaultValue();
+        }
+
+        double sum = 0.0;
+        for (int pos = offsets[uidx]; pos < offsets[uidx + 1]; ++pos)
+        {
+            sum += weights[pos];
+        }
+        return sum;
+    }
+
+    /**
+     * Obtains the offsets array of the compressed sparse row representation of a neighbourhood:
+     * the neighbours of node uidx are stored in the positions [offsets[uidx], offsets[uidx+1]) of the
+     * arrays returned by {@link #getCompactIds(EdgeOrientation)} and {@link #getCompactWeights(EdgeOrientation)}.
+     * It is only available for frozen graphs, and for those neighbourhoods which are directly stored:
+     * incoming and outgoing neighbourhoods in directed graphs, any neighbourhood in undirected graphs.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the offsets array if available, null otherwise. The array must not be modified.
+     */
+    public int[] getCompactOffsets(EdgeOrientation orientation)
+    {
+        return this.edges instanceof FastEdges ? ((FastEdges) this.edges).getCompactOffsets(orientation) : null;
+    }
+
+    /**
+     * Obtains the identifiers array of the compressed sparse row representation of a neighbourhood.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the identifiers array if available, null otherwise. The array must not be modified.
+     *
+     * @see #getCompactOffsets(EdgeOrientation)
+     */
+    public int[] getCompactIds(EdgeOrientation orientation)
+    {
+        return this.edges instanceof FastEdges ? ((FastEdges) this.edges).getCompactIds(orientation) : null;
+    }
+
+    /**
+     * Obtains the weights array of the compressed sparse row representation of a neighbourhood.
+     * Unweighted graphs do not store this array: all their edges take the default weight.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the weights array if available, null otherwise. The array must not be modified.
+     *
+     * @see #getCompactOffsets(EdgeOrientation)
+     */
+    public double[] getCompactWeights(EdgeOrientation orientation)
+    {
+        return this.edges instanceof FastEdges ? ((FastEdges) this.edges).getCompactWeights(orientation) : null;
+    }
+
     public IntStream getAllNodesIds()
     {
         return this.vertices.getAllObjectsIds();
@@ -458,6 +748,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
      */
     public boolean addEdge(int nodeA, int nodeB, double weight, int type)
     {
+        this.statistics = null;
         return this.edges.addEdge(nodeA, nodeB, weight, type);
     }
 
@@ -472,6 +763,7 @@ public abstract class FastGraph<V> implements Graph<V>, Serializable
      */
     public boolean updateEdgeWeight(int nodeA, int nodeB, double weight)
     {
+        this.statistics = null;
         return this.edges.updateEdgeWeight(nodeA, nodeB, weight);
     }
 
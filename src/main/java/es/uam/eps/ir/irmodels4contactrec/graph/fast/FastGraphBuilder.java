@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastLongIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastWeightedAutoRelation;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk loader for fast graphs. Instead of inserting every edge in the sorted lists of the graph
+ * (which costs a binary search and a list insertion per edge, and becomes quadratic on the degree
+ * of the nodes), the edges are appended, unsorted, to primitive buffers. When the graph is
+ * built, the edges are grouped by node, sorted in parallel and deduplicated, and both directions
+ * of the relations are filled in a single pass.
+ *
+ * As it happens when edges are added to a graph, if an edge appears several times, only its first
+ * occurrence is kept. In undirected graphs, the edges (u,v) and (v,u) are the same edge.
+ *
+ * Once the graph has been built, the builder should not be used anymore.
+ *
+ * @param <V> Type of the vertices.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FastGraphBuilder<V>
+{
+    /**
+     * Whether the graph is directed or not.
+     */
+    private final boolean directed;
+    /**
+     * Whether the graph is weighted or not.
+     */
+    private final boolean weighted;
+    /**
+     * Index for the vertices of the graph.
+     */
+    private final Index<V> vertices;
+    /**
+     * Origin of each edge.
+     */
+    private final IntArrayList origs;
+    /**
+     * Destination of each edge.
+     */
+    private final IntArrayList dests;
+    /**
+     * Weight of each edge. Only filled for weighted graphs.
+     */
+    private final DoubleArrayList weights;
+    /**
+     * Type of each edge.
+     */
+    private final IntArrayList types;
+
+    /**
+     * Constructor.
+     *
+     * @param directed whether the graph is directed or not.
+     * @param weighted whether the graph is weighted or not.
+     */
+    public FastGraphBuilder(boolean directed, boolean weighted)
+    {
+        this(directed, weighted, new FastIndex<>());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directed whether the graph is directed or not.
+     * @param weighted whether the graph is weighted or not.
+     * @param vertices an empty index for storing the vertices of the graph.
+     */
+    public FastGraphBuilder(boolean directed, boolean weighted, Index<V> vertices)
+    {
+        this.directed = directed;
+        this.weighted = weighted;
+        this.vertices = vertices;
+        this.origs = new IntArrayList();
+        this.dests = new IntArrayList();
+        this.weights = new DoubleArrayList();
+        this.types = new IntArrayList();
+    }
+
+    /**
+     * Adds a node to the graph.
+     *
+     * @param node the node.
+     *
+     * @return true if the node was added, false if it already existed.
+     */
+    public boolean addNode(V node)
+    {
+        if (this.vertices.containsObject(node))
+        {
+            return false;
+        }
+        this.vertices.addObject(node);
+        return true;
+    }
+
+    /**
+     * Checks whether a node has already been added to the graph.
+     *
+     * @param node the node.
+     *
+     * @return true if the node has been added, false otherwise.
+     */
+    public boolean containsVertex(V node)
+    {
+        return this.vertices.containsObject(node);
+    }
+
+    /**
+     * Adds an edge with the default type to the graph. If the nodes do not exist, they are added.
+     *
+     * @param nodeA  the origin of the edge.
+     * @param nodeB  the destination of the edge.
+     * @param weight the weight of the edge.
+     *
+     * @return true if the edge was stored, false otherwise.
+     */
+    public boolean addEdge(V nodeA, V nodeB, double weight)
+    {
+        return this.addEdge(nodeA, nodeB, weight, EdgeType.getDefaultValue(), true);
+    }
+
+    /**
+     * Adds an edge to the graph. Duplicated edges are not detected until the graph is built.
+     *
+     * @param nodeA       the origin of the edge.
+     * @param nodeB       the destination of the edge.
+     * @param weight      the weight of the edge.
+     * @param type        the type of the edge.
+     * @param insertNodes true if the nodes have to be added when they do not exist.
+     *
+     * @return true if the edge was stored, false if any of its nodes does not belong to the graph.
+     */
+    public boolean addEdge(V nodeA, V nodeB, double weight, int type, boolean insertNodes)
+    {
+        int orig;
+        int dest;
+        if (insertNodes)
+        {
+            orig = this.vertices.addObject(nodeA);
+            dest = this.vertices.addObject(nodeB);
+        }
+        else
+        {
+            orig = this.vertices.object2idx(nodeA);
+            dest = this.vertices.object2idx(nodeB);
+        }
+
+        if (orig < 0 || dest < 0)
+        {
+            return false;
+        }
+
+        this.origs.add(orig);
+        this.dests.add(dest);
+        if (this.weighted)
+        {
+            this.weights.add(weight);
+        }
+        this.types.add(type);
+        return true;
+    }
+
+    /**
+     * Builds the graph.
+     *
+     * @return the graph.
+     */
+    public FastGraph<V> build()
+    {
+        // Once every node has been added, check whether their identifiers are dense.
+        if (this.vertices instanceof FastLongIndex)
+        {
+            ((FastLongIndex) this.vertices).compact();
+        }
+
+        int numNodes = this.vertices.numObjects();
+        int numAdded = this.origs.size();
+
+        // First, group the edges by row: the origin node in directed graphs, and the node
+        // with the smallest identifier in undirected ones (so (u,v) and (v,u) fall together).
+        int[] offsets = new int[numNodes + 1];
+        for (int e = 0; e < numAdded; ++e)
+        {
+            offsets[this.row(e) + 1]++;
+        }
+        for (int i = 0; i < numNodes; ++i)
+        {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] edgeIds = new int[numAdded];
+        int[] next = Arrays.copyOf(offsets, numNodes);
+        for (int e = 0; e < numAdded; ++e)
+        {
+            edgeIds[next[this.row(e)]++] = e;
+        }
+
+        // Then, sort each row by column, breaking ties by insertion order, and keep only the
+        // first occurrence of each edge at the beginning of the row.
+        int[] kept = new int[numNodes];
+        IntStream.range(0, numNodes).parallel().forEach(row ->
+        {
+            int start = offsets[row];
+            int length = offsets[row + 1] - start;
+            if (length == 0)
+            {
+                return;
+            }
+
+            long[] keys = new long[length];
+            for (int i = 0; i < length; ++i)
+            {
+                int e = edgeIds[start + i];
+                keys[i] = (((long) this.column(e)) << 32) | e;
+            }
+            Arrays.parallelSort(keys);
+
+            int count = 0;
+            int last = -1;
+            for (long key : keys)
+            {
+                int col = (int) (key >>> 32);
+                if (col != last)
+                {
+                    edgeIds[start + count] = (int) key;
+                    ++count;
+                    last = col;
+                }
+            }
+            kept[row] = count;
+        });
+
+        // Find the sizes of the lists, to avoid resizing them.
+        long numEdges = 0;
+        int[] firstCounts = new int[numNodes];
+        int[] secondCounts = new int[numNodes];
+        for (int row = 0; row < numNodes; ++row)
+        {
+            numEdges += kept[row];
+            for (int pos = offsets[row], end = offsets[row] + kept[row]; pos < end; ++pos)
+            {
+                int col = this.column(edgeIds[pos]);
+                secondCounts[row]++;
+                firstCounts[col]++;
+                if (!this.directed && row != col)
+                {
+                    secondCounts[col]++;
+                    firstCounts[row]++;
+                }
+            }
+        }
+
+        List<List<IdxValue<Integer>>> firstTypes = emptyLists(firstCounts);
+        List<List<IdxValue<Integer>>> secondTypes = emptyLists(secondCounts);
+        this.fill(offsets, kept, edgeIds, firstTypes, secondTypes, (idx, e) -> new IdxValue<>(idx, this.types.getInt(e)));
+        FastWeightedAutoRelation<Integer> typesRel = new FastWeightedAutoRelation<>(firstTypes, secondTypes);
+
+        if (this.weighted)
+        {
+            List<List<IdxValue<Double>>> firstWeights = emptyLists(firstCounts);
+            List<List<IdxValue<Double>>> secondWeights = emptyLists(secondCounts);
+            this.fill(offsets, kept, edgeIds, firstWeights, secondWeights, (idx, e) -> new IdxValue<>(idx, this.weights.getDouble(e)));
+            FastWeightedAutoRelation<Double> weightsRel = new FastWeightedAutoRelation<>(firstWeights, secondWeights);
+
+            if (this.directed)
+            {
+                return new FastDirectedWeightedGraph<>(this.vertices, new FastDirectedWeightedEdges(weightsRel, typesRel, numEdges));
+            }
+            return new FastUndirectedWeightedGraph<>(this.vertices, new FastUndirectedWeightedEdges(weightsRel, typesRel, numEdges));
+        }
+        else
+        {
+            List<List<Integer>> firstWeights = emptyLists(firstCounts);
+            List<List<Integer>> secondWeights = emptyLists(secondCounts);
+            this.fill(offsets, kept, edgeIds, firstWeights, secondWeights, (idx, e) -> idx);
+            FastUnweightedAutoRelation<Double> weightsRel = new FastUnweightedAutoRelation<>(firstWeights, secondWeights);
+
+            if (this.directed)
+            {
+                return new FastDirectedUnweightedGraph<>(this.vertices, new FastDirectedUnweightedEdges(weightsRel, typesRel, numEdges));
+            }
+            return new FastUndirectedUnweightedGraph<>(this.vertices, new FastUndirectedUnweightedEdges(weightsRel, typesRel, numEdges));
+        }
+    }
+
+    /**
+     * Fills the lists of a relation with the deduplicated edges. Since rows are visited in ascending
+     * order, and each row is sorted by column, every list is filled in ascending order.
+     *
+     * @param offsets       the offsets of each row in the edge identifiers array.
+     * @param kept          the number of distinct edges at the beginning of each row.
+     * @param edgeIds       the edge identifiers, grouped by row.
+     * @param firstIdxList  links from the first kind of objects to the second (e.g. incident edges).
+     * @param secondIdxList links from the second kind of objects to the first (e.g. outgoing edges).
+     * @param entry         function that builds the element to store from an identifier and an edge.
+     * @param <T>           type of the elements of the lists.
+     */
+    private <T> void fill(int[] offsets, int[] kept, int[] edgeIds, List<List<T>> firstIdxList, List<List<T>> secondIdxList, EntryFunction<T> entry)
+    {
+        for (int row = 0; row < kept.length; ++row)
+        {
+            for (int pos = offsets[row], end = offsets[row] + kept[row]; pos < end; ++pos)
+            {
+                int e = edgeIds[pos];
+                int col = this.column(e);
+                secondIdxList.get(row).add(entry.apply(col, e));
+                firstIdxList.get(col).add(entry.apply(row, e));
+                if (!this.directed && row != col)
+                {
+                    secondIdxList.get(col).add(entry.apply(row, e));
+                    firstIdxList.get(row).add(entry.apply(col, e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains the row of an edge: its origin in directed graphs, its smallest endpoint in undirected ones.
+     *
+     * @param e the edge.
+     *
+     * @return the row of the edge.
+     */
+    private int row(int e)
+    {
+        int orig = this.origs.getInt(e);
+        return this.directed ? orig : Math.min(orig, this.dests.getInt(e));
+    }
+
+    /**
+     * Obtains the column of an edge: its destination in directed graphs, its greatest endpoint in undirected ones.
+     *
+     * @param e the edge.
+     *
+     * @return the column of the edge.
+     */
+    private int column(int e)
+    {
+        int dest = this.dests.getInt(e);
+        return this.directed ? dest : Math.max(this.origs.getInt(e), dest);
+    }
+
+    /**
+     * Builds a list of empty lists with the given capacities.
+     *
+     * @param sizes the capacity of each list.
+     * @param <T>   type of the elements of the lists.
+     *
+     * @return the list of lists.
+     */
+    private static <T> List<List<T>> emptyLists(int[] sizes)
+    {
+        List<List<T>> lists = new ArrayList<>(sizes.length);
+        for (int size : sizes)
+        {
+            lists.add(new ArrayList<>(size));
+        }
+        return lists;
+    }
+
+    /**
+     * Function for building the elements of the relation lists.
+     *
+     * @param <T> type of the elements.
+     */
+    private interface EntryFunction<T>
+    {
+        /**
+         * Builds an element.
+         *
+         * @param idx the identifier of the related node.
+         * @param e   the edge.
+         *
+         * @return the element.
+         */
+        T apply(int idx, int e);
+    }
+}
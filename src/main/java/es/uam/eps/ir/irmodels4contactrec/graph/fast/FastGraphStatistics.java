@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Statistics of the nodes of a fast graph which are commonly used by recommendation algorithms
+ * (neighbourhood sizes, weight sums, term discrimination values...). Every statistic is computed
+ * (in parallel) the first time it is requested, and stored in an array indexed by the node identifiers,
+ * so all the algorithms built over the same graph share it.
+ * <p>
+ * Statistics are obtained through {@link FastGraph#getStatistics()}, which discards them whenever the
+ * graph is modified. The returned arrays must not be modified.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FastGraphStatistics
+{
+    /**
+     * The graph.
+     */
+    private final FastGraph<?> graph;
+    /**
+     * Number of nodes in the graph.
+     */
+    private final int numNodes;
+    /**
+     * Neighbourhood sizes, for each orientation.
+     */
+    private final Map<EdgeOrientation, double[]> sizes;
+    /**
+     * Sums of the weights of the neighbourhoods, for each orientation.
+     */
+    private final Map<EdgeOrientation, double[]> weightSums;
+    /**
+     * Total sum of the weights of the neighbourhoods, for each orientation.
+     */
+    private final Map<EdgeOrientation, Double> totalWeightSums;
+    /**
+     * Robertson-Sparck-Jones values, for each orientation.
+     */
+    private final Map<EdgeOrientation, double[]> rsj;
+    /**
+     * Inverse document frequencies, for each orientation.
+     */
+    private final Map<EdgeOrientation, double[]> idf;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the graph.
+     */
+    FastGraphStatistics(FastGraph<?> graph)
+    {
+        this.graph = graph;
+        this.numNodes = (int) graph.getVertexCount();
+        this.sizes = new EnumMap<>(EdgeOrientation.class);
+        this.weightSums = new EnumMap<>(EdgeOrientation.class);
+        this.totalWeightSums = new EnumMap<>(EdgeOrientation.class);
+        this.rsj = new EnumMap<>(EdgeOrientation.class);
+        this.idf = new EnumMap<>(EdgeOrientation.class);
+    }
+
+    /**
+     * Obtains the number of nodes in the graph.
+     *
+     * @return the number of nodes.
+     */
+    public int numNodes()
+    {
+        return this.numNodes;
+    }
+
+    /**
+     * Obtains the number of neighbours of every node.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return an array containing the number of neighbours of each node.
+     */
+    public synchronized double[] getNeighborhoodSizes(EdgeOrientation orientation)
+    {
+        return this.sizes.computeIfAbsent(orientation, orient -> this.compute(uidx -> graph.getNeighborhoodSize(uidx, orient)));
+    }
+
+    /**
+     * Obtains the sum of the weights of the edges in the neighbourhood of every node.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return an array containing the sum of the weights for each node.
+     */
+    public synchronized double[] getNeighborhoodWeightSums(EdgeOrientation orientation)
+    {
+        return this.weightSums.computeIfAbsent(orientation, orient -> this.compute(uidx -> graph.getNeighborhoodWeightSum(uidx, orient)));
+    }
+
+    /**
+     * Obtains the sum of the weights of the neighbourhoods of all the nodes (i.e. the size of the collection,
+     * when neighbourhoods are considered as documents).
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the total sum of the weights.
+     */
+    public synchronized double getTotalWeightSum(EdgeOrientation orientation)
+    {
+        return this.totalWeightSums.computeIfAbsent(orientation, orient -> Arrays.stream(this.getNeighborhoodWeightSums(orient)).sum());
+    }
+
+    /**
+     * Obtains the average sum of the weights of the neighbourhoods of the nodes (i.e. the average document length).
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return the average sum of the weights, 0 if the graph is empty.
+     */
+    public double getAverageWeightSum(EdgeOrientation orientation)
+    {
+        return this.numNodes == 0 ? 0.0 : Arrays.stream(this.getNeighborhoodWeightSums(orientation)).average().orElse(0.0);
+    }
+
+    /**
+     * Obtains the Robertson-Sparck-Jones term discrimination value of every node, considering
+     * the number of neighbours of the node as its document frequency.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return an array containing the RSJ value of each node.
+     */
+    public synchronized double[] getRSJ(EdgeOrientation orientation)
+    {
+        return this.rsj.computeIfAbsent(orientation, orient ->
+        {
+            double[] df = this.getNeighborhoodSizes(orient);
+            return this.compute(uidx -> Math.log((numNodes - df[uidx] + 0.5) / (df[uidx] + 0.5)));
+        });
+    }
+
+    /**
+     * Obtains the inverse document frequency (in base 2) of every node, considering the number of
+     * neighbours of the node as its document frequency.
+     *
+     * @param orientation the selection of the neighbourhood.
+     *
+     * @return an array containing the IDF value of each node.
+     */
+    public synchronized double[] getIDF(EdgeOrientation orientation)
+    {
+        return this.idf.computeIfAbsent(orientation, orient ->
+        {
+            double[] df = this.getNeighborhoodSizes(orient);
+            return this.compute(uidx -> Math.log(1.0 + ((double) numNodes) / (df[uidx] + 1.0)) / Math.log(2.0));
+        });
+    }
+
+    /**
+     * Computes, in parallel, a value for every node in the graph.
+     *
+     * @param function the function computing the value for a node.
+     *
+     * @return an array containing the values.
+     */
+    private double[] compute(IntToDoubleFunction function)
+    {
+        double[] values = new double[this.numNodes];
+        IntStream.range(0, this.numNodes).parallel().forEach(uidx -> values[uidx] = function.applyAsDouble(uidx));
+        return values;
+    }
+}
@@ -14,6 +14,7 @@ import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import es.uam.eps.ir.irmodels4contactrec.graph.UndirectedUnweightedGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
@@ -38,6 +39,33 @@ public class FastUndirectedUnweightedGraph<V> extends FastGraph<V> implements Un
         super(new FastIndex<>(), new FastUndirectedUnweightedEdges());
     }
 
+    /**
+     * Constructor. Builds the graph from an existing index and edges.
+     *
+     * @param vertices An index for the vertices of the graph.
+     * @param edges    Edges.
+     */
+    public FastUndirectedUnweightedGraph(Index<V> vertices, FastUndirectedUnweightedEdges edges)
+    {
+        super(vertices, edges);
+    }
+
+    @Override
+    public FastGraph<V> freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+        return new FastUndirectedUnweightedGraph<>(this.freezeVertices(), ((FastUndirectedUnweightedEdges) this.edges).freeze());
+    }
+
+    @Override
+    public FastGraph<V> unweighted()
+    {
+        return this;
+    }
+
     @Override
     public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
     {
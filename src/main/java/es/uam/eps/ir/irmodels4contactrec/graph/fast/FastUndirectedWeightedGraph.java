@@ -14,6 +14,7 @@ import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import es.uam.eps.ir.irmodels4contactrec.graph.UndirectedWeightedGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
 import no.uib.cipr.matrix.Matrix;
 import no.uib.cipr.matrix.sparse.LinkedSparseMatrix;
@@ -38,6 +39,34 @@ public class FastUndirectedWeightedGraph<V> extends FastGraph<V> implements Undi
         super(new FastIndex<>(), new FastUndirectedWeightedEdges());
     }
 
+    /**
+     * Constructor. Builds the graph from an existing index and edges.
+     *
+     * @param vertices An index for the vertices of the graph.
+     * @param edges    Edges.
+     */
+    public FastUndirectedWeightedGraph(Index<V> vertices, FastUndirectedWeightedEdges edges)
+    {
+        super(vertices, edges);
+    }
+
+    @Override
+    public FastGraph<V> freeze()
+    {
+        if (this.isFrozen())
+        {
+            return this;
+        }
+        return new FastUndirectedWeightedGraph<>(this.freezeVertices(), ((FastUndirectedWeightedEdges) this.edges).freeze());
+    }
+
+    @Override
+    public FastGraph<V> unweighted()
+    {
+        FastGraph<V> frozen = this.freeze();
+        return new FastUndirectedUnweightedGraph<>(frozen.vertices, ((FastUndirectedWeightedEdges) frozen.edges).unweighted());
+    }
+
     @Override
     public DoubleMatrix2D getAdjacencyMatrix(EdgeOrientation direction)
     {
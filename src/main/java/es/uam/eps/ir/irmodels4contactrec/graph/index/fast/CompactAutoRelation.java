@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable implementation of an auto relation, stored in compressed sparse row (CSR) format.
+ * For each element, the identifiers of the related elements are stored in a contiguous and
+ * sorted range of a single array, delimited by an offsets array. Both directions of the relation
+ * (first to second and second to first) are stored.
+ *
+ * Since the relation is immutable, every modification operation fails.
+ *
+ * @param <W> Type of the weights.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public abstract class CompactAutoRelation<W> implements AutoRelation<W>, Serializable
+{
+    /**
+     * Offsets of the lists of first elements related to each second element. Size N+1. E.g. incident edges.
+     */
+    protected final int[] firstOffsets;
+    /**
+     * Identifiers of the first elements related to each second element. E.g. incident edges.
+     */
+    protected final int[] firstIds;
+    /**
+     * Offsets of the lists of second elements related to each first element. Size N+1. E.g. outgoing edges.
+     */
+    protected final int[] secondOffsets;
+    /**
+     * Identifiers of the second elements related to each first element. E.g. outgoing edges.
+     */
+    protected final int[] secondIds;
+
+    /**
+     * Constructor. Builds the relation from the previously computed CSR arrays. The identifiers
+     * in each range must be sorted in ascending order.
+     *
+     * @param firstOffsets  Offsets of the lists of first elements related to each second element.
+     * @param firstIds      Identifiers of the first elements related to each second element.
+     * @param secondOffsets Offsets of the lists of second elements related to each first element.
+     * @param secondIds     Identifiers of the second elements related to each first element.
+     */
+    public CompactAutoRelation(int[] firstOffsets, int[] firstIds, int[] secondOffsets, int[] secondIds)
+    {
+        this.firstOffsets = firstOffsets;
+        this.firstIds = firstIds;
+        this.secondOffsets = secondOffsets;
+        this.secondIds = secondIds;
+    }
+
+    /**
+     * Constructor. Copies the structure of an existing auto relation.
+     *
+     * @param relation the relation to copy.
+     */
+    public CompactAutoRelation(AutoRelation<?> relation)
+    {
+        int numElems = relation.numFirst();
+
+        this.firstOffsets = new int[numElems + 1];
+        this.secondOffsets = new int[numElems + 1];
+        for (int i = 0; i < numElems; ++i)
+        {
+            this.firstOffsets[i + 1] = this.firstOffsets[i] + relation.numFirst(i);
+            this.secondOffsets[i + 1] = this.secondOffsets[i] + relation.numSecond(i);
+        }
+
+        this.firstIds = new int[this.firstOffsets[numElems]];
+        this.secondIds = new int[this.secondOffsets[numElems]];
+        for (int i = 0; i < numElems; ++i)
+        {
+            int pos = this.firstOffsets[i];
+            Iterator<? extends IdxValue<?>> iterator = relation.getIdsFirst(i).iterator();
+            while (iterator.hasNext())
+            {
+                this.firstIds[pos++] = iterator.next().getIdx();
+            }
+
+            pos = this.secondOffsets[i];
+            iterator = relation.getIdsSecond(i).iterator();
+            while (iterator.hasNext())
+            {
+                this.secondIds[pos++] = iterator.next().getIdx();
+            }
+        }
+    }
+
+    /**
+     * Constructor. Shares the structure of another compact relation.
+     *
+     * @param structure the compact relation whose structure is shared.
+     */
+    protected CompactAutoRelation(CompactAutoRelation<?> structure)
+    {
+        this(structure.firstOffsets, structure.firstIds, structure.secondOffsets, structure.secondIds);
+    }
+
+    /**
+     * Obtains the value of the relation stored at a given position of the list of first elements.
+     *
+     * @param pos the position.
+     *
+     * @return the value.
+     */
+    protected abstract W getFirstValue(int pos);
+
+    /**
+     * Obtains the value of the relation stored at a given position of the list of second elements.
+     *
+     * @param pos the position.
+     *
+     * @return the value.
+     */
+    protected abstract W getSecondValue(int pos);
+
+    /**
+     * Finds the position of the pair (firstIdx, secondIdx) in the list of second elements.
+     *
+     * @param firstIdx  the first element.
+     * @param secondIdx the second element.
+     *
+     * @return the position if it exists, a negative value otherwise.
+     */
+    protected int findSecond(int firstIdx, int secondIdx)
+    {
+        if (firstIdx < 0 || secondIdx < 0 || firstIdx >= this.numFirst() || secondIdx >= this.numFirst())
+        {
+            return -1;
+        }
+        return Arrays.binarySearch(this.secondIds, this.secondOffsets[firstIdx], this.secondOffsets[firstIdx + 1], secondIdx);
+    }
+
+    /**
+     * Applies an action over the identifiers of the first elements related to a given second
+     * element, without creating any intermediate object.
+     *
+     * @param secondIdx the second element.
+     * @param action    the action to apply over each identifier.
+     */
+    public void forEachFirst(int secondIdx, IntConsumer action)
+    {
+        for (int pos = this.firstOffsets[secondIdx], end = this.firstOffsets[secondIdx + 1]; pos < end; ++pos)
+        {
+            action.accept(this.firstIds[pos]);
+        }
+    }
+
+    /**
+     * Applies an action over the identifiers of the second elements related to a given first
+     * element, without creating any intermediate object.
+     *
+     * @param firstIdx the first element.
+     * @param action   the action to apply over each identifier.
+     */
+    public void forEachSecond(int firstIdx, IntConsumer action)
+    {
+        for (int pos = this.secondOffsets[firstIdx], end = this.secondOffsets[firstIdx + 1]; pos < end; ++pos)
+        {
+            action.accept(this.secondIds[pos]);
+        }
+    }
+
+    /**
+     * Obtains the offsets of the lists of first elements related to each second element.
+     * The list for the second element i occupies the positions [offsets[i], offsets[i+1]) of
+     * the identifiers array. The array must not be modified.
+     *
+     * @return the offsets array.
+     */
+    public int[] getFirstOffsets()
+    {
+        return this.firstOffsets;
+    }
+
+    /**
+     * Obtains the identifiers of the first elements related to each second element.
+     * The array must not be modified.
+     *
+     * @return the identifiers array.
+     */
+    public int[] getFirstIds()
+    {
+        return this.firstIds;
+    }
+
+    /**
+     * Obtains the offsets of the lists of second elements related to each first element.
+     * The list for the first element i occupies the positions [offsets[i], offsets[i+1]) of
+     * the identifiers array. The array must not be modified.
+     *
+     * @return the offsets array.
+     */
+    public int[] getSecondOffsets()
+    {
+        return this.secondOffsets;
+    }
+
+    /**
+     * Obtains the identifiers of the second elements related to each first element.
+     * The array must not be modified.
+     *
+     * @return the identifiers array.
+     */
+    public int[] getSecondIds()
+    {
+        return this.secondIds;
+    }
+
+    @Override
+    public int numFirst()
+    {
+        return this.firstOffsets.length - 1;
+    }
+
+    @Override
+    public int numFirst(int secondIdx)
+    {
+        return this.firstOffsets[secondIdx + 1] - this.firstOffsets[secondIdx];
+    }
+
+    @Override
+    public int numSecond(int firstIdx)
+    {
+        return this.secondOffsets[firstIdx + 1] - this.secondOffsets[firstIdx];
+    }
+
+    @Override
+    public Stream<Integer> getAllFirst()
+    {
+        return IntStream.range(0, this.numFirst()).boxed();
+    }
+
+    @Override
+    public Stream<IdxValue<W>> getIdsFirst(int secondIdx)
+    {
+        return IntStream.range(this.firstOffsets[secondIdx], this.firstOffsets[secondIdx + 1])
+                .mapToObj(pos -> new IdxValue<>(this.firstIds[pos], this.getFirstValue(pos)));
+    }
+
+    @Override
+    public Stream<IdxValue<W>> getIdsSecond(int firstIdx)
+    {
+        return IntStream.range(this.secondOffsets[firstIdx], this.secondOffsets[firstIdx + 1])
+                .mapToObj(pos -> new IdxValue<>(this.secondIds[pos], this.getSecondValue(pos)));
+    }
+
+    @Override
+    public W getValue(int firstIdx, int secondIdx)
+    {
+        int pos = this.findSecond(firstIdx, secondIdx);
+        return pos >= 0 ? this.getSecondValue(pos) : null;
+    }
+
+    @Override
+    public boolean containsPair(int firstIdx, int secondIdx)
+    {
+        return this.findSecond(firstIdx, secondIdx) >= 0;
+    }
+
+    @Override
+    public boolean addFirstItem(int firstIdx)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean addRelation(int firstIdx, int secondIdx, W weight)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean updatePair(int firstIdx, int secondIdx, W weight, boolean createRelation)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean removePair(int firstIdx, int secondIdx)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean remove(int idx)
+    {
+        return false;
+    }
+
+    @Override
+    public IntStream firstsWithSeconds()
+    {
+        return IntStream.range(0, this.numFirst()).filter(this::hasSeconds);
+    }
+
+    @Override
+    public IntStream secondsWithFirsts()
+    {
+        return IntStream.range(0, this.numFirst()).filter(this::hasFirsts);
+    }
+
+    @Override
+    public boolean hasSeconds(int firstIdx)
+    {
+        if (firstIdx < 0 || this.numFirst() <= firstIdx)
+        {
+            return false;
+        }
+        return this.numSecond(firstIdx) > 0;
+    }
+
+    @Override
+    public boolean hasFirsts(int secondIdx)
+    {
+        if (secondIdx < 0 || this.numFirst() <= secondIdx)
+        {
+            return false;
+        }
+        return this.numFirst(secondIdx) > 0;
+    }
+
+    @Override
+    public IntStream getIsolatedFirsts()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> !this.hasSeconds(i));
+    }
+
+    @Override
+    public IntStream getIsolatedSeconds()
+    {
+        return IntStream.range(0, this.numFirst()).filter(i -> !this.hasFirsts(i));
+    }
+
+    @Override
+    public IntStream getIsolated()
+    {
+        return IntStream.range(0, this.numFirst()).filter(this::isIsolated);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable index, which stores the objects in an array. Objects cannot be added to nor removed from it.
+ *
+ * @param <T> Type of the objects.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactIndex<T> implements Index<T>, Serializable
+{
+    /**
+     * Integer value for every object.
+     */
+    private final Object2IntMap<T> t2imap;
+    /**
+     * Object for each integer value.
+     */
+    private final T[] i2tmap;
+
+    /**
+     * Constructor. Copies an existing index.
+     *
+     * @param index the index to copy.
+     */
+    @SuppressWarnings("unchecked")
+    public CompactIndex(Index<T> index)
+    {
+        int numObjects = index.numObjects();
+        this.i2tmap = (T[]) new Object[numObjects];
+        this.t2imap = new Object2IntOpenHashMap<>(numObjects);
+        this.t2imap.defaultReturnValue(-1);
+
+        for (int i = 0; i < numObjects; ++i)
+        {
+            T t = index.idx2object(i);
+            this.i2tmap[i] = t;
+            this.t2imap.put(t, i);
+        }
+    }
+
+    /**
+     * Constructor. Builds the index from an array of objects: the identifier of each object
+     * is its position in the array. The array is not copied.
+     *
+     * @param objects the objects, sorted by identifier.
+     */
+    public CompactIndex(T[] objects)
+    {
+        this.i2tmap = objects;
+        this.t2imap = new Object2IntOpenHashMap<>(objects.length);
+        this.t2imap.defaultReturnValue(-1);
+
+        for (int i = 0; i < objects.length; ++i)
+        {
+            this.t2imap.put(objects[i], i);
+        }
+    }
+
+    @Override
+    public boolean containsObject(T i)
+    {
+        return this.t2imap.containsKey(i);
+    }
+
+    @Override
+    public int numObjects()
+    {
+        return this.i2tmap.length;
+    }
+
+    @Override
+    public Stream<T> getAllObjects()
+    {
+        return Arrays.stream(this.i2tmap);
+    }
+
+    @Override
+    public IntStream getAllObjectsIds()
+    {
+        return IntStream.range(0, this.numObjects());
+    }
+
+    @Override
+    public int object2idx(T i)
+    {
+        return this.t2imap.getInt(i);
+    }
+
+    @Override
+    public T idx2object(int idx)
+    {
+        if (idx >= this.i2tmap.length || idx < 0)
+        {
+            return null;
+        }
+        return this.i2tmap[idx];
+    }
+
+    @Override
+    public int addObject(T t)
+    {
+        return -1;
+    }
+
+    @Override
+    public int removeObject(T t)
+    {
+        return -1;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+
+import java.util.Iterator;
+
+/**
+ * Immutable implementation of an auto relation with integer values (e.g. edge types), stored in
+ * compressed sparse row (CSR) format. It shares the identifier arrays with another compact relation
+ * over the same pairs, so only the values are stored. When every pair has the same value, not even
+ * the values are stored.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactIntegerAutoRelation extends CompactAutoRelation<Integer>
+{
+    /**
+     * Values of the relations in the list of first elements (null if all of them are equal).
+     */
+    protected final int[] firstValues;
+    /**
+     * Values of the relations in the list of second elements (null if all of them are equal).
+     */
+    protected final int[] secondValues;
+    /**
+     * Value of every relation, when all of them are equal.
+     */
+    protected final int uniformValue;
+
+    /**
+     * Constructor. Builds a relation where all pairs share the same value.
+     *
+     * @param structure    the compact relation whose pairs are shared.
+     * @param uniformValue the value of every pair.
+     */
+    public CompactIntegerAutoRelation(CompactAutoRelation<?> structure, int uniformValue)
+    {
+        super(structure);
+        this.firstValues = null;
+        this.secondValues = null;
+        this.uniformValue = uniformValue;
+    }
+
+    /**
+     * Constructor. Builds a relation from previously computed value arrays.
+     *
+     * @param structure    the compact relation whose pairs are shared.
+     * @param firstValues  values of the relations in the list of first elements.
+     * @param secondValues values of the relations in the list of second elements.
+     */
+    public CompactIntegerAutoRelation(CompactAutoRelation<?> structure, int[] firstValues, int[] secondValues)
+    {
+        super(structure);
+        this.firstValues = firstValues;
+        this.secondValues = secondValues;
+        this.uniformValue = 0;
+    }
+
+    /**
+     * Constructor. Copies the values of an existing relation containing the same pairs as the structure.
+     *
+     * @param structure the compact relation whose pairs are shared.
+     * @param relation  the relation to copy.
+     */
+    public CompactIntegerAutoRelation(CompactAutoRelation<?> structure, AutoRelation<Integer> relation)
+    {
+        super(structure);
+        int[] auxFirst = new int[this.firstIds.length];
+        int[] auxSecond = new int[this.secondIds.length];
+
+        boolean uniform = true;
+        int value = 0;
+        for (int i = 0; i < this.numFirst(); ++i)
+        {
+            int pos = this.firstOffsets[i];
+            Iterator<IdxValue<Integer>> iterator = relation.getIdsFirst(i).iterator();
+            while (iterator.hasNext())
+            {
+                auxFirst[pos] = iterator.next().getValue();
+                if (pos == 0)
+                {
+                    value = auxFirst[pos];
+                }
+                uniform &= (auxFirst[pos] == value);
+                ++pos;
+            }
+
+            pos = this.secondOffsets[i];
+            iterator = relation.getIdsSecond(i).iterator();
+            while (iterator.hasNext())
+            {
+                auxSecond[pos++] = iterator.next().getValue();
+            }
+        }
+
+        this.uniformValue = value;
+        this.firstValues = uniform ? null : auxFirst;
+        this.secondValues = uniform ? null : auxSecond;
+    }
+
+    @Override
+    protected Integer getFirstValue(int pos)
+    {
+        return this.firstValues == null ? this.uniformValue : this.firstValues[pos];
+    }
+
+    @Override
+    protected Integer getSecondValue(int pos)
+    {
+        return this.secondValues == null ? this.uniformValue : this.secondValues[pos];
+    }
+}
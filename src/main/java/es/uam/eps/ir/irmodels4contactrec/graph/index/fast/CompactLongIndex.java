@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable index for numerical objects, which stores them in a primitive array. Objects cannot be
+ * added to nor removed from it. If the objects are 0, 1, ..., N-1 (in this order), the index is the
+ * identity and nothing is stored.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactLongIndex implements Index<Long>, Serializable
+{
+    /**
+     * Integer value for every object (null if the index is the identity).
+     */
+    private final Long2IntOpenHashMap l2imap;
+    /**
+     * Object for each integer value (null if the index is the identity).
+     */
+    private final long[] i2lmap;
+    /**
+     * Number of objects.
+     */
+    private final int numObjects;
+
+    /**
+     * Constructor. Copies an existing index.
+     *
+     * @param index the index to copy.
+     */
+    public CompactLongIndex(Index<Long> index)
+    {
+        this(index instanceof FastLongIndex ? toArray((FastLongIndex) index) : index.getAllObjects().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * Constructor. Builds the index from an array of objects: the identifier of each object
+     * is its position in the array. The array is not copied.
+     *
+     * @param objects the objects, sorted by identifier.
+     */
+    public CompactLongIndex(long[] objects)
+    {
+        this.numObjects = objects.length;
+
+        boolean dense = true;
+        for (int i = 0; i < objects.length && dense; ++i)
+        {
+            dense = objects[i] == i;
+        }
+
+        if (dense)
+        {
+            this.i2lmap = null;
+            this.l2imap = null;
+        }
+        else
+        {
+            this.i2lmap = objects;
+            this.l2imap = new Long2IntOpenHashMap(objects.length);
+            this.l2imap.defaultReturnValue(-1);
+            for (int i = 0; i < objects.length; ++i)
+            {
+                this.l2imap.put(objects[i], i);
+            }
+        }
+    }
+
+    /**
+     * Obtains the objects in a long index, sorted by identifier.
+     *
+     * @param index the index.
+     *
+     * @return the objects.
+     */
+    private static long[] toArray(FastLongIndex index)
+    {
+        long[] objects = new long[index.numObjects()];
+        for (int i = 0; i < objects.length; ++i)
+        {
+            objects[i] = index.idx2long(i);
+        }
+        return objects;
+    }
+
+    /**
+     * Checks whether the index is the identity (i.e. object i has index i).
+     *
+     * @return true if the index is the identity, false otherwise.
+     */
+    public boolean isDense()
+    {
+        return this.i2lmap == null;
+    }
+
+    /**
+     * Checks whether an object is in the index.
+     *
+     * @param l the object.
+     *
+     * @return true if the object is in the index, false otherwise.
+     */
+    public boolean containsObject(long l)
+    {
+        return this.object2idx(l) != -1;
+    }
+
+    /**
+     * Obtains the index of an object.
+     *
+     * @param l the object.
+     *
+     * @return the index of the object if it exists, -1 otherwise.
+     */
+    public int object2idx(long l)
+    {
+        if (this.isDense())
+        {
+            return (l >= 0 && l < this.numObjects) ? (int) l : -1;
+        }
+        return this.l2imap.get(l);
+    }
+
+    /**
+     * Obtains the object with a given index, without boxing it.
+     *
+     * @param idx the index. It must be between 0 and the number of objects minus one.
+     *
+     * @return the object.
+     */
+    public long idx2long(int idx)
+    {
+        return this.isDense() ? idx : this.i2lmap[idx];
+    }
+
+    @Override
+    public boolean containsObject(Long l)
+    {
+        return l != null && this.containsObject(l.longValue());
+    }
+
+    @Override
+    public int numObjects()
+    {
+        return this.numObjects;
+    }
+
+    @Override
+    public Stream<Long> getAllObjects()
+    {
+        if (this.isDense())
+        {
+            return IntStream.range(0, this.numObjects).mapToObj(Long::valueOf);
+        }
+        return Arrays.stream(this.i2lmap).boxed();
+    }
+
+    @Override
+    public IntStream getAllObjectsIds()
+    {
+        return IntStream.range(0, this.numObjects);
+    }
+
+    @Override
+    public int object2idx(Long l)
+    {
+        return l == null ? -1 : this.object2idx(l.longValue());
+    }
+
+    @Override
+    public Long idx2object(int idx)
+    {
+        if (idx >= this.numObjects || idx < 0)
+        {
+            return null;
+        }
+        return this.idx2long(idx);
+    }
+
+    @Override
+    public int addObject(Long l)
+    {
+        return -1;
+    }
+
+    @Override
+    public int removeObject(Long l)
+    {
+        return -1;
+    }
+}
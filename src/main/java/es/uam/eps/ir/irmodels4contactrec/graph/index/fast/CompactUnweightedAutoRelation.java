@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+
+/**
+ * Immutable implementation of an unweighted auto relation, stored in compressed sparse row (CSR) format.
+ * Only the identifiers of the related elements are stored.
+ *
+ * @param <W> type of the (hypothetical) weights.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactUnweightedAutoRelation<W> extends CompactAutoRelation<W>
+{
+    /**
+     * Constructor. Builds the relation from the previously computed CSR arrays.
+     *
+     * @param firstOffsets  Offsets of the lists of first elements related to each second element.
+     * @param firstIds      Identifiers of the first elements related to each second element.
+     * @param secondOffsets Offsets of the lists of second elements related to each first element.
+     * @param secondIds     Identifiers of the second elements related to each first element.
+     */
+    public CompactUnweightedAutoRelation(int[] firstOffsets, int[] firstIds, int[] secondOffsets, int[] secondIds)
+    {
+        super(firstOffsets, firstIds, secondOffsets, secondIds);
+    }
+
+    /**
+     * Constructor. Copies an existing auto relation, discarding its weights.
+     *
+     * @param relation the relation to copy.
+     */
+    public CompactUnweightedAutoRelation(AutoRelation<?> relation)
+    {
+        super(relation);
+    }
+
+    @Override
+    protected W getFirstValue(int pos)
+    {
+        return null;
+    }
+
+    @Override
+    protected W getSecondValue(int pos)
+    {
+        return null;
+    }
+}
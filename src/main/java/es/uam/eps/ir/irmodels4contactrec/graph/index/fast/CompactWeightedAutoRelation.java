@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.AutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.IdxValue;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
+
+import java.util.Iterator;
+
+/**
+ * Immutable implementation of a weighted auto relation, stored in compressed sparse row (CSR) format.
+ * Weights are stored as primitive doubles, aligned with the identifier arrays.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactWeightedAutoRelation extends CompactAutoRelation<Double>
+{
+    /**
+     * Weights of the relations in the list of first elements. E.g. incident edges.
+     */
+    protected final double[] firstValues;
+    /**
+     * Weights of the relations in the list of second elements. E.g. outgoing edges.
+     */
+    protected final double[] secondValues;
+
+    /**
+     * Constructor. Builds the relation from the previously computed CSR arrays.
+     *
+     * @param firstOffsets  Offsets of the lists of first elements related to each second element.
+     * @param firstIds      Identifiers of the first elements related to each second element.
+     * @param firstValues   Weights of the relations in the list of first elements.
+     * @param secondOffsets Offsets of the lists of second elements related to each first element.
+     * @param secondIds     Identifiers of the second elements related to each first element.
+     * @param secondValues  Weights of the relations in the list of second elements.
+     */
+    public CompactWeightedAutoRelation(int[] firstOffsets, int[] firstIds, double[] firstValues, int[] secondOffsets, int[] secondIds, double[] secondValues)
+    {
+        super(firstOffsets, firstIds, secondOffsets, secondIds);
+        this.firstValues = firstValues;
+        this.secondValues = secondValues;
+    }
+
+    /**
+     * Constructor. Copies an existing weighted auto relation.
+     *
+     * @param relation the relation to copy.
+     */
+    public CompactWeightedAutoRelation(AutoRelation<Double> relation)
+    {
+        super(relation);
+        this.firstValues = new double[this.firstIds.length];
+        this.secondValues = new double[this.secondIds.length];
+
+        for (int i = 0; i < this.numFirst(); ++i)
+        {
+            int pos = this.firstOffsets[i];
+            Iterator<IdxValue<Double>> iterator = relation.getIdsFirst(i).iterator();
+            while (iterator.hasNext())
+            {
+                this.firstValues[pos++] = iterator.next().getValue();
+            }
+
+            pos = this.secondOffsets[i];
+            iterator = relation.getIdsSecond(i).iterator();
+            while (iterator.hasNext())
+            {
+                this.secondValues[pos++] = iterator.next().getValue();
+            }
+        }
+    }
+
+    /**
+     * Applies an action over the first elements related to a given second element and the
+     * corresponding weights, without creating any intermediate object.
+     *
+     * @param secondIdx the second element.
+     * @param action    the action to apply over each (identifier, weight) pair.
+     */
+    public void forEachFirst(int secondIdx, IntDoubleConsumer action)
+    {
+        for (int pos = this.firstOffsets[secondIdx], end = this.firstOffsets[secondIdx + 1]; pos < end; ++pos)
+        {
+            action.accept(this.firstIds[pos], this.firstValues[pos]);
+        }
+    }
+
+    /**
+     * Applies an action over the second elements related to a given first element and the
+     * corresponding weights, without creating any intermediate object.
+     *
+     * @param firstIdx the first element.
+     * @param action   the action to apply over each (identifier, weight) pair.
+     */
+    public void forEachSecond(int firstIdx, IntDoubleConsumer action)
+    {
+        for (int pos = this.secondOffsets[firstIdx], end = this.secondOffsets[firstIdx + 1]; pos < end; ++pos)
+        {
+            action.accept(this.secondIds[pos], this.secondValues[pos]);
+        }
+    }
+
+    /**
+     * Obtains the weights of the relations in the list of first elements, aligned with
+     * the array of first identifiers. The array must not be modified.
+     *
+     * @return the weights array.
+     */
+    public double[] getFirstValues()
+    {
+        return this.firstValues;
+    }
+
+    /**
+     * Obtains the weights of the relations in the list of second elements, aligned with
+     * the array of second identifiers. The array must not be modified.
+     *
+     * @return the weights array.
+     */
+    public double[] getSecondValues()
+    {
+        return this.secondValues;
+    }
+
+    @Override
+    protected Double getFirstValue(int pos)
+    {
+        return this.firstValues[pos];
+    }
+
+    @Override
+    protected Double getSecondValue(int pos)
+    {
+        return this.secondValues[pos];
+    }
+}
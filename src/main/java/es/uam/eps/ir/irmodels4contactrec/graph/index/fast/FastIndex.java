@@ -21,6 +21,10 @@ import java.util.stream.Stream;
 /**
  * Fast implementation of a generic index.
  *
+ * Removing an object leaves a tombstone in its position, so the rest of the objects are not moved,
+ * and the indexes of the following ones are derived from the number of tombstones before them. Reading
+ * the index never modifies it. Tombstones are only discarded by an explicit call to {@link #compact()}.
+ *
  * @param <T> Type of the objects.
  *
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
@@ -31,13 +35,17 @@ import java.util.stream.Stream;
 public class FastIndex<T> implements Index<T>
 {
     /**
-     * Integer value for every object.
+     * Position of every object.
      */
     private final Object2IntMap<T> t2imap;
     /**
-     * Object for each integer value.
+     * Object in each position, including the removed ones.
      */
     private final List<T> i2tmap;
+    /**
+     * Positions of the removed objects.
+     */
+    private final Tombstones removed;
     /**
      * Number of objects.
      */
@@ -51,6 +59,7 @@ public class FastIndex<T> implements Index<T>
         t2imap = new Object2IntOpenHashMap<>();
         t2imap.defaultReturnValue(-1);
         i2tmap = new ArrayList<>();
+        removed = new Tombstones();
     }
 
     @Override
@@ -68,33 +77,38 @@ public class FastIndex<T> implements Index<T>
     @Override
     public Stream<T> getAllObjects()
     {
-        return i2tmap.stream();
+        if (removed.isEmpty())
+        {
+            return i2tmap.stream();
+        }
+        return this.getAllObjectsIds().mapToObj(this::idx2object);
     }
 
     @Override
     public int object2idx(T i)
     {
-        return t2imap.getInt(i);
+        int slot = t2imap.getInt(i);
+        return slot == -1 ? -1 : removed.slot2idx(slot);
     }
 
     @Override
     public T idx2object(int idx)
     {
-        if (idx > i2tmap.size() || idx < 0)
+        if (idx >= this.numObjects || idx < 0)
         {
             return null;
         }
-        return i2tmap.get(idx);
+        return i2tmap.get(removed.isEmpty() ? idx : removed.idx2slot(idx));
     }
 
     @Override
     public int addObject(T t)
     {
-        int idx = t2imap.getInt(t);
-        if (idx == t2imap.defaultReturnValue())
+        int idx = this.object2idx(t);
+        if (idx == -1)
         {
-            idx = t2imap.size();
-            t2imap.put(t, idx);
+            idx = this.numObjects;
+            t2imap.put(t, i2tmap.size());
             i2tmap.add(t);
             ++this.numObjects;
         }
@@ -104,18 +118,13 @@ public class FastIndex<T> implements Index<T>
     @Override
     public int removeObject(T t)
     {
-        int idx = t2imap.getInt(t);
+        int idx = this.object2idx(t);
         if (idx == -1)
         {
             return -1;
         }
-        for (int i = idx + 1; i < this.numObjects; ++i)
-        {
-            T aux = i2tmap.get(i);
-            t2imap.put(aux, t2imap.getInt(aux) - 1);
-        }
-        t2imap.remove(t, idx);
-        i2tmap.remove(idx);
+
+        removed.remove(t2imap.removeInt(t));
         this.numObjects--;
         return idx;
     }
@@ -125,4 +134,26 @@ public class FastIndex<T> implements Index<T>
     {
         return IntStream.range(0, this.numObjects());
     }
+
+    /**
+     * Discards the tombstones left by the removed objects. The indexes of the objects do not change.
+     */
+    public void compact()
+    {
+        if (removed.isEmpty())
+        {
+            return;
+        }
+
+        List<T> objects = new ArrayList<>(this.numObjects);
+        for (int idx = 0; idx < this.numObjects; ++idx)
+        {
+            T t = this.idx2object(idx);
+            objects.add(t);
+            t2imap.put(t, idx);
+        }
+        i2tmap.clear();
+        i2tmap.addAll(objects);
+        removed.clear();
+    }
 }
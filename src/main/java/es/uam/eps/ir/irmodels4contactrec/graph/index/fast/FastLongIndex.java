@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.Serializable;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Fast implementation of an index for numerical objects, which avoids boxing the values.
+ *
+ * The identifiers are stored in a primitive list and a primitive hash map. Once the objects have been
+ * added, {@link #compact()} checks whether they are 0, 1, ..., N-1 (in this order, as it happens when
+ * the identifiers of the users are already dense): in that case, the index is the identity, and the list
+ * and map are discarded. Adding the next identifier keeps the identity.
+ *
+ * Removing an object leaves a tombstone in its position, so the rest of the objects are not moved,
+ * and the indexes of the following ones are derived from the number of tombstones before them. Reading
+ * the index never modifies it. Tombstones are only discarded by an explicit call to {@link #compact()}.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FastLongIndex implements Index<Long>, Serializable
+{
+    /**
+     * Object in each position, including the removed ones (null while the index is the identity).
+     */
+    private LongArrayList i2lmap;
+    /**
+     * Position of every object (null while the index is the identity).
+     */
+    private Long2IntOpenHashMap l2imap;
+    /**
+     * Positions of the removed objects.
+     */
+    private final Tombstones removed;
+    /**
+     * Number of objects.
+     */
+    private int numObjects;
+
+    /**
+     * Constructor. Builds an empty index.
+     */
+    public FastLongIndex()
+    {
+        this.i2lmap = new LongArrayList();
+        this.l2imap = new Long2IntOpenHashMap();
+        this.l2imap.defaultReturnValue(-1);
+        this.removed = new Tombstones();
+        this.numObjects = 0;
+    }
+
+    /**
+     * Checks whether the index is the identity (i.e. object i has index i).
+     *
+     * @return true if the index is the identity, false otherwise.
+     */
+    public boolean isDense()
+    {
+        return this.i2lmap == null;
+    }
+
+    /**
+     * Checks whether an object is in the index.
+     *
+     * @param l the object.
+     *
+     * @return true if the object is in the index, false otherwise.
+     */
+    public boolean containsObject(long l)
+    {
+        if (this.isDense())
+        {
+            return l >= 0 && l < this.numObjects;
+        }
+        return this.l2imap.containsKey(l);
+    }
+
+    /**
+     * Obtains the index of an object.
+     *
+     * @param l the object.
+     *
+     * @return the index of the object if it exists, -1 otherwise.
+     */
+    public int object2idx(long l)
+    {
+        if (this.isDense())
+        {
+            return (l >= 0 && l < this.numObjects) ? (int) l : -1;
+        }
+
+        int slot = this.l2imap.get(l);
+        return slot == -1 ? -1 : this.removed.slot2idx(slot);
+    }
+
+    /**
+     * Obtains the object with a given index, without boxing it.
+     *
+     * @param idx the index. It must be between 0 and the number of objects minus one.
+     *
+     * @return the object.
+     */
+    public long idx2long(int idx)
+    {
+        if (this.isDense())
+        {
+            return idx;
+        }
+        return this.i2lmap.getLong(this.removed.isEmpty() ? idx : this.removed.idx2slot(idx));
+    }
+
+    /**
+     * Adds an object to the index.
+     *
+     * @param l the object.
+     *
+     * @return the index of the object.
+     */
+    public int addObject(long l)
+    {
+        int idx = this.object2idx(l);
+        if (idx != -1)
+        {
+            return idx;
+        }
+
+        idx = this.numObjects;
+        if (this.isDense() && l == idx)
+        {
+            ++this.numObjects;
+            return idx;
+        }
+
+        if (this.isDense())
+        {
+            this.materialize();
+        }
+        this.l2imap.put(l, this.i2lmap.size());
+        this.i2lmap.add(l);
+        ++this.numObjects;
+        return idx;
+    }
+
+    /**
+     * Removes an object from the index. The indexes of the objects after it are reduced by one.
+     *
+     * @param l the object.
+     *
+     * @return the index the object had, or -1 if it did not exist.
+     */
+    public int removeObject(long l)
+    {
+        int idx = this.object2idx(l);
+        if (idx == -1)
+        {
+            return -1;
+        }
+
+        // Removing the last object keeps the identity.
+        if (this.isDense() && idx == this.numObjects - 1)
+        {
+            --this.numObjects;
+            return idx;
+        }
+
+        if (this.isDense())
+        {
+            this.materialize();
+        }
+        this.removed.remove(this.l2imap.remove(l));
+        --this.numObjects;
+        return idx;
+    }
+
+    /**
+     * Discards the tombstones left by the removed objects and, if the objects are 0, 1, ..., N-1
+     * (in this order), turns the index into the identity. The indexes of the objects do not change.
+     */
+    public void compact()
+    {
+        if (this.isDense())
+        {
+            return;
+        }
+
+        if (!this.removed.isEmpty())
+        {
+            LongArrayList objects = new LongArrayList(this.numObjects);
+            for (int idx = 0; idx < this.numObjects; ++idx)
+            {
+                objects.add(this.idx2long(idx));
+            }
+            this.i2lmap = objects;
+            this.l2imap = new Long2IntOpenHashMap(this.numObjects);
+            this.l2imap.defaultReturnValue(-1);
+            for (int idx = 0; idx < this.numObjects; ++idx)
+            {
+                this.l2imap.put(objects.getLong(idx), idx);
+            }
+            this.removed.clear();
+        }
+
+        boolean dense = true;
+        for (int idx = 0; idx < this.numObjects && dense; ++idx)
+        {
+            dense = this.i2lmap.getLong(idx) == idx;
+        }
+        if (dense)
+        {
+            this.i2lmap = null;
+            this.l2imap = null;
+        }
+        else
+        {
+            this.i2lmap.trim();
+        }
+    }
+
+    @Override
+    public boolean containsObject(Long l)
+    {
+        return l != null && this.containsObject(l.longValue());
+    }
+
+    @Override
+    public int numObjects()
+    {
+        return this.numObjects;
+    }
+
+    @Override
+    public Stream<Long> getAllObjects()
+    {
+        if (this.isDense())
+        {
+            return LongStream.range(0, this.numObjects).boxed();
+        }
+        if (this.removed.isEmpty())
+        {
+            return this.i2lmap.stream();
+        }
+        return IntStream.range(0, this.numObjects).mapToObj(this::idx2long);
+    }
+
+    @Override
+    public IntStream getAllObjectsIds()
+    {
+        return IntStream.range(0, this.numObjects);
+    }
+
+    @Override
+    public int object2idx(Long l)
+    {
+        return l == null ? -1 : this.object2idx(l.longValue());
+    }
+
+    @Override
+    public Long idx2object(int idx)
+    {
+        if (idx < 0 || idx >= this.numObjects)
+        {
+            return null;
+        }
+        return this.idx2long(idx);
+    }
+
+    @Override
+    public int addObject(Long l)
+    {
+        return this.addObject(l.longValue());
+    }
+
+    @Override
+    public int removeObject(Long l)
+    {
+        return l == null ? -1 : this.removeObject(l.longValue());
+    }
+
+    /**
+     * Stores explicitly the identity mapping, so arbitrary objects can be added or removed.
+     */
+    private void materialize()
+    {
+        this.i2lmap = new LongArrayList(this.numObjects + 16);
+        this.l2imap = new Long2IntOpenHashMap(this.numObjects + 16);
+        this.l2imap.defaultReturnValue(-1);
+        for (int i = 0; i < this.numObjects; ++i)
+        {
+            this.i2lmap.add(i);
+            this.l2imap.put(i, i);
+        }
+    }
+}
@@ -70,6 +70,18 @@ public class FastUnweightedAutoRelation<W> extends FastUnweightedRelation<W> imp
                 .forEach(l -> l.sort(Comparator.naturalOrder()));
     }
 
+    /**
+     * Constructor. Builds an autorelation from previously computed lists of both directions. Each list
+     * must be sorted, and both directions must be consistent, since no check is made.
+     *
+     * @param firstIdxList  Links from the first kind of objects to the second. Indexed by the second.
+     * @param secondIdxList Links from the second kind of objects to the first. Indexed by the first.
+     */
+    public FastUnweightedAutoRelation(List<List<Integer>> firstIdxList, List<List<Integer>> secondIdxList)
+    {
+        super(firstIdxList, secondIdxList);
+    }
+
     @Override
     public IntStream getIsolated()
     {
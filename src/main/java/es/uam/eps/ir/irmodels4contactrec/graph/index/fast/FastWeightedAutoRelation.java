@@ -71,6 +71,18 @@ public class FastWeightedAutoRelation<W> extends FastWeightedRelation<W> impleme
                 .forEach(l -> l.sort(Comparator.naturalOrder()));
     }
 
+    /**
+     * Constructor. Builds an autorelation from previously computed lists of both directions. Each list
+     * must be sorted by identifier, and both directions must be consistent, since no check is made.
+     *
+     * @param firstIdxList  Links from the first kind of objects to the second. Indexed by the second.
+     * @param secondIdxList Links from the second kind of objects to the first. Indexed by the first.
+     */
+    public FastWeightedAutoRelation(List<List<IdxValue<W>>> firstIdxList, List<List<IdxValue<W>>> secondIdxList)
+    {
+        super(firstIdxList, secondIdxList);
+    }
+
     @Override
     public boolean remove(int idx)
     {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.index.fast;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Set of removed slots of an index. Indexes store their objects in slots which never move, and
+ * removing an object just marks its slot as removed. The index of an object is the number of
+ * non-removed slots before its slot, so removing an object reduces by one the indexes of the
+ * following ones without updating them. Both conversions between slots and indexes take logarithmic
+ * time on the number of removed slots.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class Tombstones implements Serializable
+{
+    /**
+     * The removed slots, sorted.
+     */
+    private final IntArrayList removed;
+
+    /**
+     * Constructor. Builds an empty set of removed slots.
+     */
+    Tombstones()
+    {
+        this.removed = new IntArrayList();
+    }
+
+    /**
+     * Checks whether any slot has been removed.
+     *
+     * @return true if no slot has been removed, false otherwise.
+     */
+    boolean isEmpty()
+    {
+        return this.removed.isEmpty();
+    }
+
+    /**
+     * Marks a slot as removed.
+     *
+     * @param slot the slot. It must not be already removed.
+     */
+    void remove(int slot)
+    {
+        int pos = Arrays.binarySearch(this.removed.elements(), 0, this.removed.size(), slot);
+        this.removed.add(-pos - 1, slot);
+    }
+
+    /**
+     * Obtains the index of an object from its slot.
+     *
+     * @param slot the slot. It must not be removed.
+     *
+     * @return the index.
+     */
+    int slot2idx(int slot)
+    {
+        if (this.removed.isEmpty())
+        {
+            return slot;
+        }
+        int pos = Arrays.binarySearch(this.removed.elements(), 0, this.removed.size(), slot);
+        return slot + pos + 1;
+    }
+
+    /**
+     * Obtains the slot of an object from its index.
+     *
+     * @param idx the index.
+     *
+     * @return the slot.
+     */
+    int idx2slot(int idx)
+    {
+        // The value removed[j] - j does not decrease with j: find the number of removed slots
+        // before the searched one, i.e. the first j such that removed[j] - j is greater than idx.
+        int[] elements = this.removed.elements();
+        int low = 0;
+        int high = this.removed.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (elements[mid] - mid <= idx)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return idx + low;
+    }
+
+    /**
+     * Forgets every removed slot (once the slots have been compacted).
+     */
+    void clear()
+    {
+        this.removed.clear();
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.io;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeWeight;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastDirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedUnweightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.fast.FastUndirectedWeightedEdges;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastDirectedUnweightedGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastDirectedWeightedGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphBuilder;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastUndirectedUnweightedGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastUndirectedWeightedGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactIntegerAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactLongIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.CompactWeightedAutoRelation;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastLongIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static es.uam.eps.ir.irmodels4contactrec.graph.io.BinaryGraphWriter.*;
+
+/**
+ * Reads a graph snapshot written by {@link BinaryGraphWriter}. Every section of the file is
+ * bulk-copied into the compact (read-only) structures of the graph, so no parsing, sorting or
+ * per-edge work is needed. The obtained graph is frozen, unless an index of nodes is provided
+ * (in that case, edges are re-indexed and the graph can be modified).
+ * <p>
+ * This is not a zero-copy loader. The file is mapped only as a way of reading it in large blocks:
+ * the compact structures (and the algorithms using them) work over primitive arrays, so each
+ * process keeps its own copy of the graph in its heap, as it does with a graph read from a text
+ * file. Loading a snapshot saves the parsing, not the memory.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class BinaryGraphReader implements GraphReader<Long>
+{
+    /**
+     * Maximum number of bytes mapped at once.
+     */
+    private static final int MAX_MAPPING = 1 << 30;
+
+    /**
+     * Checks whether a file is a graph snapshot.
+     *
+     * @param file the file.
+     *
+     * @return true if the file starts as a graph snapshot, false otherwise (or if it cannot be read).
+     */
+    public static boolean isSnapshot(String file)
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining())
+            {
+                if (channel.read(magic) < 0)
+                {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+        catch (IOException ioe)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public Graph<Long> read(String file)
+    {
+        return this.read(file, true, false);
+    }
+
+    @Override
+    public Graph<Long> read(String file, boolean readWeights, boolean readTypes)
+    {
+        return this.read(file, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<Long> read(String file, boolean readWeights, boolean readTypes, Index<Long> nodes)
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+        {
+            return this.read((position, length) -> channel.map(FileChannel.MapMode.READ_ONLY, position, length), readWeights, readTypes, nodes);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream)
+    {
+        return this.read(stream, true, false);
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream, boolean readWeights, boolean readTypes)
+    {
+        return this.read(stream, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream, boolean readWeights, boolean readTypes, Index<Long> nodes)
+    {
+        try
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 16);
+            byte[] aux = new byte[1 << 16];
+            int read;
+            while ((read = stream.read(aux)) != -1)
+            {
+                baos.write(aux, 0, read);
+            }
+            byte[] bytes = baos.toByteArray();
+
+            return this.read((position, length) -> ByteBuffer.wrap(bytes, (int) position, length).slice(), readWeights, readTypes, nodes);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @param source      the source of the bytes of the snapshot.
+     * @param readWeights whether to read the weights or not. Otherwise, every edge takes the default weight.
+     * @param readTypes   whether to read the types or not. Otherwise, every edge takes the default type.
+     * @param nodes       the index of the nodes of the graph (null if the index in the snapshot is used).
+     *
+     * @return the graph.
+     *
+     * @throws IOException if the snapshot cannot be read.
+     */
+    private Graph<Long> read(Source source, boolean readWeights, boolean readTypes, Index<Long> nodes) throws IOException
+    {
+        ByteBuffer header = source.get(0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("Not a graph snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported graph snapshot version: " + version);
+        }
+
+        int flags = header.getInt();
+        boolean directed = (flags & DIRECTED) != 0;
+        boolean weighted = (flags & WEIGHTED) != 0;
+        boolean hasWeights = (flags & HAS_WEIGHTS) != 0;
+        boolean hasTypes = (flags & HAS_TYPES) != 0;
+        int numNodes = header.getInt();
+        long numEdges = header.getLong();
+        int numIn = (int) header.getLong();
+        int numOut = (int) header.getLong();
+
+        long position = HEADER_SIZE;
+        long[] ids = new long[numNodes];
+        position = readLongs(source, position, ids);
+
+        int[] inOffsets = new int[numNodes + 1];
+        int[] inIds = new int[numIn];
+        double[] inWeights = hasWeights ? new double[numIn] : null;
+        int[] inTypes = hasTypes ? new int[numIn] : null;
+        position = readSection(source, position, inOffsets, inIds, inWeights, inTypes);
+
+        int[] outOffsets = inOffsets;
+        int[] outIds = inIds;
+        double[] outWeights = inWeights;
+        int[] outTypes = inTypes;
+        if (directed)
+        {
+            outOffsets = new int[numNodes + 1];
+            outIds = new int[numOut];
+            outWeights = hasWeights ? new double[numOut] : null;
+            outTypes = hasTypes ? new int[numOut] : null;
+            readSection(source, position, outOffsets, outIds, outWeights, outTypes);
+        }
+
+        if (!readWeights || !hasWeights)
+        {
+            inWeights = null;
+            outWeights = null;
+        }
+        if (!readTypes)
+        {
+            inTypes = null;
+            outTypes = null;
+        }
+
+        if (nodes != null)
+        {
+            return reindex(directed, weighted, ids, outOffsets, outIds, outWeights, outTypes, nodes);
+        }
+
+        CompactLongIndex index = new CompactLongIndex(ids);
+
+        CompactAutoRelation<Double> weights;
+        if (weighted)
+        {
+            if (inWeights == null)
+            {
+                inWeights = new double[numIn];
+                Arrays.fill(inWeights, EdgeWeight.getDefaultValue());
+                outWeights = inWeights;
+                if (directed)
+                {
+                    outWeights = new double[numOut];
+                    Arrays.fill(outWeights, EdgeWeight.getDefaultValue());
+                }
+            }
+            weights = new CompactWeightedAutoRelation(inOffsets, inIds, inWeights, outOffsets, outIds, outWeights);
+        }
+        else
+        {
+            weights = new CompactUnweightedAutoRelation<>(inOffsets, inIds, outOffsets, outIds);
+        }
+
+        CompactIntegerAutoRelation types = inTypes == null ? new CompactIntegerAutoRelation(weights, EdgeType.getDefaultValue()) : new CompactIntegerAutoRelation(weights, inTypes, outTypes);
+
+        if (directed && weighted)
+        {
+            return new FastDirectedWeightedGraph<>(index, new FastDirectedWeightedEdges(weights, types, numEdges));
+        }
+        else if (directed)
+        {
+            return new FastDirectedUnweightedGraph<>(index, new FastDirectedUnweightedEdges(weights, types, numEdges));
+        }
+        else if (weighted)
+        {
+            return new FastUndirectedWeightedGraph<>(index, new FastUndirectedWeightedEdges(weights, types, numEdges));
+        }
+        else
+        {
+            return new FastUndirectedUnweightedGraph<>(index, new FastUndirectedUnweightedEdges(weights, types, numEdges));
+        }
+    }
+
+    /**
+     * Builds a graph over a given index of nodes from the outgoing neighbourhoods of the snapshot.
+     * Edges between nodes which do not appear in the index are discarded.
+     *
+     * @param directed whether the graph is directed or not.
+     * @param weighted whether the graph is weighted or not.
+     * @param ids      the identifiers of the nodes in the snapshot.
+     * @param offsets  the offsets of the outgoing neighbourhoods.
+     * @param adjacent the outgoing neighbours.
+     * @param weights  the weights of the edges (null if the default weight is used).
+     * @param types    the types of the edges (null if the default type is used).
+     * @param nodes    the index of the nodes.
+     *
+     * @return the graph.
+     */
+    private static Graph<Long> reindex(boolean directed, boolean weighted, long[] ids, int[] offsets, int[] adjacent, double[] weights, int[] types, Index<Long> nodes)
+    {
+        FastGraphBuilder<Long> builder = new FastGraphBuilder<>(directed, weighted, new FastLongIndex());
+        nodes.getAllObjectsIds().sorted().forEach(i -> builder.addNode(nodes.idx2object(i)));
+
+        for (int uidx = 0; uidx < ids.length; ++uidx)
+        {
+            for (int pos = offsets[uidx]; pos < offsets[uidx + 1]; ++pos)
+            {
+                int vidx = adjacent[pos];
+                if (directed || uidx <= vidx)
+                {
+                    double weight = weights == null ? EdgeWeight.getDefaultValue() : weights[pos];
+                    int type = types == null ? EdgeType.getDefaultValue() : types[pos];
+                    builder.addEdge(ids[uidx], ids[vidx], weight, type, false);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads a compressed sparse row section of the snapshot.
+     *
+     * @param source   the source of the bytes.
+     * @param position the position where the section starts.
+     * @param offsets  array to fill with the offsets.
+     * @param ids      array to fill with the neighbours.
+     * @param weights  array to fill with the weights (null if they are not stored).
+     * @param types    array to fill with the types (null if they are not stored).
+     *
+     * @return the position after the end of the section.
+     *
+     * @throws IOException if something fails while reading.
+     */
+    private static long readSection(Source source, long position, int[] offsets, int[] ids, double[] weights, int[] types) throws IOException
+    {
+        position = readInts(source, position, offsets);
+        position = readInts(source, position, ids);
+        if (weights != null)
+        {
+            for (int start = 0; start < weights.length; start += MAX_MAPPING / Double.BYTES)
+            {
+                int length = Math.min(weights.length - start, MAX_MAPPING / Double.BYTES);
+                source.get(position, length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(weights, start, length);
+                position += (long) length * Double.BYTES;
+            }
+        }
+        if (types != null)
+        {
+            position = readInts(source, position, types);
+        }
+        return position;
+    }
+
+    /**
+     * Reads an array of integers.
+     *
+     * @param source   the source of the bytes.
+     * @param position the position where the array starts.
+     * @param array    the array to fill.
+     *
+     * @return the position after the end of the array.
+     *
+     * @throws IOException if something fails while reading.
+     */
+    private static long readInts(Source source, long position, int[] array) throws IOException
+    {
+        for (int start = 0; start < array.length; start += MAX_MAPPING / Integer.BYTES)
+        {
+            int length = Math.min(array.length - start, MAX_MAPPING / Integer.BYTES);
+            source.get(position, length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(array, start, length);
+            position += (long) length * Integer.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Reads an array of longs.
+     *
+     * @param source   the source of the bytes.
+     * @param position the position where the array starts.
+     * @param array    the array to fill.
+     *
+     * @return the position after the end of the array.
+     *
+     * @throws IOException if something fails while reading.
+     */
+    private static long readLongs(Source source, long position, long[] array) throws IOException
+    {
+        for (int start = 0; start < array.length; start += MAX_MAPPING / Long.BYTES)
+        {
+            int length = Math.min(array.length - start, MAX_MAPPING / Long.BYTES);
+            source.get(position, length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(array, start, length);
+            position += (long) length * Long.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Source of the bytes of a snapshot.
+     */
+    private interface Source
+    {
+        /**
+         * Obtains a region of the snapshot.
+         *
+         * @param position the first position of the region.
+         * @param length   the length (in bytes) of the region.
+         *
+         * @return a buffer containing the region, starting at position 0.
+         *
+         * @throws IOException if the region cannot be read.
+         */
+        ByteBuffer get(long position, int length) throws IOException;
+    }
+}
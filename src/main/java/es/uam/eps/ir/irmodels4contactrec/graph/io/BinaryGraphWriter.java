@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.io;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeType;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+/**
+ * Writes a graph with numerical vertices as a binary snapshot, which can be loaded back
+ * with {@link BinaryGraphReader} without parsing nor sorting anything.
+ * <p>
+ * All values are stored in little-endian order. The file contains:
+ * <ol>
+ *     <li>A header: magic number and version (ints), flags (int: directed, weighted, weights stored,
+ *     types stored), number of nodes (int), number of edges (long), and lengths of the incoming and
+ *     outgoing neighbour arrays (longs).</li>
+ *     <li>The identifiers of the nodes (longs), sorted by index.</li>
+ *     <li>The incoming neighbourhoods in compressed sparse row format: offsets (N+1 ints),
+ *     neighbours (ints), weights (doubles, if stored) and types (ints, if stored).</li>
+ *     <li>The outgoing neighbourhoods, in the same format (only for directed graphs: in
+ *     undirected graphs, both neighbourhoods are the same).</li>
+ * </ol>
+ * Only fast graphs can be written.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class BinaryGraphWriter implements GraphWriter<Long>
+{
+    /**
+     * Magic number identifying the snapshot files.
+     */
+    static final int MAGIC = 0x47524148;
+    /**
+     * Current version of the format.
+     */
+    static final int VERSION = 1;
+    /**
+     * Size (in bytes) of the header.
+     */
+    static final int HEADER_SIZE = 40;
+    /**
+     * Flag indicating that the graph is directed.
+     */
+    static final int DIRECTED = 1;
+    /**
+     * Flag indicating that the graph is weighted.
+     */
+    static final int WEIGHTED = 2;
+    /**
+     * Flag indicating that the weights are stored.
+     */
+    static final int HAS_WEIGHTS = 4;
+    /**
+     * Flag indicating that the types are stored.
+     */
+    static final int HAS_TYPES = 8;
+
+    /**
+     * Size (in bytes) of the buffer used for writing.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Override
+    public boolean write(Graph<Long> graph, String file)
+    {
+        return this.write(graph, file, true, false);
+    }
+
+    @Override
+    public boolean write(Graph<Long> graph, OutputStream file)
+    {
+        return this.write(graph, file, true, false);
+    }
+
+    @Override
+    public boolean write(Graph<Long> graph, String file, boolean writeWeights, boolean writeTypes)
+    {
+        try
+        {
+            return this.write(graph, new FileOutputStream(file), writeWeights, writeTypes);
+        }
+        catch (FileNotFoundException ex)
+        {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean write(Graph<Long> graph, OutputStream file, boolean writeWeights, boolean writeTypes)
+    {
+        if (!(graph instanceof FastGraph))
+        {
+            return false;
+        }
+
+        FastGraph<Long> fastGraph = (FastGraph<Long>) graph;
+        boolean directed = graph.isDirected();
+        boolean weights = writeWeights && graph.isWeighted();
+        int numNodes = Long.valueOf(graph.getVertexCount()).intValue();
+
+        try (OutputStream stream = new BufferedOutputStream(file, BUFFER_SIZE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            Section in = new Section(fastGraph, EdgeOrientation.IN, weights, writeTypes);
+            Section out = directed ? new Section(fastGraph, EdgeOrientation.OUT, weights, writeTypes) : null;
+
+            int flags = (directed ? DIRECTED : 0) | (graph.isWeighted() ? WEIGHTED : 0) | (weights ? HAS_WEIGHTS : 0) | (writeTypes ? HAS_TYPES : 0);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(numNodes);
+            buffer.putLong(graph.getEdgeCount()).putLong(in.ids.length).putLong(out == null ? 0 : out.ids.length);
+
+            for (int uidx = 0; uidx < numNodes; ++uidx)
+            {
+                flushIfFull(buffer, stream, Long.BYTES);
+                buffer.putLong(fastGraph.idx2object(uidx));
+            }
+
+            in.write(buffer, stream);
+            if (out != null)
+            {
+                out.write(buffer, stream);
+            }
+
+            stream.write(buffer.array(), 0, buffer.position());
+            return true;
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the contents of the buffer to the stream if there is not enough space in it.
+     *
+     * @param buffer the buffer.
+     * @param stream the stream.
+     * @param bytes  the number of bytes we want to add to the buffer.
+     *
+     * @throws IOException if something fails while writing.
+     */
+    private static void flushIfFull(ByteBuffer buffer, OutputStream stream, int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+        {
+            stream.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Compressed sparse row representation of a neighbourhood of the graph.
+     */
+    private static class Section
+    {
+        /**
+         * Offsets of the neighbourhood of each node.
+         */
+        private final int[] offsets;
+        /**
+         * Neighbours of the nodes.
+         */
+        private final int[] ids;
+        /**
+         * Weights of the edges (null if they are not written).
+         */
+        private final double[] weights;
+        /**
+         * Types of the edges (null if they are not written).
+         */
+        private final int[] types;
+
+        /**
+         * Constructor.
+         *
+         * @param graph       the graph.
+         * @param orientation the neighbourhood to store.
+         * @param weights     whether to store the weights or not.
+         * @param types       whether to store the types or not.
+         */
+        Section(FastGraph<Long> graph, EdgeOrientation orientation, boolean weights, boolean types)
+        {
+            int numNodes = Long.valueOf(graph.getVertexCount()).intValue();
+            this.offsets = new int[numNodes + 1];
+            for (int uidx = 0; uidx < numNodes; ++uidx)
+            {
+                this.offsets[uidx + 1] = this.offsets[uidx] + graph.getNeighborhoodSize(uidx, orientation);
+            }
+
+            this.ids = new int[this.offsets[numNodes]];
+            this.weights = weights ? new double[this.offsets[numNodes]] : null;
+            this.types = types ? new int[this.offsets[numNodes]] : null;
+            for (int uidx = 0; uidx < numNodes; ++uidx)
+            {
+                int[] pos = {this.offsets[uidx]};
+                graph.forEachNeighbor(uidx, orientation, (vidx, weight) ->
+                {
+                    this.ids[pos[0]] = vidx;
+                    if (weights)
+                    {
+                        this.weights[pos[0]] = weight;
+                    }
+                    ++pos[0];
+                });
+
+                if (types)
+                {
+                    int typePos = this.offsets[uidx];
+                    Iterator<EdgeType> iterator = graph.getNeighborhoodTypes(uidx, orientation).iterator();
+                    while (iterator.hasNext())
+                    {
+                        this.types[typePos++] = iterator.next().getValue();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the section.
+         *
+         * @param buffer the buffer for writing.
+         * @param stream the stream.
+         *
+         * @throws IOException if something fails while writing.
+         */
+        void write(ByteBuffer buffer, OutputStream stream) throws IOException
+        {
+            writeInts(this.offsets, buffer, stream);
+            writeInts(this.ids, buffer, stream);
+            if (this.weights != null)
+            {
+                for (double weight : this.weights)
+                {
+                    flushIfFull(buffer, stream, Double.BYTES);
+                    buffer.putDouble(weight);
+                }
+            }
+            if (this.types != null)
+            {
+                writeInts(this.types, buffer, stream);
+            }
+        }
+
+        /**
+         * Writes an array of integers.
+         *
+         * @param array  the array.
+         * @param buffer the buffer for writing.
+         * @param stream the stream.
+         *
+         * @throws IOException if something fails while writing.
+         */
+        private static void writeInts(int[] array, ByteBuffer buffer, OutputStream stream) throws IOException
+        {
+            for (int value : array)
+            {
+                flushIfFull(buffer, stream, Integer.BYTES);
+                buffer.putInt(value);
+            }
+        }
+    }
+}
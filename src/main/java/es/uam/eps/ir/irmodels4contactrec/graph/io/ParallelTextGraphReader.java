@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.graph.io;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphBuilder;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastLongIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a graph with numerical vertices from a file, using several threads.
+ * <p>
+ * The file data format is the same as the one read by {@link TextGraphReader}:
+ * <p>
+ * nodeA nodeB (weight) (types)
+ * <p>
+ * where nodes are long values, and columns are separated by a single character. The file is
+ * split into chunks which start and end at line boundaries, and each chunk is parsed in parallel,
+ * directly from the bytes into primitive values (without creating any string). Then, the edges are
+ * sent, in the order they appear in the file, to a {@link FastGraphBuilder}, so the resulting graph is
+ * identical to the one read by {@link TextGraphReader}.
+ * <p>
+ * Plain files are memory-mapped. Files (and streams) compressed with gzip are detected by their magic
+ * number, and decompressed into memory before parsing them.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ParallelTextGraphReader implements GraphReader<Long>
+{
+    /**
+     * Minimum size (in bytes) of each chunk.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    /**
+     * Maximum size (in bytes) of each chunk.
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 26;
+    /**
+     * Powers of ten which can be exactly represented as doubles.
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Indicates if the graph to read is directed (true) or not (false).
+     */
+    private final boolean directed;
+    /**
+     * Indicates if the graph to read is weighted (true) or not (false).
+     */
+    private final boolean weighted;
+    /**
+     * Indicates if the graph to read allows autoloops (true) or not (false).
+     */
+    private final boolean selfloops;
+    /**
+     * Field delimiter.
+     */
+    private final byte delimiter;
+
+    /**
+     * Constructor.
+     *
+     * @param directed  Indicates if the graph to read is directed (true) or not (false).
+     * @param weighted  Indicates if the graph to read is weighted (true) or not (false).
+     * @param selfloops Indicates if the graph to read allows autoloops (true) or not (false).
+     * @param delimiter Field delimiter. It must be an ASCII character.
+     */
+    public ParallelTextGraphReader(boolean directed, boolean weighted, boolean selfloops, char delimiter)
+    {
+        if (delimiter > 127)
+        {
+            throw new IllegalArgumentException("The delimiter must be an ASCII character");
+        }
+        this.directed = directed;
+        this.weighted = weighted;
+        this.selfloops = selfloops;
+        this.delimiter = (byte) delimiter;
+    }
+
+    @Override
+    public Graph<Long> read(String file)
+    {
+        return this.read(file, true, false);
+    }
+
+    @Override
+    public Graph<Long> read(String file, boolean readWeights, boolean readTypes)
+    {
+        return this.read(file, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<Long> read(String file, boolean readWeights, boolean readTypes, Index<Long> nodes)
+    {
+        try
+        {
+            List<EdgeChunk> chunks;
+            if (isGzip(file))
+            {
+                try (InputStream stream = new GZIPInputStream(new FileInputStream(file), 1 << 16))
+                {
+                    chunks = this.parse(readFully(stream), readTypes);
+                }
+            }
+            else
+            {
+                try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+                {
+                    chunks = this.parse(channel, readTypes);
+                }
+            }
+            return this.build(chunks, nodes);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream)
+    {
+        return this.read(stream, true, false);
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream, boolean readWeights, boolean readTypes)
+    {
+        return this.read(stream, readWeights, readTypes, null);
+    }
+
+    @Override
+    public Graph<Long> read(InputStream stream, boolean readWeights, boolean readTypes, Index<Long> nodes)
+    {
+        try
+        {
+            BufferedInputStream bis = new BufferedInputStream(stream);
+            bis.mark(2);
+            int first = bis.read();
+            int second = bis.read();
+            bis.reset();
+
+            byte[] bytes;
+            if (first == 0x1f && second == 0x8b)
+            {
+                bytes = readFully(new GZIPInputStream(bis, 1 << 16));
+            }
+            else
+            {
+                bytes = readFully(bis);
+            }
+            return this.build(this.parse(bytes, readTypes), nodes);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Builds the graph from the parsed chunks.
+     *
+     * @param chunks the parsed chunks, in the order they appear in the file.
+     * @param nodes  the index of the nodes of the graph. If null, every node found in the file is added to the graph.
+     *
+     * @return the graph.
+     */
+    private Graph<Long> build(List<EdgeChunk> chunks, Index<Long> nodes)
+    {
+        FastGraphBuilder<Long> builder = new FastGraphBuilder<>(directed, weighted, new FastLongIndex());
+        if (nodes != null)
+        {
+            nodes.getAllObjectsIds().sorted().forEach(i -> builder.addNode(nodes.idx2object(i)));
+        }
+
+        for (EdgeChunk chunk : chunks)
+        {
+            for (int i = 0, size = chunk.origs.size(); i < size; ++i)
+            {
+                builder.addEdge(chunk.origs.getLong(i), chunk.dests.getLong(i), chunk.weights.getDouble(i), chunk.types.getInt(i), nodes == null);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Parses a memory-mapped file.
+     *
+     * @param channel   the channel for reading the file.
+     * @param readTypes whether to read the types of the edges or not.
+     *
+     * @return the parsed chunks, in the order they appear in the file.
+     *
+     * @throws IOException if something fails while reading the file.
+     */
+    private List<EdgeChunk> parse(FileChannel channel, boolean readTypes) throws IOException
+    {
+        long size = channel.size();
+        long chunkSize = chunkSize(size);
+
+        // Find the limits of the chunks: each one finishes at the end of a line.
+        List<Long> limits = new ArrayList<>();
+        limits.add(0L);
+        long pos = chunkSize;
+        ByteBuffer aux = ByteBuffer.allocate(8192);
+        while (pos < size)
+        {
+            long lineEnd = -1;
+            while (lineEnd < 0 && pos < size)
+            {
+                aux.clear();
+                int read = channel.read(aux, pos);
+                for (int i = 0; i < read && lineEnd < 0; ++i)
+                {
+                    if (aux.get(i) == '\n')
+                    {
+                        lineEnd = pos + i + 1;
+                    }
+                }
+                pos += Math.max(read, 0);
+            }
+
+            if (lineEnd < 0 || lineEnd >= size)
+            {
+                break;
+            }
+            limits.add(lineEnd);
+            pos = lineEnd + chunkSize;
+        }
+        limits.add(size);
+
+        return IntStream.range(0, limits.size() - 1).parallel().mapToObj(i ->
+        {
+            try
+            {
+                long start = limits.get(i);
+                int length = (int) (limits.get(i + 1) - start);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                return this.parse(buffer, 0, length, readTypes);
+            }
+            catch (IOException ioe)
+            {
+                throw new UncheckedIOException(ioe);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Parses the contents of a file already stored in memory.
+     *
+     * @param bytes     the contents of the file.
+     * @param readTypes whether to read the types of the edges or not.
+     *
+     * @return the parsed chunks, in the order they appear in the file.
+     */
+    private List<EdgeChunk> parse(byte[] bytes, boolean readTypes)
+    {
+        int size = bytes.length;
+        int chunkSize = (int) chunkSize(size);
+
+        List<Integer> limits = new ArrayList<>();
+        limits.add(0);
+        int pos = chunkSize;
+        while (pos < size)
+        {
+            while (pos < size && bytes[pos - 1] != '\n')
+            {
+                ++pos;
+            }
+            if (pos >= size)
+            {
+                break;
+            }
+            limits.add(pos);
+            pos += chunkSize;
+        }
+        limits.add(size);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return IntStream.range(0, limits.size() - 1).parallel()
+                .mapToObj(i -> this.parse(buffer, limits.get(i), limits.get(i + 1), readTypes))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a chunk of the file. Empty lines are ignored.
+     *
+     * @param buffer    the buffer containing the chunk. It is only accessed through absolute positions.
+     * @param start     the first position of the chunk.
+     * @param end       the position after the end of the chunk.
+     * @param readTypes whether to read the types of the edges or not.
+     *
+     * @return the edges in the chunk.
+     */
+    private EdgeChunk parse(ByteBuffer buffer, int start, int end, boolean readTypes)
+    {
+        EdgeChunk chunk = new EdgeChunk();
+        int[] fieldStarts = new int[4];
+        int[] fieldEnds = new int[4];
+
+        int pos = start;
+        while (pos < end)
+        {
+            int lineEnd = pos;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n')
+            {
+                ++lineEnd;
+            }
+            int last = lineEnd;
+            if (last > pos && buffer.get(last - 1) == '\r')
+            {
+                --last;
+            }
+
+            if (last > pos)
+            {
+                // Find the limits of the (at most) four columns we need.
+                int numFields = 0;
+                int fieldStart = pos;
+                for (int i = pos; i <= last && numFields < 4; ++i)
+                {
+                    if (i == last || buffer.get(i) == this.delimiter)
+                    {
+                        fieldStarts[numFields] = fieldStart;
+                        fieldEnds[numFields] = i;
+                        ++numFields;
+                        fieldStart = i + 1;
+                    }
+                }
+                // Missing columns are empty (and fail to parse if they are needed).
+                for (int i = numFields; i < 4; ++i)
+                {
+                    fieldStarts[i] = last;
+                    fieldEnds[i] = last;
+                }
+
+                long source = parseLong(buffer, fieldStarts[0], fieldEnds[0]);
+                long dest = parseLong(buffer, fieldStarts[1], fieldEnds[1]);
+
+                if (source != dest || this.selfloops)
+                {
+                    double weight = 1.0;
+                    int type = 0;
+                    if (this.weighted)
+                    {
+                        weight = parseDouble(buffer, fieldStarts[2], fieldEnds[2]);
+                    }
+
+                    if (readTypes)
+                    {
+                        int field = this.weighted ? 3 : 2;
+                        type = (int) parseLong(buffer, fieldStarts[field], fieldEnds[field]);
+                    }
+
+                    chunk.origs.add(source);
+                    chunk.dests.add(dest);
+                    chunk.weights.add(weight);
+                    chunk.types.add(type);
+                }
+            }
+            pos = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses a long value from a range of bytes.
+     *
+     * @param buffer the buffer.
+     * @param start  the first position of the value.
+     * @param end    the position after the end of the value.
+     *
+     * @return the value.
+     *
+     * @throws NumberFormatException if the range does not contain a valid long value.
+     */
+    private static long parseLong(ByteBuffer buffer, int start, int end)
+    {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+        {
+            negative = buffer.get(pos) == '-';
+            ++pos;
+        }
+
+        if (pos == end || end - pos > 18)
+        {
+            // Too long values are left to the standard parser, which detects overflows.
+            return Long.parseLong(toString(buffer, start, end));
+        }
+
+        long value = 0;
+        for (; pos < end; ++pos)
+        {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                throw new NumberFormatException("For input string: \"" + toString(buffer, start, end) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a double value from a range of bytes. Decimal values with, at most, fifteen significant
+     * digits and small exponents are directly parsed (the result is exactly the same as the one of
+     * {@link Double#parseDouble(String)}), and the rest are left to the standard parser.
+     *
+     * @param buffer the buffer.
+     * @param start  the first position of the value.
+     * @param end    the position after the end of the value.
+     *
+     * @return the value.
+     *
+     * @throws NumberFormatException if the range does not contain a valid double value.
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end)
+    {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+        {
+            negative = buffer.get(pos) == '-';
+            ++pos;
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int significant = 0;
+        int exponent = 0;
+
+        for (; pos < end && isDigit(buffer.get(pos)); ++pos)
+        {
+            mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+            significant += mantissa != 0 ? 1 : 0;
+            ++numDigits;
+        }
+
+        if (pos < end && buffer.get(pos) == '.')
+        {
+            ++pos;
+            for (; pos < end && isDigit(buffer.get(pos)); ++pos)
+            {
+                mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+                significant += mantissa != 0 ? 1 : 0;
+                ++numDigits;
+                --exponent;
+            }
+        }
+
+        if (pos < end && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E') && numDigits > 0)
+        {
+            ++pos;
+            boolean negativeExp = false;
+            if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+            {
+                negativeExp = buffer.get(pos) == '-';
+                ++pos;
+            }
+
+            int exp = 0;
+            int expDigits = 0;
+            for (; pos < end && isDigit(buffer.get(pos)) && expDigits < 4; ++pos)
+            {
+                exp = exp * 10 + (buffer.get(pos) - '0');
+                ++expDigits;
+            }
+            exponent += negativeExp ? -exp : exp;
+            numDigits = expDigits > 0 ? numDigits : 0;
+        }
+
+        if (pos != end || numDigits == 0 || significant > 15 || exponent < -22 || exponent > 22)
+        {
+            return Double.parseDouble(toString(buffer, start, end));
+        }
+
+        double value = (double) mantissa;
+        if (exponent > 0)
+        {
+            value *= POW10[exponent];
+        }
+        else if (exponent < 0)
+        {
+            value /= POW10[-exponent];
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks whether a byte represents a digit.
+     *
+     * @param b the byte.
+     *
+     * @return true if it is a digit, false otherwise.
+     */
+    private static boolean isDigit(byte b)
+    {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Obtains the string contained in a range of bytes. Only used for unusual values and error messages.
+     *
+     * @param buffer the buffer.
+     * @param start  the first position of the string.
+     * @param end    the position after the end of the string.
+     *
+     * @return the string.
+     */
+    private static String toString(ByteBuffer buffer, int start, int end)
+    {
+        byte[] bytes = new byte[Math.max(end - start, 0)];
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Obtains the size of the chunks to parse for a file.
+     *
+     * @param size the size of the file.
+     *
+     * @return the size of the chunks.
+     */
+    private static long chunkSize(long size)
+    {
+        long target = size / (4L * Runtime.getRuntime().availableProcessors());
+        return Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+    }
+
+    /**
+     * Checks whether a file is compressed with gzip.
+     *
+     * @param file the file.
+     *
+     * @return true if the file starts with the gzip magic number, false otherwise.
+     *
+     * @throws IOException if something fails while reading the file.
+     */
+    private static boolean isGzip(String file) throws IOException
+    {
+        try (InputStream stream = new FileInputStream(file))
+        {
+            return stream.read() == 0x1f && stream.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Reads all the remaining bytes of a stream.
+     *
+     * @param stream the stream.
+     *
+     * @return the bytes.
+     *
+     * @throws IOException if something fails while reading the stream.
+     */
+    private static byte[] readFully(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 16);
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = stream.read(buffer)) != -1)
+        {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Edges read from a chunk of the file.
+     */
+    private static class EdgeChunk
+    {
+        /**
+         * Origins of the edges.
+         */
+        private final LongArrayList origs = new LongArrayList();
+        /**
+         * Destinations of the edges.
+         */
+        private final LongArrayList dests = new LongArrayList();
+        /**
+         * Weights of the edges.
+         */
+        private final DoubleArrayList weights = new DoubleArrayList();
+        /**
+         * Types of the edges.
+         */
+        private final IntArrayList types = new IntArrayList();
+    }
+}
@@ -10,11 +10,10 @@
 package es.uam.eps.ir.irmodels4contactrec.graph.io;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.EmptyGraphGenerator;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorBadConfiguredException;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorNotConfiguredException;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GraphGenerator;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphBuilder;
 import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastLongIndex;
 import org.ranksys.formats.parsing.Parser;
 import org.ranksys.formats.parsing.Parsers;
 
@@ -122,57 +121,46 @@ public class TextGraphReader<V> implements GraphReader<V>
     @Override
     public Graph<V> read(InputStream stream, boolean readWeights, boolean readTypes)
     {
-        try
-        {
-            EmptyGraphGenerator<V> gg = new EmptyGraphGenerator<>();
-            gg.configure(directed, weighted);
-            Graph<V> graph = gg.generate();
+        FastGraphBuilder<V> builder = this.newBuilder();
 
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+        {
+            br.lines().forEach(line ->
             {
-                br.lines().forEach(line ->
-                {
-                    String[] splits = line.split(delimiter);
-                    V source = uParser.parse(splits[0]);
-                    V dest = uParser.parse(splits[1]);
+                String[] splits = line.split(delimiter);
+                V source = uParser.parse(splits[0]);
+                V dest = uParser.parse(splits[1]);
 
-                    if (!source.equals(dest) || selfloops)
+                if (!source.equals(dest) || selfloops)
+                {
+                    double weight = 1.0;
+                    int type = 0;
+                    if (weighted)
                     {
-                        double weight = 1.0;
-                        int type = 0;
-                        if (weighted)
-                        {
-                            weight = Parsers.dp.parse(splits[2]);
-                        }
-
-                        if (readTypes && weighted)
-                        {
-                            type = Parsers.ip.parse(splits[3]);
-                        }
-                        else if (readTypes)
-                        {
-                            type = Parsers.ip.parse(splits[2]);
-                        }
-
-                        graph.addEdge(source, dest, weight, type, true);
+                        weight = Parsers.dp.parse(splits[2]);
                     }
-                });
-            }
 
-            catch (IOException ioe)
-            {
-                ioe.printStackTrace();
-                return null;
-            }
+                    if (readTypes && weighted)
+                    {
+                        type = Parsers.ip.parse(splits[3]);
+                    }
+                    else if (readTypes)
+                    {
+                        type = Parsers.ip.parse(splits[2]);
+                    }
 
-            return graph;
+                    builder.addEdge(source, dest, weight, type, true);
+                }
+            });
         }
 
-        catch (GeneratorNotConfiguredException ex)
+        catch (IOException ioe)
         {
-            ex.printStackTrace();
+            ioe.printStackTrace();
             return null;
         }
+
+        return builder.build();
     }
 
     @Override
@@ -193,59 +181,60 @@ public class TextGraphReader<V> implements GraphReader<V>
     @Override
     public Graph<V> read(InputStream stream, boolean readWeights, boolean readTypes, Index<V> nodes)
     {
-        try
-        {
-            EmptyGraphGenerator<V> gg = new EmptyGraphGenerator<>();
-            gg.configure(directed, weighted);
+        FastGraphBuilder<V> builder = this.newBuilder();
 
-            Graph<V> graph = gg.generate();
+        nodes.getAllObjectsIds().sorted().forEach(i -> builder.addNode(nodes.idx2object(i)));
 
-            nodes.getAllObjectsIds().sorted().forEach(i -> graph.addNode(nodes.idx2object(i)));
-
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+        {
+            br.lines().forEach(line ->
             {
-                br.lines().forEach(line ->
-                {
-                    String[] splits = line.split(delimiter);
-                    V source = uParser.parse(splits[0]);
-                    V dest = uParser.parse(splits[1]);
+                String[] splits = line.split(delimiter);
+                V source = uParser.parse(splits[0]);
+                V dest = uParser.parse(splits[1]);
 
-                    if (!source.equals(dest) || selfloops)
+                if (!source.equals(dest) || selfloops)
+                {
+                    double weight = 1.0;
+                    int type = 0;
+                    if (weighted)
                     {
-                        double weight = 1.0;
-                        int type = 0;
-                        if (weighted)
-                        {
-                            weight = Parsers.dp.parse(splits[2]);
-                        }
-
-                        if (readTypes && weighted)
-                        {
-                            type = Parsers.ip.parse(splits[3]);
-                        }
-                        else if (readTypes)
-                        {
-                            type = Parsers.ip.parse(splits[2]);
-                        }
-
-                        graph.addEdge(source, dest, weight, type, false);
+                        weight = Parsers.dp.parse(splits[2]);
                     }
-                });
-            }
 
-            catch (IOException ioe)
-            {
-                ioe.printStackTrace();
-                return null;
-            }
+                    if (readTypes && weighted)
+                    {
+                        type = Parsers.ip.parse(splits[3]);
+                    }
+                    else if (readTypes)
+                    {
+                        type = Parsers.ip.parse(splits[2]);
+                    }
 
-            return graph;
+                    builder.addEdge(source, dest, weight, type, false);
+                }
+            });
         }
 
-        catch (GeneratorNotConfiguredException ex)
+        catch (IOException ioe)
         {
-            ex.printStackTrace();
+            ioe.printStackTrace();
             return null;
         }
+
+        return builder.build();
+    }
+
+    /**
+     * Creates a builder for the graph. When the vertices are read as long values, they are stored
+     * in a primitive index, which becomes the identity if they are already dense.
+     *
+     * @return the builder.
+     */
+    @SuppressWarnings("unchecked")
+    private FastGraphBuilder<V> newBuilder()
+    {
+        Index<V> vertices = this.uParser == Parsers.lp ? (Index<V>) new FastLongIndex() : new FastIndex<>();
+        return new FastGraphBuilder<>(directed, weighted, vertices);
     }
 }
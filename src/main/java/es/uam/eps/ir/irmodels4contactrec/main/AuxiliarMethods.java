@@ -9,6 +9,9 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.main;
 
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.io.BinaryGraphReader;
+import es.uam.eps.ir.irmodels4contactrec.graph.io.ParallelTextGraphReader;
 import es.uam.eps.ir.ranksys.metrics.SystemMetric;
 import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.rec.runner.RecommenderRunner;
@@ -22,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,28 +50,17 @@ public class AuxiliarMethods
      *
      * @return the value of the metric.
      *
-     * @throws IOException if something fails during the writing / reading of the recommendation file.
+     * @throws IOException if something fails during the writing of the recommendation file.
      */
     public static double computeAndEvaluate(String output, Recommender<Long, Long> recommender, RecommenderRunner<Long, Long> runner, SystemMetric<Long, Long> metric) throws IOException
     {
         RecommendationFormat<Long, Long> format = new SimpleRecommendationFormat<>(Parsers.lp, Parsers.lp);
-        RecommendationFormat.Writer<Long, Long> writer;
-        RecommendationFormat.Reader<Long, Long> reader;
 
-        metric.reset();
+        // The recommendation is evaluated while it is written.
+        EvaluationSink<Long, Long> sink = new EvaluationSink<>(Collections.singletonList(metric), format.getWriter(output));
+        runner.run(recommender, sink);
+        sink.close();
 
-        writer = format.getWriter(output);
-        runner.run(recommender, writer);
-        writer.close();
-
-        reader = format.getReader(output);
-        reader.readAll().forEach(rec ->
-        {
-            if (rec != null && rec.getItems() != null && !rec.getItems().isEmpty())
-            {
-                metric.add(rec);
-            }
-        });
         return metric.evaluate();
     }
 
@@ -81,32 +74,18 @@ public class AuxiliarMethods
      *
      * @return the value of the metrics.
      *
-     * @throws IOException if something fails during the writing / reading of the recommendation file.
+     * @throws IOException if something fails during the writing of the recommendation file.
      */
     public static Map<String, Double> computeAndEvaluate(String output, Recommender<Long, Long> recommender, RecommenderRunner<Long, Long> runner, Map<String, SystemMetric<Long, Long>> metrics) throws IOException
     {
         RecommendationFormat<Long, Long> format = new SimpleRecommendationFormat<>(Parsers.lp, Parsers.lp);
-        RecommendationFormat.Writer<Long, Long> writer;
-        RecommendationFormat.Reader<Long, Long> reader;
-
-        Map<String, Double> values = new HashMap<>();
-
-
-        writer = format.getWriter(output);
-        runner.run(recommender, writer);
-        writer.close();
 
-        metrics.values().forEach(SystemMetric::reset);
-
-        reader = format.getReader(output);
-        reader.readAll().forEach(rec ->
-        {
-            if (rec != null && rec.getItems() != null && !rec.getItems().isEmpty())
-            {
-                metrics.values().forEach(metric -> metric.add(rec));
-            }
-        });
+        // The recommendation is evaluated while it is written.
+        EvaluationSink<Long, Long> sink = new EvaluationSink<>(metrics.values(), format.getWriter(output));
+        runner.run(recommender, sink);
+        sink.close();
 
+        Map<String, Double> values = new HashMap<>();
         metrics.forEach((key, value) -> values.put(key, value.evaluate()));
         return values;
     }
@@ -122,17 +101,8 @@ public class AuxiliarMethods
      */
     public static double computeAndEvaluate(Recommender<Long, Long> recommender, RecommenderRunner<Long, Long> runner, SystemMetric<Long, Long> metric)
     {
-        EmptyWriter<Long, Long> writer = new EmptyWriter<>();
-        runner.run(recommender, writer);
-
-        metric.reset();
-        writer.readAll().forEach(rec ->
-        {
-            if (rec != null && rec.getItems() != null && !rec.getItems().isEmpty())
-            {
-                metric.add(rec);
-            }
-        });
+        EvaluationSink<Long, Long> sink = new EvaluationSink<>(Collections.singletonList(metric));
+        runner.run(recommender, sink);
 
         return metric.evaluate();
     }
@@ -148,23 +118,94 @@ public class AuxiliarMethods
      */
     public static Map<String, Double> computeAndEvaluate(Recommender<Long, Long> recommender, RecommenderRunner<Long, Long> runner, Map<String, SystemMetric<Long,Long>> metrics)
     {
-        EmptyWriter<Long, Long> writer = new EmptyWriter<>();
-        runner.run(recommender, writer);
+        EvaluationSink<Long, Long> sink = new EvaluationSink<>(metrics.values());
+        runner.run(recommender, sink);
 
         Map<String, Double> values = new HashMap<>();
-        metrics.values().forEach(SystemMetric::reset);
-        writer.readAll().forEach(rec ->
-        {
-            if (rec != null && rec.getItems() != null && !rec.getItems().isEmpty())
-            {
-                metrics.values().forEach(metric -> metric.add(rec));
-            }
-        });
-
         metrics.forEach((key, value) -> values.put(key, value.evaluate()));
         return values;
     }
 
+    /**
+     * Reads a graph with numeric identifiers, either from a tab-separated edge list or from a
+     * binary snapshot written by {@link es.uam.eps.ir.irmodels4contactrec.graph.io.BinaryGraphWriter}.
+     * Graphs read from snapshots are already frozen.
+     *
+     * @param file     Route of the file containing the graph.
+     * @param directed True if the graph is directed, false otherwise.
+     * @param weighted True if the graph is weighted, false otherwise.
+     *
+     * @return the graph if everything went OK, null otherwise.
+     */
+    public static FastGraph<Long> readGraph(String file, boolean directed, boolean weighted)
+    {
+        if (!BinaryGraphReader.isSnapshot(file))
+        {
+            ParallelTextGraphReader greader = new ParallelTextGraphReader(directed, weighted, false, '\t');
+            return (FastGraph<Long>) greader.read(file, weighted, false);
+        }
+
+        FastGraph<Long> graph = (FastGraph<Long>) new BinaryGraphReader().read(file, weighted, false);
+        if (graph == null)
+        {
+            return null;
+        }
+        if (graph.isDirected() != directed)
+        {
+            System.err.println("ERROR: The graph snapshot " + file + " is " + (graph.isDirected() ? "directed" : "undirected"));
+            return null;
+        }
+        if (weighted && !graph.isWeighted())
+        {
+            System.err.println("ERROR: The graph snapshot " + file + " is unweighted");
+            return null;
+        }
+        return weighted ? graph : graph.unweighted();
+    }
+
+    /**
+     * Opens the journal storing the results of the configurations of an experiment.
+     *
+     * @param output Route of the journal file.
+     * @param inputs Identifier of the inputs of the experiment.
+     *
+     * @return the journal if everything went OK, null otherwise (results are not stored in that case).
+     */
+    public static ResultsJournal openJournal(String output, String inputs)
+    {
+        try
+        {
+            return new ResultsJournal(output, inputs);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ERROR: Could not open the results journal " + output + ". Previous results will not be reused");
+            return null;
+        }
+    }
+
+    /**
+     * Closes the journal storing the results of the configurations of an experiment.
+     *
+     * @param journal the journal (it might be null).
+     */
+    public static void closeJournal(ResultsJournal journal)
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            journal.close();
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ERROR: Could not close the results journal");
+        }
+    }
+
     /**
      * Given two maps with the same keys, generates a new file that prints the nDCG values for both.
      *
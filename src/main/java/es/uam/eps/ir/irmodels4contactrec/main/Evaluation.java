@@ -9,17 +9,18 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.main;
 
-import es.uam.eps.ir.irmodels4contactrec.data.GraphSimpleFastPreferenceData;
+import es.uam.eps.ir.irmodels4contactrec.data.FastGraphPreferenceData;
 import es.uam.eps.ir.irmodels4contactrec.graph.Adapters;
 import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.graph.io.TextGraphReader;
 import es.uam.eps.ir.irmodels4contactrec.data.FastGraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.data.GraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.metrics.TRECAveragePrecision;
 import es.uam.eps.ir.irmodels4contactrec.recommender.SocialFastFilters;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRecommenderRunner;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmGridReader;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmGridSelector;
+import es.uam.eps.ir.irmodels4contactrec.main.grid.GridScheduler;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.metrics.SystemMetric;
 import es.uam.eps.ir.ranksys.metrics.basic.AverageRecommendationMetric;
@@ -28,8 +29,6 @@ import es.uam.eps.ir.ranksys.metrics.rel.BinaryRelevanceModel;
 import es.uam.eps.ir.ranksys.metrics.rel.IdealRelevanceModel;
 import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.rec.runner.RecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilterRecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilters;
 import org.ranksys.formats.parsing.Parsers;
 import org.ranksys.formats.rec.RecommendationFormat;
 import org.ranksys.formats.rec.TRECRecommendationFormat;
@@ -62,8 +61,8 @@ public class Evaluation
      *
      * @param args Execution arguments:
      *             <ol>
-     *               <li><b>Train:</b> Route to the file containing the training graph.</li>
-     *               <li><b>Test:</b> Route to the file containing the test links.</li>
+     *               <li><b>Train:</b> Route to the file containing the training graph (edge list or binary graph snapshot).</li>
+     *               <li><b>Test:</b> Route to the file containing the test links (edge list or binary graph snapshot).</li>
      *               <li><b>Algorithms:</b> Route to an XML file containing the recommender configurations.</li>
      *               <li><b>Output directory:</b> Directory in which to store the recommendations and the output file.</li>
      *               <li><b>Directed:</b> True if the network is directed, false otherwise.</li>
@@ -77,8 +76,8 @@ public class Evaluation
         {
             System.err.println("Invalid arguments.");
             System.err.println("Usage:");
-            System.err.println("\tTrain: Route to the file containing the training graph.");
-            System.err.println("\tTest: Route to the file containing the test links.");
+            System.err.println("\tTrain: Route to the file containing the training graph (edge list or binary graph snapshot).");
+            System.err.println("\tTest: Route to the file containing the test links (edge list or binary graph snapshot).");
             System.err.println("\tAlgorithms: Route to an XML file containing the recommender configurations.");
             System.err.println("\tOutput directory: Directory in which to store the recommendations and the output file.");
             System.err.println("\tDirected: True if the network is directed, false otherwise.");
@@ -112,8 +111,7 @@ public class Evaluation
         }
 
         // Read the test graph
-        TextGraphReader<Long> testGraphReader = new TextGraphReader<>(directed, false, false, "\t", Parsers.lp);
-        Graph<Long> auxTestGraph = testGraphReader.read(testDataPath, false, false);
+        Graph<Long> auxTestGraph = AuxiliarMethods.readGraph(testDataPath, directed, false);
 
         if (auxTestGraph == null)
         {
@@ -126,13 +124,14 @@ public class Evaluation
         long timea = System.currentTimeMillis();
 
         // Read the training graph.
-        TextGraphReader<Long> greader = new TextGraphReader<>(directed, weighted, false, "\t", Parsers.lp);
-        FastGraph<Long> graph = (FastGraph<Long>) greader.read(trainDataPath);
-        if (graph == null)
+        FastGraph<Long> auxGraph = AuxiliarMethods.readGraph(trainDataPath, directed, weighted);
+        if (auxGraph == null)
         {
             System.err.println("ERROR: Could not read the training graph");
             return;
         }
+        // The training graph is never modified: store it in a compact read-only structure.
+        FastGraph<Long> graph = auxGraph.freeze();
 
         // Read the test graph.
         long timeb = System.currentTimeMillis();
@@ -141,12 +140,12 @@ public class Evaluation
 
         // Prepare the training and test data
         FastPreferenceData<Long, Long> trainData;
-        trainData = GraphSimpleFastPreferenceData.load(graph);
+        trainData = FastGraphPreferenceData.load(graph);
 
         // Clean the test graph.
         FastGraph<Long> testGraph = (FastGraph<Long>) Adapters.onlyTrainUsers(auxTestGraph, graph);
         FastPreferenceData<Long, Long> testData;
-        testData = GraphSimpleFastPreferenceData.load(testGraph);
+        testData = FastGraphPreferenceData.load(testGraph);
         GraphIndex<Long> index = new FastGraphIndex<>(graph);
 
         // Read the XML containing the parameter grid for each algorithm
@@ -177,8 +176,8 @@ public class Evaluation
 
         // Prepare the elements for the recommendation:
         RecommendationFormat<Long, Long> format = new TRECRecommendationFormat<>(lp, lp);
-        @SuppressWarnings("unchecked") Function<Long, IntPredicate> filter = FastFilters.and(FastFilters.notInTrain(trainData), FastFilters.notSelf(index), SocialFastFilters.notReciprocal(graph, index));
-        RecommenderRunner<Long, Long> runner = new FastFilterRecommenderRunner<>(index, index, targetUsers.stream(), filter, maxLength);
+        Function<Long, IntPredicate> filter = SocialFastFilters.notNeighbours(graph);
+        RecommenderRunner<Long, Long> runner = new UserFastRecommenderRunner<>(index, targetUsers.stream(), filter, maxLength);
         int numUsers = testData.numUsersWithPreferences();
 
         IdealRelevanceModel<Long, Long> idealModel = new BinaryRelevanceModel<>(true, testData, 0.5);
@@ -186,43 +185,64 @@ public class Evaluation
 
         AtomicInteger counter = new AtomicInteger(0);
         int totalCount = recMap.size();
-        // Execute the recommendations
-        recMap.entrySet().parallelStream().forEach(entry ->
+        // Results are stored as soon as each algorithm finishes, so they can be reused if the evaluation is run again
+        // (only for the same data).
+        String inputs = graph.fingerprint() + "_" + testGraph.fingerprint() + "_" + maxLength;
+        ResultsJournal journal = AuxiliarMethods.openJournal(outputPath + "evaluation.journal", inputs);
+        // Execute the recommendations (longest-first, on a dedicated pool)
+        GridScheduler scheduler = new GridScheduler(graph);
+        scheduler.runDeferring(recMap.entrySet(), entry -> scheduler.estimateCost(entry.getKey()), entry ->
         {
             long a = System.currentTimeMillis();
             String name = entry.getKey();
 
             String path = outputPath + File.separator + (weighted ? "weighted" : "unweighted") + File.separator + name + ".txt";
 
-            // First, create the nDCG metric (for measuring accuracy)
-            SystemMetric<Long, Long> nDCG = new AverageRecommendationMetric<>(new NDCG<>(maxLength, ndcgModel), numUsers);
-            SystemMetric<Long, Long> MAP = new AverageRecommendationMetric<>(new TRECAveragePrecision<>(maxLength, idealModel), numUsers);
-            Map<String, SystemMetric<Long,Long>> metrics = new HashMap<>();
-            metrics.put("ndcg", nDCG);
-            metrics.put("map", MAP);
-
-            // Prepare the recommender
-            Supplier<Recommender<Long, Long>> recomm = entry.getValue();
-            Recommender<Long, Long> rec = recomm.get();
-
             // Obtain the nDCG value
             Map<String, Double> values;
             try
             {
-
-
-                if (printRecommenders)
+                ResultsJournal.Claim claim = journal == null ? ResultsJournal.Claim.ACQUIRED : journal.claim(name);
+                if (claim == ResultsJournal.Claim.BUSY)
+                {
+                    // Another process is evaluating the algorithm: check it again later.
+                    System.err.println("Algorithm " + name + " is running in another process: deferred");
+                    return false;
+                }
+                else if (claim == ResultsJournal.Claim.FINISHED)
                 {
-                    values = AuxiliarMethods.computeAndEvaluate(path, rec, runner, metrics);
-                    nDCGValues.put(name, values.get("ndcg"));
-                    MAPValues.put(name, values.get("map"));
+                    // The algorithm was already evaluated by a previous execution (or by another process).
+                    values = journal.get(name);
                 }
                 else
                 {
-                    values = AuxiliarMethods.computeAndEvaluate(rec, runner, metrics);
-                    nDCGValues.put(name, values.get("ndcg"));
-                    MAPValues.put(name, values.get("map"));
+                    // First, create the nDCG metric (for measuring accuracy)
+                    SystemMetric<Long, Long> nDCG = new AverageRecommendationMetric<>(new NDCG<>(maxLength, ndcgModel), numUsers);
+                    SystemMetric<Long, Long> MAP = new AverageRecommendationMetric<>(new TRECAveragePrecision<>(maxLength, idealModel), numUsers);
+                    Map<String, SystemMetric<Long,Long>> metrics = new HashMap<>();
+                    metrics.put("ndcg", nDCG);
+                    metrics.put("map", MAP);
+
+                    // Prepare the recommender
+                    Supplier<Recommender<Long, Long>> recomm = entry.getValue();
+                    Recommender<Long, Long> rec = recomm.get();
+
+                    if (printRecommenders)
+                    {
+                        values = AuxiliarMethods.computeAndEvaluate(path, rec, runner, metrics);
+                    }
+                    else
+                    {
+                        values = AuxiliarMethods.computeAndEvaluate(rec, runner, metrics);
+                    }
+
+                    if (journal != null)
+                    {
+                        journal.add(name, System.currentTimeMillis() - a, values);
+                    }
                 }
+                nDCGValues.put(name, values.get("ndcg"));
+                MAPValues.put(name, values.get("map"));
             }
             catch (IOException ioe)
             {
@@ -231,7 +251,10 @@ public class Evaluation
 
             long b = System.currentTimeMillis();
             System.err.println("Algorithm " + counter.incrementAndGet() + "/" + totalCount + ": " + name + " finished (" + (b-a) + " ms.)");
-        });
+            return true;
+        }, ResultsJournal.HEARTBEAT);
+        scheduler.shutdown();
+        AuxiliarMethods.closeJournal(journal);
 
         // Print the file.
         AuxiliarMethods.printFile(outputPath + "evaluation.txt", nDCGValues, MAPValues, "nDCG", "MAP", maxLength);
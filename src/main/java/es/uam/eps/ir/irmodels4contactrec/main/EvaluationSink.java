@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.main;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.metrics.SystemMetric;
+import org.ranksys.formats.rec.RecommendationFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writer which evaluates the recommendations as they are generated, instead of storing them and reading
+ * them back afterwards. Each (non-empty) recommendation is added to a set of metrics, which only keep the
+ * partial sums of the values for the different users, so the memory does not grow with the number of
+ * target users. Optionally, recommendations are also written to another writer (for example, a file) by
+ * a background thread, so the threads generating the recommendations do not wait for the disk.
+ *
+ * Recommendations can be written from several threads at the same time.
+ *
+ * @param <U> Type of the users.
+ * @param <I> Type of the items.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class EvaluationSink<U, I> implements RecommendationFormat.Writer<U, I>
+{
+    /**
+     * Maximum number of recommendations waiting to be written.
+     */
+    private final static int CAPACITY = 1024;
+
+    /**
+     * The metrics to evaluate.
+     */
+    private final List<SystemMetric<U, I>> metrics;
+    /**
+     * The writer for the recommendations (null if they are not written).
+     */
+    private final RecommendationFormat.Writer<U, I> writer;
+    /**
+     * Recommendations waiting to be written.
+     */
+    private final BlockingQueue<Recommendation<U, I>> queue;
+    /**
+     * Recommendation marking the end of the queue.
+     */
+    private final Recommendation<U, I> end;
+    /**
+     * The background thread writing the recommendations.
+     */
+    private final Thread thread;
+    /**
+     * Error found while writing the recommendations (if any).
+     */
+    private volatile IOException error;
+
+    /**
+     * Constructor. Recommendations are only evaluated.
+     *
+     * @param metrics the metrics to evaluate.
+     */
+    public EvaluationSink(Collection<SystemMetric<U, I>> metrics)
+    {
+        this(metrics, null);
+    }
+
+    /**
+     * Constructor. Recommendations are evaluated and written.
+     *
+     * @param metrics the metrics to evaluate.
+     * @param writer  the writer for the recommendations.
+     */
+    public EvaluationSink(Collection<SystemMetric<U, I>> metrics, RecommendationFormat.Writer<U, I> writer)
+    {
+        this.metrics = new ArrayList<>(metrics);
+        this.metrics.forEach(SystemMetric::reset);
+        this.writer = writer;
+        this.end = new Recommendation<>(null, Collections.emptyList());
+        this.error = null;
+
+        if (writer != null)
+        {
+            this.queue = new ArrayBlockingQueue<>(CAPACITY);
+            this.thread = new Thread(this::drain);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+        else
+        {
+            this.queue = null;
+            this.thread = null;
+        }
+    }
+
+    @Override
+    public void write(Recommendation<U, I> recommendation) throws IOException
+    {
+        if (recommendation != null && recommendation.getItems() != null && !recommendation.getItems().isEmpty())
+        {
+            synchronized (this.metrics)
+            {
+                this.metrics.forEach(metric -> metric.add(recommendation));
+            }
+        }
+
+        if (this.writer != null && recommendation != null)
+        {
+            try
+            {
+                this.queue.put(recommendation);
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException(ie);
+            }
+        }
+    }
+
+    /**
+     * Writes the recommendations in the queue, until the end of the queue is found.
+     */
+    private void drain()
+    {
+        try
+        {
+            Recommendation<U, I> recommendation;
+            while ((recommendation = this.queue.take()) != this.end)
+            {
+                if (this.error == null)
+                {
+                    try
+                    {
+                        this.writer.write(recommendation);
+                    }
+                    catch (IOException ioe)
+                    {
+                        this.error = ioe;
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every recommendation has been written, and closes the writer.
+     *
+     * @throws IOException if something fails while writing the recommendations.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.writer == null)
+        {
+            return;
+        }
+
+        try
+        {
+            this.queue.put(this.end);
+            this.thread.join();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(ie);
+        }
+        finally
+        {
+            this.writer.close();
+        }
+
+        if (this.error != null)
+        {
+            throw this.error;
+        }
+    }
+}
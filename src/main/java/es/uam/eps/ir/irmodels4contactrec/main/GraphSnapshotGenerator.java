@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.main;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.io.BinaryGraphWriter;
+
+/**
+ * Program that stores a graph as a binary snapshot, so that later experiments over the
+ * same graph (as in {@link Validation} or {@link Evaluation}) do not need to parse it.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class GraphSnapshotGenerator
+{
+    /**
+     * Stores a graph as a binary snapshot.
+     *
+     * @param args Execution arguments:
+     *             <ol>
+     *               <li><b>Graph:</b> Route to the file containing the graph.</li>
+     *               <li><b>Output:</b> Route to the file in which to store the snapshot.</li>
+     *               <li><b>Directed:</b> True if the network is directed, false otherwise.</li>
+     *               <li><b>Weighted:</b> True if the network is weighted, false otherwise.</li>
+     *             </ol>
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 4)
+        {
+            System.err.println("Invalid arguments.");
+            System.err.println("Usage:");
+            System.err.println("\tGraph: Route to the file containing the graph.");
+            System.err.println("\tOutput: Route to the file in which to store the snapshot.");
+            System.err.println("\tDirected: True if the network is directed, false otherwise.");
+            System.err.println("\tWeighted: True if the network is weighted, false otherwise.");
+            return;
+        }
+
+        String graphPath = args[0];
+        String outputPath = args[1];
+        boolean directed = args[2].equalsIgnoreCase("true");
+        boolean weighted = args[3].equalsIgnoreCase("true");
+
+        long timea = System.currentTimeMillis();
+        FastGraph<Long> graph = AuxiliarMethods.readGraph(graphPath, directed, weighted);
+        if (graph == null)
+        {
+            System.err.println("ERROR: Could not read the graph");
+            return;
+        }
+
+        if (!new BinaryGraphWriter().write(graph.freeze(), outputPath))
+        {
+            System.err.println("ERROR: Could not write the graph snapshot");
+            return;
+        }
+        long timeb = System.currentTimeMillis();
+        System.out.println("Snapshot written (" + (timeb - timea) + " ms.)");
+    }
+}
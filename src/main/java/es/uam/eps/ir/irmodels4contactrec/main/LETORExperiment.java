@@ -11,11 +11,11 @@ package es.uam.eps.ir.irmodels4contactrec.main;
 
 import es.uam.eps.ir.irmodels4contactrec.data.FastGraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.data.GraphIndex;
-import es.uam.eps.ir.irmodels4contactrec.data.GraphSimpleFastPreferenceData;
+import es.uam.eps.ir.irmodels4contactrec.data.FastGraphPreferenceData;
 import es.uam.eps.ir.irmodels4contactrec.graph.Adapters;
 import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.graph.io.TextGraphReader;
+import es.uam.eps.ir.irmodels4contactrec.graph.io.ParallelTextGraphReader;
 import es.uam.eps.ir.irmodels4contactrec.letor.FeatureInformation;
 import es.uam.eps.ir.irmodels4contactrec.letor.FeatureType;
 import es.uam.eps.ir.irmodels4contactrec.letor.Instance;
@@ -23,13 +23,12 @@ import es.uam.eps.ir.irmodels4contactrec.letor.InstanceSet;
 import es.uam.eps.ir.irmodels4contactrec.letor.io.InstanceSetReader;
 import es.uam.eps.ir.irmodels4contactrec.letor.io.LETORInstanceReader;
 import es.uam.eps.ir.irmodels4contactrec.recommender.SocialFastFilters;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRecommenderRunner;
 import es.uam.eps.ir.irmodels4contactrec.recommender.letor.LambdaMARTRecommender;
 import es.uam.eps.ir.irmodels4contactrec.utils.generator.Generators;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.rec.runner.RecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilterRecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilters;
 import org.ranksys.formats.parsing.Parsers;
 import org.ranksys.formats.rec.RecommendationFormat;
 import org.ranksys.formats.rec.TRECRecommendationFormat;
@@ -225,7 +224,7 @@ public class LETORExperiment
             System.out.println("Test reduced features computed (" + (bb - aa) / 1000.0 + " s.)");
         }
         // Read the user and item indexes
-        TextGraphReader<Long> greader = new TextGraphReader<>(directed, weighted, true, "\t", Parsers.lp);
+        ParallelTextGraphReader greader = new ParallelTextGraphReader(directed, weighted, true, '\t');
         Graph<Long> auxgraph = greader.read(recTrain, weighted, false);
         if(auxgraph == null)
         {
@@ -256,10 +255,10 @@ public class LETORExperiment
         }
         // Read the training and test data
         FastPreferenceData<Long, Long> trainData;
-        trainData = GraphSimpleFastPreferenceData.load(graph);
+        trainData = FastGraphPreferenceData.load(graph);
 
         FastPreferenceData<Long, Long> testData;
-        testData = GraphSimpleFastPreferenceData.load(testGraph);
+        testData = FastGraphPreferenceData.load(testGraph);
         GraphIndex<Long> index = new FastGraphIndex<>(graph);
 
         bb = System.currentTimeMillis();
@@ -270,7 +269,7 @@ public class LETORExperiment
         Set<Long> targetUsers = testData.getUsersWithPreferences().collect(Collectors.toCollection(HashSet::new));
         System.out.println("Num. target users: " + targetUsers.size());
         RecommendationFormat<Long, Long> format = new TRECRecommendationFormat<>(lp,lp);
-        Function<Long,IntPredicate> filter = FastFilters.and(FastFilters.notInTrain(trainData), FastFilters.notSelf(index), SocialFastFilters.notReciprocal(graph,index));
+        Function<Long,IntPredicate> filter = SocialFastFilters.notNeighbours(graph);
 
         // Now, start the experiment.
         IntStream.range(1, numFeats).forEach(i ->
@@ -318,7 +317,7 @@ public class LETORExperiment
                 b = System.currentTimeMillis();
                 System.out.println("Model predictions done for experiment with " + i + " features (" + (b-a)/1000.0 + " s.)");
 
-                RecommenderRunner<Long,Long> runner = new FastFilterRecommenderRunner<>(index, index, targetUsers.stream(), filter, maxLength);
+                RecommenderRunner<Long,Long> runner = new UserFastRecommenderRunner<>(index, targetUsers.stream(), filter, maxLength);
                 Recommender<Long, Long> rec = new LambdaMARTRecommender<>(graph, directoryName + "test.letor", directoryName + "pred.txt", Parsers.lp);
                 b = System.currentTimeMillis();
                 System.out.println("Recommendation with " + i + " features prepared (" + (b-a)/1000.0 + " s.)");
@@ -17,10 +17,10 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import es.uam.eps.ir.irmodels4contactrec.data.GraphSimpleFastPreferenceData;
+import es.uam.eps.ir.irmodels4contactrec.data.FastGraphPreferenceData;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.io.GraphReader;
-import es.uam.eps.ir.irmodels4contactrec.graph.io.TextGraphReader;
+import es.uam.eps.ir.irmodels4contactrec.graph.io.ParallelTextGraphReader;
 import es.uam.eps.ir.irmodels4contactrec.letor.FeatureInformation;
 import es.uam.eps.ir.irmodels4contactrec.letor.FeatureType;
 import es.uam.eps.ir.irmodels4contactrec.letor.Instance;
@@ -42,7 +42,6 @@ import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.core.Recommendation;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.rec.Recommender;
-import org.ranksys.formats.parsing.Parsers;
 
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
@@ -249,11 +248,11 @@ public class LETORFeatureGenerator
         System.out.println("Individual sampler: " + function.v1() + " (" + (b-a)/1000.0 + " s.)");
 
         // First step: read the graph for sampling
-        GraphReader<Long> greader = new TextGraphReader<>(directed, weightedSampling, false, "\t", Parsers.lp);
+        GraphReader<Long> greader = new ParallelTextGraphReader(directed, weightedSampling, false, '\t');
         FastGraph<Long> trainGraph = (FastGraph<Long>) greader.read(train, weightedSampling, false);
-        FastPreferenceData<Long, Long> prefData = GraphSimpleFastPreferenceData.load(trainGraph);
+        FastPreferenceData<Long, Long> prefData = FastGraphPreferenceData.load(trainGraph);
         
-        greader = new TextGraphReader<>(directed, weightedClasses, false, "\t", Parsers.lp);
+        greader = new ParallelTextGraphReader(directed, weightedClasses, false, '\t');
         FastGraph<Long> testGraph = (FastGraph<Long>) greader.read(test, weightedClasses, false);
         
         b = System.currentTimeMillis();
@@ -287,9 +286,9 @@ public class LETORFeatureGenerator
         // Then, read the training graph for the features.
         if(weightedSampling != weightedFeatures)
         {
-            greader = new TextGraphReader<>(directed, weightedFeatures, false, "\t", Parsers.lp);
+            greader = new ParallelTextGraphReader(directed, weightedFeatures, false, '\t');
             defTrainGraph = (FastGraph<Long>) greader.read(train, weightedFeatures, false);
-            defPrefData = GraphSimpleFastPreferenceData.load(defTrainGraph);
+            defPrefData = FastGraphPreferenceData.load(defTrainGraph);
         }
         else
         {
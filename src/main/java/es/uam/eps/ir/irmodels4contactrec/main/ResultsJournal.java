@@ -0,0 +1,497 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the results of the configurations of an experiment. Each time a configuration
+ * finishes, a line containing its name, its execution time and the values of its metrics is appended to
+ * the journal file and flushed, so the results which have already been computed are not lost if the
+ * experiment stops, and a new execution of the same experiment can skip the configurations which are
+ * already in the journal.
+ *
+ * Each line is tagged with an identifier of the inputs of the experiment (for example, fingerprints of
+ * the training and test data), and only those lines with the same identifier are considered. The journal
+ * is locked every time it is read or written, so several processes (possibly in different machines sharing
+ * the same directory) can use the same journal at the same time: every time a configuration is checked,
+ * the lines appended by the other processes are read, so the configurations finished by any of them are
+ * not computed again.
+ *
+ * Before computing a configuration, a process claims it, so the rest of the processes do not compute it
+ * at the same time. Each process using the journal is identified by an owner name, and periodically appends
+ * a heartbeat while it is open. Claims and heartbeats carry the time (in the clock of the machine writing
+ * them) at which they were written. Claims whose owner has closed the journal, or has not written anything
+ * for a while (for instance, because it was killed) are stale, and can be taken by another process. Since
+ * the time is read from the journal, claims left by a dead process are not held again when the journal is
+ * reopened. The clocks of the machines sharing a journal are assumed to be synchronized (up to a small
+ * fraction of the timeout).
+ *
+ * Format of each line, where the END mark allows detecting the lines which were not completely written
+ * (which are ignored):
+ * <ul>
+ *     <li>Results: inputs \t configuration \t time (ms.) \t metric=value \t ... \t END.</li>
+ *     <li>Claims: inputs \t configuration \t START \t owner \t timestamp (ms.) \t END.</li>
+ *     <li>Heartbeats: inputs \t owner \t ALIVE \t timestamp (ms.) \t END (or CLOSED, once the owner closes
+ *     the journal).</li>
+ * </ul>
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ResultsJournal implements Closeable
+{
+    /**
+     * Mark of the end of a line.
+     */
+    private final static String END = "END";
+    /**
+     * Mark of a claim.
+     */
+    private final static String START = "START";
+    /**
+     * Mark of a heartbeat.
+     */
+    private final static String ALIVE = "ALIVE";
+    /**
+     * Mark of the end of an owner.
+     */
+    private final static String CLOSED = "CLOSED";
+    /**
+     * Time (in milliseconds) between the heartbeats of an owner. Configurations claimed by other
+     * processes should not be checked more often than this.
+     */
+    public final static long HEARTBEAT = 60000L;
+    /**
+     * Time (in milliseconds) after which an owner which has not been heard from is considered dead.
+     */
+    private final static long TIMEOUT = 5 * HEARTBEAT;
+    /**
+     * Identifier of the inputs of the experiment.
+     */
+    private final String inputs;
+    /**
+     * The journal file.
+     */
+    private final FileChannel channel;
+    /**
+     * The results of the configurations in the journal.
+     */
+    private final Map<String, Map<String, Double>> results;
+    /**
+     * Owner of the last claim of each configuration.
+     */
+    private final Map<String, String> claims;
+    /**
+     * Last time (as written in the journal) at which each owner wrote a claim or a heartbeat.
+     */
+    private final Map<String, Long> lastSeen;
+    /**
+     * Owners which have closed the journal.
+     */
+    private final Set<String> closed;
+    /**
+     * Name identifying this process (and this journal).
+     */
+    private final String owner;
+    /**
+     * Thread which appends the heartbeats.
+     */
+    private final ScheduledExecutorService heartbeats;
+    /**
+     * Position of the journal up to which lines have already been read.
+     */
+    private long position;
+
+    /**
+     * Constructor. Opens (or creates) a journal, and reads the results stored in it.
+     *
+     * @param path   the path of the journal file.
+     * @param inputs identifier of the inputs of the experiment. It cannot contain tabs or line breaks.
+     *
+     * @throws IOException if the journal cannot be opened or read.
+     */
+    public ResultsJournal(String path, String inputs) throws IOException
+    {
+        this.inputs = inputs;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.results = new HashMap<>();
+        this.claims = new HashMap<>();
+        this.lastSeen = new HashMap<>();
+        this.closed = new HashSet<>();
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        this.position = 0L;
+
+        FileLock lock = this.channel.lock();
+        try
+        {
+            this.refresh();
+        }
+        finally
+        {
+            lock.release();
+        }
+
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "journal-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats.scheduleAtFixedRate(this::heartbeat, 0L, HEARTBEAT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether the results of a configuration are in the journal.
+     *
+     * @param configuration the name of the configuration.
+     *
+     * @return true if the configuration is in the journal, false otherwise.
+     *
+     * @throws IOException if the journal cannot be read.
+     */
+    public synchronized boolean contains(String configuration) throws IOException
+    {
+        if (!this.results.containsKey(configuration))
+        {
+            // Find whether any other process has finished the configuration.
+            FileLock lock = this.channel.lock();
+            try
+            {
+                this.refresh();
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        return this.results.containsKey(configuration);
+    }
+
+    /**
+     * Obtains the values of the metrics of a configuration.
+     *
+     * @param configuration the name of the configuration.
+     *
+     * @return the values of the metrics, or null if the configuration is not in the journal.
+     */
+    public synchronized Map<String, Double> get(String configuration)
+    {
+        Map<String, Double> values = this.results.get(configuration);
+        return values == null ? null : Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Appends the results of a configuration to the journal.
+     *
+     * @param configuration the name of the configuration. It cannot contain tabs or line breaks.
+     * @param time          the execution time of the configuration (in milliseconds).
+     * @param values        the values of the metrics. Metric names cannot contain tabs or line breaks.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    public synchronized void add(String configuration, long time, Map<String, Double> values) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        line.append(configuration).append("\t").append(time);
+        values.forEach((metric, value) -> line.append("\t").append(metric).append("=").append(value));
+
+        FileLock lock = this.channel.lock();
+        try
+        {
+            this.append(line.toString());
+            this.refresh();
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * Tries to claim a configuration, so that no other process computes it at the same time.
+     *
+     * @param configuration the name of the configuration. It cannot contain tabs or line breaks.
+     *
+     * @return ACQUIRED if the configuration has to be computed by this process, FINISHED if its results
+     * are already in the journal, and BUSY if another (live) process is computing it.
+     *
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public synchronized Claim claim(String configuration) throws IOException
+    {
+        FileLock lock = this.channel.lock();
+        try
+        {
+            this.refresh();
+            if (this.results.containsKey(configuration))
+            {
+                return Claim.FINISHED;
+            }
+
+            String current = this.claims.get(configuration);
+            if (current != null && !current.equals(this.owner) && !this.isStale(current))
+            {
+                return Claim.BUSY;
+            }
+
+            this.append(configuration + "\t" + START + "\t" + this.owner + "\t" + System.currentTimeMillis());
+            this.refresh();
+            return Claim.ACQUIRED;
+        }
+        finally
+        {
+            lock.release();
+        }
+    }
+
+    /**
+     * Checks whether the claims of an owner are stale.
+     *
+     * @param owner the owner.
+     *
+     * @return true if the owner has closed the journal, or it has not written anything for a while.
+     */
+    private boolean isStale(String owner)
+    {
+        Long seen = this.lastSeen.get(owner);
+        return this.closed.contains(owner) || seen == null || System.currentTimeMillis() - seen > TIMEOUT;
+    }
+
+    /**
+     * Appends a heartbeat of this process to the journal.
+     */
+    private synchronized void heartbeat()
+    {
+        if (!this.channel.isOpen())
+        {
+            return;
+        }
+
+        try
+        {
+            FileLock lock = this.channel.lock();
+            try
+            {
+                this.append(this.owner + "\t" + ALIVE + "\t" + System.currentTimeMillis());
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ERROR: Could not write a heartbeat to the results journal");
+        }
+    }
+
+    /**
+     * Appends a line to the journal, and flushes it. It must be called while the journal is locked.
+     *
+     * @param content the content of the line, without the inputs and the END mark.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    private void append(String content) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        line.append(this.inputs).append("\t").append(content).append("\t").append(END).append("\n");
+
+        long size = this.channel.size();
+        if (size > 0 && !this.endsWithLineBreak(size))
+        {
+            // The last line was not completely written (the process writing it stopped): discard it.
+            line.insert(0, "\n");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        long pos = size;
+        while (buffer.hasRemaining())
+        {
+            pos += this.channel.write(buffer, pos);
+        }
+        this.channel.force(false);
+    }
+
+    /**
+     * Checks whether the journal ends with a line break.
+     *
+     * @param size the size of the journal.
+     *
+     * @return true if the last byte of the journal is a line break, false otherwise.
+     *
+     * @throws IOException if the journal cannot be read.
+     */
+    private boolean endsWithLineBreak(long size) throws IOException
+    {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return this.channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Reads the complete lines appended to the journal since the last time it was read.
+     * It must be called while the journal is locked.
+     *
+     * @throws IOException if the journal cannot be read.
+     */
+    private void refresh() throws IOException
+    {
+        long size = this.channel.size();
+        if (size <= this.position)
+        {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - this.position));
+        long pos = this.position;
+        while (buffer.hasRemaining() && pos < size)
+        {
+            int read = this.channel.read(buffer, pos);
+            if (read < 0)
+            {
+                break;
+            }
+            pos += read;
+        }
+
+        // Only complete lines are read: the rest is read once it is completed.
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        while (end > 0 && bytes[end - 1] != '\n')
+        {
+            --end;
+        }
+        if (end == 0)
+        {
+            return;
+        }
+
+        String text = new String(bytes, 0, end, StandardCharsets.UTF_8);
+        for (String line : text.split("\n"))
+        {
+            this.parse(line);
+        }
+        this.position += end;
+    }
+
+    /**
+     * Reads a line of the journal. Lines which do not belong to the same inputs, or which are not
+     * correctly formatted, are ignored.
+     *
+     * @param line the line.
+     */
+    private void parse(String line)
+    {
+        String[] split = line.split("\t");
+        if (split.length < 4 || !split[0].equals(this.inputs) || !split[split.length - 1].equals(END))
+        {
+            return;
+        }
+
+        try
+        {
+            if (split[2].equals(START) && split.length == 6)
+            {
+                this.lastSeen.merge(split[3], Long.parseLong(split[4]), Math::max);
+                this.claims.put(split[1], split[3]);
+                return;
+            }
+            else if ((split[2].equals(ALIVE) || split[2].equals(CLOSED)) && split.length == 5)
+            {
+                this.lastSeen.merge(split[1], Long.parseLong(split[3]), Math::max);
+                if (split[2].equals(CLOSED))
+                {
+                    this.closed.add(split[1]);
+                }
+                return;
+            }
+
+            Long.parseLong(split[2]);
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (int i = 3; i < split.length - 1; ++i)
+            {
+                int eq = split[i].lastIndexOf('=');
+                if (eq < 0)
+                {
+                    return;
+                }
+                values.put(split[i].substring(0, eq), Double.parseDouble(split[i].substring(eq + 1)));
+            }
+            this.results.put(split[1], values);
+        }
+        catch (NumberFormatException nfe)
+        {
+            // Incorrectly formatted line: ignore it.
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.heartbeats.shutdownNow();
+        try
+        {
+            // Release the claims of this process which were not finished.
+            FileLock lock = this.channel.lock();
+            try
+            {
+                this.append(this.owner + "\t" + CLOSED + "\t" + System.currentTimeMillis());
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        finally
+        {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Result of trying to claim a configuration.
+     */
+    public enum Claim
+    {
+        /**
+         * The configuration has been claimed by this process, which has to compute it.
+         */
+        ACQUIRED,
+        /**
+         * The results of the configuration are already in the journal.
+         */
+        FINISHED,
+        /**
+         * Another process is computing the configuration.
+         */
+        BUSY
+    }
+}
@@ -11,13 +11,13 @@ package es.uam.eps.ir.irmodels4contactrec.main;
 
 import es.uam.eps.ir.irmodels4contactrec.data.FastGraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.data.GraphIndex;
-import es.uam.eps.ir.irmodels4contactrec.data.GraphSimpleFastPreferenceData;
+import es.uam.eps.ir.irmodels4contactrec.data.FastGraphPreferenceData;
 import es.uam.eps.ir.irmodels4contactrec.graph.Adapters;
 import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.graph.io.TextGraphReader;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.*;
 import es.uam.eps.ir.irmodels4contactrec.recommender.SocialFastFilters;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRecommenderRunner;
 import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.basic.Random;
 import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
@@ -26,8 +26,6 @@ import es.uam.eps.ir.ranksys.metrics.basic.AverageRecommendationMetric;
 import es.uam.eps.ir.ranksys.metrics.basic.NDCG;
 import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.rec.runner.RecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilterRecommenderRunner;
-import es.uam.eps.ir.ranksys.rec.runner.fast.FastFilters;
 import org.ranksys.core.util.tuples.Tuple2od;
 import org.ranksys.formats.parsing.Parsers;
 
@@ -54,8 +52,8 @@ public class Validation
      *
      * @param args Execution arguments:
      *             <ol>
-     *               <li><b>Train:</b> Route to the file containing the training graph.</li>
-     *               <li><b>Validation:</b> Route to the file containing the validation links.</li>
+     *               <li><b>Train:</b> Route to the file containing the training graph (edge list or binary graph snapshot).</li>
+     *               <li><b>Validation:</b> Route to the file containing the validation links (edge list or binary graph snapshot).</li>
      *               <li><b>Algorithms:</b> Route to an XML file containing the recommender configurations</li>
      *               <li><b>Output directory:</b> Directory in which to store the recommendations and the output file.</li>
      *               <li><b>Directed:</b> True if the network is directed, false otherwise.</li>
@@ -70,8 +68,8 @@ public class Validation
         {
             System.err.println("Invalid arguments.");
             System.err.println("Usage:");
-            System.err.println("\tTrain: Route to the file containing the training graph.");
-            System.err.println("\tValidation: Route to the file containing the validation links.");
+            System.err.println("\tTrain: Route to the file containing the training graph (edge list or binary graph snapshot).");
+            System.err.println("\tValidation: Route to the file containing the validation links (edge list or binary graph snapshot).");
             System.err.println("\tAlgorithms: Route to an XML file containing the recommender configuration. Only algorithms with a version without term discrimination will be executed.");
             System.err.println("\tOutput directory: Directory in which to store the recommendations and the output files.");
             System.err.println("\tDirected: True if the network is directed, false otherwise.");
@@ -93,24 +91,19 @@ public class Validation
 
         long timea = System.currentTimeMillis();
         // Read the training graph.
-        TextGraphReader<Long> weightedReader = new TextGraphReader<>(directed, true, false,"\t", Parsers.lp);
-        FastGraph<Long> weightedGraph = (FastGraph<Long>) weightedReader.read(trainDataPath, true, false);
-        if (weightedGraph == null)
-        {
-            System.err.println("ERROR: Could not read the training graph");
-            return;
-        }
-
-        TextGraphReader<Long> unweightedReader = new TextGraphReader<>(directed, false, false, "\t", Parsers.lp);
-        FastGraph<Long> unweightedGraph = (FastGraph<Long>) unweightedReader.read(trainDataPath, false, false);
-        if (unweightedGraph == null)
+        FastGraph<Long> auxWeightedGraph = AuxiliarMethods.readGraph(trainDataPath, directed, true);
+        if (auxWeightedGraph == null)
         {
             System.err.println("ERROR: Could not read the training graph");
             return;
         }
+        // The training graph is never modified: store it in a compact read-only structure.
+        FastGraph<Long> weightedGraph = auxWeightedGraph.freeze();
+        // The unweighted version of the graph shares the index and edges of the weighted one.
+        FastGraph<Long> unweightedGraph = weightedGraph.unweighted();
 
         // Read the test graph.
-        Graph<Long> auxgraph = unweightedReader.read(validationDataPath, false, false);
+        Graph<Long> auxgraph = AuxiliarMethods.readGraph(validationDataPath, directed, false);
         FastGraph<Long> validationGraph = (FastGraph<Long>) Adapters.onlyTrainUsers(auxgraph, unweightedGraph);
         if (validationGraph == null)
         {
@@ -122,11 +115,11 @@ public class Validation
         System.out.println("Data read (" + (timeb - timea) + " ms.)");
 
         // Read the training and test data
-        FastPreferenceData<Long, Long> unweightedTrainData = GraphSimpleFastPreferenceData.load(unweightedGraph);
-        FastPreferenceData<Long, Long> weightedTrainData = GraphSimpleFastPreferenceData.load(weightedGraph);
+        FastPreferenceData<Long, Long> unweightedTrainData = FastGraphPreferenceData.load(unweightedGraph);
+        FastPreferenceData<Long, Long> weightedTrainData = weighted ? FastGraphPreferenceData.load(weightedGraph) : unweightedTrainData;
 
         FastPreferenceData<Long, Long> validationData;
-        validationData = GraphSimpleFastPreferenceData.load(validationGraph);
+        validationData = FastGraphPreferenceData.load(validationGraph);
         GraphIndex<Long> index = new FastGraphIndex<>(unweightedGraph);
 
         // Read the XML containing the parameter grid for each algorithm
@@ -134,8 +127,14 @@ public class Validation
         gridreader.readDocument();
 
         Set<String> algorithms = gridreader.getAlgorithms();
+        // Configurations are run longest-first, on a dedicated pool.
+        GridScheduler scheduler = new GridScheduler(unweightedGraph);
+        // The users excluded from the recommendation are the same for every algorithm.
+        Function<Long, IntPredicate> filter = SocialFastFilters.notNeighbours(unweightedGraph);
 
         int numUsers = validationData.numUsersWithPreferences();
+        // Identifier of the inputs, so that results of previous executions are only reused for the same data.
+        String inputs = weightedGraph.fingerprint() + "_" + validationGraph.fingerprint() + "_" + maxLength + "_" + weighted;
 
         // For each algorithm.
         algorithms.forEach(algorithm ->
@@ -154,9 +153,7 @@ public class Validation
             AlgorithmGridSelector<Long> algorithmSelector = new AlgorithmGridSelector<>();
 
             // Configure the recommender runner
-            @SuppressWarnings("unchecked")
-            Function<Long, IntPredicate> filter = FastFilters.and(FastFilters.notInTrain(unweightedTrainData), FastFilters.notSelf(index), SocialFastFilters.notReciprocal(unweightedGraph, index));
-            RecommenderRunner<Long, Long> runner = new FastFilterRecommenderRunner<>(index, index, validationData.getUsersWithPreferences(), filter, maxLength);
+            RecommenderRunner<Long, Long> runner = new UserFastRecommenderRunner<>(index, validationData.getUsersWithPreferences(), filter, maxLength);
             List<Parameters> configurations = confs.getConfigurations();
 
             if(algorithm.equals(AlgorithmIdentifiers.IB) || algorithm.equals(AlgorithmIdentifiers.UB))
@@ -181,26 +178,27 @@ public class Validation
 
                     List<Parameters> configs = similarityDivision.get(sim);
 
-                    Validation.executeValidation(algorithm, configs, algorithmSelector,
+                    Validation.executeValidation(algorithm, configs, algorithmSelector, scheduler,
                                                     validationData, runner,
                                                     weightedGraph, unweightedGraph, weightedTrainData, unweightedTrainData,
                                                     numUsers, maxLength, weighted, printRecs,
-                                                    directorySim, outputPath, algorithm+"_"+sim);
+                                                    directorySim, outputPath, algorithm+"_"+sim, inputs);
 
                 });
             }
             else
             {
-                Validation.executeValidation(algorithm, configurations, algorithmSelector,
+                Validation.executeValidation(algorithm, configurations, algorithmSelector, scheduler,
                         validationData, runner,
                         weightedGraph, unweightedGraph, weightedTrainData, unweightedTrainData,
                         numUsers, maxLength, weighted, printRecs,
-                        directory, outputPath, algorithm);
+                        directory, outputPath, algorithm, inputs);
 
             }
             long timecc = System.currentTimeMillis();
             System.out.println("-------- Finished algorithm " + algorithm + " (" + (timecc-timeaa) + " ms.) --------");
         });
+        scheduler.shutdown();
     }
 
 
@@ -209,6 +207,7 @@ public class Validation
      * @param algorithm the algorithm identifier.
      * @param configurations the list of configurations of the algorithm.
      * @param algorithmSelector algorithm selector.
+     * @param scheduler scheduler for running the configurations.
      * @param validationData validation data.
      * @param runner recommder runner.
      * @param weightedGraph weighted training graph.
@@ -222,70 +221,99 @@ public class Validation
      * @param directory directory to store the recommendations.
      * @param outputPath directory where to store the ranking.
      * @param confname name of the ranking file.
+     * @param inputs identifier of the inputs of the validation, for the results journal.
      */
-    private static void executeValidation(String algorithm, List<Parameters> configurations, AlgorithmGridSelector<Long> algorithmSelector,
+    private static void executeValidation(String algorithm, List<Parameters> configurations, AlgorithmGridSelector<Long> algorithmSelector, GridScheduler scheduler,
                                           FastPreferenceData<Long,Long> validationData, RecommenderRunner<Long, Long> runner,
                                           FastGraph<Long> weightedGraph, FastGraph<Long> unweightedGraph,
                                           FastPreferenceData<Long, Long> weightedTrainData, FastPreferenceData<Long, Long> unweightedTrainData,
                                           int numUsers, int maxLength, boolean weighted,
-                                          boolean printRecs, String directory, String outputPath, String confname)
+                                          boolean printRecs, String directory, String outputPath, String confname, String inputs)
     {
         int totalCount = configurations.size();
         AtomicInteger counter = new AtomicInteger();
         long timeaa = System.currentTimeMillis();
         PriorityBlockingQueue<Tuple2od<String>> ranking = new PriorityBlockingQueue<>(totalCount, (x, y) -> Double.compare(y.v2, x.v2));
+        // Results are stored as soon as each configuration finishes, so they can be reused if the validation is run again.
+        ResultsJournal journal = AuxiliarMethods.openJournal(outputPath + "validation_" + confname + ".journal", inputs);
 
         // Now, execute each possible variant.
-        configurations.parallelStream().forEach(parameters ->
+        scheduler.runDeferring(configurations, parameters -> scheduler.estimateCost(algorithm, parameters), parameters ->
         {
             Tuple2oo<String, RecommendationAlgorithmFunction<Long>> algSupp = algorithmSelector.getRecommender(algorithm, parameters);
             String algorithmName = algSupp.v1();
 
-            // First, obtain the metric.
-            NDCG.NDCGRelevanceModel<Long, Long> ndcgModel = new NDCG.NDCGRelevanceModel<>(false, validationData, 0.5);
-            SystemMetric<Long, Long> nDCG = new AverageRecommendationMetric<>(new NDCG<>(maxLength, ndcgModel), numUsers);
-
             try {
-                Recommender<Long, Long> weightedAlg = new Random<>(unweightedGraph);
-                Recommender<Long, Long> unweightedAlg = algSupp.v2().apply(unweightedGraph, unweightedTrainData);
-
-                if (weighted) {
-                    weightedAlg = algSupp.v2().apply(weightedGraph, weightedTrainData);
+                ResultsJournal.Claim claim = journal == null ? ResultsJournal.Claim.ACQUIRED : journal.claim(algorithmName);
+                Map<String, Double> values;
+                if (claim == ResultsJournal.Claim.BUSY)
+                {
+                    // Another process is running the configuration: check it again later.
+                    System.out.println("Algorithm " + algorithmName + " is running in another process: deferred");
+                    return false;
+                }
+                else if (claim == ResultsJournal.Claim.FINISHED)
+                {
+                    // The configuration was already finished by a previous execution (or by another process).
+                    values = journal.get(algorithmName);
                 }
+                else
+                {
+                    long start = System.currentTimeMillis();
 
-                double weightedValue = 0;
-                double unweightedValue;
+                    // First, obtain the metric.
+                    NDCG.NDCGRelevanceModel<Long, Long> ndcgModel = new NDCG.NDCGRelevanceModel<>(false, validationData, 0.5);
+                    SystemMetric<Long, Long> nDCG = new AverageRecommendationMetric<>(new NDCG<>(maxLength, ndcgModel), numUsers);
+
+                    Recommender<Long, Long> weightedAlg = new Random<>(unweightedGraph);
+                    Recommender<Long, Long> unweightedAlg = algSupp.v2().apply(unweightedGraph, unweightedTrainData);
 
-                if (printRecs) // If we want to print the recommendations
-                {
                     if (weighted) {
-                        weightedValue = AuxiliarMethods.computeAndEvaluate(directory + "wei_" + algorithmName + ".txt", weightedAlg, runner, nDCG);
+                        weightedAlg = algSupp.v2().apply(weightedGraph, weightedTrainData);
                     }
-                    unweightedValue = AuxiliarMethods.computeAndEvaluate(directory + (weighted ? "unw_" : "") + algorithmName + ".txt", unweightedAlg, runner, nDCG);
-                } else // Otherwise
-                {
-                    if (weighted) {
-                        weightedValue = AuxiliarMethods.computeAndEvaluate(weightedAlg, runner, nDCG);
+
+                    double weightedValue = 0;
+                    double unweightedValue;
+
+                    if (printRecs) // If we want to print the recommendations
+                    {
+                        if (weighted) {
+                            weightedValue = AuxiliarMethods.computeAndEvaluate(directory + "wei_" + algorithmName + ".txt", weightedAlg, runner, nDCG);
+                        }
+                        unweightedValue = AuxiliarMethods.computeAndEvaluate(directory + (weighted ? "unw_" : "") + algorithmName + ".txt", unweightedAlg, runner, nDCG);
+                    } else // Otherwise
+                    {
+                        if (weighted) {
+                            weightedValue = AuxiliarMethods.computeAndEvaluate(weightedAlg, runner, nDCG);
+                        }
+                        unweightedValue = AuxiliarMethods.computeAndEvaluate(unweightedAlg, runner, nDCG);
                     }
-                    unweightedValue = AuxiliarMethods.computeAndEvaluate(unweightedAlg, runner, nDCG);
-                }
 
+                    // Obtain the nDCG values of the variants.
+                    values = new LinkedHashMap<>();
+                    if (weighted) {
+                        values.put("wei_" + algorithmName, weightedValue);
+                        values.put("unw_" + algorithmName, unweightedValue);
+                    } else {
+                        values.put(algorithmName, unweightedValue);
+                    }
 
-                // Store the nDCG values.
-                if (weighted) {
-                    ranking.add(new Tuple2od<>("wei_" + algorithmName, weightedValue));
-                    ranking.add(new Tuple2od<>("unw_" + algorithmName, unweightedValue));
-                } else {
-                    ranking.add(new Tuple2od<>(algorithmName, unweightedValue));
+                    if (journal != null) {
+                        journal.add(algorithmName, System.currentTimeMillis() - start, values);
+                    }
                 }
 
+                // Store the nDCG values.
+                values.forEach((variant, value) -> ranking.add(new Tuple2od<>(variant, value)));
             } catch (IOException ioe) {
                 System.err.println("ERROR: Something failed while executing " + algorithmName);
             }
 
             long timebb = System.currentTimeMillis();
             System.out.println("Algorithm " + counter.incrementAndGet() + "/" + totalCount + ": " + algorithmName + " finished (" + (timebb - timeaa) + " ms.)");
-        });
+            return true;
+        }, ResultsJournal.HEARTBEAT);
+        AuxiliarMethods.closeJournal(journal);
 
         try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath + "validation_" + confname + ".txt")))) {
             bw.write("Ranking\tVariant\tnDCG@" + maxLength);
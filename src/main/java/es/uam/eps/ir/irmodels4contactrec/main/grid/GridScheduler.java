@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.main.grid;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import static es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmIdentifiers.*;
+
+/**
+ * Scheduler for the execution of the configurations of a grid. Configurations are run on a dedicated
+ * fork-join pool, starting by the most expensive ones, so a slow configuration does not delay the end of
+ * the whole grid. Idle threads take the next configuration, or, when no configuration is left, steal
+ * work from the configurations which are still running: parallel streams (as the ones used for
+ * recommending the different target users) run on the pool of the thread which starts them, so the
+ * configuration and user levels share the same threads, and the pool is never oversubscribed.
+ *
+ * The cost of each configuration is estimated from the algorithm, its parameters and some statistics
+ * of the training graph. These estimations are only relative (they are used for sorting the configurations).
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class GridScheduler
+{
+    /**
+     * Estimated number of iterations of the algorithms which run until convergence.
+     */
+    private final static int ITERATIONS = 50;
+    /**
+     * The pool for running the configurations.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Number of nodes in the training graph.
+     */
+    private final double numNodes;
+    /**
+     * Number of edges in the training graph.
+     */
+    private final double numEdges;
+    /**
+     * Average number of paths of length two starting in a node.
+     */
+    private final double numPaths;
+
+    /**
+     * Constructor. Uses as many threads as available processors.
+     *
+     * @param graph the training graph.
+     */
+    public GridScheduler(FastGraph<?> graph)
+    {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param graph       the training graph.
+     * @param parallelism the number of threads.
+     */
+    public GridScheduler(FastGraph<?> graph, int parallelism)
+    {
+        this.pool = new ForkJoinPool(parallelism);
+        this.numNodes = Math.max(1.0, graph.getVertexCount());
+        this.numEdges = graph.getEdgeCount();
+        this.numPaths = graph.getAllNodesIds().mapToDouble(uidx ->
+        {
+            double size = graph.getNeighborhoodSize(uidx, EdgeOrientation.UND);
+            return size * size;
+        }).sum() / this.numNodes;
+    }
+
+    /**
+     * Runs a set of configurations, from the most to the least expensive one, and waits until
+     * all of them have finished.
+     *
+     * @param configurations the configurations.
+     * @param cost           function estimating the cost of each configuration.
+     * @param action         action to run for each configuration.
+     * @param <T>            type of the configurations.
+     */
+    public <T> void run(Collection<T> configurations, ToDoubleFunction<T> cost, Consumer<T> action)
+    {
+        List<T> sorted = new ArrayList<>(configurations);
+        sorted.sort(Comparator.comparingDouble(cost).reversed());
+
+        // Tasks submitted from outside the pool are taken in the order they were submitted.
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        sorted.forEach(conf -> tasks.add(this.pool.submit(() -> action.accept(conf))));
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    /**
+     * Runs a set of configurations, from the most to the least expensive one, and waits until
+     * all of them have finished. The action might defer a configuration (for instance, because another
+     * process is running it): the deferred configurations are run again, after some delay, until none
+     * of them is deferred.
+     *
+     * @param configurations the configurations.
+     * @param cost           function estimating the cost of each configuration.
+     * @param action         action to run for each configuration. It returns false if the configuration is deferred.
+     * @param delay          time (in milliseconds) to wait before running the deferred configurations again.
+     * @param <T>            type of the configurations.
+     */
+    public <T> void runDeferring(Collection<T> configurations, ToDoubleFunction<T> cost, Predicate<T> action, long delay)
+    {
+        Collection<T> pending = configurations;
+        while (!pending.isEmpty())
+        {
+            Collection<T> deferred = new ConcurrentLinkedQueue<>();
+            this.run(pending, cost, conf ->
+            {
+                if (!action.test(conf))
+                {
+                    deferred.add(conf);
+                }
+            });
+
+            pending = deferred;
+            if (!pending.isEmpty())
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    System.err.println("ERROR: Interrupted while waiting for " + pending.size() + " deferred configurations");
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of recommending a user with a configuration of an algorithm.
+     *
+     * @param algorithm  the algorithm identifier.
+     * @param parameters the parameters of the configuration.
+     *
+     * @return the estimated cost.
+     */
+    public double estimateCost(String algorithm, Parameters parameters)
+    {
+        double avgDegree = this.numEdges / this.numNodes;
+        double exact = ITERATIONS * (this.numEdges + this.numNodes);
+        switch (algorithm)
+        {
+            case RANDOM:
+            case POP:
+                return this.numNodes;
+            case IMF:
+            {
+                Integer k = parameters.getIntegerValue("k");
+                return (k == null ? 1.0 : k) * this.numNodes;
+            }
+            case UB:
+            case IB:
+            {
+                Integer k = parameters.getIntegerValue("k");
+                return 2.0 * this.numPaths + (k == null ? this.numNodes : k) * avgDegree;
+            }
+            case PERSPAGERANK:
+            {
+                Double r = parameters.getDoubleValue("r");
+                Double epsilon = parameters.getDoubleValue("epsilon");
+                Integer walks = parameters.getIntegerValue("walks");
+                double teleport = (r == null || r <= 0.0) ? 1.0 : r;
+                if (walks != null)
+                {
+                    return Math.min(exact, walks / teleport);
+                }
+                else if (epsilon != null && epsilon > 0.0)
+                {
+                    return Math.min(exact, avgDegree / (teleport * epsilon));
+                }
+                return exact;
+            }
+            case MONEY:
+            {
+                Double alpha = parameters.getDoubleValue("alpha");
+                Double epsilon = parameters.getDoubleValue("epsilon");
+                Integer maxIter = parameters.getIntegerValue("maxIter");
+                if (epsilon != null && epsilon > 0.0)
+                {
+                    double teleport = (alpha == null || alpha <= 0.0) ? 1.0 : alpha;
+                    return Math.min(exact, avgDegree / (teleport * epsilon));
+                }
+                return (maxIter == null ? ITERATIONS : Math.min(maxIter, ITERATIONS)) * (this.numEdges + this.numNodes);
+            }
+            default:
+                // IR models and friends of friends: they visit the paths of length two from the target user.
+                return this.numPaths + this.numNodes;
+        }
+    }
+
+    /**
+     * Estimates the cost of recommending a user with a configuration of an algorithm, given its name.
+     * The algorithm is identified by the start of the name, and its default parameters are considered.
+     *
+     * @param name the name of the configuration.
+     *
+     * @return the estimated cost.
+     */
+    public double estimateCost(String name)
+    {
+        String algorithm = "";
+        for (String identifier : new String[]{BIR, BM25, EBM25, QLJM, QLD, QLL, VSM, PL2, DLH, DPH, DFREE, DFREEKLIM,
+                                              ADAMIC, JACCARD, MCN, COSINE, PERSPAGERANK, MONEY, IMF, UB, IB, POP, RANDOM})
+        {
+            if (name.startsWith(identifier) && identifier.length() > algorithm.length())
+            {
+                algorithm = identifier;
+            }
+        }
+        return this.estimateCost(algorithm, new Parameters());
+    }
+
+    /**
+     * Stops the threads of the scheduler.
+     */
+    public void shutdown()
+    {
+        this.pool.shutdown();
+    }
+}
@@ -9,6 +9,7 @@
 
 package es.uam.eps.ir.irmodels4contactrec.main.grid.knn.similarities.ir;
 
+import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.Grid;
@@ -40,6 +41,10 @@ public class DLHSimilarityGridSearch<U> implements SimilarityGridSearch<U>
      * Identifier for the selection of neighbors for the neighbor user.
      */
     private final String VSEL = "vSel";
+    /**
+     * Identifier for the directory where the Terrier indexes are stored (optional).
+     */
+    private final String INDEX = "index";
     
     @Override
     public Map<String, SimilarityFunction<U>> grid(Grid grid)
@@ -52,11 +57,14 @@ public class DLHSimilarityGridSearch<U> implements SimilarityGridSearch<U>
         {
             return sims;
         }
+
+        List<String> directories = grid.getStringValues(INDEX);
+        String directory = directories.isEmpty() ? null : directories.get(0);
         
         uSels.forEach(uSel ->
             vSels.forEach(vSel ->
                 sims.put(DLH + "_" + uSel + "_" + vSel, (FastGraph<U> graph, FastPreferenceData<U,U> prefData) ->
-                   new DLHSimilarity(graph, uSel, vSel))));
+                   directory == null ? new DLHSimilarity(graph, uSel, vSel) : new DLHSimilarity(graph, uSel, vSel, new TerrierStructure(graph, directory)))));
         
         return sims;
     }
@@ -73,10 +81,14 @@ public class DLHSimilarityGridSearch<U> implements SimilarityGridSearch<U>
             return sims;
         }
 
+        // The indexes are shared by all the configurations.
+        List<String> directories = grid.getStringValues(INDEX);
+        TerrierStructure structure = directories.isEmpty() ? new TerrierStructure(graph) : new TerrierStructure(graph, directories.get(0));
+
         uSels.forEach(uSel ->
             vSels.forEach(vSel ->
                 sims.put(DLH + "_" + uSel + "_" + vSel, () ->
-                    new DLHSimilarity(graph, uSel, vSel))));
+                    new DLHSimilarity(graph, uSel, vSel, structure))));
         
         return sims;
     }
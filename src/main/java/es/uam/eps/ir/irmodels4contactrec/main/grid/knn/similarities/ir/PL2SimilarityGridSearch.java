@@ -9,6 +9,7 @@
 
 package es.uam.eps.ir.irmodels4contactrec.main.grid.knn.similarities.ir;
 
+import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.Grid;
@@ -44,6 +45,10 @@ public class PL2SimilarityGridSearch<U> implements SimilarityGridSearch<U>
      * Identifier for the selection of neighbors of the common neighbors between both users.
      */
     private final String LAMBDA = "lambda";
+    /**
+     * Identifier for the directory where the Terrier indexes are stored (optional).
+     */
+    private final String INDEX = "index";
     
     @Override
     public Map<String, SimilarityFunction<U>> grid(Grid grid)
@@ -57,12 +62,15 @@ public class PL2SimilarityGridSearch<U> implements SimilarityGridSearch<U>
         {
             return sims;
         }
+
+        List<String> directories = grid.getStringValues(INDEX);
+        String directory = directories.isEmpty() ? null : directories.get(0);
         
         uSels.forEach(uSel ->
             vSels.forEach(vSel ->
                 lambdas.forEach(lambda ->
                     sims.put(PL2 + "_" + uSel + "_" + vSel + "_" + lambda, (FastGraph<U> graph, FastPreferenceData<U,U> prefData) ->
-                       new PL2Similarity(graph, uSel, vSel, lambda)))));
+                       directory == null ? new PL2Similarity(graph, uSel, vSel, lambda) : new PL2Similarity(graph, uSel, vSel, new TerrierStructure(graph, directory), lambda)))));
         
         return sims;
     }
@@ -80,11 +88,15 @@ public class PL2SimilarityGridSearch<U> implements SimilarityGridSearch<U>
             return sims;
         }
 
+        // The indexes are shared by all the configurations.
+        List<String> directories = grid.getStringValues(INDEX);
+        TerrierStructure structure = directories.isEmpty() ? new TerrierStructure(graph) : new TerrierStructure(graph, directories.get(0));
+
         uSels.forEach(uSel ->
             vSels.forEach(vSel ->
                 lambdas.forEach(lambda ->
                     sims.put(PL2 + "_" + uSel + "_" + vSel + "_" + lambda, () ->
-                        new PL2Similarity(graph, uSel, vSel, lambda)))));
+                        new PL2Similarity(graph, uSel, vSel, structure, lambda)))));
         
         return sims;
     }
@@ -12,6 +12,7 @@ import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmGridSearch;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.Grid;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.RecommendationAlgorithmFunction;
+import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk.ForwardPushMoney;
 import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk.Money;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.rec.Recommender;
@@ -27,6 +28,11 @@ import static es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmIdentifiers.M
 
 /**
  * Grid search generator for Personalized SALSA algorithm.
+ * <p>
+ * By default, the iterative algorithm is used, with no limit on the number of iterations or the time. The maxIter
+ * and budget (in milliseconds per user) parameters set those limits. If values for the epsilon parameter are
+ * provided, the scores are approximated by the forward push algorithm (an epsilon equal to zero selects the
+ * iterative algorithm).
  * @author Javier Sanz-Cruzado Puig
  * @param <U> Type of the users.
  */
@@ -41,6 +47,18 @@ public class MoneyGridSearch<U> implements AlgorithmGridSearch<U>
      * Teleport rate for the HITS algorithm
      */
     private final static String ALPHA = "alpha";
+    /**
+     * Identifier for the maximum number of iterations
+     */
+    private final static String MAXITER = "maxIter";
+    /**
+     * Identifier for the maximum time (in milliseconds) for each user
+     */
+    private final static String BUDGET = "budget";
+    /**
+     * Identifier for the residual threshold of the forward push algorithm
+     */
+    private final static String EPSILON = "epsilon";
 
     @Override
     public Map<String, RecommendationAlgorithmFunction<U>> grid(Grid grid)
@@ -49,9 +67,21 @@ public class MoneyGridSearch<U> implements AlgorithmGridSearch<U>
         
         List<Boolean> modes = grid.getBooleanValues(MODE);
         List<Double> alphas = grid.getDoubleValues(ALPHA);
+        List<Double> epsilons = grid.getDoubleValues(EPSILON);
+        int maxIter = grid.getIntegerValues(MAXITER).isEmpty() ? Integer.MAX_VALUE : grid.getIntegerValues(MAXITER).get(0);
+        long budget = grid.getLongValues(BUDGET).isEmpty() ? 0L : grid.getLongValues(BUDGET).get(0);
+
         alphas.forEach(alpha ->
             modes.forEach(mode ->
-                recs.put(MONEY + "_" + (mode ? "auth" : "hubs") + "_" + alpha, (graph, prefData) -> new Money<>(graph, mode, alpha))));
+            {
+                String name = MONEY + "_" + (mode ? "auth" : "hubs") + "_" + alpha;
+                if (epsilons.isEmpty() || epsilons.contains(0.0))
+                {
+                    recs.put(name, (graph, prefData) -> new Money<>(graph, mode, alpha, maxIter, budget));
+                }
+                epsilons.stream().filter(epsilon -> epsilon > 0.0).forEach(epsilon ->
+                    recs.put(name + "_push_" + epsilon, (graph, prefData) -> new ForwardPushMoney<>(graph, mode, alpha, epsilon)));
+            }));
         return recs;
     }
 
@@ -62,10 +92,21 @@ public class MoneyGridSearch<U> implements AlgorithmGridSearch<U>
         
         List<Boolean> modes = grid.getBooleanValues(MODE);
         List<Double> alphas = grid.getDoubleValues(ALPHA);
+        List<Double> epsilons = grid.getDoubleValues(EPSILON);
+        int maxIter = grid.getIntegerValues(MAXITER).isEmpty() ? Integer.MAX_VALUE : grid.getIntegerValues(MAXITER).get(0);
+        long budget = grid.getLongValues(BUDGET).isEmpty() ? 0L : grid.getLongValues(BUDGET).get(0);
 
         alphas.forEach(alpha ->
                 modes.forEach(mode ->
-                        recs.put(MONEY + "_" + (mode ? "auth" : "hubs") + "_" + alpha, () -> new Money<>(graph, mode, alpha))));
+                {
+                    String name = MONEY + "_" + (mode ? "auth" : "hubs") + "_" + alpha;
+                    if (epsilons.isEmpty() || epsilons.contains(0.0))
+                    {
+                        recs.put(name, () -> new Money<>(graph, mode, alpha, maxIter, budget));
+                    }
+                    epsilons.stream().filter(epsilon -> epsilon > 0.0).forEach(epsilon ->
+                            recs.put(name + "_push_" + epsilon, () -> new ForwardPushMoney<>(graph, mode, alpha, epsilon)));
+                }));
         return recs;
     }
     
@@ -13,6 +13,8 @@ import static es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmIdentifiers.P
 import es.uam.eps.ir.irmodels4contactrec.main.grid.Grid;
 import es.uam.eps.ir.irmodels4contactrec.main.grid.AlgorithmGridSearch;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk.ForwardPushPersonalizedPageRank;
+import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk.MonteCarloPersonalizedPageRank;
 import es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk.PersonalizedPageRank;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +27,11 @@ import es.uam.eps.ir.ranksys.rec.Recommender;
 
 /**
  * Grid search generator for Personalized PageRank algorithm.
+ * <p>
+ * By default, the exact algorithm is used. If values for the epsilon parameter are provided, the values are
+ * approximated by the forward push algorithm (an epsilon equal to zero selects the exact algorithm), and, if
+ * numbers of walks are provided, by Monte Carlo random walks. The batch parameter sets how many users are
+ * computed at once by the exact algorithm (it does not change the results).
  * @author Javier Sanz-Cruzado Puig
  * @param <U> Type of the users.
  */
@@ -34,6 +41,22 @@ public class PersonalizedPageRankGridSearch<U> implements AlgorithmGridSearch<U>
      * Identifier for the teleport parameter
      */
     private final static String R = "r";
+    /**
+     * Identifier for the residual threshold of the forward push algorithm
+     */
+    private final static String EPSILON = "epsilon";
+    /**
+     * Identifier for the number of random walks of the Monte Carlo algorithm
+     */
+    private final static String WALKS = "walks";
+    /**
+     * Identifier for the random seed of the Monte Carlo algorithm
+     */
+    private final static String SEED = "seed";
+    /**
+     * Identifier for the number of users whose exact values are computed at once
+     */
+    private final static String BATCH = "batch";
 
     @Override
     public Map<String, RecommendationAlgorithmFunction<U>> grid(Grid grid)
@@ -41,7 +64,31 @@ public class PersonalizedPageRankGridSearch<U> implements AlgorithmGridSearch<U>
         Map<String, RecommendationAlgorithmFunction<U>> recs = new HashMap<>();
         
         List<Double> rs = grid.getDoubleValues(R);
-        rs.forEach(r -> recs.put(PERSPAGERANK + "_" + r, (graph, prefData) -> new PersonalizedPageRank<>(graph, r)));
+        List<Double> epsilons = grid.getDoubleValues(EPSILON);
+        List<Integer> walks = grid.getIntegerValues(WALKS);
+        long seed = grid.getLongValues(SEED).isEmpty() ? 0L : grid.getLongValues(SEED).get(0);
+        int batch = grid.getIntegerValues(BATCH).isEmpty() ? 1 : grid.getIntegerValues(BATCH).get(0);
+
+        rs.forEach(r ->
+        {
+            if (epsilons.isEmpty() && walks.isEmpty())
+            {
+                recs.put(PERSPAGERANK + "_" + r, (graph, prefData) -> new PersonalizedPageRank<>(graph, r, batch));
+            }
+            epsilons.forEach(epsilon ->
+            {
+                if (epsilon > 0.0)
+                {
+                    recs.put(PERSPAGERANK + "_" + r + "_push_" + epsilon, (graph, prefData) -> new ForwardPushPersonalizedPageRank<>(graph, r, epsilon));
+                }
+                else
+                {
+                    recs.put(PERSPAGERANK + "_" + r, (graph, prefData) -> new PersonalizedPageRank<>(graph, r, batch));
+                }
+            });
+            walks.forEach(numWalks ->
+                recs.put(PERSPAGERANK + "_" + r + "_mc_" + numWalks, (graph, prefData) -> new MonteCarloPersonalizedPageRank<>(graph, r, numWalks, seed)));
+        });
         return recs;   
     }
 
@@ -51,7 +98,31 @@ public class PersonalizedPageRankGridSearch<U> implements AlgorithmGridSearch<U>
         Map<String, Supplier<Recommender<U,U>>> recs = new HashMap<>();
         
         List<Double> rs = grid.getDoubleValues(R);
-        rs.forEach(r -> recs.put(PERSPAGERANK + "_" + r, () -> new PersonalizedPageRank<>(graph, r)));
+        List<Double> epsilons = grid.getDoubleValues(EPSILON);
+        List<Integer> walks = grid.getIntegerValues(WALKS);
+        long seed = grid.getLongValues(SEED).isEmpty() ? 0L : grid.getLongValues(SEED).get(0);
+        int batch = grid.getIntegerValues(BATCH).isEmpty() ? 1 : grid.getIntegerValues(BATCH).get(0);
+
+        rs.forEach(r ->
+        {
+            if (epsilons.isEmpty() && walks.isEmpty())
+            {
+                recs.put(PERSPAGERANK + "_" + r, () -> new PersonalizedPageRank<>(graph, r, batch));
+            }
+            epsilons.forEach(epsilon ->
+            {
+                if (epsilon > 0.0)
+                {
+                    recs.put(PERSPAGERANK + "_" + r + "_push_" + epsilon, () -> new ForwardPushPersonalizedPageRank<>(graph, r, epsilon));
+                }
+                else
+                {
+                    recs.put(PERSPAGERANK + "_" + r, () -> new PersonalizedPageRank<>(graph, r, batch));
+                }
+            });
+            walks.forEach(numWalks ->
+                recs.put(PERSPAGERANK + "_" + r + "_mc_" + numWalks, () -> new MonteCarloPersonalizedPageRank<>(graph, r, numWalks, seed)));
+        });
         return recs;
     }
     
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender;
+
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleConsumer;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleTopK;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Dense accumulator for the scores of the candidate users of a recommendation. Scores are stored in an
+ * array indexed by the identifiers of the users, along with the list of the users which have received a
+ * score, so the accumulator can be reset in time proportional to the number of scored users, and reused
+ * for the next target user.
+ * <p>
+ * A filter can be established, so the candidates it rejects are discarded (and never scored) the first
+ * time they are found.
+ * <p>
+ * Each thread keeps an accumulator, which is obtained with {@link #acquire(int)} and given back with
+ * {@link #release()}.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ScoreAccumulator
+{
+    /**
+     * Accumulator of each thread.
+     */
+    private static final ThreadLocal<ScoreAccumulator> ACCUMULATORS = new ThreadLocal<>();
+
+    /**
+     * State of a user which has not been found yet.
+     */
+    private static final byte UNSEEN = 0;
+    /**
+     * State of a user which has received a score.
+     */
+    private static final byte SCORED = 1;
+    /**
+     * State of a user which has been rejected by the filter.
+     */
+    private static final byte REJECTED = 2;
+
+    /**
+     * Score of each user.
+     */
+    private double[] scores;
+    /**
+     * State of each user (unseen, scored or rejected).
+     */
+    private byte[] states;
+    /**
+     * Users which have received a score, in the order they received it.
+     */
+    private final IntArrayList ids;
+    /**
+     * Users which have been rejected by the filter.
+     */
+    private final IntArrayList rejected;
+    /**
+     * Filter for the candidate users (null if every user is accepted).
+     */
+    private IntPredicate filter;
+    /**
+     * Whether the accumulator is currently being used or not.
+     */
+    private boolean inUse;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the number of users.
+     */
+    public ScoreAccumulator(int capacity)
+    {
+        this.scores = new double[capacity];
+        this.states = new byte[capacity];
+        this.ids = new IntArrayList();
+        this.rejected = new IntArrayList();
+        this.filter = null;
+        this.inUse = false;
+    }
+
+    /**
+     * Obtains the (empty) accumulator of the current thread. If it is already being used (for instance,
+     * when a recommender uses other recommenders), a new accumulator is returned.
+     *
+     * @param capacity the number of users.
+     *
+     * @return the accumulator.
+     */
+    public static ScoreAccumulator acquire(int capacity)
+    {
+        ScoreAccumulator accumulator = ACCUMULATORS.get();
+        if (accumulator == null)
+        {
+            accumulator = new ScoreAccumulator(capacity);
+            ACCUMULATORS.set(accumulator);
+        }
+        else if (accumulator.inUse)
+        {
+            accumulator = new ScoreAccumulator(capacity);
+        }
+        else if (accumulator.scores.length < capacity)
+        {
+            accumulator.scores = new double[capacity];
+            accumulator.states = new byte[capacity];
+        }
+
+        accumulator.inUse = true;
+        return accumulator;
+    }
+
+    /**
+     * Empties the accumulator, and gives it back, so it can be acquired again.
+     */
+    public void release()
+    {
+        this.clear();
+        this.inUse = false;
+    }
+
+    /**
+     * Establishes the filter for the candidate users. It must be set before adding any score.
+     *
+     * @param filter the filter (null if every user is accepted).
+     */
+    public void setFilter(IntPredicate filter)
+    {
+        this.filter = filter;
+    }
+
+    /**
+     * Adds a value to the score of a user. If the user is rejected by the filter, nothing is done.
+     *
+     * @param idx   the identifier of the user.
+     * @param value the value to add.
+     */
+    public void add(int idx, double value)
+    {
+        if (this.states[idx] == SCORED || this.accept(idx))
+        {
+            this.scores[idx] += value;
+        }
+    }
+
+    /**
+     * Sets the score of a user. If the user is rejected by the filter, nothing is done.
+     *
+     * @param idx   the identifier of the user.
+     * @param value the score.
+     */
+    public void set(int idx, double value)
+    {
+        if (this.states[idx] == SCORED || this.accept(idx))
+        {
+            this.scores[idx] = value;
+        }
+    }
+
+    /**
+     * Checks whether a user which has not been scored yet passes the filter, and updates its state.
+     *
+     * @param idx the identifier of the user.
+     *
+     * @return true if the user can receive a score, false otherwise.
+     */
+    private boolean accept(int idx)
+    {
+        if (this.states[idx] == REJECTED)
+        {
+            return false;
+        }
+        else if (this.filter == null || this.filter.test(idx))
+        {
+            this.states[idx] = SCORED;
+            this.ids.add(idx);
+            return true;
+        }
+        else
+        {
+            this.states[idx] = REJECTED;
+            this.rejected.add(idx);
+            return false;
+        }
+    }
+
+    /**
+     * Obtains the score of a user.
+     *
+     * @param idx the identifier of the user.
+     *
+     * @return the score of the user, 0 if it has not been scored.
+     */
+    public double get(int idx)
+    {
+        return this.scores[idx];
+    }
+
+    /**
+     * Checks whether a user has received a score.
+     *
+     * @param idx the identifier of the user.
+     *
+     * @return true if the user has been scored, false otherwise.
+     */
+    public boolean contains(int idx)
+    {
+        return this.states[idx] == SCORED;
+    }
+
+    /**
+     * Obtains the number of users which have received a score.
+     *
+     * @return the number of scored users.
+     */
+    public int size()
+    {
+        return this.ids.size();
+    }
+
+    /**
+     * Applies an action over every scored user.
+     *
+     * @param action the action, which receives the identifier of the user and its score.
+     */
+    public void forEach(IntDoubleConsumer action)
+    {
+        for (int i = 0, size = this.ids.size(); i < size; ++i)
+        {
+            int idx = this.ids.getInt(i);
+            action.accept(idx, this.scores[idx]);
+        }
+    }
+
+    /**
+     * Replaces the score of every scored user.
+     *
+     * @param function function that receives the identifier of the user and its score, and returns the new score.
+     */
+    public void replaceAll(ScoreFunction function)
+    {
+        for (int i = 0, size = this.ids.size(); i < size; ++i)
+        {
+            int idx = this.ids.getInt(i);
+            this.scores[idx] = function.apply(idx, this.scores[idx]);
+        }
+    }
+
+    /**
+     * Removes all the scores and the filter.
+     */
+    public void clear()
+    {
+        for (int i = 0, size = this.ids.size(); i < size; ++i)
+        {
+            int idx = this.ids.getInt(i);
+            this.scores[idx] = 0.0;
+            this.states[idx] = UNSEEN;
+        }
+        for (int i = 0, size = this.rejected.size(); i < size; ++i)
+        {
+            this.states[this.rejected.getInt(i)] = UNSEEN;
+        }
+        this.ids.clear();
+        this.rejected.clear();
+        this.filter = null;
+    }
+
+    /**
+     * Copies the scores into a map.
+     *
+     * @return a map containing the score of every scored user.
+     */
+    public Int2DoubleMap toMap()
+    {
+        Int2DoubleOpenHashMap map = new Int2DoubleOpenHashMap(this.ids.size());
+        map.defaultReturnValue(0.0);
+        this.forEach(map::put);
+        return map;
+    }
+
+    /**
+     * Selects the users with the highest scores.
+     *
+     * @param maxLength maximum number of users to select.
+     *
+     * @return the selected users, sorted by decreasing score.
+     */
+    public List<Tuple2id> top(int maxLength)
+    {
+        IntDoubleTopK topK = new IntDoubleTopK(Math.min(maxLength, this.ids.size()));
+        for (int i = 0, size = this.ids.size(); i < size; ++i)
+        {
+            int idx = this.ids.getInt(i);
+            topK.add(idx, this.scores[idx]);
+        }
+        return topK.toSortedList();
+    }
+
+    /**
+     * Function for transforming the score of a user.
+     */
+    @FunctionalInterface
+    public interface ScoreFunction
+    {
+        /**
+         * Obtains the new score of a user.
+         *
+         * @param idx   the identifier of the user.
+         * @param score the current score.
+         *
+         * @return the new score.
+         */
+        double apply(int idx, double score);
+    }
+}
@@ -10,8 +10,11 @@
 package es.uam.eps.ir.irmodels4contactrec.recommender;
 
 import es.uam.eps.ir.irmodels4contactrec.data.GraphIndex;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
+import java.util.Arrays;
 import java.util.function.Function;
 import java.util.function.IntPredicate;
 
@@ -67,6 +70,60 @@ public class SocialFastFilters
         return uidx -> iidx -> !trainGraph.containsEdge(gindex.uidx2user(iidx), uidx);
     }
 
+    /**
+     * Prevents recommenders from recommending links which are in the training set (in any direction), and users
+     * to themselves. It is equivalent to the combination of the {@link #notReciprocal(FastGraph, GraphIndex)}
+     * and {@link #notSelf(FastGraph)} filters with the filter which removes the training links, but the set of
+     * excluded users of every user is computed only once, and stored as a sorted array of identifiers. Therefore,
+     * the filter can be shared by all the recommenders which run over the same training graph.
+     *
+     * @param <U>        Type of the users.
+     * @param trainGraph The original graph.
+     *
+     * @return the filter.
+     */
+    public static <U> Function<U, IntPredicate> notNeighbours(FastGraph<U> trainGraph)
+    {
+        int numUsers = (int) trainGraph.getVertexCount();
+
+        // Store the excluded users of every user, one after the other.
+        int[] offsets = new int[numUsers + 1];
+        IntArrayList excluded = new IntArrayList();
+        IntArrayList aux = new IntArrayList();
+        for (int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            aux.clear();
+            aux.add(uidx);
+            trainGraph.forEachNeighbor(uidx, EdgeOrientation.UND, (int vidx) -> aux.add(vidx));
+
+            int[] ids = aux.toIntArray();
+            Arrays.sort(ids);
+            int last = -1;
+            for (int vidx : ids)
+            {
+                if (vidx != last)
+                {
+                    excluded.add(vidx);
+                    last = vidx;
+                }
+            }
+            offsets[uidx + 1] = excluded.size();
+        }
+        int[] ids = excluded.toIntArray();
+
+        return u ->
+        {
+            int uidx = trainGraph.object2idx(u);
+            if (uidx < 0)
+            {
+                return iidx -> true;
+            }
+            int start = offsets[uidx];
+            int end = offsets[uidx + 1];
+            return iidx -> Arrays.binarySearch(ids, start, end, iidx) < 0;
+        };
+    }
+
     /**
      * Prevents recommenders from recommending links outside of the network (mainly used for detecting
      * if the links will remain in the network or not.
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender;
+
+/**
+ * Recommender which can organize its work in advance once it knows which users are going to
+ * receive recommendations (for instance, by computing the scores of several of them at once).
+ * The recommender must still work for users which are not in the target set.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public interface TargetUsersAware
+{
+    /**
+     * Indicates the users which are going to receive recommendations, replacing any previous ones.
+     *
+     * @param uidxs the identifiers of the target users, in the order in which they are likely to be requested.
+     */
+    void setTargetUsers(int[] uidxs);
+}
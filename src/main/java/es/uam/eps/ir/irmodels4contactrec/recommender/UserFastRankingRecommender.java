@@ -13,7 +13,14 @@ import es.uam.eps.ir.irmodels4contactrec.data.FastGraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.data.GraphIndex;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
 
 /**
  * Abstract class for user recommendation in social networks.
@@ -62,6 +69,81 @@ public abstract class UserFastRankingRecommender<U> extends FastRankingRecommend
         return this.graph;
     }
 
+    @Override
+    public FastRecommendation getRecommendation(int uidx, int maxLength, IntPredicate filter)
+    {
+        if (uidx == -1)
+        {
+            return new FastRecommendation(uidx, new ArrayList<>(0));
+        }
+
+        return new FastRecommendation(uidx, this.getTopK(uidx, maxLength, filter));
+    }
+
+    /**
+     * Obtains the k candidate users with the highest scores for a target user. The filter is applied
+     * while the scores are accumulated, so rejected candidates are never scored, and only the k best
+     * candidates are kept, in a bounded heap. Subclasses which can bound the scores of the candidates
+     * may override this method to stop before visiting all of them.
+     *
+     * @param uidx   the identifier of the target user.
+     * @param k      the maximum number of candidates to select.
+     * @param filter the filter for the candidates.
+     *
+     * @return the selected candidates, sorted by decreasing score.
+     */
+    public List<Tuple2id> getTopK(int uidx, int k, IntPredicate filter)
+    {
+        ScoreAccumulator scores = ScoreAccumulator.acquire(this.numItems());
+        try
+        {
+            scores.setFilter(filter);
+            this.getScores(uidx, scores);
+            return scores.top(k);
+        }
+        finally
+        {
+            scores.release();
+        }
+    }
+
+    /**
+     * Obtains the scores of the candidate users for a target user. By default, it is computed
+     * from {@link #getScores(int, ScoreAccumulator)}, so subclasses must override (at least) one
+     * of both methods.
+     *
+     * @param uidx the identifier of the target user.
+     *
+     * @return a map containing the scores of the candidate users.
+     */
+    @Override
+    public Int2DoubleMap getScoresMap(int uidx)
+    {
+        ScoreAccumulator scores = ScoreAccumulator.acquire(this.numItems());
+        try
+        {
+            this.getScores(uidx, scores);
+            return scores.toMap();
+        }
+        finally
+        {
+            scores.release();
+        }
+    }
+
+    /**
+     * Accumulates the scores of the candidate users for a target user. By default, the scores
+     * are copied from {@link #getScoresMap(int)}. Subclasses which add up the contributions of many
+     * paths should override this method instead, as the accumulator avoids building a map.
+     *
+     * @param uidx   the identifier of the target user.
+     * @param scores an empty accumulator to store the scores.
+     */
+    protected void getScores(int uidx, ScoreAccumulator scores)
+    {
+        this.getScoresMap(uidx).int2DoubleEntrySet().forEach(entry -> scores.set(entry.getIntKey(), entry.getDoubleValue()));
+    }
+
     /**
      * Obtains the weight of an edge.
      *
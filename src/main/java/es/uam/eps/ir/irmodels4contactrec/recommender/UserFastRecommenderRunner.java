@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender;
+
+import es.uam.eps.ir.ranksys.core.Recommendation;
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.rec.Recommender;
+import es.uam.eps.ir.ranksys.rec.fast.FastRecommender;
+import es.uam.eps.ir.ranksys.rec.runner.RecommenderRunner;
+import org.ranksys.core.util.tuples.Tuple2od;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Recommender runner for contact recommendation, which distributes the target users between the
+ * threads of the current fork-join pool. Target users are sorted by identifier and divided into blocks
+ * of consecutive users, and each block is recommended by a single thread (so the score accumulators
+ * of each thread are reused for all the users in the block). Threads take the blocks in order, and
+ * recommendations are delivered to the consumer in the order of the target users, one at a time, so
+ * the consumer does not need to be thread-safe, and the generated files are the same no matter how
+ * many threads are used. A thread does not start a block until the block is close enough to the next
+ * one to deliver, so the number of recommendations waiting to be delivered is bounded.
+ *
+ * @param <U> Type of the users.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class UserFastRecommenderRunner<U> implements RecommenderRunner<U, U>
+{
+    /**
+     * Number of blocks to create for each thread in the pool, so that threads which
+     * finish earlier can take the remaining blocks.
+     */
+    private final static int BLOCKSPERTHREAD = 16;
+    /**
+     * Maximum number of users in a block.
+     */
+    private final static int MAXBLOCKSIZE = 256;
+    /**
+     * Number of blocks which can be computed (or waiting to be delivered) at the same time, for
+     * each thread in the pool. Along with the block size, it bounds the number of recommendations
+     * waiting to be delivered.
+     */
+    private final static int WINDOWPERTHREAD = 2;
+
+    /**
+     * The user index.
+     */
+    private final FastUserIndex<U> index;
+    /**
+     * The target users, sorted by identifier.
+     */
+    private final List<U> users;
+    /**
+     * Filter for the candidate users of each target user.
+     */
+    private final Function<U, IntPredicate> filter;
+    /**
+     * Maximum length of the recommendation.
+     */
+    private final int maxLength;
+
+    /**
+     * Constructor.
+     *
+     * @param index     the user index.
+     * @param users     the target users.
+     * @param filter    filter for the candidate users of each target user.
+     * @param maxLength maximum length of the recommendation.
+     */
+    public UserFastRecommenderRunner(FastUserIndex<U> index, Stream<U> users, Function<U, IntPredicate> filter, int maxLength)
+    {
+        this.index = index;
+        this.users = users.sorted(Comparator.comparingInt(index::user2uidx)).collect(Collectors.toList());
+        this.filter = filter;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public void run(Recommender<U, U> recommender, Consumer<Recommendation<U, U>> consumer)
+    {
+        int numUsers = this.users.size();
+        if (recommender instanceof TargetUsersAware)
+        {
+            ((TargetUsersAware) recommender).setTargetUsers(this.users.stream().mapToInt(this.index::user2uidx).toArray());
+        }
+
+        int parallelism = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        int blockSize = Math.max(1, Math.min(MAXBLOCKSIZE, (numUsers + parallelism * BLOCKSPERTHREAD - 1) / (parallelism * BLOCKSPERTHREAD)));
+        int numBlocks = (numUsers + blockSize - 1) / blockSize;
+
+        OrderedBuffer<U> buffer = new OrderedBuffer<>(numBlocks, parallelism * WINDOWPERTHREAD, consumer);
+        IntStream.range(0, Math.min(parallelism, numBlocks)).parallel().forEach(worker ->
+        {
+            int block;
+            while ((block = buffer.take()) >= 0)
+            {
+                try
+                {
+                    int end = Math.min(numUsers, (block + 1) * blockSize);
+                    List<Recommendation<U, U>> recs = new ArrayList<>(end - block * blockSize);
+                    for (int i = block * blockSize; i < end; ++i)
+                    {
+                        recs.add(this.recommend(recommender, this.users.get(i)));
+                    }
+                    buffer.add(block, recs);
+                }
+                catch (RuntimeException | Error e)
+                {
+                    buffer.abort();
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Obtains the recommendation for a single user.
+     *
+     * @param recommender the recommender.
+     * @param u           the target user.
+     *
+     * @return the recommendation.
+     */
+    @SuppressWarnings("unchecked")
+    private Recommendation<U, U> recommend(Recommender<U, U> recommender, U u)
+    {
+        IntPredicate userFilter = this.filter.apply(u);
+        if (recommender instanceof FastRecommender)
+        {
+            // Work with the identifiers of the users, and translate them at the end.
+            FastRecommendation rec = ((FastRecommender<U, U>) recommender).getRecommendation(this.index.user2uidx(u), this.maxLength, userFilter);
+            return new Recommendation<>(u, rec.getIidxs().stream()
+                    .map(iv -> new Tuple2od<>(this.index.uidx2user(iv.v1), iv.v2))
+                    .collect(Collectors.toList()));
+        }
+        return recommender.getRecommendation(u, this.maxLength, v -> userFilter.test(this.index.user2uidx(v)));
+    }
+
+    /**
+     * Buffer which hands out the blocks in order, receives their recommendations (in any order),
+     * and delivers them to the consumer in the order of the blocks. Blocks are only handed out
+     * while they fit in a window which starts at the next block to deliver.
+     *
+     * @param <U> type of the users.
+     */
+    private static class OrderedBuffer<U>
+    {
+        /**
+         * Recommendations of the blocks in the window which have finished, but cannot be delivered yet.
+         */
+        private final List<List<Recommendation<U, U>>> pending;
+        /**
+         * The consumer of the recommendations.
+         */
+        private final Consumer<Recommendation<U, U>> consumer;
+        /**
+         * The number of blocks.
+         */
+        private final int numBlocks;
+        /**
+         * The next block to hand out.
+         */
+        private int taken;
+        /**
+         * The next block to deliver.
+         */
+        private int next;
+        /**
+         * Whether some block failed (and the rest must not be computed).
+         */
+        private boolean aborted;
+
+        /**
+         * Constructor.
+         *
+         * @param numBlocks the number of blocks.
+         * @param window    the maximum number of blocks handed out and not delivered yet.
+         * @param consumer  the consumer of the recommendations.
+         */
+        OrderedBuffer(int numBlocks, int window, Consumer<Recommendation<U, U>> consumer)
+        {
+            this.pending = new ArrayList<>(window);
+            for (int i = 0; i < Math.max(1, window); ++i)
+            {
+                this.pending.add(null);
+            }
+            this.consumer = consumer;
+            this.numBlocks = numBlocks;
+            this.taken = 0;
+            this.next = 0;
+            this.aborted = false;
+        }
+
+        /**
+         * Hands out the next block, waiting until it fits in the window.
+         *
+         * @return the block, or -1 if there are no more blocks to compute.
+         */
+        synchronized int take()
+        {
+            // The block to deliver has already been handed out, so the window always advances.
+            while (!this.aborted && this.taken < this.numBlocks && this.taken >= this.next + this.pending.size())
+            {
+                try
+                {
+                    this.wait();
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    this.abort();
+                }
+            }
+            return (this.aborted || this.taken >= this.numBlocks) ? -1 : this.taken++;
+        }
+
+        /**
+         * Adds the recommendations of a block, and delivers every block which is ready.
+         *
+         * @param block the block.
+         * @param recs  the recommendations of the block.
+         */
+        synchronized void add(int block, List<Recommendation<U, U>> recs)
+        {
+            int window = this.pending.size();
+            this.pending.set(block % window, recs);
+            while (this.next < this.taken && this.pending.get(this.next % window) != null)
+            {
+                this.pending.get(this.next % window).forEach(this.consumer);
+                this.pending.set(this.next % window, null);
+                ++this.next;
+            }
+            this.notifyAll();
+        }
+
+        /**
+         * Stops handing out blocks, and wakes up the threads waiting for one.
+         */
+        synchronized void abort()
+        {
+            this.aborted = true;
+            this.notifyAll();
+        }
+    }
+}
@@ -11,13 +11,12 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.function.IntToDoubleFunction;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -30,7 +29,7 @@ public class AdamicSimilarity extends GraphSimilarity
     /**
      * Map containing the length of the common neighborhoods between target and candidate users.
      */
-    private final Int2DoubleMap wSizes;
+    private final double[] wSizes;
     /**
      * Neighborhood selection for the target users.
      */
@@ -49,36 +48,44 @@ public class AdamicSimilarity extends GraphSimilarity
     {
         super(graph);
         
-        wSizes = new Int2DoubleOpenHashMap();
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         this.wSel = wSel;
         
-        this.graph.getAllNodesIds().forEach(widx -> wSizes.put(widx,graph.getNeighborhood(widx, wSel).count() + 0.0));
+        this.wSizes = graph.getStatistics().getNeighborhoodSizes(wSel);
     }
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
-        IntSet set = this.graph.getNeighborhood(idx, uSel).collect(Collectors.toCollection(IntOpenHashSet::new));
+        IntSet set = new IntOpenHashSet();
+        this.graph.forEachNeighbor(idx, uSel, set::add);
         return (int idx2) ->
-            this.graph.getNeighborhood(idx, vSel.invertSelection()).mapToDouble(vidx ->
+        {
+            double[] sim = new double[]{0.0};
+            this.graph.forEachNeighbor(idx2, vSel.invertSelection(), vidx ->
             {
-                if(set.contains(vidx.intValue()))
+                if(set.contains(vidx))
                 {
-                    return 1.0/Math.log(wSizes.get(vidx.intValue()) + 2.0);
+                    sim[0] += 1.0/Math.log(wSizes[vidx] + 2.0);
                 }
-                return 0.0;
-            }).sum();
+            });
+            return sim[0];
+        };
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int uidx)
     {
-        Int2DoubleMap sims = new Int2DoubleOpenHashMap();
-        this.graph.getNeighborhood(uidx, uSel).forEach(widx -> {
-            double val = Math.log(wSizes.get(widx.intValue())+2.0);
-            this.graph.getNeighborhood(widx, vSel).filter(vidx -> vidx != uidx).forEach(vidx ->
-                sims.put(vidx.intValue(), sims.getOrDefault(vidx.intValue(), 0.0) + 1.0/val));
+        Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
+        this.graph.forEachNeighbor(uidx, uSel, widx -> {
+            double val = Math.log(wSizes[widx]+2.0);
+            this.graph.forEachNeighbor(widx, vSel, vidx ->
+            {
+                if(vidx != uidx)
+                {
+                    sims.addTo(vidx, 1.0/val);
+                }
+            });
         });
         
         return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()));
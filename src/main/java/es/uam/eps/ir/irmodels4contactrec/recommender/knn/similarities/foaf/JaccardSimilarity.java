@@ -11,13 +11,12 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.function.IntToDoubleFunction;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -36,8 +35,8 @@ public class JaccardSimilarity extends GraphSimilarity
      */
     private final EdgeOrientation vSel;
     
-    private final Int2DoubleMap uSizes;
-    private final Int2DoubleMap vSizes;
+    private final double[] uSizes;
+    private final double[] vSizes;
     
     /**
      * Constructor.
@@ -50,9 +49,8 @@ public class JaccardSimilarity extends GraphSimilarity
         super(graph);
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
-        this.uSizes = new Int2DoubleOpenHashMap();
-        this.graph.getAllNodesIds().forEach(uidx ->
-                uSizes.put(uidx, graph.getNeighborhood(uidx, uSel).count() + 0.0));
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uSizes = stats.getNeighborhoodSizes(uSel);
         
         if(uSel.equals(vSel) || !graph.isDirected())
         {
@@ -60,40 +58,45 @@ public class JaccardSimilarity extends GraphSimilarity
         }
         else
         {
-            this.vSizes = new Int2DoubleOpenHashMap();
-            this.graph.getAllNodesIds().forEach(uidx ->
-                vSizes.put(uidx, graph.getNeighborhood(uidx, vSel).count() + 0.0));
+            this.vSizes = stats.getNeighborhoodSizes(vSel);
         }
     }
     
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
-        IntSet set = this.graph.getNeighborhood(idx, uSel).collect(Collectors.toCollection(IntOpenHashSet::new));
+        IntSet set = new IntOpenHashSet();
+        this.graph.forEachNeighbor(idx, uSel, set::add);
+        double uSize = this.uSizes[idx];
         return (int idx2) -> 
         {
-            if(this.vSizes.get(idx2) == 0 || set.isEmpty()) return 0.0;
-            double inter = this.graph.getNeighborhood(idx, vSel.invertSelection()).mapToDouble(vidx -> 
+            if(this.vSizes[idx2] == 0 || set.isEmpty()) return 0.0;
+            double[] inter = new double[]{0.0};
+            this.graph.forEachNeighbor(idx2, vSel.invertSelection(), vidx -> 
             {
-                if(set.contains(vidx.intValue()))
+                if(set.contains(vidx))
                 {
-                    return 1.0;
+                    inter[0] += 1.0;
                 }
-                return 0.0;
-            }).sum();
+            });
             
-            return inter/(this.uSizes.get(idx) + this.vSizes.get(idx2) - inter);
+            return inter[0]/(uSize + this.vSizes[idx2] - inter[0]);
         };
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int uidx)
     {
-        Int2DoubleMap sims = new Int2DoubleOpenHashMap();
-        this.graph.getNeighborhoodWeights(uidx, uSel).forEach(vidx ->
-                this.graph.getNeighborhoodWeights(vidx.v1, vSel).filter(widx -> widx.v1 != uidx).forEach(widx ->
-                        sims.put(widx.v1, sims.getOrDefault(widx.v1, 0.0) + 1.0)));
+        Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
+        this.graph.forEachNeighbor(uidx, uSel, vidx ->
+                this.graph.forEachNeighbor(vidx, vSel, widx ->
+                {
+                    if(widx != uidx)
+                    {
+                        sims.addTo(widx, 1.0);
+                    }
+                }));
         
-        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/(this.uSizes.get(uidx)+this.vSizes.get(x.getIntKey())-x.getDoubleValue())));
+        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/(this.uSizes[uidx]+this.vSizes[x.getIntKey()]-x.getDoubleValue())));
     }
 }
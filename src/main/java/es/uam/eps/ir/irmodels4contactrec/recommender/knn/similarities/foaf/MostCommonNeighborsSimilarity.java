@@ -12,12 +12,10 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.foaf;
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.function.IntToDoubleFunction;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -52,25 +50,34 @@ public class MostCommonNeighborsSimilarity extends GraphSimilarity
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
-        IntSet set = this.graph.getNeighborhood(idx, uSel).collect(Collectors.toCollection(IntOpenHashSet::new));
+        IntSet set = new IntOpenHashSet();
+        this.graph.forEachNeighbor(idx, uSel, set::add);
         return (int idx2) ->
-            this.graph.getNeighborhood(idx, vSel.invertSelection()).mapToDouble(vidx ->
+        {
+            double[] inter = new double[]{0.0};
+            this.graph.forEachNeighbor(idx2, vSel.invertSelection(), vidx ->
             {
-                if(set.contains(vidx.intValue()))
+                if(set.contains(vidx))
                 {
-                    return 1.0;
+                    inter[0] += 1.0;
                 }
-                return 0.0;
-            }).sum();
+            });
+            return inter[0];
+        };
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int uidx)
     {
-        Int2DoubleMap sims = new Int2DoubleOpenHashMap();
-        this.graph.getNeighborhoodWeights(uidx, uSel).forEach(vidx ->
-            this.graph.getNeighborhoodWeights(vidx.v1, vSel).filter(widx -> widx.v1 != uidx).forEach(widx ->
-                sims.put(widx.v1, sims.getOrDefault(widx.v1, 0.0) + 1.0)));
+        Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
+        this.graph.forEachNeighbor(uidx, uSel, vidx ->
+            this.graph.forEachNeighbor(vidx, vSel, widx ->
+            {
+                if(widx != uidx)
+                {
+                    sims.addTo(widx, 1.0);
+                }
+            }));
         
         return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()));
     }
@@ -14,10 +14,7 @@ import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.function.IntToDoubleFunction;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -30,9 +27,9 @@ public class VectorCosineSimilarity extends GraphSimilarity
     /**
      * Map containing the length of the common neighborhoods between target and candidate users.
      */
-    private final Int2DoubleMap uMods;
+    private final double[] uMods;
     
-    private final Int2DoubleMap vMods;
+    private final double[] vMods;
     /**
      * Neighborhood selection for the target users.
      */
@@ -52,15 +49,10 @@ public class VectorCosineSimilarity extends GraphSimilarity
     {
         super(graph);
         
-        this.uMods = new Int2DoubleOpenHashMap();
-        
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         
-        this.graph.getAllNodesIds().forEach(uidx -> {
-            double mod = this.graph.getNeighborhoodWeights(uidx, uSel).mapToDouble(x -> x.v2*x.v2).sum();
-            this.uMods.put(uidx, mod);
-        });
+        this.uMods = this.calculateMods(uSel);
         
         if(vSel.equals(uSel) || !this.graph.isDirected())
         {
@@ -68,40 +60,58 @@ public class VectorCosineSimilarity extends GraphSimilarity
         }
         else
         {
-            this.vMods = new Int2DoubleOpenHashMap();
-            this.graph.getAllNodesIds().forEach(uidx -> 
-            {
-                double mod = this.graph.getNeighborhoodWeights(uidx, vSel).mapToDouble(x -> x.v2*x.v2).sum();
-                this.vMods.put(uidx, mod);
-            });
+            this.vMods = this.calculateMods(vSel);
         }
     }
     
+    /**
+     * Computes the squared module of the neighborhood of every node.
+     * @param sel the neighborhood selection.
+     * @return the squared modules.
+     */
+    private double[] calculateMods(EdgeOrientation sel)
+    {
+        double[] mods = new double[(int) this.graph.getVertexCount()];
+        this.graph.getAllNodesIds().parallel().forEach(uidx ->
+            this.graph.forEachNeighbor(uidx, sel, (widx, weight) -> mods[uidx] += weight*weight));
+        return mods;
+    }
+    
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
-        IntSet set = this.graph.getNeighborhood(idx, uSel).collect(Collectors.toCollection(IntOpenHashSet::new));
+        Int2DoubleMap uNeighs = new Int2DoubleOpenHashMap();
+        this.graph.forEachNeighbor(idx, uSel, uNeighs::put);
+        double uMod = this.uMods[idx];
         return (int idx2) ->
-            this.graph.getNeighborhood(idx, vSel.invertSelection()).mapToDouble(vidx ->
+        {
+            double[] prod = new double[]{0.0};
+            this.graph.forEachNeighbor(idx2, vSel.invertSelection(), (vidx, vW) ->
             {
-                if(set.contains(vidx.intValue()))
+                if(uNeighs.containsKey(vidx))
                 {
-                    return 1.0;
+                    prod[0] += uNeighs.get(vidx)*vW;
                 }
-                return 0.0;
-            }).sum()/Math.sqrt(this.uMods.get(idx)*this.vMods.get(idx2));
+            });
+            return prod[0]/Math.sqrt(uMod*this.vMods[idx2]);
+        };
     }
 
     @Override
     public Stream<Tuple2id> similarElems(int uidx)
     {
-        Int2DoubleMap sims = new Int2DoubleOpenHashMap();
-        double mod = this.uMods.get(uidx);
-        this.graph.getNeighborhoodWeights(uidx, uSel).forEach(widx ->
-            this.graph.getNeighborhoodWeights(widx.v1, vSel).filter(vidx -> vidx.v1 != uidx).forEach(vidx ->
-                sims.put(vidx.v1, sims.getOrDefault(vidx.v1, 0.0) + vidx.v2*widx.v2)));
+        Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
+        double mod = this.uMods[uidx];
+        this.graph.forEachNeighbor(uidx, uSel, (widx, uW) ->
+            this.graph.forEachNeighbor(widx, vSel, (vidx, vW) ->
+            {
+                if(vidx != uidx)
+                {
+                    sims.addTo(vidx, vW*uW);
+                }
+            }));
         
-        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/Math.sqrt(mod*vMods.get(x.getIntKey()))));
+        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/Math.sqrt(mod*vMods[x.getIntKey()])));
     }
 
 }
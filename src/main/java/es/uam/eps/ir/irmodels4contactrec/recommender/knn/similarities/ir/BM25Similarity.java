@@ -11,13 +11,12 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.function.IntToDoubleFunction;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.ranksys.core.util.tuples.Tuple2id;
 
@@ -51,18 +50,14 @@ public class BM25Similarity extends GraphSimilarity
      * Average neighborhood size.
      */
     private final double avgSize;
-    /**
-     * Number of users.
-     */
-    private final long numUsers;
     /**
      * Robertson-Sparck-Jones values for the different users.
      */
-    private final Int2DoubleMap rsj;
+    private final double[] rsj;
     /**
      * Individual neighborhood sizes.
      */
-    private final Int2DoubleMap size;
+    private final double[] size;
     
     /**
      * Constructor.
@@ -81,39 +76,34 @@ public class BM25Similarity extends GraphSimilarity
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         this.dlSel = dlSel;
-        this.numUsers = this.graph.getVertexCount();
-        
-        this.rsj = new Int2DoubleOpenHashMap();
-        this.size = new Int2DoubleOpenHashMap();
-        this.avgSize = this.graph.getAllNodesIds().mapToDouble(uidx -> {
-           double rsjV = graph.getNeighborhood(uidx, this.vSel).count();
-           rsjV = Math.log((numUsers - rsjV + 0.5)/(rsjV + 0.5));
-           this.rsj.put(uidx, rsjV);
-           
-           double val = graph.getNeighborhoodWeights(uidx, dlSel).mapToDouble(widx -> widx.v2).sum();
-           this.size.put(uidx, val);
-           return val;
-        }).average().getAsDouble();
-        
-        
+
+        FastGraphStatistics stats = graph.getStatistics();
+        this.rsj = stats.getRSJ(this.vSel);
+        this.size = stats.getNeighborhoodWeightSums(dlSel);
+        this.avgSize = stats.getAverageWeightSum(dlSel);
     }
+
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
-        IntSet uNeigh = this.graph.getNeighborhood(idx, uSel).collect(Collectors.toCollection(IntOpenHashSet::new));
+        IntSet uNeigh = new IntOpenHashSet();
+        this.graph.forEachNeighbor(idx, uSel, uNeigh::add);
         
         return (idx2) ->
         {
-            double s = this.size.get(idx2);
+            double s = this.size[idx2];
             double den = ((Double.isFinite(k)) ? this.k : 1.0)*(1-b + (b*s/avgSize));
-            return graph.getNeighborhoodWeights(idx, vSel.invertSelection()).filter(widx -> uNeigh.contains(widx.v1)).mapToDouble(widx ->
+            double[] sim = new double[]{0.0};
+            graph.forEachNeighbor(idx2, vSel.invertSelection(), (widx, weight) ->
             {
-                double weight = widx.v2;
-                double rsjW = this.rsj.get(widx.v1);
-                double num = ((Double.isFinite(k)) ? this.k + 1.0 : 1.0)*weight*rsjW;
-                
-                return num/(den + (Double.isFinite(k) ? weight : 0.0));
-            }).sum();
+                if(uNeigh.contains(widx))
+                {
+                    double rsjW = this.rsj[widx];
+                    double num = ((Double.isFinite(k)) ? this.k + 1.0 : 1.0)*weight*rsjW;
+                    sim[0] += num/(den + (Double.isFinite(k) ? weight : 0.0));
+                }
+            });
+            return sim[0];
         };
     }
 
@@ -125,34 +115,34 @@ public class BM25Similarity extends GraphSimilarity
         
         if(Double.isFinite(this.k))
         {
-            graph.getNeighborhood(idx, uSel).forEach(widx -> 
+            graph.forEachNeighbor(idx, uSel, widx ->
             {
-                double rsjW = this.rsj.get(widx.intValue());
-                graph.getNeighborhoodWeights(widx, vSel).filter(vidx -> vidx.v1 != idx).forEach(vidx -> 
+                double rsjW = this.rsj[widx];
+                graph.forEachNeighbor(widx, vSel, (vidx, weight) ->
                 {
-                    double weight = vidx.v2;
-                    double s = this.size.get(vidx.v1);
+                    if(vidx == idx) return;
+                    double s = this.size[vidx];
                     double num = (this.k + 1.0)*weight*rsjW;
                     double den = this.k*(1-b+(b*s/avgSize)) + weight;
                     
-                    sims.addTo(vidx.v1, num/den);
+                    sims.addTo(vidx, num/den);
                 });
             });
         }
         else
         {
-            graph.getNeighborhood(idx, uSel).forEach(widx -> 
+            graph.forEachNeighbor(idx, uSel, widx ->
             {
-                double rsjW = this.rsj.get(widx.intValue());
-                graph.getNeighborhoodWeights(widx, vSel).filter(vidx -> vidx.v1 != idx).forEach(vidx -> 
+                double rsjW = this.rsj[widx];
+                graph.forEachNeighbor(widx, vSel, (vidx, weight) ->
                 {
-                    double weight = vidx.v2;
-                    double s = this.size.get(vidx.v1);
+                    if(vidx == idx) return;
+                    double s = this.size[vidx];
                     
                     double num = weight*rsjW;
                     double den = 1-b+(b*s/avgSize);
                     
-                    sims.addTo(vidx.v1, num/den);
+                    sims.addTo(vidx, num/den);
                 });
             });
         }
@@ -11,6 +11,7 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
@@ -43,15 +44,15 @@ public class QLDSimilarity extends GraphSimilarity
         /**
      * Neighborhood sizes for the target user
      */
-    private final Int2DoubleMap uSize;
+    private final double[] uSize;
     /**
      * Neighborhood sizes for the candidate user
      */
-    private final Int2DoubleMap vSize;
+    private final double[] vSize;
     /**
      * Sizes of the common neighbors.
      */
-    private final Int2DoubleMap pc;
+    private final double[] pc;
     
     /**
      * Constructor.
@@ -66,74 +67,40 @@ public class QLDSimilarity extends GraphSimilarity
         this.uSel = uSel;
         this.vSel = vSel;
         this.mu = mu;
-        this.uSize = new Int2DoubleOpenHashMap();
         
         EdgeOrientation wSel = vSel.invertSelection();
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uSize = stats.getNeighborhoodWeightSums(uSel);
+        this.fullSize = stats.getTotalWeightSum(uSel);
         
         if(!graph.isDirected() || (uSel.equals(vSel) && uSel.equals(EdgeOrientation.UND))) // Cases UND-UND
         {
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                return uS;
-            }).sum();
             this.vSize = uSize;
             this.pc = uSize;
         }
         else if(uSel.equals(vSel)) //CASES IN-IN,OUT-OUT
         {
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = graph.getNeighborhoodWeights(vidx, wSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.pc.put(vidx, wS);
-                return uS;
-            }).sum();
             this.vSize = uSize;
+            this.pc = stats.getNeighborhoodWeightSums(wSel);
         }
         else if(uSel.equals(vSel.invertSelection())) // CASES IN-OUT,OUT-IN
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, wS);
-                return uS;
-            }).sum();
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
             this.pc = uSize;
         }
         else if(vSel.equals(EdgeOrientation.UND)) // CASES IN-UND, OUT-UND
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-                return uS;
-            }).sum();
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
             this.pc = vSize;
         }
         else // CASES UND-IN, UND-OUT
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
+            this.pc = new double[uSize.length];
+            for(int vidx = 0; vidx < pc.length; ++vidx)
             {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = uS - vS; // Considering that weight(UND,x,y) = weight(x,y) + weight(y,x)
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-                this.pc.put(vidx, wS);
-                return uS;
-            }).sum();
+                this.pc[vidx] = uSize[vidx] - vSize[vidx]; // Considering that weight(UND,x,y) = weight(x,y) + weight(y,x)
+            }
         }
     }
     
@@ -141,25 +108,24 @@ public class QLDSimilarity extends GraphSimilarity
     public IntToDoubleFunction similarity(int uidx)
     {
         Int2DoubleMap uNeighs = new Int2DoubleOpenHashMap();
-        this.graph.getNeighborhoodWeights(uidx, uSel).forEach(x -> uNeighs.put(x.v1, x.v2));
+        this.graph.forEachNeighbor(uidx, uSel, uNeighs::put);
         
-        double uS = this.uSize.get(uidx);
+        double uS = this.uSize[uidx];
         
         return (int vidx) ->
         {
-            double value = graph.getNeighborhoodWeights(vidx, vSel).filter(widx -> uNeighs.keySet().contains(widx.v1)).mapToDouble(widx -> 
+            double[] value = new double[]{0.0};
+            graph.forEachNeighbor(vidx, vSel.invertSelection(), (widx, vWeight) ->
             {
-                double uWeight = uNeighs.get(widx.v1);
-                double vWeight = widx.v2;
-                
-                double wPc = this.fullSize/(this.mu*this.pc.get(widx.v1));
-                
-                double val = uWeight*Math.log(vWeight*wPc + 1.0);
-                return 0.0;
-            }).sum();
+                if(uNeighs.containsKey(widx))
+                {
+                    double wPc = this.fullSize/(this.mu*this.pc[widx]);
+                    value[0] += uNeighs.get(widx)*Math.log(vWeight*wPc + 1.0);
+                }
+            });
             
-            if(Double.isNaN(value) || Double.isInfinite(value)) return Double.NEGATIVE_INFINITY;
-            return value - uS*Math.log(1.0+this.vSize.get(vidx)/mu);
+            if(Double.isNaN(value[0]) || Double.isInfinite(value[0])) return Double.NEGATIVE_INFINITY;
+            return value[0] - uS*Math.log(1.0+this.vSize[vidx]/mu);
         };
     }
 
@@ -169,24 +135,21 @@ public class QLDSimilarity extends GraphSimilarity
         Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
         sims.defaultReturnValue(0.0);
         
-        double norm = this.uSize.get(uidx);
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w -> 
+        double norm = this.uSize[uidx];
+        graph.forEachNeighbor(uidx, uSel, (widx, uWeight) ->
         {
-            double uWeight = w.v2;
-            int widx = w.v1;
-            double wPc = this.fullSize/(this.mu*this.pc.get(widx));
+            double wPc = this.fullSize/(this.mu*this.pc[widx]);
             
-            graph.getNeighborhoodWeights(widx, vSel).filter(vidx -> vidx.v1 != uidx).forEach(v -> 
+            graph.forEachNeighbor(widx, vSel, (vidx, vWeight) ->
             {
-                double vWeight = v.v2;
-                
+                if(vidx == uidx) return;
                 double val = uWeight*Math.log(vWeight*wPc + 1.0);
-                if(Double.isNaN(val) || Double.isInfinite(val)) sims.put(v.v1, Double.NEGATIVE_INFINITY);
-                else sims.addTo(v.v1, val);
+                if(Double.isNaN(val) || Double.isInfinite(val)) sims.put(vidx, Double.NEGATIVE_INFINITY);
+                else sims.addTo(vidx, val);
             });
         });
         
-        return sims.int2DoubleEntrySet().stream().filter(x -> x.getDoubleValue() > Double.NEGATIVE_INFINITY).map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue() - norm*Math.log(1.0 + this.vSize.get(x.getIntKey())/mu)));
+        return sims.int2DoubleEntrySet().stream().filter(x -> x.getDoubleValue() > Double.NEGATIVE_INFINITY).map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue() - norm*Math.log(1.0 + this.vSize[x.getIntKey()]/mu)));
     }
 
 }
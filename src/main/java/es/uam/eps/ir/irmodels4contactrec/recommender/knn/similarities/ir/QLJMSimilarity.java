@@ -11,6 +11,7 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
@@ -32,7 +33,7 @@ public class QLJMSimilarity extends GraphSimilarity
     /**
      * Neighborhood sizes
      */
-    private final Int2DoubleMap size;
+    private final double[] size;
     /**
      * Sum of the neighborhood sizes
      */
@@ -48,7 +49,7 @@ public class QLJMSimilarity extends GraphSimilarity
     /**
      * For each user, computes the proportion of neighbors it has, in comparison with the sum of all neighborhood sizes.
      */
-    private final Int2DoubleMap pc;
+    private final double[] pc;
     
     /**
      * Constructor.
@@ -64,50 +65,42 @@ public class QLJMSimilarity extends GraphSimilarity
         this.vSel = vSel;
         this.lambda = lambda/(1-lambda);
         
-        this.size = new Int2DoubleOpenHashMap();
         EdgeOrientation wSel = vSel.invertSelection();
+        FastGraphStatistics stats = graph.getStatistics();
+        this.size = stats.getNeighborhoodWeightSums(vSel);
+        this.fullSize = stats.getTotalWeightSum(vSel);
         if(!graph.isDirected() || vSel.equals(EdgeOrientation.UND))
         {
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-                double vS = this.graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.size.put(vidx, vS);
-                return vS;
-            }).sum();
             this.pc = size;
         }
         else
         {
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.graph.getAllNodesIds().mapToDouble(vidx -> 
-            {
-               double vS = this.graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-               double wS = this.graph.getNeighborhoodWeights(vidx, wSel).mapToDouble(Tuple2id::v2).sum();
-               this.size.put(vidx, vS);
-               this.pc.put(vidx, wS);
-               return vS;
-            }).sum();
+            this.pc = stats.getNeighborhoodWeightSums(wSel);
         }
-        
     }
     
     @Override
     public IntToDoubleFunction similarity(int uidx)
     {
         Int2DoubleMap uNeigh = new Int2DoubleOpenHashMap();
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(v -> uNeigh.put(v.v1, v.v2));
+        graph.forEachNeighbor(uidx, uSel, uNeigh::put);
         
         return (int vidx) -> 
         {
-            double vS = this.size.get(vidx);
+            double vS = this.size[vidx];
             
-            return graph.getNeighborhoodWeights(vidx, vSel).filter(x -> uNeigh.keySet().contains(x.v1)).mapToDouble(w -> 
+            double[] sim = new double[]{0.0};
+            graph.forEachNeighbor(vidx, vSel, (widx, vW) ->
             {
-                double wPc = this.fullSize/this.pc.get(w.v1);
-                double val = lambda*(w.v2/vS)*wPc;
-                if(Double.isNaN(val) || Double.isInfinite(val)) return Double.NEGATIVE_INFINITY;
-                return uNeigh.get(w.v1)*Math.log(1.0+val);
-            }).sum();
+                if(uNeigh.containsKey(widx))
+                {
+                    double wPc = this.fullSize/this.pc[widx];
+                    double val = lambda*(vW/vS)*wPc;
+                    if(Double.isNaN(val) || Double.isInfinite(val)) sim[0] += Double.NEGATIVE_INFINITY;
+                    else sim[0] += uNeigh.get(widx)*Math.log(1.0+val);
+                }
+            });
+            return sim[0];
         };
     }
 
@@ -117,17 +110,17 @@ public class QLJMSimilarity extends GraphSimilarity
         Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
         sims.defaultReturnValue(0.0);
         
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w -> 
+        graph.forEachNeighbor(uidx, uSel, (widx, uW) ->
         {
-            int widx = w.v1;
-            double uW = w.v2;
-            double wPc = this.fullSize/(this.pc.get(widx));
-            graph.getNeighborhoodWeights(widx, vSel.invertSelection()).filter(v -> v.v1 != uidx).forEach(v -> 
+            double wPc = this.fullSize/(this.pc[widx]);
+            
+            graph.forEachNeighbor(widx, vSel.invertSelection(), (vidx, vW) ->
             {
-                double s = this.size.getOrDefault(v.v1, 0.0);
-                double val = lambda*wPc*(v.v2/s);
-                if(Double.isNaN(val) || Double.isInfinite(val)) sims.put(v.v1, Double.NEGATIVE_INFINITY);
-                else sims.addTo(v.v1, uW*Math.log(val + 1.0));
+                if(vidx == uidx) return;
+                double s = this.size[vidx];
+                double val = lambda*wPc*(vW/s);
+                if(Double.isNaN(val) || Double.isInfinite(val)) sims.put(vidx, Double.NEGATIVE_INFINITY);
+                else sims.addTo(vidx, uW*Math.log(val + 1.0));
             });
         });
         
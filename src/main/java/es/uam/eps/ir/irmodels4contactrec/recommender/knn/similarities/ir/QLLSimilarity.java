@@ -11,6 +11,7 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
@@ -31,11 +32,11 @@ public class QLLSimilarity extends GraphSimilarity
     /**
      * Size of the target user neighborhoods
      */
-    private final Int2DoubleMap uSize;
+    private final double[] uSize;
     /**
      * Size of the candidate user neighborhoods
      */
-    private final Int2DoubleMap vSize;
+    private final double[] vSize;
     /**
      * Neighborhood selection for the target user.
      */
@@ -59,46 +60,38 @@ public class QLLSimilarity extends GraphSimilarity
         this.vSel = vSel;
         this.gamma = gamma;
         
-        uSize = new Int2DoubleOpenHashMap();
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uSize = stats.getNeighborhoodWeightSums(uSel);
         if(!graph.isDirected() || uSel.equals(vSel))
         {
-            this.graph.getAllNodesIds().forEach(vidx -> 
-            {
-                double s = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(x -> x.v2).sum();
-                this.uSize.put(vidx, s);
-            });
-            vSize = uSize;
+            this.vSize = uSize;
         }
         else
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.graph.getAllNodesIds().forEach(vidx -> 
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(x -> x.v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(x -> x.v2).sum();
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-            });
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
         }
-        
     }
     
     @Override
     public IntToDoubleFunction similarity(int uidx)
     {
         Int2DoubleMap uNeigh = new Int2DoubleOpenHashMap();
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(v -> uNeigh.put(v.v1, v.v2));
-        double uS = this.uSize.get(uidx);
+        graph.forEachNeighbor(uidx, uSel, uNeigh::put);
+        double uS = this.uSize[uidx];
         long numUsers = this.graph.getVertexCount();
 
         return (int vidx) -> 
         {
-            double vS = this.vSize.get(vidx);
-            return this.graph.getNeighborhoodWeights(vidx, vSel).filter(w -> uNeigh.containsKey(w.v1)).mapToDouble(w -> 
+            double vS = this.vSize[vidx];
+            double[] sim = new double[]{0.0};
+            this.graph.forEachNeighbor(vidx, vSel, (widx, vW) ->
             {
-                double uW = uNeigh.get(w.v1);
-                return uW*Math.log((w.v2 + gamma)/gamma);
-            }).sum() - uS*Math.log(numUsers +  vS/gamma);
+                if(uNeigh.containsKey(widx))
+                {
+                    sim[0] += uNeigh.get(widx)*Math.log((vW + gamma)/gamma);
+                }
+            });
+            return sim[0] - uS*Math.log(numUsers +  vS/gamma);
         };
     }
 
@@ -106,19 +99,17 @@ public class QLLSimilarity extends GraphSimilarity
     public Stream<Tuple2id> similarElems(int uidx)
     {
         Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
-        double uS = this.uSize.get(uidx);
+        double uS = this.uSize[uidx];
         long numUsers = this.graph.getVertexCount();
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w -> {
-            int widx = w.v1;
-            double uW = w.v2;
-            
-            graph.getNeighborhoodWeights(widx, vSel.invertSelection()).filter(v -> v.v1 != uidx).forEach(v -> {
-                double val = uW*Math.log((v.v2 + this.gamma)/(this.gamma));
-                sims.addTo(v.v1, val);
+        graph.forEachNeighbor(uidx, uSel, (widx, uW) -> {
+            graph.forEachNeighbor(widx, vSel.invertSelection(), (vidx, vW) -> {
+                if(vidx == uidx) return;
+                double val = uW*Math.log((vW + this.gamma)/(this.gamma));
+                sims.addTo(vidx, val);
             });
         });
         
-        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue() - uS*Math.log(numUsers + this.vSize.get(x.getIntKey())/this.gamma)));
+        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue() - uS*Math.log(numUsers + this.vSize[x.getIntKey()]/this.gamma)));
     }
 
 }
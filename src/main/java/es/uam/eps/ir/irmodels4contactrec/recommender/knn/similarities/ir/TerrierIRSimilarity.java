@@ -17,9 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.ranksys.core.util.tuples.Tuple2id;
-import org.ranksys.formats.parsing.Parsers;
-import org.terrier.querying.ScoredDocList;
-import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.structures.Index;
 
 /**
  * Class that uses the Terrier IR engine to generate similarities between elements.
@@ -65,7 +63,7 @@ public abstract class TerrierIRSimilarity extends GraphSimilarity
         super(graph);
         this.uSel = uSel;
         this.vSel = vSel;
-        Tuple2oo<MemoryIndex,Map<Integer,String>> pair = structure.get(uSel, vSel);
+        Tuple2oo<Index,Map<Integer,String>> pair = structure.get(uSel, vSel);
         this.index = new TerrierIndex(graph, uSel, vSel, pair.v1(), pair.v2());
     }
 
@@ -75,18 +73,7 @@ public abstract class TerrierIRSimilarity extends GraphSimilarity
         Int2DoubleMap map = new Int2DoubleOpenHashMap();
         String weightingModel = this.getModel();
         Optional<Double> cvalue = this.getCValue();
-        ScoredDocList results = this.index.query(idx, weightingModel, cvalue);
-        if(results == null)
-            return (int idx2) -> 0.0;
-        else
-        {
-            results.forEach(r -> 
-            {
-                int idx2 = Parsers.ip.parse(r.getMetadata(TerrierIndex.NODEID));
-                double sim = r.getScore();
-                map.put(idx2, sim);
-            });
-        }
+        this.index.query(idx, weightingModel, cvalue, map::put);
         
         return (int idx2) -> map.getOrDefault(idx2, 0.0);
     }
@@ -96,18 +83,12 @@ public abstract class TerrierIRSimilarity extends GraphSimilarity
     {
         String weightingModel = this.getModel();
         Optional<Double> cvalue = this.getCValue();
-        ScoredDocList results = this.index.query(idx, weightingModel, cvalue);
-        
-        if(results == null) return Stream.empty();
-        
         List<Tuple2id> tuples = new ArrayList<>();
-        results.forEach(r -> 
+        this.index.query(idx, weightingModel, cvalue, (idx2, sim) -> 
         {
-            String meta = r.getMetadata(TerrierIndex.NODEID);
-            int idx2 = Parsers.ip.parse(meta);
             if(idx != idx2)
             {
-                tuples.add(new Tuple2id(idx2, r.getScore()));
+                tuples.add(new Tuple2id(idx2, sim));
             }
         });
         
@@ -11,6 +11,7 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
 import es.uam.eps.ir.irmodels4contactrec.recommender.knn.similarities.GraphSimilarity;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
@@ -27,11 +28,11 @@ public class VSMSimilarity extends GraphSimilarity
     private final EdgeOrientation uSel;
     private final EdgeOrientation vSel;
     
-    private final Int2DoubleMap uIdf;
-    private final Int2DoubleMap vIdf;
+    private final double[] uIdf;
+    private final double[] vIdf;
     
-    private final Int2DoubleMap uMod;
-    private final Int2DoubleMap vMod;
+    private final double[] uMod;
+    private final double[] vMod;
     
     /**
      * Constructor.
@@ -45,53 +46,19 @@ public class VSMSimilarity extends GraphSimilarity
         this.uSel = uSel;
         this.vSel = vSel;
         
-        this.uIdf = new Int2DoubleOpenHashMap();
-        this.uMod = new Int2DoubleOpenHashMap();
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uIdf = stats.getIDF(uSel.invertSelection());
+        this.uMod = this.calculateMods(uSel, this.uIdf);
         
         if(!graph.isDirected() || uSel.equals(vSel))
         {
-            this.graph.getAllNodesIds().forEach(uidx ->
-                    this.uIdf.put(uidx, this.calculateIdf(uidx, uSel.invertSelection())));
-            
-            this.graph.getAllNodesIds().forEach(uidx -> 
-            {
-                double mod = this.graph.getNeighborhoodWeights(uidx, uSel).mapToDouble(widx -> 
-                {
-                    double value = this.calculateTf(widx.v2)*this.uIdf.get(widx.v1);
-                    return value*value;
-                }).sum();
-                this.uMod.put(uidx, mod);
-            });
-            
             this.vIdf = uIdf;
             this.vMod = vIdf;
         }
         else
         {
-            this.vIdf = new Int2DoubleOpenHashMap();
-            this.vMod = new Int2DoubleOpenHashMap();
-            this.graph.getAllNodesIds().forEach(uidx -> 
-            {
-                this.uIdf.put(uidx, this.calculateIdf(uidx, uSel.invertSelection()));
-                this.vIdf.put(uidx, this.calculateIdf(uidx, vSel.invertSelection()));
-            });
-            
-            this.graph.getAllNodesIds().forEach(uidx -> 
-            {
-                double mod = this.graph.getNeighborhoodWeights(uidx, uSel).mapToDouble(widx -> 
-                {
-                    double value = this.calculateTf(widx.v2)*this.uIdf.get(widx.v1);
-                    return value*value;
-                }).sum();
-                this.uMod.put(uidx, mod);
-                
-                double mod2 = this.graph.getNeighborhoodWeights(uidx, vSel).mapToDouble(widx -> 
-                {
-                    double value = this.calculateTf(widx.v2)*this.vIdf.get(widx.v1);
-                    return value*value;
-                }).sum();
-                this.vMod.put(uidx, mod2);
-            });
+            this.vIdf = stats.getIDF(vSel.invertSelection());
+            this.vMod = this.calculateMods(vSel, this.vIdf);
         }
     }
     
@@ -101,34 +68,43 @@ public class VSMSimilarity extends GraphSimilarity
     }
     
     /**
-     * Compute the inverse document frequency of a node
-     * @param uidx the node
+     * Computes the squared module of the tf-idf vector of every node.
      * @param s the orientation of the neighbors
-     * @return the value of the idf
+     * @param idf the idf of every node
+     * @return the squared modules
      */
-    private double calculateIdf(int uidx, EdgeOrientation s)
+    private double[] calculateMods(EdgeOrientation s, double[] idf)
     {
-        double num = this.graph.getNeighborhood(uidx, s).count() + 0.0;
-        return Math.log(1.0 + (this.graph.getVertexCount() + 0.0)/(num + 1.0))/Math.log(2.0);
+        double[] mods = new double[idf.length];
+        this.graph.getAllNodesIds().parallel().forEach(uidx -> 
+            this.graph.forEachNeighbor(uidx, s, (widx, weight) -> 
+            {
+                double value = this.calculateTf(weight)*idf[widx];
+                mods[uidx] += value*value;
+            }));
+        return mods;
     }
     
     @Override
     public IntToDoubleFunction similarity(int idx)
     {
         Int2DoubleMap uNeighs = new Int2DoubleOpenHashMap();
-        this.graph.getNeighborhoodWeights(idx, uSel).forEach(x -> uNeighs.put(x.v1, this.calculateTf(x.v2)*this.uIdf.get(x.v1)));
+        this.graph.forEachNeighbor(idx, uSel, (widx, weight) -> uNeighs.put(widx, this.calculateTf(weight)*this.uIdf[widx]));
+        double uModule = this.uMod[idx];
         
         return (int idx2) -> 
         {
-            double mods = this.uMod.get(idx)*this.vMod.get(idx);
+            double mods = uModule*this.vMod[idx2];
             if(mods == 0.0) return 0.0;
-            double prod = this.graph.getNeighborhoodWeights(idx, vSel).filter(widx -> uNeighs.containsKey(widx.v1))
-                .mapToDouble(widx -> 
+            double[] prod = new double[]{0.0};
+            this.graph.forEachNeighbor(idx2, vSel, (widx, weight) -> 
+            {
+                if(uNeighs.containsKey(widx))
                 {
-                    double idf = this.vIdf.get(widx.v1);
-                    return this.calculateTf(widx.v2)*idf*uNeighs.get(widx.v1);
-                }).sum();
-            return prod/Math.sqrt(mods);
+                    prod[0] += this.calculateTf(weight)*this.vIdf[widx]*uNeighs.get(widx);
+                }
+            });
+            return prod[0]/Math.sqrt(mods);
         };
     }
 
@@ -137,19 +113,18 @@ public class VSMSimilarity extends GraphSimilarity
     {
         Int2DoubleOpenHashMap sims = new Int2DoubleOpenHashMap();
         sims.defaultReturnValue(0.0);
-        double uModule = this.uMod.get(idx);
-        this.graph.getNeighborhoodWeights(idx, uSel).forEach(widx -> {
-            double uIdfW = this.uIdf.get(widx.v1);
-            double vIdfW = this.vIdf.get(widx.v1);
-            
-            this.graph.getNeighborhoodWeights(widx.v1, vSel.invertSelection()).forEach(vidx -> 
+        double uModule = this.uMod[idx];
+        this.graph.forEachNeighbor(idx, uSel, (widx, uW) -> {
+            double uIdfW = this.uIdf[widx];
+            double vIdfW = this.vIdf[widx];
+            this.graph.forEachNeighbor(widx, vSel.invertSelection(), (vidx, vW) ->
             {
-                double prod  = this.calculateTf(widx.v2)*uIdfW*this.calculateTf(vidx.v2)*vIdfW;
-                sims.addTo(vidx.v1, prod);
+                double prod  = this.calculateTf(uW)*uIdfW*this.calculateTf(vW)*vIdfW;
+                sims.addTo(vidx, prod);
             });
         });
         
-        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/Math.sqrt(uModule*this.vMod.get(x.getIntKey()))));
+        return sims.int2DoubleEntrySet().stream().map(x -> new Tuple2id(x.getIntKey(), x.getDoubleValue()/Math.sqrt(uModule*this.vMod[x.getIntKey()])));
     }
     
 }
@@ -11,9 +11,14 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.basic;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleTopK;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import java.util.List;
+import java.util.function.IntPredicate;
 
 /**
  * Popularity recommender. Recommends users according to their degree.
@@ -31,6 +36,14 @@ public class Popularity<U> extends UserFastRankingRecommender<U>
      * Link orientation for selecting the neighbours of the candidate node.
      */
     private final EdgeOrientation vSel;
+    /**
+     * Popularity of each user.
+     */
+    private final double[] popularity;
+    /**
+     * Users sorted by decreasing popularity (ties are sorted by decreasing identifier, as in the rankings).
+     */
+    private final int[] ranking;
 
     /**
      * Constructor for recommendation mode.
@@ -42,6 +55,13 @@ public class Popularity<U> extends UserFastRankingRecommender<U>
     {
         super(graph);
         this.vSel = vSel;
+        this.popularity = graph.getStatistics().getNeighborhoodSizes(vSel);
+        this.ranking = this.getAllUidx().toArray();
+        IntArrays.quickSort(this.ranking, (vidx, widx) ->
+        {
+            int cmp = Double.compare(this.popularity[widx], this.popularity[vidx]);
+            return cmp != 0 ? cmp : Integer.compare(widx, vidx);
+        });
     }
 
     /**
@@ -51,21 +71,31 @@ public class Popularity<U> extends UserFastRankingRecommender<U>
      */
     public Popularity(FastGraph<U> graph)
     {
-        super(graph);
-        this.vSel = EdgeOrientation.IN;
+        this(graph, EdgeOrientation.IN);
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        U u = this.uidx2user(uidx);
-
-        Int2DoubleMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(-1.0);
-
-        this.getAllUsers().forEach(v -> scoresMap.put(this.item2iidx(v), this.getGraph().getNeighbourhoodSize(v, vSel) + 0.0));
-        return scoresMap;
+        this.getAllUidx().forEach(vidx -> scores.set(vidx, this.popularity[vidx]));
     }
 
-
+    @Override
+    public List<Tuple2id> getTopK(int uidx, int k, IntPredicate filter)
+    {
+        // Users are visited by decreasing score, so we can stop as soon as one of them does not enter the top k.
+        IntDoubleTopK topK = new IntDoubleTopK(Math.min(k, this.ranking.length));
+        for (int vidx : this.ranking)
+        {
+            if (!topK.accepts(vidx, this.popularity[vidx]))
+            {
+                break;
+            }
+            if (filter.test(vidx))
+            {
+                topK.add(vidx, this.popularity[vidx]);
+            }
+        }
+        return topK.toSortedList();
+    }
 }
@@ -11,9 +11,8 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 
 /**
  * Recommender that uses the Adamic-Adar coefficient of the neighbours.
@@ -32,7 +31,7 @@ public class AdamicAdar<U> extends UserFastRankingRecommender<U>
     /**
      * Map containing the length of the common neighborhoods between target and candidate users.
      */
-    private final Int2DoubleMap wSizes;
+    private final double[] wSizes;
     /**
      * Neighborhood selection for the target users.
      */
@@ -58,26 +57,20 @@ public class AdamicAdar<U> extends UserFastRankingRecommender<U>
     {
         super(graph);
 
-        wSizes = new Int2DoubleOpenHashMap();
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         this.wSel = wSel;
 
-        this.getAllUidx().forEach(widx -> wSizes.put(widx, graph.getNeighborhood(widx, wSel).count() + 0.0));
+        this.wSizes = graph.getStatistics().getNeighborhoodSizes(wSel);
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        graph.getNeighborhood(uidx, uSel).forEach(widx ->
+        graph.forEachNeighbor(uidx, uSel, widx ->
         {
-            double weight = 1.0 / Math.log(wSizes.get((int) widx) + 2.0);
-            graph.getNeighborhood(widx, vSel).forEach(vidx -> scoresMap.addTo(vidx, weight));
+            double weight = 1.0 / Math.log(wSizes[widx] + 2.0);
+            graph.forEachNeighbor(widx, vSel, vidx -> scores.add(vidx, weight));
         });
-
-        return scoresMap;
     }
 }
@@ -11,12 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Recommender using the cosine similarity to produce recommendations.
@@ -35,11 +32,11 @@ public class Cosine<U> extends UserFastRankingRecommender<U>
     /**
      * Map containing the length of the neighborhoods of the target users.
      */
-    private final Map<Integer, Double> uSizes;
+    private final double[] uSizes;
     /**
      * Map containing the length of the neighborhoods of the candidate users.
      */
-    private final Map<Integer, Double> vSizes;
+    private final double[] vSizes;
     /**
      * Neighborhood selection for the target users.
      */
@@ -61,49 +58,31 @@ public class Cosine<U> extends UserFastRankingRecommender<U>
         super(graph);
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
-        uSizes = new HashMap<>();
-        vSizes = new HashMap<>();
 
+        FastGraphStatistics stats = graph.getStatistics();
         if (!graph.isWeighted())
         {
-            graph.getAllNodes().forEach(u -> uSizes.put(graph.object2idx(u), graph.getNeighbourhoodSize(u, uSel) + 0.0));
-            if (uSel.equals(vSel) || !graph.isDirected())
-            {
-                vSizes.putAll(uSizes);
-            }
-            else
-            {
-                graph.getAllNodes().forEach(v -> vSizes.put(graph.object2idx(v), graph.getNeighbourhoodSize(v, vSel) + 0.0));
-            }
+            uSizes = stats.getNeighborhoodSizes(uSel);
+            vSizes = (uSel.equals(vSel) || !graph.isDirected()) ? uSizes : stats.getNeighborhoodSizes(vSel);
         }
         else
         {
-            graph.getAllNodes().forEach(u -> uSizes.put(graph.object2idx(u), graph.getNeighborhoodWeights(graph.object2idx(u), uSel).mapToDouble(x -> x.v2).sum()));
-            if (uSel.equals(vSel) || !graph.isDirected())
-            {
-                vSizes.putAll(uSizes);
-            }
-            else
-            {
-                graph.getAllNodes().forEach(v -> vSizes.put(graph.object2idx(v), graph.getNeighborhoodWeights(graph.object2idx(v), vSel).mapToDouble(x -> x.v2).sum()));
-            }
+            uSizes = stats.getNeighborhoodWeightSums(uSel);
+            vSizes = (uSel.equals(vSel) || !graph.isDirected()) ? uSizes : stats.getNeighborhoodWeightSums(vSel);
         }
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(widx ->
-                graph.getNeighborhoodWeights(widx.v1, vSel).forEach(vidx ->
-                        scoresMap.put(vidx.v1(), scoresMap.getOrDefault(vidx.v1, 0.0) + widx.v2 * vidx.v2)
+        double uSize = this.uSizes[uidx];
+        graph.forEachNeighbor(uidx, uSel, (widx, uW) ->
+                graph.forEachNeighbor(widx, vSel, (vidx, vW) ->
+                        scores.add(vidx, uW * vW)
                 )
         );
 
-        scoresMap.replaceAll((vidx, sim) -> sim / Math.sqrt(this.vSizes.get(vidx) * this.uSizes.get(uidx)));
-        return scoresMap;
+        scores.replaceAll((vidx, sim) -> sim / Math.sqrt(this.vSizes[vidx] * uSize));
     }
 
 
@@ -11,9 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 
 /**
  * Recommended based on the Jaccard similarity.
@@ -33,11 +33,11 @@ public class Jaccard<U> extends UserFastRankingRecommender<U>
     /**
      * Map containing the length of the neighborhoods of the target users.
      */
-    private final Int2DoubleMap uSizes;
+    private final double[] uSizes;
     /**
      * Map containing the length of the neighborhoods of the candidate users.
      */
-    private final Int2DoubleMap vSizes;
+    private final double[] vSizes;
     /**
      * Neighborhood selection for the target users.
      */
@@ -57,37 +57,21 @@ public class Jaccard<U> extends UserFastRankingRecommender<U>
     public Jaccard(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel)
     {
         super(graph);
-        uSizes = new Int2DoubleOpenHashMap();
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
 
-        if (uSel.equals(vSel) || !graph.isDirected())
-        {
-            this.getAllUidx().forEach(uidx -> uSizes.put(uidx, graph.getNeighborhood(uidx, uSel).count() + 0.0));
-            vSizes = uSizes;
-        }
-        else
-        {
-            vSizes = new Int2DoubleOpenHashMap();
-            this.getAllUidx().forEach(uidx ->
-            {
-                uSizes.put(uidx, graph.getNeighborhood(uidx, uSel).count() + 0.0);
-                vSizes.put(uidx, graph.getNeighborhood(uidx, vSel).count() + 0.0);
-            });
-        }
+        FastGraphStatistics stats = graph.getStatistics();
+        uSizes = stats.getNeighborhoodSizes(uSel);
+        vSizes = (uSel.equals(vSel) || !graph.isDirected()) ? uSizes : stats.getNeighborhoodSizes(vSel);
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
+        double uSize = this.uSizes[uidx];
+        graph.forEachNeighbor(uidx, uSel, widx ->
+            graph.forEachNeighbor(widx, vSel, vidx -> scores.add(vidx, 1.0)));
 
-        double uSize = this.uSizes.get(uidx);
-        graph.getNeighborhood(uidx, uSel).forEach(widx ->
-            graph.getNeighborhood(widx, vSel).forEach(vidx -> scoresMap.addTo(vidx, 1.0)));
-
-        scoresMap.replaceAll((vidx, sim) -> sim / (uSize + this.vSizes.get((int) vidx) - sim));
-        return scoresMap;
+        scores.replaceAll((vidx, sim) -> sim / (uSize + this.vSizes[vidx] - sim));
     }
 }
@@ -11,9 +11,8 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.foaf;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 
 /**
  * Recommended that sorts candidate users according to the number of neighbors in common with the target one.
@@ -55,15 +54,10 @@ public class MostCommonNeighbors<U> extends UserFastRankingRecommender<U>
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        graph.getNeighborhood(uidx, uSel).forEach(widx ->
-            graph.getNeighborhood(widx, vSel).forEach(vidx ->
-                scoresMap.addTo(vidx, 1.0)));
-
-        return scoresMap;
+        graph.forEachNeighbor(uidx, uSel, widx ->
+            graph.forEachNeighbor(widx, vSel, vidx ->
+                scores.add(vidx, 1.0)));
     }
 }
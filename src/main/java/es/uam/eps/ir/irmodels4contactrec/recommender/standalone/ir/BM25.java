@@ -11,11 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-
-import java.util.OptionalDouble;
 
 /**
  * Adaptation of the BM-25 Information Retrieval Algorithm for user recommendation. Uses a term-based implementation.
@@ -55,21 +53,15 @@ public class BM25<U> extends UserFastRankingRecommender<U>
     /**
      * Average size of the neighborhood of the candidate nodes.
      */
-    private double avgSize;
-    /**
-     * Number of users in the network.
-     */
-    private long numUsers;
+    private final double avgSize;
     /**
      * Robertson-Sparck-Jones formula values for each user.
      */
-    private final Int2DoubleOpenHashMap rsj;
+    private final double[] rsj;
     /**
      * Neighborhood sizes for each user.
      */
-    private final Int2DoubleOpenHashMap size;
-
-    private final Int2DoubleOpenHashMap wLengths;
+    private final double[] size;
 
     /**
      * Constructor.
@@ -88,74 +80,49 @@ public class BM25<U> extends UserFastRankingRecommender<U>
         this.dlSel = dlSel;
         this.b = b;
         this.k = k;
-        this.rsj = new Int2DoubleOpenHashMap();
-        this.size = new Int2DoubleOpenHashMap();
-        this.wLengths = new Int2DoubleOpenHashMap();
-        this.numUsers = graph.getVertexCount();
-
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
-        OptionalDouble opt = this.getAllUidx().mapToDouble(vidx ->
-        {
-            // Compute RSJ
-            double rsjV = graph.getNeighborhood(vidx, this.vSel).count();
-            this.wLengths.put(vidx, rsjV);
-            rsjV = Math.log((numUsers - rsjV + 0.5) / (rsjV + 0.5));
-            this.rsj.put(vidx, rsjV);
 
-
-            // Compute size
-            double val = graph.getNeighborhoodWeights(vidx, dlSel).mapToDouble(widx -> widx.v2).sum();
-
-            this.size.put(vidx, val);
-            return val;
-        }).average();
-
-        this.avgSize = opt.isPresent() ? opt.getAsDouble() : 0.0;
+        FastGraphStatistics stats = graph.getStatistics();
+        this.rsj = stats.getRSJ(this.vSel);
+        this.size = stats.getNeighborhoodWeightSums(dlSel);
+        this.avgSize = stats.getAverageWeightSum(dlSel);
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-
         if (Double.isFinite(this.k))
         {
-            graph.getNeighborhood(uidx, uSel).forEach(widx ->
+            graph.forEachNeighbor(uidx, uSel, widx ->
             {
-                double rsjW = this.rsj.get((int) widx);
-                graph.getNeighborhoodWeights(widx, vSel).forEach(vidx ->
+                double rsjW = this.rsj[widx];
+                graph.forEachNeighbor(widx, vSel, (vidx, weight) ->
                 {
-                    double weight = vidx.v2;
-                    double s = this.size.get(vidx.v1);
+                    double s = this.size[vidx];
 
                     double num = (this.k + 1.0) * weight * rsjW;
                     double den = this.k * (1 - b + (b * s / avgSize)) + weight;
 
-                    scoresMap.addTo(vidx.v1, num / den);
+                    scores.add(vidx, num / den);
                 });
             });
         }
         else
         {
-            graph.getNeighborhood(uidx, uSel).forEach(widx ->
+            graph.forEachNeighbor(uidx, uSel, widx ->
             {
-                double rsjW = this.rsj.get((int) widx);
-                graph.getNeighborhoodWeights(widx, vSel).forEach(vidx ->
+                double rsjW = this.rsj[widx];
+                graph.forEachNeighbor(widx, vSel, (vidx, weight) ->
                 {
-                    double weight = vidx.v2;
-                    double s = this.size.get(vidx.v1);
+                    double s = this.size[vidx];
 
                     double num = weight * rsjW;
                     double den = (1 - b + (b * s / avgSize));
 
-                    scoresMap.addTo(vidx.v1, num / den);
+                    scores.add(vidx, num / den);
                 });
             });
         }
-
-        return scoresMap;
     }
 }
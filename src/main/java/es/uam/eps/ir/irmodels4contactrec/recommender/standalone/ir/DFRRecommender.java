@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
+
+import java.util.Arrays;
+
+/**
+ * Divergence from Randomness models for contact recommendation, computed directly over the neighbourhoods of
+ * the graph. As in {@link TerrierRecommender}, the candidate users are the documents, whose terms are their
+ * neighbours, and the neighbours of the target user are the query terms. The frequency of a term in a document
+ * (and in the query) is the weight of the edge. As in Terrier, the frequencies of the query terms are divided
+ * by the largest one.
+ * <p>
+ * In unweighted graphs, every frequency is one, and the lengths of the documents are the sizes of the
+ * neighbourhoods. Therefore, in directed graphs, a reciprocal neighbour counts once in an UND neighbourhood
+ * (instead of adding the weights of both edges).
+ * <p>
+ * The scores are the same as those computed by the Terrier implementation of the models (for integer weights,
+ * since Terrier rounds up the frequencies), except that Terrier only retrieves the top 1000 candidate users for
+ * each target user.
+ *
+ * @param <U> Type of the users.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public abstract class DFRRecommender<U> extends UserFastRankingRecommender<U>
+{
+    /**
+     * Base 2 logarithm of e.
+     */
+    protected static final double LOG_2_OF_E = 1.0 / Math.log(2.0);
+    /**
+     * Neighborhood selection for the target users.
+     */
+    private final EdgeOrientation uSel;
+    /**
+     * Neighborhood selection for finding the candidate users of each term.
+     */
+    private final EdgeOrientation invSel;
+    /**
+     * Whether the graph is weighted or not.
+     */
+    private final boolean weighted;
+    /**
+     * Length of the document of each user.
+     */
+    private final double[] docLengths;
+    /**
+     * Frequency of each term in the collection.
+     */
+    private final double[] termFrequencies;
+    /**
+     * Number of documents in the collection.
+     */
+    protected final double numberOfDocuments;
+    /**
+     * Number of tokens in the collection.
+     */
+    protected final double numberOfTokens;
+    /**
+     * Average length of the documents.
+     */
+    protected final double averageDocumentLength;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the training graph.
+     * @param uSel  orientation selection for the target user.
+     * @param vSel  orientation selection for the candidate user.
+     */
+    public DFRRecommender(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel)
+    {
+        super(graph);
+        this.uSel = uSel;
+        this.invSel = vSel.invertSelection();
+
+        this.weighted = graph.isWeighted();
+
+        FastGraphStatistics stats = graph.getStatistics();
+        this.numberOfDocuments = stats.numNodes();
+        if (this.weighted)
+        {
+            this.docLengths = stats.getNeighborhoodWeightSums(vSel);
+            this.termFrequencies = stats.getNeighborhoodWeightSums(this.invSel);
+            this.numberOfTokens = stats.getTotalWeightSum(vSel);
+            this.averageDocumentLength = stats.getAverageWeightSum(vSel);
+        }
+        else
+        {
+            this.docLengths = stats.getNeighborhoodSizes(vSel);
+            this.termFrequencies = stats.getNeighborhoodSizes(this.invSel);
+            this.numberOfTokens = Arrays.stream(this.docLengths).sum();
+            this.averageDocumentLength = this.numberOfDocuments == 0 ? 0.0 : this.numberOfTokens / this.numberOfDocuments;
+        }
+    }
+
+    @Override
+    protected void getScores(int uidx, ScoreAccumulator scores)
+    {
+        double[] maxKeyFrequency = new double[]{0.0};
+        graph.forEachNeighbor(uidx, uSel, (widx, weight) -> maxKeyFrequency[0] = Math.max(maxKeyFrequency[0], this.frequency(weight)));
+
+        graph.forEachNeighbor(uidx, uSel, (widx, weight) ->
+        {
+            double keyFrequency = this.frequency(weight) / maxKeyFrequency[0];
+            double termFrequency = this.termFrequencies[widx];
+            graph.forEachNeighbor(widx, invSel, (vidx, weightV) ->
+                scores.add(vidx, this.score(this.frequency(weightV), this.docLengths[vidx], termFrequency, keyFrequency)));
+        });
+    }
+
+    /**
+     * Obtains the frequency of a term from the weight of an edge: the weight itself in weighted graphs, and
+     * one in unweighted graphs (where the weight of a reciprocal neighbour in an UND neighbourhood adds both edges).
+     *
+     * @param weight the weight of the edge.
+     *
+     * @return the frequency.
+     */
+    private double frequency(double weight)
+    {
+        return this.weighted ? weight : 1.0;
+    }
+
+    /**
+     * Computes the score of a term in a document.
+     *
+     * @param tf            frequency of the term in the document.
+     * @param docLength     length of the document.
+     * @param termFrequency frequency of the term in the collection.
+     * @param keyFrequency  frequency of the term in the query.
+     *
+     * @return the score.
+     */
+    protected abstract double score(double tf, double docLength, double termFrequency, double keyFrequency);
+
+    /**
+     * Computes the base 2 logarithm of a value.
+     *
+     * @param value the value.
+     *
+     * @return the logarithm.
+     */
+    protected static double log(double value)
+    {
+        return Math.log(value) * LOG_2_OF_E;
+    }
+
+    /**
+     * Computes the relative frequency of a term in a document (which must be smaller than one).
+     *
+     * @param tf        frequency of the term in the document.
+     * @param docLength length of the document.
+     *
+     * @return the relative frequency.
+     */
+    protected static double relativeFrequency(double tf, double docLength)
+    {
+        return tf < docLength ? tf / docLength : 0.99999;
+    }
+}
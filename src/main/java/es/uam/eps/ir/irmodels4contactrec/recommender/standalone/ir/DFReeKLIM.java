@@ -11,13 +11,11 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
-
-import java.util.Optional;
 
 /**
  * Class that applies the DFReeKLIM Divergence from Randomness model as a contact
- * recommendation algorithm.
+ * recommendation algorithm. The model is computed directly over the neighbourhoods
+ * of the graph, with the same formula as the Terrier implementation.
  * <p>
  * Amati, G., Amodeo, G., Bianchi, M., Marcone, G., Bordoni, F.U., Gaibisso, C.,Gambosi, G., Celi, A., Nicola, C.D., Flammini, M.:
  * FUB, IASI-CNR, UNIVAQ at TREC 2011 Microblog Track. In: Proceedings of the 20th Text REtrieval Confer-ence (TREC 2011). NIST (2011)
@@ -29,7 +27,7 @@ import java.util.Optional;
  *
  * @see org.terrier.matching.models.DFReeKLIM
  */
-public class DFReeKLIM<U> extends TerrierRecommender<U>
+public class DFReeKLIM<U> extends DFRRecommender<U>
 {
     /**
      * Constructor.
@@ -43,28 +41,13 @@ public class DFReeKLIM<U> extends TerrierRecommender<U>
         super(graph, uSel, vSel);
     }
 
-    /**
-     * Constructor.
-     *
-     * @param graph     the training graph.
-     * @param uSel      orientation selection for the target user.
-     * @param vSel      orientation selection for the candidate user.
-     * @param structure Terrier basic structures for the algorithm.
-     */
-    public DFReeKLIM(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, TerrierStructure structure)
-    {
-        super(graph, uSel, vSel, structure);
-    }
-
     @Override
-    protected String getModel()
+    protected double score(double tf, double docLength, double termFrequency, double keyFrequency)
     {
-        return new org.terrier.matching.models.DFReeKLIM().getInfo();
-    }
+        double prior = tf / docLength;
+        double posterior = (tf + 1.0) / (docLength + 1.0);
+        double priorCollection = termFrequency / numberOfTokens;
 
-    @Override
-    protected Optional<Double> getCValue()
-    {
-        return Optional.empty();
+        return keyFrequency * tf * log(posterior / prior) * log(prior / priorCollection);
     }
 }
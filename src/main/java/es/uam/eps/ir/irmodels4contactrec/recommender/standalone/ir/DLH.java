@@ -11,13 +11,11 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
-
-import java.util.Optional;
 
 /**
  * Class that applies the DLH Divergence from Randomness model as a contact
- * recommendation algorithm.
+ * recommendation algorithm. The model is computed directly over the neighbourhoods
+ * of the graph, with the same formula as the Terrier implementation.
  * <p>
  * Amati, G., Ambrosi, E., Bianchi, M., Gaibisso, C., Gambosi, G.: FUB, IASI-CNRand University of Tor Vergata at TREC 2007 Blog Track. In: Proceedings of the16th Text REtrieval Conference (TREC 2007). NIST (2007
  *
@@ -28,8 +26,13 @@ import java.util.Optional;
  *
  * @see org.terrier.matching.models.DLH
  */
-public class DLH<U> extends TerrierRecommender<U>
+public class DLH<U> extends DFRRecommender<U>
 {
+    /**
+     * Smoothing parameter.
+     */
+    private static final double K = 0.5;
+
     /**
      * Constructor.
      *
@@ -42,28 +45,12 @@ public class DLH<U> extends TerrierRecommender<U>
         super(graph, uSel, vSel);
     }
 
-    /**
-     * Constructor.
-     *
-     * @param graph     the training graph.
-     * @param uSel      orientation selection for the target user.
-     * @param vSel      orientation selection for the candidate user.
-     * @param structure Terrier basic structures for the algorithm.
-     */
-    public DLH(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, TerrierStructure structure)
-    {
-        super(graph, uSel, vSel, structure);
-    }
-
-    @Override
-    protected String getModel()
-    {
-        return new org.terrier.matching.models.DLH().getInfo();
-    }
-
     @Override
-    protected Optional<Double> getCValue()
+    protected double score(double tf, double docLength, double termFrequency, double keyFrequency)
     {
-        return Optional.empty();
+        double f = relativeFrequency(tf, docLength);
+        return keyFrequency * (tf * log((tf * averageDocumentLength / docLength) * (numberOfDocuments / termFrequency))
+                + (docLength - tf) * log(1.0 - f)
+                + 0.5 * log(2.0 * Math.PI * tf * (1.0 - f))) / (tf + K);
     }
 }
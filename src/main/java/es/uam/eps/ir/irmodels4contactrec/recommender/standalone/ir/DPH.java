@@ -11,13 +11,11 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
-
-import java.util.Optional;
 
 /**
  * Class that applies the DPH Divergence from Randomness model as a contact
- * recommendation algorithm.
+ * recommendation algorithm. The model is computed directly over the neighbourhoods
+ * of the graph, with the same formula as the Terrier implementation.
  * <p>
  * Amati, G.: Frequentist and Bayesian Approach to Information Retrieval. In: Pro-ceedings of the 28th European Conference on Information Retrieval (ECIR 2006).pp. 13–24. No. 3936 in LNCS, Springer (2006)
  *
@@ -28,7 +26,7 @@ import java.util.Optional;
  *
  * @see org.terrier.matching.models.DPH
  */
-public class DPH<U> extends TerrierRecommender<U>
+public class DPH<U> extends DFRRecommender<U>
 {
     /**
      * Constructor.
@@ -42,28 +40,12 @@ public class DPH<U> extends TerrierRecommender<U>
         super(graph, uSel, vSel);
     }
 
-    /**
-     * Constructor.
-     *
-     * @param graph     the training graph.
-     * @param uSel      orientation selection for the target user.
-     * @param vSel      orientation selection for the candidate user.
-     * @param structure Terrier basic structures for the algorithm.
-     */
-    public DPH(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, TerrierStructure structure)
-    {
-        super(graph, uSel, vSel, structure);
-    }
-
-    @Override
-    protected String getModel()
-    {
-        return new org.terrier.matching.models.DPH().getInfo();
-    }
-
     @Override
-    protected Optional<Double> getCValue()
+    protected double score(double tf, double docLength, double termFrequency, double keyFrequency)
     {
-        return Optional.empty();
+        double f = relativeFrequency(tf, docLength);
+        double norm = (1.0 - f) * (1.0 - f) / (tf + 1.0);
+        return keyFrequency * norm * (tf * log((tf * averageDocumentLength / docLength) * (numberOfDocuments / termFrequency))
+                + 0.5 * log(2.0 * Math.PI * tf * (1.0 - f)));
     }
 }
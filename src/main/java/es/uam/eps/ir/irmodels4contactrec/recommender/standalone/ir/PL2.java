@@ -11,13 +11,11 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
-
-import java.util.Optional;
 
 /**
  * Class that applies the PL2 Divergence from Randomness model as a contact
- * recommendation algorithm.
+ * recommendation algorithm. The model is computed directly over the neighbourhoods
+ * of the graph, with the same formula as the Terrier implementation.
  * <p>
  * Amati, G., Van Rijsbergen, C.J.: Probabilistic Models of Information Retrieval Based on Measuring the Divergence from Randomness.
  * ACM Transactions on Information Systems 20(4), 357–389 (2002)
@@ -29,8 +27,11 @@ import java.util.Optional;
  *
  * @see org.terrier.matching.models.PL2
  */
-public class PL2<U> extends TerrierRecommender<U>
+public class PL2<U> extends DFRRecommender<U>
 {
+    /**
+     * Parameter for tuning the importance of the candidate user length.
+     */
     private final double c;
 
     /**
@@ -47,30 +48,15 @@ public class PL2<U> extends TerrierRecommender<U>
         this.c = c;
     }
 
-    /**
-     * Constructor.
-     *
-     * @param graph     the training graph.
-     * @param uSel      orientation selection for the target user.
-     * @param vSel      orientation selection for the candidate user.
-     * @param structure Terrier basic structures for the algorithm.
-     * @param c         parameter for tuning the importance of the candidate user length.
-     */
-    public PL2(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, TerrierStructure structure, double c)
-    {
-        super(graph, uSel, vSel, structure);
-        this.c = c;
-    }
-
-    @Override
-    protected String getModel()
-    {
-        return "PL2";
-    }
-
     @Override
-    protected Optional<Double> getCValue()
+    protected double score(double tf, double docLength, double termFrequency, double keyFrequency)
     {
-        return Optional.of(c);
+        double tfn = tf * log(1.0 + (c * averageDocumentLength) / docLength);
+        double norm = 1.0 / (tfn + 1.0);
+        double f = termFrequency / numberOfDocuments;
+        return norm * keyFrequency * (tfn * log(1.0 / f)
+                + f * LOG_2_OF_E
+                + 0.5 * log(2.0 * Math.PI * tfn)
+                + tfn * (log(tfn) - LOG_2_OF_E));
     }
 }
@@ -11,10 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import org.ranksys.core.util.tuples.Tuple2id;
 
 /**
  * Adaptation of the Query Likelihood Information Retrieval method, with Dirichlet regularization.
@@ -40,15 +39,15 @@ public class QLD<U> extends UserFastRankingRecommender<U>
     /**
      * For each user, computes the proportion of neighbors it has, in comparison with the sum of all neighborhood sizes.
      */
-    private final Int2DoubleMap pc;
+    private final double[] pc;
     /**
      * Neighborhood sizes for the target user
      */
-    private final Int2DoubleMap uSize;
+    private final double[] uSize;
     /**
      * Neighborhood sizes for the candidate user
      */
-    private final Int2DoubleMap vSize;
+    private final double[] vSize;
     /**
      * Sum of the neighborhood sizes
      */
@@ -77,101 +76,59 @@ public class QLD<U> extends UserFastRankingRecommender<U>
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         this.mu = mu;
-        this.uSize = new Int2DoubleOpenHashMap();
+
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uSize = stats.getNeighborhoodWeightSums(uSel);
+        this.fullSize = stats.getTotalWeightSum(uSel);
 
         EdgeOrientation wSel = vSel.invertSelection();
         if (!graph.isDirected() || (uSel.equals(vSel) && uSel.equals(EdgeOrientation.UND))) // Cases UND-UND
         {
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                return uS;
-            }).sum();
             this.vSize = uSize;
             this.pc = uSize;
         }
         else if (uSel.equals(vSel)) //CASES IN-IN,OUT-OUT
         {
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = graph.getNeighborhoodWeights(vidx, wSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.pc.put(vidx, wS);
-                return uS;
-            }).sum();
+            this.pc = stats.getNeighborhoodWeightSums(wSel);
             this.vSize = uSize;
         }
         else if (uSel.equals(vSel.invertSelection())) // CASES IN-OUT,OUT-IN
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, wS);
-                return uS;
-            }).sum();
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
             this.pc = uSize;
         }
         else if (vSel.equals(EdgeOrientation.UND)) // CASES IN-UND, OUT-UND
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-                return uS;
-            }).sum();
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
             this.pc = vSize;
         }
         else // CASES UND-IN, UND-OUT
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
+            this.pc = new double[uSize.length];
+            for (int vidx = 0; vidx < uSize.length; ++vidx)
             {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = uS - vS; // Considering that weight(UND,x,y) = weight(x,y) + weight(y,x)
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-                this.pc.put(vidx, wS);
-                return uS;
-            }).sum();
+                this.pc[vidx] = uSize[vidx] - vSize[vidx]; // Considering that weight(UND,x,y) = weight(x,y) + weight(y,x)
+            }
         }
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        double norm = this.uSize.get(uidx);
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w ->
+        double norm = this.uSize[uidx];
+        graph.forEachNeighbor(uidx, uSel, (widx, uWeight) ->
         {
-            double uWeight = w.v2;
-            int widx = w.v1;
-            double wPc = this.fullSize / (this.mu * this.pc.get(widx));
+            double wPc = this.fullSize / (this.mu * this.pc[widx]);
 
-            graph.getNeighborhoodWeights(widx, vSel).forEach(v ->
+            graph.forEachNeighbor(widx, vSel, (vidx, vWeight) ->
             {
-                double vWeight = v.v2;
-
                 double val = uWeight * Math.log(vWeight * wPc + 1.0);
-                if (Double.isNaN(val) || Double.isInfinite(val)) scoresMap.addTo(v.v1, Double.NEGATIVE_INFINITY);
-                else scoresMap.addTo(v.v1, val);
+                if (Double.isNaN(val) || Double.isInfinite(val)) scores.add(vidx, Double.NEGATIVE_INFINITY);
+                else scores.add(vidx, val);
             });
         });
 
-        scoresMap.replaceAll((vidx, val) -> val - norm * Math.log(1.0 + this.vSize.get((int) vidx) / mu));
-
-        return scoresMap;
+        scores.replaceAll((vidx, val) -> val - norm * Math.log(1.0 + this.vSize[vidx] / mu));
     }
 }
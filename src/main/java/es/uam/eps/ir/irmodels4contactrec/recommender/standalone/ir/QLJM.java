@@ -11,10 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import org.ranksys.core.util.tuples.Tuple2id;
 
 /**
  * Adaptation of the Query Likelihood Information Retrieval method, with Jelinek-Mercer regularization.
@@ -40,11 +39,11 @@ public class QLJM<U> extends UserFastRankingRecommender<U>
     /**
      * For each user, computes the proportion of neighbors it has, in comparison with the sum of all neighborhood sizes.
      */
-    private final Int2DoubleMap pc;
+    private final double[] pc;
     /**
      * Neighborhood sizes
      */
-    private final Int2DoubleMap size;
+    private final double[] size;
     /**
      * Sum of the neighborhood sizes
      */
@@ -72,55 +71,36 @@ public class QLJM<U> extends UserFastRankingRecommender<U>
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
         this.lambda = lambda / (1 - lambda);
-        this.size = new Int2DoubleOpenHashMap();
+
+        FastGraphStatistics stats = graph.getStatistics();
+        this.size = stats.getNeighborhoodWeightSums(vSel);
+        this.fullSize = stats.getTotalWeightSum(vSel);
 
         EdgeOrientation wSel = vSel.invertSelection();
         if (!graph.isDirected() || vSel.equals(EdgeOrientation.UND)) // vSel == wSel
         {
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                this.size.put(vidx, vS);
-                return vS;
-            }).sum();
             this.pc = size;
         }
         else
         {
-            this.pc = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-                double wS = graph.getNeighborhoodWeights(vidx, wSel).mapToDouble(Tuple2id::v2).sum();
-
-                this.size.put(vidx, vS);
-                this.pc.put(vidx, wS);
-                return vS;
-            }).sum();
+            this.pc = stats.getNeighborhoodWeightSums(wSel);
         }
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w ->
+        graph.forEachNeighbor(uidx, uSel, (widx, uW) ->
         {
-            double uW = w.v2;
-            int widx = w.v1;
-            double wPc = this.fullSize / (this.pc.get(widx));
+            double wPc = this.fullSize / (this.pc[widx]);
 
-            graph.getNeighborhoodWeights(widx, vSel).forEach(v ->
+            graph.forEachNeighbor(widx, vSel, (vidx, vW) ->
             {
-                double s = this.size.getOrDefault(v.v1, 0.0);
-                double val = lambda * wPc * (v.v2 / s);
-                if (Double.isNaN(val) || Double.isInfinite(val)) scoresMap.addTo(v.v1, Double.NEGATIVE_INFINITY);
-                else scoresMap.addTo(v.v1, uW * Math.log(val + 1.0));
+                double s = this.size[vidx];
+                double val = lambda * wPc * (vW / s);
+                if (Double.isNaN(val) || Double.isInfinite(val)) scores.add(vidx, Double.NEGATIVE_INFINITY);
+                else scores.add(vidx, uW * Math.log(val + 1.0));
             });
         });
-
-        return scoresMap;
     }
 }
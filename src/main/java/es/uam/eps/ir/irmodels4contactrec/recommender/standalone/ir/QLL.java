@@ -11,10 +11,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import org.ranksys.core.util.tuples.Tuple2id;
 
 /**
  * Adaptation of the Query Likelihood Information Retrieval method, with Laplace regularization.
@@ -40,11 +39,11 @@ public class QLL<U> extends UserFastRankingRecommender<U>
     /**
      * Target users neighborhood sizes
      */
-    private final Int2DoubleMap uSize;
+    private final double[] uSize;
     /**
      * Candidate users neighborhood sizes
      */
-    private final Int2DoubleMap vSize;
+    private final double[] vSize;
     /**
      * Neighborhood selection for the target users.
      */
@@ -71,57 +70,31 @@ public class QLL<U> extends UserFastRankingRecommender<U>
         this.vSel = vSel.invertSelection();
         this.gamma = gamma;
 
-        this.uSize = new Int2DoubleOpenHashMap();
-
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uSize = stats.getNeighborhoodWeightSums(uSel);
         if (!graph.isDirected() || uSel.equals(vSel))
         {
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double s = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                this.uSize.put(vidx, s);
-                return s;
-            }).sum();
-            vSize = uSize;
+            this.fullSize = stats.getTotalWeightSum(uSel);
+            this.vSize = uSize;
         }
         else
         {
-            this.vSize = new Int2DoubleOpenHashMap();
-            this.fullSize = this.getAllUidx().mapToDouble(vidx ->
-            {
-                double uS = graph.getNeighborhoodWeights(vidx, uSel).mapToDouble(Tuple2id::v2).sum();
-                double vS = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(Tuple2id::v2).sum();
-
-                this.uSize.put(vidx, uS);
-                this.vSize.put(vidx, vS);
-                return vS;
-            }).sum();
+            this.vSize = stats.getNeighborhoodWeightSums(vSel);
+            this.fullSize = stats.getTotalWeightSum(vSel);
         }
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int uidx)
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
-        double uS = this.uSize.get(uidx);
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w ->
-        {
-            double uW = w.v2;
-            int widx = w.v1;
-
-            graph.getNeighborhoodWeights(widx, vSel).forEach(v ->
+        double uS = this.uSize[uidx];
+        graph.forEachNeighbor(uidx, uSel, (widx, uW) ->
+            graph.forEachNeighbor(widx, vSel, (vidx, vW) ->
             {
-                double val = uW * Math.log((v.v2 + this.gamma) / this.gamma);
-                scoresMap.addTo(v.v1, val);
-            });
-        });
-
-        for (int vidx : scoresMap.keySet())
-        {
-            scoresMap.replace(vidx, scoresMap.get(vidx) + uS * Math.log(this.gamma / (this.vSize.get(vidx) + gamma * this.numUsers())));
-        }
+                double val = uW * Math.log((vW + this.gamma) / this.gamma);
+                scores.add(vidx, val);
+            }));
 
-        return scoresMap;
+        scores.replaceAll((vidx, val) -> val + uS * Math.log(this.gamma / (this.vSize[vidx] + gamma * this.numUsers())));
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
+
+import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+
+import java.util.Optional;
+
+/**
+ * Contact recommendation algorithm which applies any weighting model from the Terrier library, by querying a
+ * Terrier index built from the graph.
+ *
+ * @param <U> Type of the users.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class TerrierModel<U> extends TerrierRecommender<U>
+{
+    /**
+     * Name of the weighting model.
+     */
+    private final String model;
+    /**
+     * The c value of the weighting model (if any).
+     */
+    private final Optional<Double> c;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the training graph.
+     * @param uSel  orientation selection for the target user.
+     * @param vSel  orientation selection for the candidate user.
+     * @param model name of the Terrier weighting model (ex. PL2).
+     * @param c     the c value of the weighting model, or an empty object to use the default one.
+     */
+    public TerrierModel(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, String model, Optional<Double> c)
+    {
+        super(graph, uSel, vSel);
+        this.model = model;
+        this.c = c;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param graph     the training graph.
+     * @param uSel      orientation selection for the target user.
+     * @param vSel      orientation selection for the candidate user.
+     * @param structure Terrier basic structures for the algorithm.
+     * @param model     name of the Terrier weighting model (ex. PL2).
+     * @param c         the c value of the weighting model, or an empty object to use the default one.
+     */
+    public TerrierModel(FastGraph<U> graph, EdgeOrientation uSel, EdgeOrientation vSel, TerrierStructure structure, String model, Optional<Double> c)
+    {
+        super(graph, uSel, vSel, structure);
+        this.model = model;
+        this.c = c;
+    }
+
+    @Override
+    protected String getModel()
+    {
+        return this.model;
+    }
+
+    @Override
+    protected Optional<Double> getCValue()
+    {
+        return this.c;
+    }
+}
@@ -17,9 +17,7 @@ import es.uam.eps.ir.irmodels4contactrec.data.TerrierStructure;
 import es.uam.eps.ir.irmodels4contactrec.utils.Tuple2oo;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import org.ranksys.formats.parsing.Parsers;
-import org.terrier.querying.ScoredDocList;
-import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.structures.Index;
 
 import java.util.Map;
 import java.util.Optional;
@@ -77,7 +75,7 @@ public abstract class TerrierRecommender<U> extends UserFastRankingRecommender<U
         super(graph);
         this.uSel = uSel;
         this.vSel = vSel;
-        Tuple2oo<MemoryIndex, Map<Integer, String>> pair = structure.get(uSel, vSel);
+        Tuple2oo<Index, Map<Integer, String>> pair = structure.get(uSel, vSel);
         this.index = new TerrierIndex(graph, uSel, vSel, pair.v1(), pair.v2());
     }
 
@@ -88,17 +86,7 @@ public abstract class TerrierRecommender<U> extends UserFastRankingRecommender<U
         String weightingModel = this.getModel();
         Optional<Double> cvalue = this.getCValue();
 
-        ScoredDocList results = this.index.query(uidx, weightingModel, cvalue);
-        if (results != null)
-        {
-            results.forEach((doc) ->
-            {
-                double score = doc.getScore();
-                int vidx = Parsers.ip.parse(doc.getMetadata(TerrierIndex.NODEID));
-                scores.put(vidx, score);
-            });
-        }
-
+        this.index.query(uidx, weightingModel, cvalue, scores::put);
         return scores;
     }
 
@@ -10,9 +10,9 @@ package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphStatistics;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 
 /**
  * Adaptation of the TF-IDF method of Information Retrieval for user recommendation
@@ -24,15 +24,15 @@ public class VSM<U> extends UserFastRankingRecommender<U>
     /**
      * Target users' inverse document frequency
      */
-    private final Int2DoubleMap uIdf;
+    private final double[] uIdf;
     /**
      * Candidate users' inverse document frequency
      */
-    private final Int2DoubleMap vIdf;
+    private final double[] vIdf;
     /**
      * tf-idf vector modules for each user
      */
-    private final Int2DoubleMap mod;
+    private final double[] mod;
     /**
      * Neighborhood selection for the target users.
      */
@@ -53,34 +53,30 @@ public class VSM<U> extends UserFastRankingRecommender<U>
               
         this.uSel = uSel;
         this.vSel = vSel.invertSelection();
-        this.uIdf = new Int2DoubleOpenHashMap();
-        this.mod = new Int2DoubleOpenHashMap();
         EdgeOrientation uAuxOrient = uSel.invertSelection();
         EdgeOrientation vAuxOrient = vSel.invertSelection();
-        
+
+        FastGraphStatistics stats = graph.getStatistics();
+        this.uIdf = stats.getIDF(uAuxOrient);
         if(!graph.isDirected() || uSel.equals(vSel))
         {
-            this.getAllUidx().forEach(uidx -> uIdf.put(uidx, this.calculateIdf(uidx, uAuxOrient)));
             this.vIdf = uIdf;
         }
         else
         {
-            this.vIdf = new Int2DoubleOpenHashMap();
-            this.getAllUidx().forEach(uidx -> 
-            {
-                uIdf.put(uidx, this.calculateIdf(uidx, uAuxOrient));
-                vIdf.put(uidx, this.calculateIdf(uidx, vAuxOrient));
-            });
+            this.vIdf = stats.getIDF(vAuxOrient);
         }
 
-        this.getAllUidx().forEach(vidx -> 
+        this.mod = new double[stats.numNodes()];
+        this.getAllUidx().parallel().forEach(vidx ->
         {
-            double module = graph.getNeighborhoodWeights(vidx, vSel).mapToDouble(widx -> 
+            double[] module = {0.0};
+            graph.forEachNeighbor(vidx, vSel, (widx, weight) ->
             {
-                double val = this.calculateTf(widx.v2)*this.vIdf.get(widx.v1);
-                return val*val;
-            }).sum();
-            this.mod.put(vidx, module);
+                double val = this.calculateTf(weight)*this.vIdf[widx];
+                module[0] += val*val;
+            });
+            this.mod[vidx] = module[0];
         });
     }
 
@@ -94,41 +90,23 @@ public class VSM<U> extends UserFastRankingRecommender<U>
         return 1.0 + Math.log(weight)/Math.log(2.0);
     }
     
-    /**
-     * Compute the inverse document frequency of a node
-     * @param uidx the node
-     * @param s the orientation of the neighbors
-     * @return the value of the idf
-     */
-    private double calculateIdf(int uidx, EdgeOrientation s)
-    {
-        double num = this.getGraph().getNeighborhood(uidx, s).count() + 0.0;
-        return Math.log(1.0 + ((double) this.numUsers()) / (num + 1.0))/Math.log(2.0);
-    }
-        
     @Override
-    public Int2DoubleMap getScoresMap(int uidx) 
+    protected void getScores(int uidx, ScoreAccumulator scores)
     {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-
         
-        graph.getNeighborhoodWeights(uidx, uSel).forEach(w -> 
+        graph.forEachNeighbor(uidx, uSel, (widx, weight) ->
         {            
-            int widx = w.v1;
-            double uW = this.calculateTf(w.v2)*this.uIdf.get(widx);
-            double vW = this.vIdf.get(widx);
+            double uW = this.calculateTf(weight)*this.uIdf[widx];
+            double vW = this.vIdf[widx];
             
-            graph.getNeighborhoodWeights(widx, vSel).forEach(v -> 
+            graph.forEachNeighbor(widx, vSel, (vidx, vWeight) ->
             {
-                if(v.v2 == 0) System.err.println(v.v1 + " " + widx + " " + v.v2);
-                double val = uW*this.calculateTf(v.v2)*vW;
-                scoresMap.addTo(v.v1, val);
+                double val = uW*this.calculateTf(vWeight)*vW;
+                scores.add(vidx, val);
             });
         });
                 
-        scoresMap.replaceAll((vidx, val) -> val/Math.sqrt(this.mod.get((int) vidx)));
+        scores.replaceAll((vidx, val) -> val/Math.sqrt(this.mod[vidx]));
         
-        return scoresMap;
     }
 }
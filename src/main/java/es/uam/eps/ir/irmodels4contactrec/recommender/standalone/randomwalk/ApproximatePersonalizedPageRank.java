@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
+import es.uam.eps.ir.irmodels4contactrec.utils.IntDoubleTopK;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Personalized PageRank recommender which approximates the random walk locally, around the target user, instead
+ * of running the complete power iteration for every user.
+ * <p>
+ * In {@link PersonalizedPageRank}, the probability which the random walk loses at nodes without outgoing links
+ * is uniformly distributed among all nodes. Because of this, the personalized PageRank vector of a user u can be
+ * decomposed as p_u = q_u + (1 - |q_u|) g, where q_u is the personalized PageRank vector without such
+ * redistribution (i.e. the walk just stops when it reaches a node without outgoing links), and g is the global
+ * PageRank vector. The global vector is computed only once, and subclasses only approximate q_u, whose cost
+ * depends on the neighbourhood of the target user.
+ * <p>
+ * Only the users reached by the local approximation have a score beyond their share of the global vector, so the
+ * top k users are selected by visiting those users, and then the rest by decreasing global PageRank, until one
+ * of them cannot enter the top k.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ *
+ * @param <U> type of the users.
+ */
+public abstract class ApproximatePersonalizedPageRank<U> extends UserFastRankingRecommender<U>
+{
+    /**
+     * Teleport rate.
+     */
+    protected final double r;
+    /**
+     * Transition matrix of the graph.
+     */
+    protected final TransitionMatrix matrix;
+    /**
+     * Global PageRank value of every user.
+     */
+    private final double[] global;
+    /**
+     * Users sorted by decreasing global PageRank (ties are sorted by decreasing identifier, as in the rankings).
+     */
+    private final int[] ranking;
+
+    /**
+     * Constructor.
+     *
+     * @param graph the graph.
+     * @param r     teleport rate.
+     */
+    public ApproximatePersonalizedPageRank(FastGraph<U> graph, double r)
+    {
+        super(graph);
+        this.r = r;
+        this.matrix = new TransitionMatrix(graph);
+        this.global = new PageRank<U>(r).compute(this.matrix, -1);
+        this.ranking = new int[this.global.length];
+        for (int vidx = 0; vidx < this.ranking.length; ++vidx)
+        {
+            this.ranking[vidx] = vidx;
+        }
+        IntArrays.quickSort(this.ranking, (vidx, widx) ->
+        {
+            int cmp = Double.compare(this.global[widx], this.global[vidx]);
+            return cmp != 0 ? cmp : Integer.compare(widx, vidx);
+        });
+    }
+
+    @Override
+    public List<Tuple2id> getTopK(int uidx, int k, IntPredicate filter)
+    {
+        ScoreAccumulator scores = ScoreAccumulator.acquire(this.numItems());
+        try
+        {
+            scores.setFilter(filter);
+            // With no teleport to the origin, the walk does not depend on the target user.
+            double mass = this.r > 0.0 ? this.estimate(uidx, scores) : 0.0;
+            double rest = Math.max(0.0, 1.0 - mass);
+
+            IntDoubleTopK topK = new IntDoubleTopK(Math.min(k, this.ranking.length));
+            scores.forEach((vidx, value) -> topK.add(vidx, value + rest * this.global[vidx]));
+
+            // The rest of the users only receive their share of the global vector: they are visited by decreasing
+            // score, so we can stop as soon as one of them does not enter the top k.
+            for (int vidx : this.ranking)
+            {
+                double value = rest * this.global[vidx];
+                if (!topK.accepts(vidx, value))
+                {
+                    break;
+                }
+                if (!scores.contains(vidx) && filter.test(vidx))
+                {
+                    topK.add(vidx, value);
+                }
+            }
+            return topK.toSortedList();
+        }
+        finally
+        {
+            scores.release();
+        }
+    }
+
+    @Override
+    protected void getScores(int uidx, ScoreAccumulator scores)
+    {
+        // With no teleport to the origin, the walk does not depend on the target user.
+        double mass = this.r > 0.0 ? this.estimate(uidx, scores) : 0.0;
+        double rest = Math.max(0.0, 1.0 - mass);
+        for (int vidx = 0; vidx < this.global.length; ++vidx)
+        {
+            scores.add(vidx, rest * this.global[vidx]);
+        }
+    }
+
+    /**
+     * Approximates the personalized PageRank values of the users when the random walk stops at the nodes without
+     * outgoing links, and adds them to the scores.
+     *
+     * @param uidx   identifier of the target user.
+     * @param scores the accumulator for the scores.
+     *
+     * @return the estimated sum of all the values.
+     */
+    protected abstract double estimate(int uidx, ScoreAccumulator scores);
+}
@@ -8,19 +8,16 @@
  */
 package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
 
-import es.uam.eps.ir.irmodels4contactrec.graph.DirectedGraph;
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.EmptyGraphGenerator;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GraphGenerator;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorBadConfiguredException;
-import es.uam.eps.ir.irmodels4contactrec.graph.generator.GeneratorNotConfiguredException;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Abstract class which represents a bipartite recommender. In those recommenders, there are two types 
  * of users: authorities and hubs. Hubs only have outgoing links, and authorities only have incoming links.
+ * <p>
+ * The bipartite graph is not built: every user in the graph is a hub, whose outgoing links are its outgoing
+ * links in the graph, and every user with, at least, one incoming link is an authority, whose incoming links
+ * are its incoming links in the graph. Both neighbourhoods are stored in compressed sparse row format.
  * @author Javier Sanz-Cruzado Puig
  * @param <U> Type of the users.
  */
@@ -32,19 +29,29 @@ public abstract class BipartiteRecommender<U> extends UserFastRankingRecommender
      */
     protected final boolean mode;
     /**
-     * A map between the hubs identifiers and their true representation (the node in 
-     * the original graph).
+     * Number of users.
      */
-    protected final Map<Long,U> hubs;
+    protected final int numUsers;
     /**
-     * A map between the authorities identifiers and their true representation (the node in 
-     * the original graph).
-     */    
-    protected final Map<Long,U> authorities;
+     * Offsets of the outgoing neighbourhoods of the hubs.
+     */
+    protected final int[] outOffsets;
+    /**
+     * Outgoing neighbours of the hubs.
+     */
+    protected final int[] outIds;
+    /**
+     * Offsets of the incoming neighbourhoods of the authorities.
+     */
+    protected final int[] inOffsets;
     /**
-     * The bipartite representation of the graph.
+     * Incoming neighbours of the authorities.
      */
-    protected final DirectedGraph<Long> bipartiteGraph;
+    protected final int[] inIds;
+    /**
+     * Number of authorities.
+     */
+    protected final int numAuthorities;
     
     /**
      * Constructor.
@@ -55,55 +62,42 @@ public abstract class BipartiteRecommender<U> extends UserFastRankingRecommender
     {
         super(graph);
         this.mode = mode;
-        this.hubs = new HashMap<>();
-        this.authorities = new HashMap<>();
-        
-        this.bipartiteGraph = this.computeBipartiteGraph();
+
+        TransitionMatrix matrix = new TransitionMatrix(graph);
+        this.numUsers = matrix.numNodes();
+        this.outOffsets = matrix.getOutOffsets();
+        this.outIds = matrix.getOutIds();
+        this.inOffsets = matrix.getInOffsets();
+        this.inIds = matrix.getInIds();
+
+        int count = 0;
+        for (int vidx = 0; vidx < this.numUsers; ++vidx)
+        {
+            if (this.inDegree(vidx) > 0)
+            {
+                ++count;
+            }
+        }
+        this.numAuthorities = count;
     }
 
     /**
-     * Computes the bipartite graph from the original network.
-     * @return the bipartite graph.
+     * Obtains the number of outgoing links of a hub.
+     * @param uidx the identifier of the hub.
+     * @return the number of outgoing links.
      */
-    private DirectedGraph<Long> computeBipartiteGraph() 
+    protected int outDegree(int uidx)
     {
-        try 
-        {
-            GraphGenerator<Long> gg = new EmptyGraphGenerator<>();
-            gg.configure(true, this.getGraph().isWeighted());
-            DirectedGraph<Long> bipartite = (DirectedGraph<Long>) gg.generate();
-            Map<U,Long> authAux = new HashMap<>();
-            this.getGraph().getAllNodes().forEach(u -> 
-            {
-                long uIdx = bipartite.getVertexCount();
-                this.hubs.put(uIdx,u);
-                bipartite.addNode(uIdx);
-                if(this.getGraph().getAdjacentNodesCount(u) > 0)
-                {
-                    this.getGraph().getAdjacentNodes(u).forEach(v -> 
-                    {
-                        long vIdx;
-                        if(authAux.containsKey(v))
-                        {
-                            vIdx = authAux.get(v);
-                        }
-                        else
-                        {
-                            vIdx = bipartite.getVertexCount();
-                            this.authorities.put(vIdx,v);
-                            authAux.put(v,vIdx);
-                            bipartite.addNode(vIdx);
-                        }
-                        
-                        bipartite.addEdge(uIdx, vIdx);
-                    });
-                }
-            });
-            
+        return this.outOffsets[uidx + 1] - this.outOffsets[uidx];
+    }
 
-            return bipartite;
-        } catch (GeneratorNotConfiguredException | GeneratorBadConfiguredException ex) {
-            return null;
-        }
+    /**
+     * Obtains the number of incoming links of an authority.
+     * @param vidx the identifier of the authority.
+     * @return the number of incoming links (zero if the user is not an authority).
+     */
+    protected int inDegree(int vidx)
+    {
+        return this.inOffsets[vidx + 1] - this.inOffsets[vidx];
     }
 }
@@ -9,15 +9,16 @@
 package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import java.util.HashMap;
-import java.util.Map;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
 
 /**
  * General personalized SALSA recommender.
  * 
  * Goel, A. et al. The who-to-follow system at Twitter: Strategy, algorithms and revenue impact. Interfaces 45(1), 2015, pp. 98-107
+ * <p>
+ * The hub and authority scores are iterated until the sum of their absolute differences falls below a threshold.
+ * Optionally, the number of iterations and the time spent on each user can be limited: when the limit is reached,
+ * the scores of the last iteration are returned (if a time limit is set, the results might vary between executions).
  * 
  * @author Javier Sanz-Cruzado Puig
  * @param <U> Type of the users
@@ -28,11 +29,19 @@ public class Money<U> extends BipartiteRecommender<U>
     /**
      * Teleport rate.
      */
-    private final double alpha;
+    protected final double alpha;
     /**
      * Convergence threshold.
      */
     private final static double THRESHOLD = 0.01;
+    /**
+     * Maximum number of iterations.
+     */
+    private final int maxIter;
+    /**
+     * Maximum time (in milliseconds) for computing the scores of a user (0 if there is no limit).
+     */
+    private final long timeBudget;
 
     /**
      * Constructor.
@@ -41,101 +50,101 @@ public class Money<U> extends BipartiteRecommender<U>
      * @param alpha Teleport probability.
      */
     public Money(FastGraph<U> graph, boolean mode, double alpha)
+    {
+        this(graph, mode, alpha, Integer.MAX_VALUE, 0L);
+    }
+
+    /**
+     * Constructor.
+     * @param graph User graph.
+     * @param mode True if the recommendation scores are the authorities scores, false if the recommendation scores are the hubs scores
+     * @param alpha Teleport probability.
+     * @param maxIter Maximum number of iterations.
+     * @param timeBudget Maximum time (in milliseconds) for computing the scores of a user (0 if there is no limit).
+     */
+    public Money(FastGraph<U> graph, boolean mode, double alpha, int maxIter, long timeBudget)
     {
         super(graph, mode);
         this.alpha = alpha;
-
+        this.maxIter = maxIter;
+        this.timeBudget = timeBudget;
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int i) 
+    protected void getScores(int i, ScoreAccumulator scores)
     {
-        U u = uIndex.uidx2user(i);
-        Int2DoubleMap scores = new Int2DoubleOpenHashMap();
-        Map<U, Double> hubsMap = new HashMap<>();
-        Map<U, Double> authMap = new HashMap<>();
-        
-        this.hubs.forEach((key, value) -> {
-            if (value.equals(u))
-                hubsMap.put(value, 1.0);
-            else
-                hubsMap.put(value, 0.0);
-        });
-        
-        this.authorities.forEach((key, value) -> authMap.put(value, 1.0 / (this.authorities.size())));
-        
-        double diff;
-        do // Compute Personalized SALSA
+        long deadline = this.timeBudget > 0 ? System.nanoTime() + this.timeBudget * 1000000L : Long.MAX_VALUE;
+
+        double[] hubs = new double[this.numUsers];
+        double[] authorities = new double[this.numUsers];
+        // Score each hub sends through each of its outgoing links.
+        double[] hubContrib = new double[this.numUsers];
+        // Score each authority sends through each of its incoming links.
+        double[] authContrib = new double[this.numUsers];
+
+        hubs[i] = 1.0;
+        for (int vidx = 0; vidx < this.numUsers; ++vidx)
         {
-            diff = this.authorities.entrySet().stream().mapToDouble(entry -> 
-            {
-                long bIdx = entry.getKey();
-                U user = entry.getValue();
-                
-                double newAuthScore = this.bipartiteGraph.getIncidentNodes(bIdx)
-                        .mapToDouble(wIdx -> hubsMap.get(this.hubs.get(wIdx))/this.bipartiteGraph.outDegree(wIdx))
-                        .sum();
-                double old = authMap.get(user);
-                authMap.put(user, newAuthScore);
-                return Math.abs(old - newAuthScore);
-            }).sum();
-            
-            diff += this.hubs.entrySet().stream().mapToDouble(entry -> 
+            if (this.inDegree(vidx) > 0)
             {
-                long bIdx = entry.getKey();
-                U user = entry.getValue();
-                
-                double newHubScore = this.bipartiteGraph.getAdjacentNodes(bIdx)
-                        .mapToDouble(wIdx -> authMap.get(this.authorities.get(wIdx))/this.bipartiteGraph.inDegree(wIdx))
-                        .sum();
-                newHubScore *= (1-this.alpha);
-                
-                if(user.equals(u))
-                {
-                    newHubScore += this.alpha;
-                }
-                
-                double old = hubsMap.get(user);
-                hubsMap.put(user, newHubScore);
-                
-                return Math.abs(old - newHubScore);
-            }).sum();
+                authorities[vidx] = 1.0 / this.numAuthorities;
+            }
         }
-        while(diff > THRESHOLD);
-        
-        if(this.mode) //Authorities
+
+        double diff;
+        int iter = 0;
+        do // Compute Personalized SALSA
         {
-            this.uIndex.getAllUsers().forEach(v -> 
+            diff = 0.0;
+            for (int widx = 0; widx < this.numUsers; ++widx)
+            {
+                int outDegree = this.outDegree(widx);
+                hubContrib[widx] = outDegree > 0 ? hubs[widx] / outDegree : 0.0;
+            }
+
+            for (int vidx = 0; vidx < this.numUsers; ++vidx)
             {
-                int vIdx = this.uIndex.user2uidx(v);
-                if(authMap.containsKey(v))
+                int inDegree = this.inDegree(vidx);
+                if (inDegree == 0)
                 {
-                    scores.put(vIdx, authMap.get(v).doubleValue());
+                    continue;
                 }
-                else
+
+                double newAuthScore = 0.0;
+                for (int pos = this.inOffsets[vidx]; pos < this.inOffsets[vidx + 1]; ++pos)
                 {
-                    scores.put(vIdx,0.0);
+                    newAuthScore += hubContrib[this.inIds[pos]];
                 }
-            });
-        }
-        else // Hubs
-        {
-            this.uIndex.getAllUsers().forEach(v -> 
+                diff += Math.abs(authorities[vidx] - newAuthScore);
+                authorities[vidx] = newAuthScore;
+                authContrib[vidx] = newAuthScore / inDegree;
+            }
+
+            for (int uidx = 0; uidx < this.numUsers; ++uidx)
             {
-                int vIdx = this.uIndex.user2uidx(v);
-                if(hubsMap.containsKey(v))
+                double newHubScore = 0.0;
+                for (int pos = this.outOffsets[uidx]; pos < this.outOffsets[uidx + 1]; ++pos)
                 {
-                    scores.put(vIdx, hubsMap.get(v).doubleValue());
+                    newHubScore += authContrib[this.outIds[pos]];
                 }
-                else
+                newHubScore *= (1 - this.alpha);
+
+                if (uidx == i)
                 {
-                    scores.put(vIdx,0.0);
+                    newHubScore += this.alpha;
                 }
-            });
+
+                diff += Math.abs(hubs[uidx] - newHubScore);
+                hubs[uidx] = newHubScore;
+            }
+            ++iter;
+        }
+        while (diff > THRESHOLD && iter < this.maxIter && System.nanoTime() < deadline);
+
+        double[] values = this.mode ? authorities : hubs; // Authorities or hubs
+        for (int vidx = 0; vidx < this.numUsers; ++vidx)
+        {
+            scores.set(vidx, values[vidx]);
         }
-            
-            
-        return scores;
-        
     }    
 }
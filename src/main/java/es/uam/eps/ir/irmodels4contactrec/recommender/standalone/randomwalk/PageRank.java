@@ -9,16 +9,25 @@
 package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.fast.FastIndex;
+
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  * Computes the PageRank values of the different nodes in the grah.
+ * <p>
+ * The power iteration runs over the compressed sparse row representation of the graph (see {@link TransitionMatrix}),
+ * and each iteration is run in parallel over the blocks of nodes of the matrix. The probability mass of the nodes
+ * without outgoing links (and, in personalized PageRank, the rest of the mass which does not return to the origin)
+ * is uniformly distributed among all nodes.
+ *
  * @author Javier Sanz-Cruzado Puig
  * @param <U> type of the nodes.
  */
@@ -66,99 +75,333 @@ public class PageRank<U>
         return this.compute(graph).get(user);
     }
 
+    @SuppressWarnings("unchecked")
     public Map<U, Double> compute(Graph<U> graph)
     {
-        Set<U> users = graph.getAllNodes().collect(Collectors.toCollection(HashSet::new));
-        Map<U, Integer> ids = new HashMap<>();
-        
-        int N = users.size();
+        Index<U> index;
+        TransitionMatrix matrix;
+        if (graph instanceof FastGraph)
+        {
+            index = ((FastGraph<U>) graph).getIndex();
+            matrix = new TransitionMatrix((FastGraph<U>) graph);
+        }
+        else
+        {
+            index = new FastIndex<>();
+            graph.getAllNodes().forEach(index::addObject);
+            matrix = new TransitionMatrix(graph, index);
+        }
 
-        // data
-        Map<Integer, Map<U, Double>> in = new HashMap<>();
-        double[] out = new double[N];
-        double[] pr = new double[N];
-        double[] prAux = new double[N];
+        int source = (this.u == null || !index.containsObject(this.u)) ? -1 : index.object2idx(this.u);
+        double[] pr = this.compute(matrix, source);
+
+        Map<U, Double> pagerank = new HashMap<>();
+        for (int uidx = 0; uidx < pr.length; ++uidx)
+        {
+            pagerank.put(index.idx2object(uidx), pr[uidx]);
+        }
+
+        return pagerank;
+    }
+
+    /**
+     * Computes the PageRank values over a transition matrix.
+     * @param matrix the transition matrix of the graph.
+     * @param source the identifier of the original node (if PageRank is personalized), -1 otherwise.
+     * @return an array containing the PageRank value of every node.
+     */
+    public double[] compute(TransitionMatrix matrix, int source)
+    {
+        int N = matrix.numNodes();
+        int[] inOffsets = matrix.getInOffsets();
+        int[] inIds = matrix.getInIds();
+        int[] outDegrees = matrix.getOutDegrees();
+        int numBlocks = matrix.numBlocks();
+
+        // The values of the current and the next iteration alternate between both arrays.
+        double[][] pr = new double[2][N];
+        // Probability of each node which is sent through each of its outgoing links.
+        double[] contrib = new double[N];
+        double[] blockSums = new double[numBlocks];
+        boolean[] blockConverged = new boolean[numBlocks];
 
         // ini
-        int index = 0;
-        for (U v : users) 
+        IntStream.range(0, numBlocks).parallel().forEach(b ->
         {
-            ids.put(v, index);
+            for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
+            {
+                pr[0][w] = 1.0/(N+0.0);
+                contrib[w] = outDegrees[w] > 0 ? pr[0][w]/outDegrees[w] : 0.0;
+            }
+        });
 
-            Map<U, Double> inWeights;
-            double outSum;
+        double teleport = source == -1 ? r/(N+0.0) : 0.0;
 
-            Set<U> inUsers = graph.getIncidentNodes(v).collect(Collectors.toCollection(HashSet::new));
-            inWeights = new HashMap<>();
-            for (U w : inUsers) {
-                inWeights.put(w, 1.0);
+        // iterations
+        boolean hasConverged = false;
+        int i = 0;
+        while (i < MAXITER && !hasConverged)
+        {
+            double[] current = pr[i % 2];
+            double[] next = pr[(i + 1) % 2];
+
+            // calculate: gather the probability coming from the incoming neighbours
+            IntStream.range(0, numBlocks).parallel().forEach(b ->
+            {
+                double blockSum = 0.0;
+                for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
+                {
+                    double in = 0.0;
+                    for (int pos = inOffsets[w]; pos < inOffsets[w + 1]; ++pos)
+                    {
+                        in += contrib[inIds[pos]];
+                    }
+                    double val = (w == source ? r : teleport) + (1 - r) * in;
+                    next[w] = val;
+                    blockSum += val;
+                }
+                blockSums[b] = blockSum;
+            });
+
+            // make sum (block by block, so the result does not depend on the scheduling)
+            double sum = 0.0;
+            for (int b = 0; b < numBlocks; b++)
+            {
+                sum += blockSums[b];
             }
 
-            Set<U> outUsers = graph.getAdjacentNodes(v).collect(Collectors.toCollection(HashSet::new));
-            outSum = outUsers.size() * 1.0;
+            // handle sinks and check convergence
+            double sink = (1.0-sum) / (N+0.0);
+            IntStream.range(0, numBlocks).parallel().forEach(b ->
+            {
+                boolean converged = true;
+                for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
+                {
+                    double val = next[w] + sink;
+                    converged &= Math.abs(val - current[w]) < THRESHOLD;
+                    next[w] = val;
+                    contrib[w] = outDegrees[w] > 0 ? val/outDegrees[w] : 0.0;
+                }
+                blockConverged[b] = converged;
+            });
+
+            hasConverged = true;
+            for (int b = 0; b < numBlocks; b++)
+            {
+                hasConverged &= blockConverged[b];
+            }
+            i++;
+        }
 
-            in.put(index, inWeights);
-            out[index] = outSum;
+        return pr[i % 2];
+    }
+    
+    /**
+     * Computes the personalized PageRank values for several original nodes at once. Each iteration goes over the
+     * edges of the graph only once, updating the values of all the original nodes whose values have not converged
+     * yet. The values of each original node are the same as those obtained by {@link #compute(TransitionMatrix, int)}.
+     * @param matrix the transition matrix of the graph.
+     * @param sources the identifiers of the original nodes (-1 for the not personalized PageRank).
+     * @return an array containing the values, node by node: the value of node w for the j-th original node is
+     * in position w*sources.length + j.
+     */
+    public double[] compute(TransitionMatrix matrix, int[] sources)
+    {
+        int N = matrix.numNodes();
+        int B = sources.length;
+        int[] outDegrees = matrix.getOutDegrees();
+        int numBlocks = matrix.numBlocks();
 
-            pr[index] = 1.0/(N+0.0);
+        double[] values = new double[N*B];
+        if (B == 0)
+        {
+            return values;
+        }
 
-            index++;
+        // Original nodes whose values have not converged yet (the columns of the arrays).
+        int[] columns = new int[B];
+        for (int j = 0; j < B; ++j)
+        {
+            columns[j] = j;
         }
+        int W = B;
+
+        double[] current = new double[N*W];
+        double[] next = new double[N*W];
+        double[] contrib = new double[N*W];
+
+        // ini
+        double[] ini = current;
+        double[] iniContrib = contrib;
+        IntStream.range(0, numBlocks).parallel().forEach(b ->
+        {
+            for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
+            {
+                for (int j = 0; j < B; ++j)
+                {
+                    ini[w*B + j] = 1.0/(N+0.0);
+                    iniContrib[w*B + j] = outDegrees[w] > 0 ? ini[w*B + j]/outDegrees[w] : 0.0;
+                }
+            }
+        });
 
         // iterations
-        boolean hasConverged = false;
-        for (int i = 0; i < MAXITER && !hasConverged; i++) 
-        {           
-            if (this.u == null || !ids.containsKey(this.u)) {
-                for (int w = 0; w < N; w++) {
-                    prAux[w] = r/(N+0.0);
+        int i = 0;
+        while (i < MAXITER && W > 0)
+        {
+            boolean[] converged = this.iterate(matrix, sources, columns, W, current, next, contrib);
+            i++;
+
+            // keep the values of the original nodes which have converged (or reached the last iteration).
+            int remaining = 0;
+            for (int k = 0; k < W; ++k)
+            {
+                if (converged[k] || i == MAXITER)
+                {
+                    for (int w = 0; w < N; ++w)
+                    {
+                        values[w*B + columns[k]] = next[w*W + k];
+                    }
                 }
-                // perso
-            } else {
-                for (int w = 0; w < N; w++) {
-                    prAux[w] = 0.0;
+                else
+                {
+                    ++remaining;
                 }
-                index = ids.get(u);
-                prAux[index] = r;
             }
-           
-            // calculate
-            for (int u : in.keySet()) {
-                for (U vId : in.get(u).keySet()) {
-                    int v = ids.get(vId);
-                    prAux[u] += (1 - r) * pr[v] * in.get(u).get(vId) / out[v];
+
+            if (remaining == W)
+            {
+                double[] aux = current;
+                current = next;
+                next = aux;
+            }
+            else if (remaining > 0)
+            {
+                // remove the columns which have converged
+                int[] newColumns = new int[remaining];
+                int[] selected = new int[remaining];
+                for (int k = 0, l = 0; k < W; ++k)
+                {
+                    if (!converged[k])
+                    {
+                        newColumns[l] = columns[k];
+                        selected[l++] = k;
+                    }
+                }
+                double[] newCurrent = new double[N*remaining];
+                double[] newContrib = new double[N*remaining];
+                for (int w = 0; w < N; ++w)
+                {
+                    for (int l = 0; l < remaining; ++l)
+                    {
+                        newCurrent[w*remaining + l] = next[w*W + selected[l]];
+                        newContrib[w*remaining + l] = contrib[w*W + selected[l]];
+                    }
                 }
+                columns = newColumns;
+                current = newCurrent;
+                contrib = newContrib;
+                next = new double[N*remaining];
             }
+            W = remaining;
+        }
 
-            // make sum
-            double sum = 0.0;
-            for (int x = 0; x < N; x++) {
-                sum += prAux[x];
-            }
+        return values;
+    }
+
+    /**
+     * Runs an iteration of the batched power iteration.
+     * @param matrix the transition matrix of the graph.
+     * @param sources the identifiers of the original nodes.
+     * @param columns the original node of each column of the arrays.
+     * @param W the number of columns.
+     * @param current the values of the previous iteration.
+     * @param next the array where the values of the current iteration are stored.
+     * @param contrib the probability which each node sends through each outgoing link, for each column. It is updated with the new values.
+     * @return whether the values of each column have converged.
+     */
+    private boolean[] iterate(TransitionMatrix matrix, int[] sources, int[] columns, int W, double[] current, double[] next, double[] contrib)
+    {
+        int N = matrix.numNodes();
+        int[] inOffsets = matrix.getInOffsets();
+        int[] inIds = matrix.getInIds();
+        int[] outDegrees = matrix.getOutDegrees();
+        int numBlocks = matrix.numBlocks();
 
-            // handle sinks
-            for (int y = 0; y < N; y++) 
+        int[] source = new int[W];
+        double[] teleport = new double[W];
+        for (int k = 0; k < W; ++k)
+        {
+            source[k] = sources[columns[k]];
+            teleport[k] = source[k] == -1 ? r/(N+0.0) : 0.0;
+        }
+        double[] blockSums = new double[numBlocks*W];
+        boolean[] blockConverged = new boolean[numBlocks*W];
+
+        // calculate: gather the probability coming from the incoming neighbours, for all the columns
+        IntStream.range(0, numBlocks).parallel().forEach(b ->
+        {
+            double[] in = new double[W];
+            for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
             {
-                prAux[y] += ((1.0-sum) / (N+0.0));
+                Arrays.fill(in, 0.0);
+                for (int pos = inOffsets[w]; pos < inOffsets[w + 1]; ++pos)
+                {
+                    int v = inIds[pos]*W;
+                    for (int k = 0; k < W; ++k)
+                    {
+                        in[k] += contrib[v + k];
+                    }
+                }
+                for (int k = 0; k < W; ++k)
+                {
+                    double val = (w == source[k] ? r : teleport[k]) + (1 - r) * in[k];
+                    next[w*W + k] = val;
+                    blockSums[b*W + k] += val;
+                }
             }
+        });
 
-            // check convergency
-            hasConverged = true;
-            for (int z = 0; z < N; z++) {
-                hasConverged = hasConverged && (Math.abs(prAux[z] - pr[z]) < THRESHOLD);
-                pr[z] = prAux[z];
+        // make sum (block by block, so the result does not depend on the scheduling)
+        double[] sink = new double[W];
+        for (int k = 0; k < W; ++k)
+        {
+            double sum = 0.0;
+            for (int b = 0; b < numBlocks; b++)
+            {
+                sum += blockSums[b*W + k];
             }
+            sink[k] = (1.0-sum) / (N+0.0);
         }
 
-        Map<U, Double> pagerank = new HashMap<>();
-        for (U u : users) 
+        // handle sinks and check convergence
+        Arrays.fill(blockConverged, true);
+        IntStream.range(0, numBlocks).parallel().forEach(b ->
         {
-            pagerank.put(u, pr[ids.get(u)]);
-        }
+            for (int w = matrix.blockStart(b); w < matrix.blockEnd(b); ++w)
+            {
+                for (int k = 0; k < W; ++k)
+                {
+                    double val = next[w*W + k] + sink[k];
+                    blockConverged[b*W + k] &= Math.abs(val - current[w*W + k]) < THRESHOLD;
+                    next[w*W + k] = val;
+                    contrib[w*W + k] = outDegrees[w] > 0 ? val/outDegrees[w] : 0.0;
+                }
+            }
+        });
 
-        return pagerank;
+        boolean[] converged = new boolean[W];
+        for (int k = 0; k < W; ++k)
+        {
+            converged[k] = true;
+            for (int b = 0; b < numBlocks; b++)
+            {
+                converged[k] &= blockConverged[b*W + k];
+            }
+        }
+        return converged;
     }
-    
+
     public Map<U,Double> compute(Graph<U> graph, Stream<U> users)
     {
         Map<U, Double> full = this.compute(graph);
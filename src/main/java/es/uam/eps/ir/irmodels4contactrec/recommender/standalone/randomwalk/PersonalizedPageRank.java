@@ -9,23 +9,47 @@
 package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
 
 import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.recommender.ScoreAccumulator;
+import es.uam.eps.ir.irmodels4contactrec.recommender.TargetUsersAware;
 import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Recommends an user by his PageRank score.
+ * <p>
+ * The values can be computed in batches: once the target users are known, they are grouped in batches of
+ * batchSize users (in the order in which they are going to be requested), and the first time the scores of a
+ * user are requested, the PageRank values for all the users in its batch are computed at once. The batch is then
+ * dropped, and the values of each of its users are kept until that user is requested. Users outside the
+ * target set are computed one by one.
  * @author Javier Sanz-Cruzado Puig
  * @param <U> Type of the users
  */
-public class PersonalizedPageRank<U> extends UserFastRankingRecommender<U>
+public class PersonalizedPageRank<U> extends UserFastRankingRecommender<U> implements TargetUsersAware
 {
 
     /**
      * Teleport rate
      */
     private final double r;
+    /**
+     * Transition matrix of the graph.
+     */
+    private final TransitionMatrix matrix;
+    /**
+     * Number of users whose values are computed at once.
+     */
+    private final int batchSize;
+    /**
+     * Batch of each target user whose values have not been computed yet.
+     */
+    private final Map<Integer, Batch> batches;
+    /**
+     * Values of the target users which have been computed, but not requested yet.
+     */
+    private final Map<Integer, double[]> computed;
     
     /**
      * Constructor.
@@ -33,18 +57,124 @@ public class PersonalizedPageRank<U> extends UserFastRankingRecommender<U>
      * @param r Teleport rate.
      */
     public PersonalizedPageRank(FastGraph<U> graph, double r)
+    {
+        this(graph, r, 1);
+    }
+
+    /**
+     * Constructor.
+     * @param graph Graph
+     * @param r Teleport rate.
+     * @param batchSize Number of users whose values are computed at once. The values for each batch
+     * take batchSize times the memory needed for a single user.
+     */
+    public PersonalizedPageRank(FastGraph<U> graph, double r, int batchSize)
     {
         super(graph);
         this.r = r;
+        this.matrix = new TransitionMatrix(graph);
+        this.batchSize = Math.max(1, batchSize);
+        this.batches = new ConcurrentHashMap<>();
+        this.computed = new ConcurrentHashMap<>();
     }
 
     @Override
-    public Int2DoubleMap getScoresMap(int i) {
-        U u = this.uIndex.uidx2user(i);
-        Int2DoubleMap scores = new Int2DoubleOpenHashMap();
-        PageRank<U> pageRank = new PageRank<>(this.r,u);
-        Map<U, Double> pageRanks = pageRank.compute(this.getGraph());
-        pageRanks.forEach((key, value) -> scores.put(uIndex.user2uidx(key), value.doubleValue()));
-        return scores;
-    }    
+    public void setTargetUsers(int[] uidxs)
+    {
+        this.batches.clear();
+        this.computed.clear();
+        if (this.batchSize == 1)
+        {
+            return;
+        }
+
+        for (int first = 0; first < uidxs.length; first += this.batchSize)
+        {
+            int[] sources = new int[Math.min(this.batchSize, uidxs.length - first)];
+            System.arraycopy(uidxs, first, sources, 0, sources.length);
+            Batch batch = new Batch(sources);
+            for (int uidx : sources)
+            {
+                this.batches.put(uidx, batch);
+            }
+        }
+    }
+
+    @Override
+    protected void getScores(int i, ScoreAccumulator scores)
+    {
+        // The batch is looked up before the computed values: a batch stores its values before it is
+        // dropped, so, if the batch has been computed by another thread, the values are already there.
+        Batch batch = this.batches.get(i);
+        if (batch != null)
+        {
+            batch.compute();
+        }
+        double[] pageRanks = this.computed.remove(i);
+        if (pageRanks == null)
+        {
+            pageRanks = new PageRank<U>(this.r).compute(this.matrix, i);
+        }
+
+        for (int vidx = 0; vidx < pageRanks.length; ++vidx)
+        {
+            scores.set(vidx, pageRanks[vidx]);
+        }
+    }
+
+    /**
+     * Target users whose values are computed at once.
+     */
+    private class Batch
+    {
+        /**
+         * Identifiers of the users.
+         */
+        private final int[] sources;
+        /**
+         * Whether the values have already been computed or not.
+         */
+        private boolean done;
+
+        /**
+         * Constructor.
+         * @param sources The identifiers of the users.
+         */
+        Batch(int[] sources)
+        {
+            this.sources = sources;
+            this.done = false;
+        }
+
+        /**
+         * Computes the values of the users (if they have not been computed yet), stores the values of each
+         * user until it is requested, and drops the batch.
+         */
+        synchronized void compute()
+        {
+            if (this.done)
+            {
+                return;
+            }
+
+            // The value of node w for the j-th user is in position w*size + j.
+            double[] values = new PageRank<U>(r).compute(matrix, this.sources);
+            int size = this.sources.length;
+            int numNodes = matrix.numNodes();
+            for (int j = 0; j < size; ++j)
+            {
+                double[] pageRanks = new double[numNodes];
+                for (int vidx = 0; vidx < numNodes; ++vidx)
+                {
+                    pageRanks[vidx] = values[vidx*size + j];
+                }
+                computed.put(this.sources[j], pageRanks);
+            }
+            for (int uidx : this.sources)
+            {
+                batches.remove(uidx, this);
+            }
+            this.done = true;
+        }
+    }
 }
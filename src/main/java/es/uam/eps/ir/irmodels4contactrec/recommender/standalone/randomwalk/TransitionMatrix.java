@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.randomwalk;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.Graph;
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.index.Index;
+
+import java.util.stream.IntStream;
+
+/**
+ * Transition matrix of an (unweighted) random walk over a graph, in compressed sparse row format: for each node,
+ * it stores the nodes pointing to it (so the probability of reaching it can be gathered from them) and
+ * its out-degree. Nodes are identified by integers between 0 and N-1.
+ * <p>
+ * The nodes are also divided in contiguous blocks containing a similar number of edges, so the random walk
+ * iterations can be run in parallel, and the results do not depend on the number of threads.
+ * <p>
+ * The outgoing neighbourhoods (needed by local methods, which push the probability from a node to its
+ * neighbours) are only built, by transposing the incoming ones, the first time they are requested.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class TransitionMatrix
+{
+    /**
+     * Minimum number of nodes and edges in a block.
+     */
+    private static final int MIN_BLOCK_SIZE = 1 << 12;
+    /**
+     * Number of nodes.
+     */
+    private final int numNodes;
+    /**
+     * Offsets of the incoming neighbourhoods: the neighbours of node u are in positions [inOffsets[u], inOffsets[u+1]).
+     */
+    private final int[] inOffsets;
+    /**
+     * Incoming neighbours of the nodes.
+     */
+    private final int[] inIds;
+    /**
+     * Out-degree of each node.
+     */
+    private final int[] outDegrees;
+    /**
+     * First node of each block (the last value is the number of nodes).
+     */
+    private final int[] blocks;
+    /**
+     * Offsets of the outgoing neighbourhoods (null until they are first requested).
+     */
+    private int[] outOffsets;
+    /**
+     * Outgoing neighbours of the nodes (null until they are first requested).
+     */
+    private int[] outIds;
+
+    /**
+     * Constructor. Builds the matrix from a fast graph, using its node identifiers.
+     *
+     * @param graph the graph.
+     */
+    public TransitionMatrix(FastGraph<?> graph)
+    {
+        this.numNodes = (int) graph.getVertexCount();
+        this.outDegrees = new int[this.numNodes];
+        IntStream.range(0, this.numNodes).parallel().forEach(uidx -> this.outDegrees[uidx] = graph.getNeighborhoodSize(uidx, EdgeOrientation.OUT));
+
+        int[] offsets = graph.getCompactOffsets(EdgeOrientation.IN);
+        if (offsets != null)
+        {
+            this.inOffsets = offsets;
+            this.inIds = graph.getCompactIds(EdgeOrientation.IN);
+        }
+        else
+        {
+            this.inOffsets = new int[this.numNodes + 1];
+            for (int uidx = 0; uidx < this.numNodes; ++uidx)
+            {
+                this.inOffsets[uidx + 1] = this.inOffsets[uidx] + graph.getNeighborhoodSize(uidx, EdgeOrientation.IN);
+            }
+            this.inIds = new int[this.inOffsets[this.numNodes]];
+            IntStream.range(0, this.numNodes).parallel().forEach(uidx ->
+            {
+                int[] pos = {this.inOffsets[uidx]};
+                graph.forEachNeighbor(uidx, EdgeOrientation.IN, vidx -> this.inIds[pos[0]++] = vidx);
+            });
+        }
+
+        this.blocks = this.divide();
+    }
+
+    /**
+     * Constructor. Builds the matrix from any graph.
+     *
+     * @param graph the graph.
+     * @param index index containing all the nodes of the graph, which provides the node identifiers.
+     * @param <U>   type of the nodes.
+     */
+    public <U> TransitionMatrix(Graph<U> graph, Index<U> index)
+    {
+        this.numNodes = index.numObjects();
+        this.outDegrees = new int[this.numNodes];
+        int[][] incident = new int[this.numNodes][];
+        IntStream.range(0, this.numNodes).parallel().forEach(uidx ->
+        {
+            U u = index.idx2object(uidx);
+            this.outDegrees[uidx] = (int) graph.getAdjacentNodes(u).distinct().count();
+            incident[uidx] = graph.getIncidentNodes(u).distinct().mapToInt(index::object2idx).toArray();
+        });
+
+        this.inOffsets = new int[this.numNodes + 1];
+        for (int uidx = 0; uidx < this.numNodes; ++uidx)
+        {
+            this.inOffsets[uidx + 1] = this.inOffsets[uidx] + incident[uidx].length;
+        }
+        this.inIds = new int[this.inOffsets[this.numNodes]];
+        for (int uidx = 0; uidx < this.numNodes; ++uidx)
+        {
+            System.arraycopy(incident[uidx], 0, this.inIds, this.inOffsets[uidx], incident[uidx].length);
+        }
+
+        this.blocks = this.divide();
+    }
+
+    /**
+     * Divides the nodes in blocks with a similar amount of work (number of nodes plus number of incoming edges).
+     *
+     * @return the first node of each block, followed by the number of nodes.
+     */
+    private int[] divide()
+    {
+        long work = (long) this.numNodes + this.inOffsets[this.numNodes];
+        int numBlocks = (int) Math.max(1, Math.min(8L * Runtime.getRuntime().availableProcessors(), work / MIN_BLOCK_SIZE));
+
+        int[] starts = new int[numBlocks + 1];
+        int uidx = 0;
+        for (int b = 1; b < numBlocks; ++b)
+        {
+            long target = work * b / numBlocks;
+            while (uidx < this.numNodes && (long) uidx + this.inOffsets[uidx] < target)
+            {
+                ++uidx;
+            }
+            starts[b] = uidx;
+        }
+        starts[numBlocks] = this.numNodes;
+        return starts;
+    }
+
+    /**
+     * Obtains the number of nodes.
+     *
+     * @return the number of nodes.
+     */
+    public int numNodes()
+    {
+        return this.numNodes;
+    }
+
+    /**
+     * Obtains the offsets of the incoming neighbourhoods.
+     *
+     * @return the offsets. The array must not be modified.
+     */
+    public int[] getInOffsets()
+    {
+        return this.inOffsets;
+    }
+
+    /**
+     * Obtains the incoming neighbours of all the nodes.
+     *
+     * @return the incoming neighbours. The array must not be modified.
+     */
+    public int[] getInIds()
+    {
+        return this.inIds;
+    }
+
+    /**
+     * Obtains the out-degree of every node.
+     *
+     * @return the out-degrees. The array must not be modified.
+     */
+    public int[] getOutDegrees()
+    {
+        return this.outDegrees;
+    }
+
+    /**
+     * Obtains the number of blocks.
+     *
+     * @return the number of blocks.
+     */
+    public int numBlocks()
+    {
+        return this.blocks.length - 1;
+    }
+
+    /**
+     * Obtains the first node of a block.
+     *
+     * @param block the block.
+     *
+     * @return the first node of the block.
+     */
+    public int blockStart(int block)
+    {
+        return this.blocks[block];
+    }
+
+    /**
+     * Obtains the node after the last node of a block.
+     *
+     * @param block the block.
+     *
+     * @return the end (exclusive) of the block.
+     */
+    public int blockEnd(int block)
+    {
+        return this.blocks[block + 1];
+    }
+
+    /**
+     * Obtains the offsets of the outgoing neighbourhoods.
+     *
+     * @return the offsets. The array must not be modified.
+     */
+    public int[] getOutOffsets()
+    {
+        this.transpose();
+        return this.outOffsets;
+    }
+
+    /**
+     * Obtains the outgoing neighbours of all the nodes.
+     *
+     * @return the outgoing neighbours. The array must not be modified.
+     */
+    public int[] getOutIds()
+    {
+        this.transpose();
+        return this.outIds;
+    }
+
+    /**
+     * Builds the outgoing neighbourhoods from the incoming ones, if they have not been built yet.
+     */
+    private synchronized void transpose()
+    {
+        if (this.outIds != null)
+        {
+            return;
+        }
+
+        int[] offsets = new int[this.numNodes + 1];
+        for (int pos = 0; pos < this.inOffsets[this.numNodes]; ++pos)
+        {
+            ++offsets[this.inIds[pos] + 1];
+        }
+        for (int uidx = 0; uidx < this.numNodes; ++uidx)
+        {
+            offsets[uidx + 1] += offsets[uidx];
+        }
+
+        int[] ids = new int[this.inOffsets[this.numNodes]];
+        int[] next = new int[this.numNodes];
+        System.arraycopy(offsets, 0, next, 0, this.numNodes);
+        for (int vidx = 0; vidx < this.numNodes; ++vidx)
+        {
+            for (int pos = this.inOffsets[vidx]; pos < this.inOffsets[vidx + 1]; ++pos)
+            {
+                ids[next[this.inIds[pos]]++] = vidx;
+            }
+        }
+
+        this.outOffsets = offsets;
+        this.outIds = ids;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.utils;
+
+/**
+ * Operation that accepts an integer and a double value, and returns no result.
+ * Primitive specialization of a bi-consumer, used for traversing (identifier, weight)
+ * pairs without boxing them.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+@FunctionalInterface
+public interface IntDoubleConsumer
+{
+    /**
+     * Performs the operation over the given arguments.
+     *
+     * @param idx   the integer argument (e.g. the identifier of a node).
+     * @param value the double argument (e.g. the weight of an edge).
+     */
+    void accept(int idx, double value);
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.utils;
+
+import org.ranksys.core.util.tuples.Tuple2id;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded min-heap of (identifier, value) pairs, stored in primitive arrays, which keeps the k pairs
+ * with the highest values. Ties between values are broken by the identifier (the highest identifier
+ * is preferred), as in RankSys' IntDoubleTopN, so both produce the same rankings.
+ * <p>
+ * As the smallest selected pair is always available, the heap can also be used for stopping a search
+ * early: if an upper bound of the value of a candidate is not accepted, the candidate can be discarded
+ * without computing its exact value.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class IntDoubleTopK
+{
+    /**
+     * Identifiers of the selected pairs.
+     */
+    private final int[] keys;
+    /**
+     * Values of the selected pairs.
+     */
+    private final double[] values;
+    /**
+     * Number of selected pairs.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of pairs to keep.
+     */
+    public IntDoubleTopK(int capacity)
+    {
+        this.keys = new int[Math.max(capacity, 0)];
+        this.values = new double[Math.max(capacity, 0)];
+        this.size = 0;
+    }
+
+    /**
+     * Obtains the number of selected pairs.
+     *
+     * @return the number of selected pairs.
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Checks whether the heap is full.
+     *
+     * @return true if the heap contains as many pairs as its capacity, false otherwise.
+     */
+    public boolean isFull()
+    {
+        return this.size == this.keys.length;
+    }
+
+    /**
+     * Checks whether a pair would be selected if it was added now.
+     *
+     * @param key   the identifier.
+     * @param value the value.
+     *
+     * @return true if the pair would be selected, false otherwise.
+     */
+    public boolean accepts(int key, double value)
+    {
+        if (!this.isFull())
+        {
+            return true;
+        }
+        return this.keys.length > 0 && compare(key, value, this.keys[0], this.values[0]) > 0;
+    }
+
+    /**
+     * Adds a pair, if it is among the k highest ones.
+     *
+     * @param key   the identifier.
+     * @param value the value.
+     *
+     * @return true if the pair has been selected, false otherwise.
+     */
+    public boolean add(int key, double value)
+    {
+        if (!this.isFull())
+        {
+            int pos = this.size++;
+            while (pos > 0)
+            {
+                int parent = (pos - 1) >>> 1;
+                if (compare(key, value, this.keys[parent], this.values[parent]) >= 0)
+                {
+                    break;
+                }
+                this.keys[pos] = this.keys[parent];
+                this.values[pos] = this.values[parent];
+                pos = parent;
+            }
+            this.keys[pos] = key;
+            this.values[pos] = value;
+            return true;
+        }
+        else if (this.accepts(key, value))
+        {
+            this.siftDown(key, value, this.size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Obtains the selected pairs, sorted by decreasing value. The heap is emptied.
+     *
+     * @return the list of selected pairs.
+     */
+    public List<Tuple2id> toSortedList()
+    {
+        Tuple2id[] sorted = new Tuple2id[this.size];
+        while (this.size > 0)
+        {
+            int last = --this.size;
+            sorted[last] = new Tuple2id(this.keys[0], this.values[0]);
+            if (last > 0)
+            {
+                this.siftDown(this.keys[last], this.values[last], last);
+            }
+        }
+
+        List<Tuple2id> list = new ArrayList<>(sorted.length);
+        for (Tuple2id tuple : sorted)
+        {
+            list.add(tuple);
+        }
+        return list;
+    }
+
+    /**
+     * Places a pair at the root of the heap, and moves it down to its position.
+     *
+     * @param key   the identifier.
+     * @param value the value.
+     * @param size  the number of pairs in the heap.
+     */
+    private void siftDown(int key, double value, int size)
+    {
+        int pos = 0;
+        int child;
+        while ((child = 2 * pos + 1) < size)
+        {
+            if (child + 1 < size && compare(this.keys[child + 1], this.values[child + 1], this.keys[child], this.values[child]) < 0)
+            {
+                ++child;
+            }
+            if (compare(key, value, this.keys[child], this.values[child]) <= 0)
+            {
+                break;
+            }
+            this.keys[pos] = this.keys[child];
+            this.values[pos] = this.values[child];
+            pos = child;
+        }
+        this.keys[pos] = key;
+        this.values[pos] = value;
+    }
+
+    /**
+     * Compares two pairs, first by value and then by identifier.
+     *
+     * @param key1   identifier of the first pair.
+     * @param value1 value of the first pair.
+     * @param key2   identifier of the second pair.
+     * @param value2 value of the second pair.
+     *
+     * @return a negative number if the first pair is smaller, 0 if they are equal, a positive number otherwise.
+     */
+    private static int compare(int key1, double value1, int key2, double value2)
+    {
+        int cmp = Double.compare(value1, value2);
+        return cmp != 0 ? cmp : Integer.compare(key1, key2);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es and Terrier Team at University of Glasgow,
+ * http://terrierteam.dcs.gla.ac.uk/.
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.irmodels4contactrec.recommender.standalone.ir;
+
+import es.uam.eps.ir.irmodels4contactrec.graph.edges.EdgeOrientation;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraph;
+import es.uam.eps.ir.irmodels4contactrec.graph.fast.FastGraphBuilder;
+import es.uam.eps.ir.irmodels4contactrec.recommender.UserFastRankingRecommender;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the native Divergence from Randomness models (PL2, DLH, DPH, DFRee and DFReeKLIM) compute
+ * the same scores as the Terrier implementation of the models, run through {@link TerrierModel}.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Craig Macdonald (craig.macdonald@glasgow.ac.uk)
+ * @author Iadh Ounis (iadh.ounis@glasgow.ac.uk)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class DFRRecommenderTest
+{
+    /**
+     * Number of nodes of the test graphs.
+     */
+    private final static int NUMNODES = 60;
+    /**
+     * Number of edges tried to add to the test graphs.
+     */
+    private final static int NUMEDGES = 400;
+    /**
+     * Maximum relative difference between the native and the Terrier scores.
+     */
+    private final static double DELTA = 1e-9;
+    /**
+     * Names of the models.
+     */
+    private final static String[] MODELS = new String[]{"PL2", "DLH", "DPH", "DFRee", "DFReeKLIM"};
+
+    /**
+     * Configures Terrier, so it does not need an installation directory.
+     */
+    @BeforeClass
+    public static void configureTerrier()
+    {
+        System.setProperty("terrier.home", System.getProperty("java.io.tmpdir"));
+        System.setProperty("terrier.plugins", "");
+    }
+
+    @Test
+    public void directedUnweighted()
+    {
+        FastGraph<Long> graph = generate(true, false, false);
+        checkParity(graph, EdgeOrientation.OUT, EdgeOrientation.IN);
+        checkParity(graph, EdgeOrientation.IN, EdgeOrientation.OUT);
+        checkParity(graph, EdgeOrientation.UND, EdgeOrientation.UND);
+    }
+
+    @Test
+    public void directedWeighted()
+    {
+        FastGraph<Long> graph = generate(true, true, true);
+        checkParity(graph, EdgeOrientation.OUT, EdgeOrientation.IN);
+        checkParity(graph, EdgeOrientation.IN, EdgeOrientation.OUT);
+        checkParity(graph, EdgeOrientation.UND, EdgeOrientation.UND);
+    }
+
+    @Test
+    public void undirectedUnweighted()
+    {
+        checkParity(generate(false, false, false), EdgeOrientation.UND, EdgeOrientation.UND);
+    }
+
+    @Test
+    public void undirectedWeighted()
+    {
+        checkParity(generate(false, true, false), EdgeOrientation.UND, EdgeOrientation.UND);
+    }
+
+    @Test
+    public void directedUnweightedReciprocal()
+    {
+        FastGraph<Long> graph = generate(true, false, true);
+        checkParity(graph, EdgeOrientation.OUT, EdgeOrientation.IN);
+        checkParity(graph, EdgeOrientation.IN, EdgeOrientation.OUT);
+        checkParity(graph, EdgeOrientation.UND, EdgeOrientation.UND);
+    }
+
+    /**
+     * Checks that, for every user, the native models and Terrier score the same candidates, with the same scores.
+     *
+     * @param graph the training graph.
+     * @param uSel  orientation selection for the target user.
+     * @param vSel  orientation selection for the candidate user.
+     */
+    private static void checkParity(FastGraph<Long> graph, EdgeOrientation uSel, EdgeOrientation vSel)
+    {
+        for (String model : MODELS)
+        {
+            UserFastRankingRecommender<Long> nat = getNative(graph, uSel, vSel, model);
+            TerrierModel<Long> terrier = getTerrier(graph, uSel, vSel, model);
+
+            for (int uidx = 0; uidx < NUMNODES; ++uidx)
+            {
+                String message = model + " " + uSel + "/" + vSel + " user " + uidx;
+                Int2DoubleMap expected = terrier.getScoresMap(uidx);
+                Int2DoubleMap actual = nat.getScoresMap(uidx);
+
+                assertEquals(message, expected.keySet(), actual.keySet());
+                for (Int2DoubleMap.Entry entry : expected.int2DoubleEntrySet())
+                {
+                    double value = entry.getDoubleValue();
+                    assertEquals(message, value, actual.get(entry.getIntKey()), DELTA * Math.abs(value));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the native implementation of a model.
+     *
+     * @param graph the training graph.
+     * @param uSel  orientation selection for the target user.
+     * @param vSel  orientation selection for the candidate user.
+     * @param model the name of the model.
+     *
+     * @return the recommender.
+     */
+    private static UserFastRankingRecommender<Long> getNative(FastGraph<Long> graph, EdgeOrientation uSel, EdgeOrientation vSel, String model)
+    {
+        switch (model)
+        {
+            case "PL2":
+                return new PL2<>(graph, uSel, vSel, 1.5);
+            case "DLH":
+                return new DLH<>(graph, uSel, vSel);
+            case "DPH":
+                return new DPH<>(graph, uSel, vSel);
+            case "DFRee":
+                return new DFRee<>(graph, uSel, vSel);
+            default:
+                return new DFReeKLIM<>(graph, uSel, vSel);
+        }
+    }
+
+    /**
+     * Builds the Terrier implementation of a model.
+     *
+     * @param graph the training graph.
+     * @param uSel  orientation selection for the target user.
+     * @param vSel  orientation selection for the candidate user.
+     * @param model the name of the model.
+     *
+     * @return the recommender.
+     */
+    private static TerrierModel<Long> getTerrier(FastGraph<Long> graph, EdgeOrientation uSel, EdgeOrientation vSel, String model)
+    {
+        return new TerrierModel<>(graph, uSel, vSel, model, model.equals("PL2") ? Optional.of(1.5) : Optional.empty());
+    }
+
+    /**
+     * Generates a random graph. Weights are integer, since Terrier rounds up the term frequencies.
+     *
+     * @param directed   whether the graph is directed.
+     * @param weighted   whether the graph is weighted.
+     * @param reciprocal whether a directed graph can contain both (u,v) and (v,u).
+     *
+     * @return the graph.
+     */
+    private static FastGraph<Long> generate(boolean directed, boolean weighted, boolean reciprocal)
+    {
+        Random rng = new Random(7);
+        FastGraphBuilder<Long> builder = new FastGraphBuilder<>(directed, weighted);
+        for (long u = 0; u < NUMNODES; ++u)
+        {
+            builder.addNode(u);
+        }
+
+        Set<Long> edges = new HashSet<>();
+        for (int e = 0; e < NUMEDGES; ++e)
+        {
+            long u = rng.nextInt(NUMNODES);
+            long v = rng.nextInt(NUMNODES);
+            boolean inverse = edges.contains(v * NUMNODES + u);
+            if (u != v && !(inverse && (!directed || !reciprocal)) && edges.add(u * NUMNODES + v))
+            {
+                builder.addEdge(u, v, weighted ? 1.0 + rng.nextInt(4) : 1.0);
+            }
+        }
+        return builder.build();
+    }
+}